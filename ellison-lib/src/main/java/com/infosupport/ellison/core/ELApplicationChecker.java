@@ -24,20 +24,37 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.LogManager;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.infosupport.ellison.core.api.ELApplicationCheckerFactory;
+import com.infosupport.ellison.core.api.ELCheckListener;
 import com.infosupport.ellison.core.api.ELError;
 import com.infosupport.ellison.core.api.ELFinder;
 import com.infosupport.ellison.core.api.LocationAwareELExpression;
 import com.infosupport.ellison.core.api.PageFinder;
 import com.infosupport.ellison.core.api.StaticELResolver;
+import com.infosupport.ellison.core.api.StreamingELFinder;
 import com.infosupport.ellison.core.archive.ApplicationArchive;
 import com.infosupport.ellison.core.archive.ApplicationArchiveFactory;
+import com.infosupport.ellison.core.archive.EARApplicationArchive;
 import com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException;
 import com.infosupport.ellison.core.exceptions.ArchiveFormatUnsupportedException;
 import com.infosupport.ellison.core.exceptions.ELCheckerException;
+import com.infosupport.ellison.core.util.Constants;
 import com.infosupport.ellison.core.util.Pair;
 import com.sun.faces.util.FacesLogger;
 
@@ -49,8 +66,12 @@ import com.sun.faces.util.FacesLogger;
  * @author StefanZ
  */
 public class ELApplicationChecker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ELApplicationChecker.class);
     private final ClassLoader originalClassLoader;
     private List<ELApplicationCheckerFactory> supportedELCheckerApplicationFactories;
+    private int moduleCheckThreads = Constants.DEFAULT_MODULE_CHECK_THREADS;
+    private boolean pipelined = false;
+    private int resolveThreads = Constants.DEFAULT_RESOLVE_THREADS;
 
     /**
      * The following static initializer simply disables all logging done by the {@link FacesLogger}.
@@ -82,7 +103,7 @@ public class ELApplicationChecker {
      * returns</li>
      * <li>Ask every {@link ELApplicationCheckerFactory} currently in the list of supported
      * {@code ELApplicationCheckerFactory} if it supports the given {@code application}. If none do,
-     * restore the original classloader, and throw an {@link
+     * throw an {@link
      * com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException}.
      * Otherwise,
      * continue to the next step</li>
@@ -99,12 +120,14 @@ public class ELApplicationChecker {
      * <li>Ask the {@link ELApplicationCheckerFactory} for an instance of {@link StaticELResolver},
      * and use it to resolve each and every EL expression in the list found in the previous step. This is done
      * using {@link #checkExpressions(java.util.Collection, StaticELResolver)}</li>
-     * <li>Restore the original classloader, and return the list of all found errors</li>
+     * <li>Close the {@link StaticELResolver}, which stops anything it still does in the background</li>
+     * <li>Close the {@link com.infosupport.ellison.core.archive.ApplicationArchive}, which releases its classloader
+     * and any unpacked files, restore the original classloader, and return the list of all found errors</li>
      * </ol>
      * <p/>
      * Note that this method changes the context classloader of the caller's thread during its execution. However, upon
-     * returning, this method must have restored the classloader that was used during construction of this instance
-     * (even in the event of an exception being thrown).
+     * returning, this method must have restored the classloader that was used during construction of this instance,
+     * and closed the application archive (even in the event of an exception being thrown).
      *
      * @param application
      *     the application archive to analyse
@@ -121,29 +144,378 @@ public class ELApplicationChecker {
      */
     public Collection<ELError> checkApplication(File application)
         throws ArchiveFormatUnsupportedException, ApplicationNotSupportedException, IOException {
-        ApplicationArchive applicationArchive = null;
-        ELApplicationCheckerFactory elApplicationCheckerFactory = null;
+        ErrorCollector errorCollector = new ErrorCollector();
+        checkApplication(application, errorCollector);
+        return errorCollector.getErrors();
+    }
 
-        applicationArchive = getApplicationArchiveFactory().createApplicationArchive(application);
+    /**
+     * Checks the given application archive for Expression Language errors and problems, like {@link
+     * #checkApplication(java.io.File)}, but passes the results on to {@code listener} while the check is running,
+     * instead of returning them once it has finished. This way, errors can be reported before all pages have been
+     * checked, and without holding all of them in memory.
+     *
+     * @param application
+     *     the application archive to analyse
+     * @param listener
+     *     the listener to pass the found errors and the progress of the check to
+     *
+     * @throws com.infosupport.ellison.core.exceptions.ArchiveFormatUnsupportedException
+     *     when the archive is not yet supported by this class
+     * @throws com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException
+     *     when the configuration for the application indicates different components/frameworks than this application
+     *     supports
+     * @throws IOException
+     *     if some I/O error occurred while trying to unpack the application archive
+     * @see ELCheckListener
+     */
+    public void checkApplication(File application, ELCheckListener listener)
+        throws ArchiveFormatUnsupportedException, ApplicationNotSupportedException, IOException {
+        try (ApplicationArchive applicationArchive = getApplicationArchiveFactory()
+            .createApplicationArchive(application)) {
+            checkApplication(applicationArchive, listener);
+        }
+    }
+
+    /**
+     * Checks an application archive that has already been created for Expression Language errors and problems. This
+     * is what {@link #checkApplication(java.io.File)} does after creating the archive, and can be used to check
+     * archives that are not read from a file, such as an
+     * {@link com.infosupport.ellison.core.archive.InMemoryWARApplicationArchive}.
+     * <p/>
+     * Unlike {@link #checkApplication(java.io.File)}, this method does not close {@code applicationArchive}; that is
+     * left to the caller. The context classloader of the caller's thread is restored upon returning.
+     * <p/>
+     * If {@code applicationArchive} is an {@link EARApplicationArchive}, each of its web modules is checked on its
+     * own, using up to {@link #getModuleCheckThreads()} threads, and the errors found in all modules are returned
+     * together. Modules that no {@link ELApplicationCheckerFactory} supports are skipped.
+     *
+     * @param applicationArchive
+     *     the application archive to analyse
+     *
+     * @return a list of found errors
+     *
+     * @throws com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException
+     *     when the configuration for the application indicates different components/frameworks than this application
+     *     supports. For enterprise applications, this is only thrown if none of the web modules are supported.
+     */
+    public Collection<ELError> checkApplication(ApplicationArchive applicationArchive)
+        throws ApplicationNotSupportedException {
+        ErrorCollector errorCollector = new ErrorCollector();
+        checkApplication(applicationArchive, errorCollector);
+        return errorCollector.getErrors();
+    }
 
-        Thread.currentThread().setContextClassLoader(applicationArchive.getClassLoader());
+    /**
+     * Checks an application archive that has already been created for Expression Language errors and problems, like
+     * {@link #checkApplication(com.infosupport.ellison.core.archive.ApplicationArchive)}, but passes the results on to
+     * {@code listener} while the check is running.
+     * <p/>
+     * The web modules of an enterprise application are checked concurrently, so their results are held back until the
+     * module has been checked, and then passed on in the order in which the modules are listed in the deployment
+     * descriptor.
+     *
+     * @param applicationArchive
+     *     the application archive to analyse
+     * @param listener
+     *     the listener to pass the found errors and the progress of the check to
+     *
+     * @throws com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException
+     *     when the configuration for the application indicates different components/frameworks than this application
+     *     supports. For enterprise applications, this is only thrown if none of the web modules are supported.
+     * @see ELCheckListener
+     */
+    public void checkApplication(ApplicationArchive applicationArchive, ELCheckListener listener)
+        throws ApplicationNotSupportedException {
+        if (applicationArchive instanceof EARApplicationArchive) {
+            checkEnterpriseApplication((EARApplicationArchive) applicationArchive, listener);
+        } else {
+            checkWebApplication(applicationArchive, listener);
+        }
+    }
 
-        elApplicationCheckerFactory = findCheckerForApplication(applicationArchive);
+    /**
+     * Checks a single web application, on the calling thread.
+     *
+     * @param applicationArchive
+     *     the application archive to analyse
+     * @param listener
+     *     the listener to pass the found errors and the progress of the check to
+     *
+     * @throws ApplicationNotSupportedException
+     *     when no {@link ELApplicationCheckerFactory} supports the application
+     * @see #checkApplication(com.infosupport.ellison.core.archive.ApplicationArchive, ELCheckListener)
+     */
+    private void checkWebApplication(ApplicationArchive applicationArchive, ELCheckListener listener)
+        throws ApplicationNotSupportedException {
+        try {
+            Thread.currentThread().setContextClassLoader(applicationArchive.getClassLoader());
 
-        PageFinder pageFinder = elApplicationCheckerFactory.createPageFinder(applicationArchive);
-        ELFinder elFinder = elApplicationCheckerFactory.createELFinder(applicationArchive);
-        StaticELResolver elResolver = elApplicationCheckerFactory.createELResolver(applicationArchive);
+            ELApplicationCheckerFactory elApplicationCheckerFactory = findCheckerForApplication(applicationArchive);
 
-        Collection<URI> pages = pageFinder.findPages(applicationArchive);
-        Pair<Collection<LocationAwareELExpression>, Collection<ELError>> elExpressionsAndErrors =
-            elFinder.findELExpressions(pages, applicationArchive);
-        Collection<ELError> foundErrors = checkExpressions(elExpressionsAndErrors.first(), elResolver);
+            PageFinder pageFinder = elApplicationCheckerFactory.createPageFinder(applicationArchive);
+            ELFinder elFinder = elApplicationCheckerFactory.createELFinder(applicationArchive);
 
-        foundErrors.addAll(elExpressionsAndErrors.second());
+            // The resolver may still be reading the application archive in the background, until it is closed
+            try (StaticELResolver elResolver = elApplicationCheckerFactory.createELResolver(applicationArchive)) {
+                Collection<URI> pages = pageFinder.findPages(applicationArchive);
 
-        restoreClassLoader();
+                if (elFinder instanceof StreamingELFinder) {
+                    if (isPipelined()) {
+                        checkPagesPipelined(pages, (StreamingELFinder) elFinder, elResolver, applicationArchive,
+                                            listener);
+                    } else {
+                        checkPages(pages, (StreamingELFinder) elFinder, elResolver, applicationArchive, listener);
+                    }
+                    return;
+                }
 
-        return foundErrors;
+                // Other finders only hand over the expressions of all pages together, so they are resolved together
+                Pair<Collection<LocationAwareELExpression>, Collection<ELError>> elExpressionsAndErrors =
+                    elFinder.findELExpressions(pages, applicationArchive);
+                for (ELError foundError : elExpressionsAndErrors.second()) {
+                    parseErrorFound(listener, foundError);
+                }
+                listener.onPhaseDone(ELCheckListener.Phase.PARSE);
+
+                for (ELError foundError : checkExpressions(elExpressionsAndErrors.first(), elResolver)) {
+                    listener.onError(foundError);
+                }
+                for (URI page : pages) {
+                    listener.onPageDone(page);
+                }
+                listener.onPhaseDone(ELCheckListener.Phase.RESOLVE);
+            }
+        } finally {
+            restoreClassLoader();
+        }
+    }
+
+    /**
+     * Checks the expressions of pages once all pages have been parsed, one page at a time, on the calling thread.
+     * <p/>
+     * The syntax errors found while parsing a page are reported as soon as all pages before it have been parsed, so
+     * they are reported in the order of {@code pages}, before the {@link ELCheckListener.Phase#PARSE} phase is done.
+     * The errors found while resolving a page are reported as soon as that page has been resolved, followed by the
+     * page itself, so only the results of the page being resolved are held back.
+     *
+     * @param pages
+     *     the pages to check
+     * @param elFinder
+     *     the finder to parse the pages with
+     * @param elResolver
+     *     the resolver to check the expressions with
+     * @param applicationArchive
+     *     the application archive containing the pages
+     * @param listener
+     *     the listener to pass the found errors and the progress of the check to
+     */
+    private void checkPages(Collection<URI> pages, StreamingELFinder elFinder, StaticELResolver elResolver,
+                            ApplicationArchive applicationArchive, ELCheckListener listener) {
+        final PageReporter reporter = new PageReporter(pages, listener);
+        final AtomicReferenceArray<Collection<LocationAwareELExpression>> pageExpressions =
+            new AtomicReferenceArray<>(pages.size());
+
+        try {
+            elFinder.findELExpressions(pages, applicationArchive, new StreamingELFinder.PageHandler() {
+                @Override
+                public void handlePage(int pageIndex, URI page, Collection<LocationAwareELExpression> expressions,
+                                       Collection<ELError> errors) {
+                    pageExpressions.set(pageIndex, expressions);
+                    reporter.pageParsed(pageIndex, errors);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                String.format("Interrupted while checking the application '%s'",
+                              applicationArchive.getApplicationFile().getAbsolutePath()), e);
+        }
+        reporter.phaseDone(ELCheckListener.Phase.PARSE);
+
+        for (int i = 0; i < pageExpressions.length(); i++) {
+            Collection<LocationAwareELExpression> expressions = pageExpressions.getAndSet(i, null);
+            reporter.pageResolved(i, expressions == null ? Collections.<ELError>emptyList()
+                                                          : checkExpressions(expressions, elResolver));
+        }
+        reporter.phaseDone(ELCheckListener.Phase.RESOLVE);
+    }
+
+    /**
+     * Checks the expressions of pages while the pages are still being parsed. The expressions of every parsed page are
+     * put on a bounded queue, from which resolve threads take them, so that only the expressions of the pages waiting
+     * on the queue or being resolved are held in memory. Parsing pauses while the queue is full.
+     * <p/>
+     * The errors are reported in the order of {@code pages}: the syntax errors found while parsing a page as soon as
+     * all pages before it have been parsed, and the errors found while resolving a page as soon as all pages before
+     * it have been resolved.
+     *
+     * @param pages
+     *     the pages to check
+     * @param elFinder
+     *     the finder to parse the pages with
+     * @param elResolver
+     *     the resolver to check the expressions with. It is used by several threads at the same time.
+     * @param applicationArchive
+     *     the application archive containing the pages
+     * @param listener
+     *     the listener to pass the found errors and the progress of the check to
+     */
+    private void checkPagesPipelined(Collection<URI> pages, StreamingELFinder elFinder,
+                                     final StaticELResolver elResolver, ApplicationArchive applicationArchive,
+                                     ELCheckListener listener) {
+        final PageReporter reporter = new PageReporter(pages, listener);
+        final BlockingQueue<PageExpressions> pageQueue = new ArrayBlockingQueue<>(Constants.PIPELINE_QUEUE_CAPACITY);
+        final AtomicReference<Throwable> resolveFailure = new AtomicReference<>();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        int threadCount = Math.max(1, Math.min(getResolveThreads(), pages.size()));
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<Void>> resolvers = new ArrayList<>(threadCount);
+
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                resolvers.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        Thread.currentThread().setContextClassLoader(contextClassLoader);
+                        PageExpressions pageExpressions = pageQueue.take();
+
+                        // After a failure, keep taking pages off the queue, so that parsing never blocks for good
+                        while (pageExpressions != PageExpressions.END) {
+                            if (resolveFailure.get() == null) {
+                                try {
+                                    reporter.pageResolved(pageExpressions.pageIndex,
+                                                          checkExpressions(pageExpressions.expressions, elResolver));
+                                } catch (RuntimeException | Error e) {
+                                    resolveFailure.compareAndSet(null, e);
+                                }
+                            }
+                            pageExpressions = pageQueue.take();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            elFinder.findELExpressions(pages, applicationArchive, new StreamingELFinder.PageHandler() {
+                @Override
+                public void handlePage(int pageIndex, URI page, Collection<LocationAwareELExpression> expressions,
+                                       Collection<ELError> errors) throws InterruptedException {
+                    reporter.pageParsed(pageIndex, errors);
+                    pageQueue.put(new PageExpressions(pageIndex, expressions));
+                }
+            });
+            reporter.phaseDone(ELCheckListener.Phase.PARSE);
+
+            for (int i = 0; i < threadCount; i++) {
+                pageQueue.put(PageExpressions.END);
+            }
+            for (Future<Void> resolver : resolvers) {
+                resolver.get();
+            }
+        } catch (ExecutionException e) {
+            resolveFailure.compareAndSet(null, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                String.format("Interrupted while checking the application '%s'",
+                              applicationArchive.getApplicationFile().getAbsolutePath()), e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Throwable failure = resolveFailure.get();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+
+        reporter.phaseDone(ELCheckListener.Phase.RESOLVE);
+    }
+
+    /**
+     * Checks all web modules of an enterprise application concurrently. The results of every module are recorded while
+     * it is checked, and passed on to {@code listener} in the order in which the modules are listed in the deployment
+     * descriptor.
+     *
+     * @param applicationArchive
+     *     the enterprise application to analyse
+     * @param listener
+     *     the listener to pass the errors found in all supported web modules to
+     *
+     * @throws ApplicationNotSupportedException
+     *     if the enterprise application has no web modules, or none of them are supported
+     */
+    private void checkEnterpriseApplication(final EARApplicationArchive applicationArchive, ELCheckListener listener)
+        throws ApplicationNotSupportedException {
+        List<String> webModules = null;
+        String applicationName = applicationArchive.getApplicationFile().getAbsolutePath();
+
+        try {
+            webModules = applicationArchive.getWebModules();
+        } catch (IOException e) {
+            throw new ApplicationNotSupportedException(
+                String.format("Could not read the web modules of the application '%s'", applicationName), e);
+        }
+
+        if (webModules.isEmpty()) {
+            throw new ApplicationNotSupportedException(
+                String.format("The application '%s' does not contain any web modules", applicationName));
+        }
+
+        int threadCount = Math.max(1, Math.min(getModuleCheckThreads(), webModules.size()));
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<ModuleEvents>> moduleChecks = new ArrayList<>(webModules.size());
+        int checkedModules = 0;
+
+        try {
+            for (final String webModule : webModules) {
+                moduleChecks.add(executorService.submit(new Callable<ModuleEvents>() {
+                    @Override
+                    public ModuleEvents call() throws ApplicationNotSupportedException, IOException {
+                        ModuleEvents moduleEvents = new ModuleEvents();
+                        try (ApplicationArchive moduleArchive = applicationArchive.openWebModule(webModule)) {
+                            checkWebApplication(moduleArchive, moduleEvents);
+                        }
+                        return moduleEvents;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < moduleChecks.size(); i++) {
+                try {
+                    moduleChecks.get(i).get().replay(listener);
+                    checkedModules++;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ApplicationNotSupportedException || cause instanceof IOException) {
+                        LOGGER.warn(String.format("Skipping web module '%s' of the application '%s'",
+                                                  webModules.get(i), applicationName), cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new IllegalStateException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                String.format("Interrupted while checking the application '%s'", applicationName), e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        if (checkedModules == 0) {
+            throw new ApplicationNotSupportedException(
+                String.format("No plugins are available to check any web module of the application '%s'",
+                              applicationName));
+        }
     }
 
     /**
@@ -175,7 +547,6 @@ public class ELApplicationChecker {
         }
 
         if (!applicationSupported) {
-            restoreClassLoader();
             throw new ApplicationNotSupportedException(
                 String.format("No plugins are available to check the application '%s'",
                               applicationArchive.getApplicationFile().getAbsolutePath()));
@@ -184,6 +555,23 @@ public class ELApplicationChecker {
         return elApplicationCheckerFactory;
     }
 
+    /**
+     * Passes a syntax error found while parsing a page on to a listener. Listeners that keep these apart from the
+     * errors found while resolving are told which kind of error it is.
+     *
+     * @param listener
+     *     the listener to pass the error to
+     * @param error
+     *     the syntax error
+     */
+    private static void parseErrorFound(ELCheckListener listener, ELError error) {
+        if (listener instanceof ParseErrorListener) {
+            ((ParseErrorListener) listener).onParseError(error);
+        } else {
+            listener.onError(error);
+        }
+    }
+
     /**
      * Restores what was this thread's context classloader at the time of the construction of this instance.
      */
@@ -225,6 +613,242 @@ public class ELApplicationChecker {
         supportedELCheckerApplicationFactories.add(elApplicationCheckerFactory);
     }
 
+    /**
+     * Get the number of threads the web modules of an enterprise application are checked with.
+     *
+     * @return the number of module check threads
+     */
+    public int getModuleCheckThreads() {
+        return moduleCheckThreads;
+    }
+
+    /**
+     * Set the number of threads the web modules of an enterprise application are checked with. Defaults to the number
+     * of available processors.
+     *
+     * @param moduleCheckThreads
+     *     the number of module check threads. Modules are checked one after another if this is 1 or less.
+     */
+    public void setModuleCheckThreads(int moduleCheckThreads) {
+        this.moduleCheckThreads = moduleCheckThreads;
+    }
+
+    /**
+     * Indicates whether the expressions of a web application are checked while its pages are still being parsed.
+     *
+     * @return {@code true} if pages are parsed and checked in a pipeline
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Set whether the expressions of a web application are checked while its pages are still being parsed, rather
+     * than after all pages have been parsed. This keeps the number of expressions held in memory bounded, see {@link
+     * Constants#PIPELINE_QUEUE_CAPACITY}, but the {@link StaticELResolver}s of the application must then be safe for
+     * use by several threads at the same time. It only has an effect for {@link ELFinder}s that implement {@link
+     * StreamingELFinder}. Defaults to {@code false}.
+     *
+     * @param pipelined
+     *     whether to parse and check pages in a pipeline
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Get the number of threads expressions are checked with when pages are parsed and checked in a pipeline.
+     *
+     * @return the number of resolve threads
+     */
+    public int getResolveThreads() {
+        return resolveThreads;
+    }
+
+    /**
+     * Set the number of threads expressions are checked with when pages are parsed and checked in a pipeline, see
+     * {@link #setPipelined(boolean)}. Defaults to the number of available processors.
+     *
+     * @param resolveThreads
+     *     the number of resolve threads. One thread is used if this is 1 or less.
+     */
+    public void setResolveThreads(int resolveThreads) {
+        this.resolveThreads = resolveThreads;
+    }
+
+    /**
+     * The expressions of a parsed page, waiting to be checked.
+     */
+    private static final class PageExpressions {
+        /**
+         * Marks the end of the pages, telling a resolve thread to stop.
+         */
+        static final PageExpressions END = new PageExpressions(-1, null);
+        final int pageIndex;
+        final Collection<LocationAwareELExpression> expressions;
+
+        PageExpressions(int pageIndex, Collection<LocationAwareELExpression> expressions) {
+            this.pageIndex = pageIndex;
+            this.expressions = expressions;
+        }
+    }
+
+    /**
+     * Passes the results of checking the pages of a web application on to a listener, one thread at a time, in the
+     * order of the pages: the syntax errors found in a page are held back until all pages before it have been parsed,
+     * and the errors found while resolving a page until all pages before it have been resolved.
+     */
+    private static final class PageReporter {
+        private final List<URI> pages;
+        private final ELCheckListener listener;
+        private final List<Collection<ELError>> parseErrors;
+        private final List<Collection<ELError>> resolveErrors;
+        private int nextParsedPageIndex = 0;
+        private int nextResolvedPageIndex = 0;
+
+        PageReporter(Collection<URI> pages, ELCheckListener listener) {
+            this.pages = new ArrayList<>(pages);
+            this.listener = listener;
+            parseErrors = new ArrayList<>(Collections.<Collection<ELError>>nCopies(pages.size(), null));
+            resolveErrors = new ArrayList<>(Collections.<Collection<ELError>>nCopies(pages.size(), null));
+        }
+
+        synchronized void pageParsed(int pageIndex, Collection<ELError> errors) {
+            parseErrors.set(pageIndex, errors);
+
+            while (nextParsedPageIndex < pages.size() && parseErrors.get(nextParsedPageIndex) != null) {
+                for (ELError error : parseErrors.get(nextParsedPageIndex)) {
+                    parseErrorFound(listener, error);
+                }
+                parseErrors.set(nextParsedPageIndex, Collections.<ELError>emptyList());
+                nextParsedPageIndex++;
+            }
+        }
+
+        synchronized void pageResolved(int pageIndex, Collection<ELError> errors) {
+            resolveErrors.set(pageIndex, errors);
+
+            while (nextResolvedPageIndex < pages.size() && resolveErrors.get(nextResolvedPageIndex) != null) {
+                for (ELError error : resolveErrors.get(nextResolvedPageIndex)) {
+                    listener.onError(error);
+                }
+                listener.onPageDone(pages.get(nextResolvedPageIndex));
+                resolveErrors.set(nextResolvedPageIndex, Collections.<ELError>emptyList());
+                nextResolvedPageIndex++;
+            }
+        }
+
+        synchronized void phaseDone(ELCheckListener.Phase phase) {
+            listener.onPhaseDone(phase);
+        }
+    }
+
+    /**
+     * A listener that is told which errors are syntax errors found while parsing, see {@link
+     * #parseErrorFound(ELCheckListener, ELError)}.
+     */
+    private interface ParseErrorListener extends ELCheckListener {
+        /**
+         * Called instead of {@link #onError(ELError)} for syntax errors found while parsing.
+         *
+         * @param error
+         *     the syntax error found
+         */
+        void onParseError(ELError error);
+    }
+
+    /**
+     * A syntax error recorded by {@link ModuleEvents}.
+     */
+    private static final class ParseError {
+        final ELError error;
+
+        ParseError(ELError error) {
+            this.error = error;
+        }
+    }
+
+    /**
+     * Records the results of checking a web module of an enterprise application, so that they can be passed on once
+     * the module has been checked.
+     */
+    private static final class ModuleEvents implements ParseErrorListener {
+        /**
+         * The errors, pages and phases passed to this listener, in the order in which they were passed.
+         */
+        private final List<Object> events = new ArrayList<>();
+
+        @Override
+        public void onError(ELError error) {
+            events.add(error);
+        }
+
+        @Override
+        public void onParseError(ELError error) {
+            events.add(new ParseError(error));
+        }
+
+        @Override
+        public void onPageDone(URI page) {
+            events.add(page);
+        }
+
+        @Override
+        public void onPhaseDone(Phase phase) {
+            events.add(phase);
+        }
+
+        void replay(ELCheckListener listener) {
+            for (Object event : events) {
+                if (event instanceof ELError) {
+                    listener.onError((ELError) event);
+                } else if (event instanceof ParseError) {
+                    parseErrorFound(listener, ((ParseError) event).error);
+                } else if (event instanceof URI) {
+                    listener.onPageDone((URI) event);
+                } else {
+                    listener.onPhaseDone((Phase) event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the errors passed to it, for the methods returning all errors at once. For every web application, the
+     * errors found while resolving its expressions are returned first, followed by the syntax errors found in its
+     * pages.
+     */
+    private static final class ErrorCollector implements ParseErrorListener {
+        private final Collection<ELError> errors = new ArrayList<>();
+        private final Collection<ELError> parseErrors = new ArrayList<>();
+
+        @Override
+        public void onError(ELError error) {
+            errors.add(error);
+        }
+
+        @Override
+        public void onParseError(ELError error) {
+            parseErrors.add(error);
+        }
+
+        @Override
+        public void onPageDone(URI page) {
+        }
+
+        @Override
+        public void onPhaseDone(Phase phase) {
+            if (phase == Phase.RESOLVE) {
+                errors.addAll(parseErrors);
+                parseErrors.clear();
+            }
+        }
+
+        Collection<ELError> getErrors() {
+            return errors;
+        }
+    }
+
     /**
      * Method for better testability.
      *
@@ -0,0 +1,78 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.api;
+
+import java.net.URI;
+
+/**
+ * Receives the results of checking an application while the check is running, see {@link
+ * com.infosupport.ellison.core.ELApplicationChecker#checkApplication(java.io.File, ELCheckListener)}.
+ * <p/>
+ * The methods of a listener are never called by more than one thread at the same time, so a listener does not have to
+ * be thread safe. An exception thrown by a listener aborts the check, and is passed on to the caller.
+ *
+ * @author StefanZ
+ */
+public interface ELCheckListener {
+    /**
+     * Called for every error or problem found in the application, as soon as it has been found. The syntax errors
+     * found while parsing the pages are reported in the order of the pages, before the {@link Phase#PARSE} phase is
+     * done. The errors found while resolving the expressions of a page are reported in the order of the pages as
+     * well, each page followed by {@link #onPageDone(URI)}.
+     *
+     * @param error
+     *     the error found
+     */
+    void onError(ELError error);
+
+    /**
+     * Called once the expressions of a page have been resolved, and the errors found in them have been reported.
+     *
+     * @param page
+     *     the page that has been checked
+     */
+    void onPageDone(URI page);
+
+    /**
+     * Called once a phase of checking a web application has finished. For an enterprise application, this is called
+     * for every web module.
+     *
+     * @param phase
+     *     the phase that has finished
+     */
+    void onPhaseDone(Phase phase);
+
+    /**
+     * The phases of checking a web application.
+     */
+    enum Phase {
+        /**
+         * All pages have been parsed, their expressions found, and the syntax errors found while parsing have been
+         * reported. If pages are checked while they are being parsed (see {@link
+         * com.infosupport.ellison.core.ELApplicationChecker#setPipelined(boolean)}), errors found while resolving may
+         * already have been reported before this phase is done.
+         */
+        PARSE,
+        /**
+         * The expressions of all pages have been resolved, and the errors found while resolving have been reported.
+         */
+        RESOLVE
+    }
+}
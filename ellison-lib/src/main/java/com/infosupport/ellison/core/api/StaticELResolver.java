@@ -20,6 +20,7 @@
 package com.infosupport.ellison.core.api;
 
 import java.beans.FeatureDescriptor;
+import java.io.Closeable;
 import java.util.Iterator;
 import javax.el.ELContext;
 import javax.el.ELResolver;
@@ -29,7 +30,24 @@ import javax.el.ELResolver;
  *
  * @author StefanZ
  */
-public abstract class StaticELResolver extends ELResolver {
+public abstract class StaticELResolver extends ELResolver implements Closeable {
+    /**
+     * The base type that stands for the root of an expression, i.e. a {@code null} base. See {@link #getBaseTypes()}.
+     */
+    public static final Class<?> ROOT = Void.class;
+
+    /**
+     * Get the kinds of bases this resolver resolves properties of. An {@link com.infosupport.ellison.core.util
+     * .ELResolverChain} only passes a base/property pair on to this resolver if the base is {@code null} and this
+     * includes {@link #ROOT}, or if the base is an instance of one of these types.
+     *
+     * @return the types of the bases this resolver handles, or {@code null} if it may handle any base. This
+     *         implementation returns {@code null}.
+     */
+    public Class<?>[] getBaseTypes() {
+        return null;
+    }
+
     /**
      * Resolves a base/property pair from an EL expression.
      *
@@ -51,6 +69,15 @@ public abstract class StaticELResolver extends ELResolver {
     @Override
     public abstract Object getValue(ELContext context, Object base, Object property);
 
+    /**
+     * Releases whatever this resolver still holds on to, such as background tasks reading the application archive.
+     * This is called once all expressions of an application have been resolved, before its application archive is
+     * closed. This implementation does nothing.
+     */
+    @Override
+    public void close() {
+    }
+
     @Override
     public final Class<?> getType(ELContext context, Object base, Object property) {
         throw new UnsupportedOperationException();
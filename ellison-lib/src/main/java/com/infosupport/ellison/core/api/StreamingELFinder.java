@@ -0,0 +1,79 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.api;
+
+import com.infosupport.ellison.core.archive.ApplicationArchive;
+
+import java.net.URI;
+import java.util.Collection;
+
+/**
+ * An {@link ELFinder} that hands over the expressions of every page as soon as that page has been parsed, instead of
+ * collecting the expressions of all pages first.
+ * <p/>
+ * This allows the expressions of a page to be checked, and then discarded, while other pages are still being parsed.
+ *
+ * @author StefanZ
+ */
+public interface StreamingELFinder extends ELFinder {
+    /**
+     * Finds the EL expressions within a list of pages, and passes them on page by page.
+     * <p/>
+     * Pages may be parsed concurrently, in which case {@code pageHandler} is called from several threads at the same
+     * time, and not necessarily in the order of {@code pages}. This method returns once {@code pageHandler} has been
+     * called for every page.
+     *
+     * @param pages
+     *     the pages to search for expressions in
+     * @param applicationArchive
+     *     the {@link com.infosupport.ellison.core.archive.ApplicationArchive} that is currently being
+     *     processed
+     * @param pageHandler
+     *     the handler to pass the expressions and problems found in every page to
+     *
+     * @throws InterruptedException
+     *     if the calling thread was interrupted, or {@code pageHandler} threw an {@code InterruptedException}
+     */
+    void findELExpressions(Collection<URI> pages, ApplicationArchive applicationArchive, PageHandler pageHandler)
+        throws InterruptedException;
+
+    /**
+     * Receives the expressions found in a page.
+     */
+    interface PageHandler {
+        /**
+         * Handles the expressions and problems found in a page.
+         *
+         * @param pageIndex
+         *     the position of the page within the pages being searched, starting at 0
+         * @param page
+         *     the page
+         * @param expressions
+         *     the syntactically valid EL expressions found in the page
+         * @param errors
+         *     the problems found in the page
+         *
+         * @throws InterruptedException
+         *     if the handler was interrupted while waiting to accept the expressions
+         */
+        void handlePage(int pageIndex, URI page, Collection<LocationAwareELExpression> expressions,
+                        Collection<ELError> errors) throws InterruptedException;
+    }
+}
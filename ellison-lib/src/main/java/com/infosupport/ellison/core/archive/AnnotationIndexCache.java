@@ -0,0 +1,347 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A persistent, content-addressed cache of the classes in libraries that are annotated with a particular annotation.
+ * <p/>
+ * Every index is stored in a file named after the SHA-1 hash of the annotation's name and the contents of the library,
+ * so a library that hasn't changed since a previous analysis (even one run by another process) doesn't have to be
+ * scanned again. When the total size of the cache exceeds its maximum size, the least recently used entries are
+ * evicted.
+ * <p/>
+ * The cache is safe to use from concurrent analyses: entries are never modified once written, and are written to a
+ * temporary file which is then atomically renamed to its final name. An entry that disappears while it is being
+ * read, because another analysis evicted it, is simply a cache miss.
+ *
+ * @author StefanZ
+ */
+public class AnnotationIndexCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationIndexCache.class);
+    private static final Pattern ENTRY_NAME_PATTERN = Pattern.compile("[0-9a-f]{40}");
+    private static final int FORMAT_VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private final File cacheDirectory;
+    private final long maxSize;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDirectory
+     *     the directory to keep indexes in. It is created if it doesn't exist yet.
+     * @param maxSize
+     *     the maximum total size (in bytes) of all indexes in the cache
+     */
+    public AnnotationIndexCache(File cacheDirectory, long maxSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the directory indexes are kept in.
+     *
+     * @return the cache directory
+     */
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Get the maximum total size of all indexes in the cache.
+     *
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Computes the key under which the index of a library is stored.
+     *
+     * @param annotationClassName
+     *     the binary name of the annotation the library is indexed for
+     * @param library
+     *     the contents of the library
+     *
+     * @return the hexadecimal SHA-1 hash of {@code annotationClassName} and {@code library}
+     */
+    public static String getKey(String annotationClassName, byte[] library) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        byte[] annotation = annotationClassName.getBytes(UTF_8);
+
+        hasher.putInt(annotation.length).putBytes(annotation).putBytes(library);
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Gets the index of a library from the cache.
+     *
+     * @param key
+     *     the key of the library, see {@link #getKey(String, byte[])}
+     *
+     * @return the binary names of the annotated classes in the library, together with the elements of their
+     *         annotations, or {@code null} if the library is not in the cache (or its entry could not be read)
+     */
+    public Map<String, Map<String, Object>> get(String key) {
+        File entryFile = new File(cacheDirectory, key);
+
+        try (DataInputStream input = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(entryFile.toPath())))) {
+            Map<String, Map<String, Object>> index = readIndex(input);
+            if (!entryFile.setLastModified(System.currentTimeMillis())) {
+                LOGGER.debug("Could not update the last use of '{}'", entryFile);
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read '%s' from the annotation index cache", entryFile), e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the index of a library to the cache, and evicts the least recently used entries if the cache has grown too
+     * large. A library that is already in the cache is left alone.
+     *
+     * @param key
+     *     the key of the library, see {@link #getKey(String, byte[])}
+     * @param index
+     *     the binary names of the annotated classes in the library, together with the elements of their annotations
+     *
+     * @throws IOException
+     *     if the index could not be written, or if the cache directory is not accessible
+     */
+    public void put(String key, Map<String, Map<String, Object>> index) throws IOException {
+        File entryFile = new File(cacheDirectory, key);
+
+        if (!entryFile.isFile()) {
+            Files.createDirectories(cacheDirectory.toPath());
+            File temporaryFile = Files.createTempFile(cacheDirectory.toPath(), key + ".", null).toFile();
+
+            try {
+                try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryFile.toPath())))) {
+                    writeIndex(output, index);
+                }
+                moveIntoPlace(temporaryFile, entryFile);
+            } finally {
+                Files.deleteIfExists(temporaryFile.toPath());
+            }
+        }
+
+        evict();
+    }
+
+    /**
+     * Atomically renames a freshly written index to its final name. Losing the race against another process that
+     * indexed the same library is not an error.
+     */
+    private void moveIntoPlace(File temporaryFile, File entryFile) throws IOException {
+        try {
+            Files.move(temporaryFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!entryFile.isFile()) {
+                throw e;
+            }
+            LOGGER.debug("'{}' was indexed concurrently by another process", entryFile);
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries, until the total size of the cache no longer exceeds {@link
+     * #getMaxSize()}.
+     */
+    private void evict() {
+        List<File> entryFiles = new ArrayList<>();
+        final Map<File, Long> lastUses = new HashMap<>();
+        long totalSize = 0;
+        File[] files = cacheDirectory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isFile() && ENTRY_NAME_PATTERN.matcher(file.getName()).matches()) {
+                entryFiles.add(file);
+                lastUses.put(file, file.lastModified());
+                totalSize += file.length();
+            }
+        }
+
+        Collections.sort(entryFiles, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(lastUses.get(o1), lastUses.get(o2));
+            }
+        });
+
+        for (File entryFile : entryFiles) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            long entrySize = entryFile.length();
+            try {
+                Files.deleteIfExists(entryFile.toPath());
+                totalSize -= entrySize;
+                LOGGER.debug("Evicted '{}' from the annotation index cache", entryFile);
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not evict '%s' from the annotation index cache", entryFile), e);
+            }
+        }
+    }
+
+    /**
+     * Writes an index. Element values are written with the tag that the class file format uses for them.
+     */
+    private static void writeIndex(DataOutputStream output, Map<String, Map<String, Object>> index)
+        throws IOException {
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(index.size());
+
+        for (Map.Entry<String, Map<String, Object>> annotatedClass : index.entrySet()) {
+            output.writeUTF(annotatedClass.getKey());
+            output.writeInt(annotatedClass.getValue().size());
+            for (Map.Entry<String, Object> element : annotatedClass.getValue().entrySet()) {
+                output.writeUTF(element.getKey());
+                writeValue(output, element.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes a single element value, preceded by its tag.
+     */
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value instanceof String) {
+            output.writeByte('s');
+            output.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte('I');
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte('J');
+            output.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            output.writeByte('F');
+            output.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            output.writeByte('D');
+            output.writeDouble((Double) value);
+        } else if (value instanceof Byte) {
+            output.writeByte('B');
+            output.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            output.writeByte('C');
+            output.writeChar((Character) value);
+        } else if (value instanceof Short) {
+            output.writeByte('S');
+            output.writeShort((Short) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte('Z');
+            output.writeBoolean((Boolean) value);
+        } else {
+            output.writeByte('-');
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeIndex(DataOutputStream, Map)}.
+     */
+    private static Map<String, Map<String, Object>> readIndex(DataInputStream input) throws IOException {
+        int version = input.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported annotation index version %d", version));
+        }
+
+        int classCount = input.readInt();
+        Map<String, Map<String, Object>> index = new HashMap<>();
+        for (int i = 0; i < classCount; i++) {
+            String className = input.readUTF();
+            int elementCount = input.readInt();
+            Map<String, Object> elements = new HashMap<>();
+            for (int j = 0; j < elementCount; j++) {
+                String elementName = input.readUTF();
+                elements.put(elementName, readValue(input));
+            }
+            index.put(className, elements);
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads a single element value written by {@link #writeValue(DataOutputStream, Object)}.
+     */
+    private static Object readValue(DataInputStream input) throws IOException {
+        char tag = (char) input.readUnsignedByte();
+
+        switch (tag) {
+            case 's':
+                return input.readUTF();
+            case 'I':
+                return input.readInt();
+            case 'J':
+                return input.readLong();
+            case 'F':
+                return input.readFloat();
+            case 'D':
+                return input.readDouble();
+            case 'B':
+                return input.readByte();
+            case 'C':
+                return input.readChar();
+            case 'S':
+                return input.readShort();
+            case 'Z':
+                return input.readBoolean();
+            case '-':
+                return null;
+            default:
+                throw new IOException(String.format("Unknown element value tag '%c'", tag));
+        }
+    }
+}
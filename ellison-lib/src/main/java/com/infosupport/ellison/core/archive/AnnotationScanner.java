@@ -0,0 +1,186 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+import com.infosupport.ellison.core.util.ClassFileAnnotationReader;
+import com.infosupport.ellison.core.util.Pair;
+
+/**
+ * Finds the classes of an application that are annotated with a particular annotation, by reading their class files
+ * (see {@link ClassFileScanner} and {@link ClassFileAnnotationReader}).
+ * <p/>
+ * If an {@link AnnotationIndexCache} is given, the annotated classes in each library are taken from the cache when
+ * the library has been scanned before, and added to it otherwise. Only class directories (such as WEB-INF/classes)
+ * and libraries that aren't in the cache are actually scanned.
+ *
+ * @author StefanZ
+ */
+public class AnnotationScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationScanner.class);
+    private final String annotationClassName;
+    private final ClassFileAnnotationReader annotationReader;
+    private final ClassFileScanner classFileScanner;
+    private final AnnotationIndexCache annotationIndexCache;
+
+    /**
+     * Constructor.
+     *
+     * @param annotationClassName
+     *     the binary name of the annotation to look for, such as {@code javax.annotation.ManagedBean}
+     * @param scanThreads
+     *     the maximum number of directories and libraries to scan at the same time
+     * @param annotationIndexCache
+     *     the cache to take the annotated classes in libraries from, may be {@code null}
+     */
+    public AnnotationScanner(String annotationClassName, int scanThreads, AnnotationIndexCache annotationIndexCache) {
+        this.annotationClassName = annotationClassName;
+        this.annotationReader = new ClassFileAnnotationReader(annotationClassName);
+        this.classFileScanner = new ClassFileScanner(scanThreads);
+        this.annotationIndexCache = annotationIndexCache;
+    }
+
+    /**
+     * Finds the annotated classes of a web application.
+     *
+     * @param applicationArchive
+     *     the application to scan, see {@link ClassFileScanner#scan(ApplicationArchive, ClassFileVisitor)}
+     *
+     * @return the binary names of the annotated classes, together with the elements of their annotations
+     *
+     * @throws IOException
+     *     if the contents of {@code applicationArchive} could not be listed
+     */
+    public SortedMap<String, Map<String, Object>> scan(ApplicationArchive applicationArchive) throws IOException {
+        return scanRoots(ClassFileScanner.findRoots(applicationArchive));
+    }
+
+    /**
+     * Finds the annotated classes in the directories and libraries on a class path.
+     *
+     * @param classPath
+     *     the URLs of the directories and libraries to scan
+     *
+     * @return the binary names of the annotated classes, together with the elements of their annotations
+     */
+    public SortedMap<String, Map<String, Object>> scan(Collection<URL> classPath) {
+        return scanRoots(ClassFileScanner.findRoots(classPath));
+    }
+
+    /**
+     * Finds the annotated classes in roots, which are scanned concurrently.
+     *
+     * @param roots
+     *     the roots to scan
+     *
+     * @return the binary names of the annotated classes, together with the elements of their annotations
+     */
+    private SortedMap<String, Map<String, Object>> scanRoots(List<ClassFileScanner.Root> roots) {
+        final Map<String, Map<String, Object>> annotatedClasses = new ConcurrentHashMap<>();
+
+        classFileScanner.scanRoots(roots, new ClassFileScanner.RootScan() {
+            @Override
+            public void scan(ClassFileScanner.Root root) throws IOException {
+                if (annotationIndexCache != null && root instanceof ClassFileScanner.LibraryRoot) {
+                    annotatedClasses.putAll(scanLibrary((ClassFileScanner.LibraryRoot) root));
+                } else {
+                    root.scan(new IndexingClassFileVisitor(annotatedClasses));
+                }
+            }
+        });
+
+        return new TreeMap<>(annotatedClasses);
+    }
+
+    /**
+     * Finds the annotated classes in a library, taking them from the cache if possible.
+     *
+     * @param library
+     *     the library to scan
+     *
+     * @return the binary names of the annotated classes, together with the elements of their annotations
+     *
+     * @throws IOException
+     *     if the library could not be read
+     */
+    private Map<String, Map<String, Object>> scanLibrary(ClassFileScanner.LibraryRoot library) throws IOException {
+        byte[] contents;
+        try (InputStream libraryInputStream = library.open()) {
+            contents = ByteStreams.toByteArray(libraryInputStream);
+        }
+
+        String key = AnnotationIndexCache.getKey(annotationClassName, contents);
+        Map<String, Map<String, Object>> index = annotationIndexCache.get(key);
+
+        if (index != null) {
+            LOGGER.debug("Took the classes annotated with {} in '{}' from the cache", annotationClassName,
+                         library.name);
+            return index;
+        }
+
+        index = new HashMap<>();
+        ClassFileScanner.LibraryRoot.scan(new ByteArrayInputStream(contents), new IndexingClassFileVisitor(index));
+        try {
+            annotationIndexCache.put(key, index);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not add '%s' to the annotation index cache", library.name), e);
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds the annotated classes among the visited class files to a map.
+     */
+    private final class IndexingClassFileVisitor implements ClassFileVisitor {
+        private final Map<String, Map<String, Object>> annotatedClasses;
+
+        IndexingClassFileVisitor(Map<String, Map<String, Object>> annotatedClasses) {
+            this.annotatedClasses = annotatedClasses;
+        }
+
+        @Override
+        public void visitClassFile(String name, byte[] contents) {
+            try {
+                Pair<String, Map<String, Object>> annotatedClass = annotationReader.read(contents);
+                if (annotatedClass != null) {
+                    annotatedClasses.put(annotatedClass.first(), annotatedClass.second());
+                }
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not read class file '%s'", name), e);
+            }
+        }
+    }
+}
@@ -19,41 +19,81 @@
  */
 package com.infosupport.ellison.core.archive;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.FalseFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang.CharUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
 import com.infosupport.ellison.core.util.Constants;
 
 /**
  * Represents a Java application archive.
+ * <p/>
+ * Depending on the {@link UnpackMode} it is created with, an application archive is either unpacked into a temporary
+ * directory up front, unpacked entry by entry as its contents are asked for, or read in place through a zip {@link
+ * FileSystem} backed by the archive's central directory.
+ * <p/>
+ * An application archive holds on to resources (temporary directories, open archive files and class loaders) until it
+ * is {@link #close() closed}. Nothing is cleaned up automatically upon process termination, so every application
+ * archive should be closed once it is no longer needed.
  *
  * @author StefanZ
  */
-public abstract class ApplicationArchive {
+public abstract class ApplicationArchive implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationArchive.class);
+    private static final String PART_FILE_SUFFIX = ".part";
     private File applicationFile;
     private File unpackedPath;
+    private UnpackMode unpackMode;
+    private int unpackThreads;
+    private UnpackCache unpackCache;
+    private AnnotationIndexCache annotationIndexCache;
+    private FileSystem archiveFileSystem;
+    private Path rootPath;
+    private URI rootURI;
+    private File materializedPath;
+    private boolean unpackedPathCached;
+    private boolean closed;
+    private EntryIndex entryIndex;
 
     /**
      * Constructor.
@@ -69,12 +109,105 @@ public abstract class ApplicationArchive {
      *     thrown if {@code applicationFile} does not point to an existing file.
      */
     public ApplicationArchive(File applicationFile) throws IOException {
+        this(applicationFile, UnpackMode.FULL);
+    }
+
+    /**
+     * Constructor.
+     * <p/>
+     * Depending on {@code unpackMode}, this constructor either unpacks the supplied archive, or opens it for reading in
+     * place. Either way, an exception is thrown when the archive cannot be read.
+     *
+     * @param applicationFile
+     *     the application archive file to use
+     * @param unpackMode
+     *     how the contents of the archive should be accessed
+     *
+     * @throws IOException
+     *     when there was an error opening or unpacking the application archive. Specifically, a {@link
+     *     FileNotFoundException} is thrown if {@code applicationFile} does not point to an existing file.
+     */
+    public ApplicationArchive(File applicationFile, UnpackMode unpackMode) throws IOException {
+        this(applicationFile, unpackMode, Constants.DEFAULT_UNPACK_THREADS, null);
+    }
+
+    /**
+     * Constructor.
+     * <p/>
+     * Depending on {@code unpackMode}, this constructor either unpacks the supplied archive, or opens it for reading in
+     * place. Either way, an exception is thrown when the archive cannot be read.
+     *
+     * @param applicationFile
+     *     the application archive file to use
+     * @param unpackMode
+     *     how the contents of the archive should be accessed
+     * @param unpackThreads
+     *     the number of threads to extract entries with. Extraction happens on the calling thread if this is 1 or
+     *     less.
+     * @param unpackCache
+     *     the cache to take the unpacked contents of the archive from if {@code unpackMode} is {@link UnpackMode#FULL},
+     *     or to extract entries to if it is {@link UnpackMode#ON_DEMAND}. May be {@code null}, in which case the
+     *     archive is unpacked into a new temporary directory.
+     *
+     * @throws IOException
+     *     when there was an error opening or unpacking the application archive. Specifically, a {@link
+     *     FileNotFoundException} is thrown if {@code applicationFile} does not point to an existing file.
+     */
+    public ApplicationArchive(File applicationFile, UnpackMode unpackMode, int unpackThreads, UnpackCache unpackCache)
+        throws IOException {
         if (!applicationFile.exists()) {
             throw new FileNotFoundException(
                 String.format("File does not exist: %s", applicationFile.getAbsolutePath()));
         }
         this.applicationFile = applicationFile;
-        unpackJar();
+        this.unpackMode = unpackMode;
+        this.unpackThreads = unpackThreads;
+        this.unpackCache = unpackCache;
+        try {
+            getRootPath();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(this);
+            throw e;
+        }
+    }
+
+    /**
+     * Constructor for application archives whose contents are already on disk, such as exploded archives. Nothing is
+     * copied or unpacked: entries are read straight from {@code rootDirectory}, and nothing in it is deleted when the
+     * archive is {@link #close() closed}.
+     *
+     * @param applicationFile
+     *     a file naming the application, used in messages
+     * @param rootDirectory
+     *     the directory containing the contents of the archive
+     *
+     * @throws FileNotFoundException
+     *     if {@code rootDirectory} is not an existing directory
+     */
+    protected ApplicationArchive(File applicationFile, Path rootDirectory) throws FileNotFoundException {
+        if (!Files.isDirectory(rootDirectory)) {
+            throw new FileNotFoundException(String.format("Directory does not exist: %s", rootDirectory));
+        }
+        this.applicationFile = applicationFile;
+        this.unpackMode = UnpackMode.FULL;
+        this.rootPath = rootDirectory;
+        this.rootURI = rootDirectory.toUri();
+    }
+
+    /**
+     * Constructor for application archives whose contents are not read from an archive file on disk. Nothing is
+     * opened or unpacked, so subclasses using this constructor must override every method that accesses the contents
+     * of the archive, including {@link #getRootPath()}.
+     *
+     * @param applicationFile
+     *     a file naming the application, used in messages. It does not need to exist.
+     * @param rootURI
+     *     the URI of the root of the contents of this archive, see {@link #getRootURI()}
+     */
+    protected ApplicationArchive(File applicationFile, URI rootURI) {
+        this.applicationFile = applicationFile;
+        this.unpackMode = UnpackMode.NONE;
+        this.rootURI = rootURI;
     }
 
     /**
@@ -111,11 +244,108 @@ public abstract class ApplicationArchive {
         return !isNotRelative;
     }
 
+    /**
+     * Opens a zip {@link FileSystem} on top of an archive file.
+     *
+     * @param archiveFile
+     *     the archive to open
+     *
+     * @return a read-only view of the contents of {@code archiveFile}
+     *
+     * @throws IOException
+     *     if {@code archiveFile} could not be read as a zip archive. Specifically, a {@link FileNotFoundException} is
+     *     thrown if {@code archiveFile} does not exist.
+     */
+    private static FileSystem openArchiveFileSystem(File archiveFile) throws IOException {
+        Path archivePath = Paths.get(archiveFile.getPath());
+
+        if (!Files.isRegularFile(archivePath)) {
+            throw new FileNotFoundException(String.format("File does not exist: %s", archiveFile.getAbsolutePath()));
+        }
+
+        try {
+            return FileSystems.newFileSystem(archivePath, (ClassLoader) null);
+        } catch (ProviderNotFoundException e) {
+            throw new IOException(String.format("'%s' is not a zip archive", archiveFile.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Turns a path within an archive into a relative URI, using forward slashes as separators regardless of the file
+     * system the path belongs to.
+     *
+     * @param root
+     *     the root of the archive
+     * @param path
+     *     the path to turn into a URI. Must be located below {@code root}.
+     *
+     * @return the URI of {@code path}, relative to {@code root}
+     */
+    private static URI toRelativeURI(Path root, Path path) {
+        return toRelativeURI(toRelativePath(root, path));
+    }
+
+    /**
+     * Turns a path within an archive into a relative path string, using forward slashes as separators regardless of
+     * the file system the path belongs to.
+     *
+     * @param root
+     *     the root of the archive
+     * @param path
+     *     the path to turn into a string. Must be located below {@code root}.
+     *
+     * @return the path of {@code path}, relative to {@code root}, or the empty string if {@code path} is the root
+     */
+    private static String toRelativePath(Path root, Path path) {
+        StringBuilder relativePath = new StringBuilder();
+        for (Path element : root.relativize(path)) {
+            if (relativePath.length() != 0) {
+                relativePath.append('/');
+            }
+            relativePath.append(element.toString());
+        }
+
+        return relativePath.toString();
+    }
+
+    /**
+     * Turns a relative path string into a relative URI.
+     *
+     * @param relativePath
+     *     the path to turn into a URI, using forward slashes as separators
+     *
+     * @return the URI of {@code relativePath}
+     */
+    static URI toRelativeURI(String relativePath) {
+        try {
+            return new URI(null, null, relativePath, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(String.format("Cannot create a URI for path '%s'", relativePath), e);
+        }
+    }
+
+    /**
+     * Turns a list of relative path strings into relative URIs.
+     *
+     * @param relativePaths
+     *     the paths to turn into URIs
+     *
+     * @return the URIs of {@code relativePaths}, in the same order
+     */
+    static List<URI> toRelativeURIs(List<String> relativePaths) {
+        List<URI> relativeURIs = new ArrayList<>(relativePaths.size());
+        for (String relativePath : relativePaths) {
+            relativeURIs.add(toRelativeURI(relativePath));
+        }
+        return relativeURIs;
+    }
+
     /**
      * Gets a file from inside the application archive.
      * <p/>
      * Note that this method calls {@link #unpackJar()}, so if the archive hasn't yet been unpacked, this method may
-     * throw an {@code IOException}.
+     * throw an {@code IOException}. If the archive isn't unpacked up front ({@link UnpackMode#ON_DEMAND} and {@link
+     * UnpackMode#NONE}), only the requested entry (or directory tree) is extracted.
      *
      * @param relativePath
      *     the path of the file to find. This must be a relative path.
@@ -128,19 +358,121 @@ public abstract class ApplicationArchive {
      *     FileNotFoundException}.
      */
     public File getFile(String relativePath) throws IOException {
-        File foundFile = null;
+        Path foundPath = getPath(relativePath);
+
+        if (isUnpackedOnDemand()) {
+            return materialize(foundPath);
+        }
 
+        return foundPath.toFile();
+    }
+
+    /**
+     * Gets multiple files from inside the application archive at once.
+     * <p/>
+     * If the archive isn't unpacked up front, all requested entries that haven't been extracted yet are extracted in a
+     * single pass over the archive, which is a lot cheaper than calling {@link #getFile(String)} for each of them.
+     * Like unpacking the entire archive, this uses {@link #getUnpackThreads()} threads.
+     *
+     * @param relativePaths
+     *     the paths of the files to get, for instance as returned by {@link #findFilesByGlobPattern(String, String)}
+     *
+     * @return pointers to the queried files, in the same order as {@code relativePaths}
+     *
+     * @throws IOException
+     *     if an error occurred while trying to unpack the application archive, or if one of the supplied paths does
+     *     not point to a file within the application archive (in which case the exception will be an instance of
+     *     {@link FileNotFoundException}.
+     */
+    public Collection<File> getFiles(Collection<URI> relativePaths) throws IOException {
+        List<File> files = new ArrayList<>(relativePaths.size());
+
+        if (!isUnpackedOnDemand()) {
+            for (URI relativePath : relativePaths) {
+                files.add(getFile(relativePath.getPath()));
+            }
+            return files;
+        }
+
+        synchronized (this) {
+            File destination = getExtractionDirectory();
+            Set<String> pendingEntries = new HashSet<>();
+
+            for (URI relativePath : relativePaths) {
+                Path foundPath = getPath(relativePath.getPath());
+                File file = new File(destination, relativePath.getPath());
+                files.add(file);
+                if (!file.exists()) {
+                    if (Files.isDirectory(foundPath)) {
+                        materialize(foundPath);
+                    } else {
+                        pendingEntries.add(relativePath.getPath());
+                    }
+                }
+            }
+
+            if (!pendingEntries.isEmpty()) {
+                try (JarFile jar = new JarFile(getApplicationFile())) {
+                    List<JarEntry> jarEntries = new ArrayList<>(pendingEntries.size());
+                    Enumeration<JarEntry> allJarEntries = jar.entries();
+
+                    while (allJarEntries.hasMoreElements() && jarEntries.size() < pendingEntries.size()) {
+                        JarEntry jarEntry = allJarEntries.nextElement();
+                        if (!jarEntry.isDirectory() && pendingEntries.contains(jarEntry.getName())) {
+                            jarEntries.add(jarEntry);
+                        }
+                    }
+                    unpackJarEntries(destination, jar, jarEntries);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Gets a path from inside the application archive. Unlike {@link #getFile(String)}, this never causes anything to
+     * be extracted; the returned path may belong to a zip {@link FileSystem}.
+     *
+     * @param relativePath
+     *     the path of the file to find. This must be a relative path.
+     *
+     * @return a pointer to the queried file.
+     *
+     * @throws IOException
+     *     if the application archive could not be opened, or if the supplied path does not point to a file within the
+     *     application archive (in which case the exception will be an instance of {@link FileNotFoundException}.
+     */
+    public Path getPath(String relativePath) throws IOException {
         if (!isPathRelative(relativePath)) {
             throw new SecurityException("Supplied paths must be relative!");
         }
 
-        foundFile = new File(unpackedPath, relativePath);
+        Path foundPath = getRootPath().resolve(relativePath);
 
-        if (!foundFile.exists()) {
+        if (!Files.exists(foundPath)) {
             throw new FileNotFoundException(String.format("No file '%s' in application archive", relativePath));
         }
 
-        return foundFile;
+        return foundPath;
+    }
+
+    /**
+     * Opens a file from inside the application archive for reading. The caller is responsible for closing the
+     * returned stream.
+     *
+     * @param relativePath
+     *     the path of the file to read. This must be a relative path.
+     *
+     * @return a stream of the contents of the queried file
+     *
+     * @throws IOException
+     *     if the application archive could not be opened, or if the supplied path does not point to a file within the
+     *     application archive (in which case the exception will be an instance of {@link FileNotFoundException}.
+     * @see #getPath(String)
+     */
+    public InputStream getInputStream(String relativePath) throws IOException {
+        return Files.newInputStream(getPath(relativePath));
     }
 
     /**
@@ -189,42 +521,68 @@ public abstract class ApplicationArchive {
      */
     public Collection<URI> findFilesByGlobPattern(String basePath, String wildcardPattern, boolean doRecursively)
         throws FileNotFoundException {
-        IOFileFilter fileFilter = new WildcardFileFilter(wildcardPattern);
-        File baseDir = null;
-        IOFileFilter dirFilter = null;
+        EntryIndex index = null;
+        String baseDirectory = basePath == null ? "" : basePath;
 
-        if (basePath == null) {
-            baseDir = unpackedPath;
-        } else {
-            if (!isPathRelative(basePath)) {
-                throw new SecurityException(
-                    "It is not permitted to supply base paths containing references to parent directories ('..').");
-            }
-            baseDir = new File(unpackedPath, basePath);
+        if (basePath != null && !isPathRelative(basePath)) {
+            throw new SecurityException(
+                "It is not permitted to supply base paths containing references to parent directories ('..').");
         }
 
-        if (doRecursively) {
-            dirFilter = TrueFileFilter.INSTANCE;
-        } else {
-            dirFilter = FalseFileFilter.INSTANCE;
+        try {
+            index = getEntryIndex();
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                String.format("Could not open application archive '%s'", getApplicationFile().getAbsolutePath()), e);
         }
 
-        if (!baseDir.exists()) {
+        if (!index.isDirectory(baseDirectory)) {
+            if (index.isFile(baseDirectory)) {
+                throw new IllegalArgumentException(
+                    String.format("Basepath '%s' is not a directory within the archive", basePath));
+            }
             throw new FileNotFoundException(String.format("Basepath '%s' does not exist within archive '%s'", basePath,
                                                           getApplicationFile().getAbsolutePath()));
         }
 
-        if (!baseDir.isDirectory()) {
-            throw new IllegalArgumentException(
-                String.format("Basepath '%s' is not a directory within the archive", basePath));
+        return toRelativeURIs(
+            index.findFiles(baseDirectory, EntryIndex.compileWildcardPattern(wildcardPattern), doRecursively));
+    }
+
+    /**
+     * Get the index of all entries in this archive. The index is built the first time it is asked for, by walking the
+     * contents of the archive once, and is never changed afterwards.
+     *
+     * @return the index of all entries in this archive
+     *
+     * @throws IOException
+     *     if the archive could not be unpacked or opened, or its contents could not be listed
+     */
+    protected synchronized EntryIndex getEntryIndex() throws IOException {
+        if (entryIndex == null) {
+            final Path root = getRootPath();
+            final List<String> files = new ArrayList<>();
+            final List<String> directories = new ArrayList<>();
+
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    directories.add(toRelativePath(root, dir));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        files.add(toRelativePath(root, file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            entryIndex = new EntryIndex(files, directories);
         }
 
-        return Collections2.transform(FileUtils.listFiles(baseDir, fileFilter, dirFilter), new Function<File, URI>() {
-            @Override
-            public URI apply(File input) {
-                return relativizePath(input.toURI());
-            }
-        });
+        return entryIndex;
     }
 
     /**
@@ -237,9 +595,10 @@ public abstract class ApplicationArchive {
     /**
      * Unpacks the application archive file (must be a JAR or subtype thereof) into a temporary directory.
      * <p/>
-     * This method makes sure to mark any and all extracted files for deletion upon process termination.
+     * The extracted files are deleted when this archive is {@link #close() closed}.
      * <p/>
-     * Also note that the same archive will not be unpacked twice
+     * Also note that the same archive will not be unpacked twice. If this archive has an {@link UnpackCache}, the
+     * unpacked contents are taken from (or added to) that cache instead.
      *
      * @return a {@code File} pointing to the directory where the JAR was extracted to
      *
@@ -251,7 +610,12 @@ public abstract class ApplicationArchive {
      */
     protected File unpackJar() throws IOException {
         if (unpackedPath == null) {
-            unpackedPath = unpackJarHelper(getApplicationFile());
+            if (unpackCache != null) {
+                unpackedPath = unpackCache.acquire(this);
+                unpackedPathCached = true;
+            } else {
+                unpackedPath = unpackJarHelper(getApplicationFile());
+            }
         }
 
         return unpackedPath;
@@ -272,23 +636,148 @@ public abstract class ApplicationArchive {
      */
     protected File unpackJarHelper(File jarFile) throws IOException {
         File destination = Files.createTempDirectory(Constants.TEMP_DIR_PREFIX + jarFile.getName()).toFile();
-        destination.deleteOnExit();
+        try {
+            unpackJarInto(jarFile, destination);
+        } catch (IOException | RuntimeException e) {
+            FileUtils.deleteQuietly(destination);
+            throw e;
+        }
+
+        return destination;
+    }
+
+    /**
+     * Unpacks all entries of a JAR into an existing directory.
+     *
+     * @param jarFile
+     *     the file to unpack
+     * @param destination
+     *     the directory to unpack {@code jarFile} into
+     *
+     * @throws IOException
+     *     when: <ul><li>the application archive could not be read as a JAR</li> <li>a file in the archive could not be
+     *     read</li> <li>a file in the archive could not be unpacked (write error)</li></ul>
+     */
+    protected void unpackJarInto(File jarFile, File destination) throws IOException {
         try (JarFile jar = new JarFile(jarFile)) {
-            Enumeration<JarEntry> jarEntries = jar.entries();
+            unpackJarEntries(destination, jar, Collections.list(jar.entries()));
+        }
+    }
 
-            while (jarEntries.hasMoreElements()) {
-                unpackJarEntry(destination, jar, jarEntries.nextElement());
+    /**
+     * Extracts a number of {@link JarEntry JarEntries} into the {@code destination} directory.
+     * <p/>
+     * All directories needed by {@code jarEntries} are created up front, after which the entries themselves are
+     * extracted using {@link #unpackJarEntry(java.io.File, java.util.jar.JarFile, java.util.jar.JarEntry, byte[])}. If
+     * more than one unpack thread has been configured, the entries are divided over a pool of worker threads, each of
+     * which reads from its own {@link JarFile}. Every worker (or the calling thread, if there is only one) copies the
+     * entries through a buffer of its own, which is dropped once its entries have been extracted.
+     *
+     * @param destination
+     *     the destination directory to unpack {@code jarEntries} into
+     * @param jar
+     *     the archive from which the {@code jarEntries} originate
+     * @param jarEntries
+     *     the entries to unpack
+     *
+     * @throws IOException
+     *     if any IO error occurred while trying to unpack a file
+     * @see #getUnpackThreads()
+     */
+    protected void unpackJarEntries(File destination, JarFile jar, List<JarEntry> jarEntries) throws IOException {
+        List<JarEntry> fileEntries = new ArrayList<>(jarEntries.size());
+
+        for (JarEntry jarEntry : jarEntries) {
+            File entryFile = new File(destination, jarEntry.getName());
+            if (jarEntry.isDirectory()) {
+                createDirectories(entryFile);
+            } else {
+                createDirectories(entryFile.getParentFile());
+                fileEntries.add(jarEntry);
             }
         }
 
-        return destination;
+        int threadCount = Math.min(getUnpackThreads(), fileEntries.size());
+        if (threadCount <= 1) {
+            byte[] buffer = new byte[Constants.UNPACK_BUFFER_SIZE];
+            for (JarEntry jarEntry : fileEntries) {
+                unpackJarEntry(destination, jar, jarEntry, buffer);
+            }
+        } else {
+            unpackJarEntriesInParallel(destination, new File(jar.getName()), fileEntries, threadCount);
+        }
+    }
+
+    /**
+     * Extracts {@code jarEntries} using {@code threadCount} worker threads. Every worker takes the next pending entry
+     * until there are none left, so large entries don't hold up the others. If any entry fails to extract, the
+     * remaining entries are skipped and the failure is rethrown on the calling thread.
+     *
+     * @param destination
+     *     the destination directory to unpack {@code jarEntries} into
+     * @param jarFile
+     *     the archive from which the {@code jarEntries} originate
+     * @param jarEntries
+     *     the entries to unpack. These must not be directories.
+     * @param threadCount
+     *     the number of worker threads to use
+     *
+     * @throws IOException
+     *     if any IO error occurred while trying to unpack a file, or if the calling thread was interrupted while
+     *     waiting for the workers to finish
+     */
+    private void unpackJarEntriesInParallel(final File destination, final File jarFile, List<JarEntry> jarEntries,
+                                            int threadCount) throws IOException {
+        final Queue<JarEntry> pendingEntries = new ConcurrentLinkedQueue<>(jarEntries);
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<Void>> workers = new ArrayList<>(threadCount);
+
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        byte[] buffer = new byte[Constants.UNPACK_BUFFER_SIZE];
+                        try (JarFile jar = new JarFile(jarFile)) {
+                            for (JarEntry jarEntry = pendingEntries.poll(); jarEntry != null;
+                                jarEntry = pendingEntries.poll()) {
+                                unpackJarEntry(destination, jar, jarEntry, buffer);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                String.format("Interrupted while unpacking '%s'", jarFile.getAbsolutePath()));
+        } catch (ExecutionException e) {
+            pendingEntries.clear();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(String.format("Could not unpack '%s'", jarFile.getAbsolutePath()), cause);
+        } finally {
+            executorService.shutdownNow();
+        }
     }
 
     /**
      * Extracts a single {@link JarEntry} into the {@code destination} directory.
      * <p/>
      * If {@code jarEntry} represents a directory, then a new directory is created in {@code destination}. If it is a
-     * file, its {@link InputStream} is opened, and its contents are then written in {@code destination}.
+     * file, its {@link InputStream} is opened, and its contents are then copied to a file in {@code destination}
+     * through {@code buffer}.
      *
      * @param destination
      *     the destination directory to unpack {@code jarEntry} into. This is the "root" directory where the entire
@@ -298,32 +787,280 @@ public abstract class ApplicationArchive {
      *     the archive from which the {@code jarEntry} originates
      * @param jarEntry
      *     the {@code JarEntry} to unpack
+     * @param buffer
+     *     the buffer to copy the contents of {@code jarEntry} through, see {@link Constants#UNPACK_BUFFER_SIZE}
      *
      * @throws IOException
      *     if any IO error occurred while trying to unpack a file
      */
-    protected void unpackJarEntry(File destination, JarFile jar, JarEntry jarEntry) throws IOException {
-        byte[] ioBuffer = new byte[Constants.UNPACK_BUFFER_SIZE];
+    protected void unpackJarEntry(File destination, JarFile jar, JarEntry jarEntry, byte[] buffer)
+        throws IOException {
         if (jarEntry.isDirectory()) {
-            File newDir = new File(destination, jarEntry.getName());
-            boolean dirCreated = newDir.mkdir();
-            if (dirCreated) {
-                newDir.deleteOnExit();
-            }
+            new File(destination, jarEntry.getName()).mkdir();
         } else {
             File outFile = new File(destination, jarEntry.getName());
-            outFile.deleteOnExit();
+            File writtenFile = isExtractionDirectoryShared() ? createPartFile(outFile).toFile() : outFile;
+
+            try {
+                try (InputStream jarEntryStream = jar.getInputStream(jarEntry);
+                     OutputStream outFileStream = new FileOutputStream(writtenFile)) {
+                    for (int read = jarEntryStream.read(buffer); read != -1; read = jarEntryStream.read(buffer)) {
+                        outFileStream.write(buffer, 0, read);
+                    }
+                }
+                if (writtenFile != outFile) {
+                    moveIntoPlace(writtenFile.toPath(), outFile.toPath());
+                }
+            } finally {
+                if (writtenFile != outFile) {
+                    Files.deleteIfExists(writtenFile.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a single path from the archive file system (and, if it is a directory, everything below it) to the
+     * extraction directory. This is used when the archive isn't unpacked up front, but a caller needs an actual {@link
+     * File}. Paths that have been copied before are not copied again.
+     *
+     * @param archivePath
+     *     the path within the archive to copy
+     *
+     * @return the copied file or directory
+     *
+     * @throws IOException
+     *     if the extraction directory could not be created, or if an error occurred while copying
+     * @see #getExtractionDirectory()
+     */
+    protected synchronized File materialize(Path archivePath) throws IOException {
+        final Path root = getRootPath();
+        final File destinationRoot = getExtractionDirectory();
+        Files.walkFileTree(archivePath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                createDirectories(new File(destinationRoot, toRelativeURI(root, dir).getPath()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                File destination = new File(destinationRoot, toRelativeURI(root, file).getPath());
+                if (!destination.exists()) {
+                    createDirectories(destination.getParentFile());
+                    if (isExtractionDirectoryShared()) {
+                        Path partFile = createPartFile(destination);
+                        try {
+                            Files.copy(file, partFile, StandardCopyOption.REPLACE_EXISTING);
+                            moveIntoPlace(partFile, destination.toPath());
+                        } finally {
+                            Files.deleteIfExists(partFile);
+                        }
+                    } else {
+                        Files.copy(file, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return new File(destinationRoot, toRelativeURI(root, archivePath).getPath());
+    }
+
+    /**
+     * Whether entries are extracted into a directory of the {@link UnpackCache}, which other archives with the same
+     * contents may be extracting entries into at the same time.
+     *
+     * @return {@code true} if extracted entries have to be written to a temporary file first, see {@link
+     *         UnpackCache#acquireOnDemand(ApplicationArchive)}
+     */
+    private boolean isExtractionDirectoryShared() {
+        return unpackedPathCached && getUnpackMode() == UnpackMode.ON_DEMAND;
+    }
+
+    /**
+     * Creates an empty temporary file next to a file that is about to be extracted, to write its contents to.
+     *
+     * @param file
+     *     the file that is about to be extracted
+     *
+     * @return the temporary file
+     *
+     * @throws IOException
+     *     if the temporary file could not be created
+     */
+    private static Path createPartFile(File file) throws IOException {
+        return Files.createTempFile(file.getParentFile().toPath(), file.getName() + ".", PART_FILE_SUFFIX);
+    }
+
+    /**
+     * Atomically renames a fully written temporary file to the name of the file it was extracted for. If another
+     * archive extracted the same file in the meantime, its copy is kept.
+     *
+     * @param partFile
+     *     the temporary file the contents were written to
+     * @param file
+     *     the file that is being extracted
+     *
+     * @throws IOException
+     *     if the temporary file could not be renamed, and the file does not exist
+     */
+    private static void moveIntoPlace(Path partFile, Path file) throws IOException {
+        try {
+            Files.move(partFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!Files.isRegularFile(file)) {
+                throw e;
+            }
+            LOGGER.debug("'{}' was extracted concurrently by another archive", file);
+        }
+    }
 
-            try (InputStream jarEntryInputStream = jar.getInputStream(jarEntry);
-                 OutputStream jarEntryOutputStream = new FileOutputStream(outFile)) {
-                for (int readBytes = jarEntryInputStream.read(ioBuffer); readBytes != -1;
-                    readBytes = jarEntryInputStream.read(ioBuffer)) {
-                    jarEntryOutputStream.write(ioBuffer, 0, readBytes);
+    /**
+     * Creates a directory, including any missing parent directories.
+     *
+     * @param directory
+     *     the directory to create
+     *
+     * @throws IOException
+     *     if the directory could not be created
+     */
+    private void createDirectories(File directory) throws IOException {
+        if (directory.isDirectory()) {
+            return;
+        }
+        createDirectories(directory.getParentFile());
+        if (!directory.mkdir() && !directory.isDirectory()) {
+            throw new IOException(String.format("Could not create directory '%s'", directory.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Get the directory entries are extracted to when the archive isn't unpacked up front. For {@link
+     * UnpackMode#ON_DEMAND} this is the directory returned by {@link #getUnpackedPath()}, which is taken from the
+     * {@link UnpackCache} if this archive has one, so that entries extracted by a previous analysis are not extracted
+     * again; for {@link UnpackMode#NONE} it is a scratch directory that is never reported as the location of the
+     * archive's contents.
+     *
+     * @return the directory to extract entries to
+     *
+     * @throws IOException
+     *     if the directory could not be created
+     */
+    protected synchronized File getExtractionDirectory() throws IOException {
+        switch (getUnpackMode()) {
+        case ON_DEMAND:
+            if (unpackedPath == null) {
+                if (unpackCache != null) {
+                    unpackedPath = unpackCache.acquireOnDemand(this);
+                    unpackedPathCached = true;
+                } else {
+                    unpackedPath = createTemporaryDirectory();
                 }
             }
+            return unpackedPath;
+        case NONE:
+            if (materializedPath == null) {
+                materializedPath = createTemporaryDirectory();
+            }
+            return materializedPath;
+        default:
+            return unpackJar();
         }
     }
 
+    /**
+     * Creates an empty temporary directory for the contents of this archive. The directory is deleted when this
+     * archive is {@link #close() closed}.
+     *
+     * @return the created directory
+     *
+     * @throws IOException
+     *     if the temporary directory could not be created
+     */
+    private File createTemporaryDirectory() throws IOException {
+        return Files.createTempDirectory(Constants.TEMP_DIR_PREFIX + getApplicationFile().getName()).toFile();
+    }
+
+    /**
+     * Checks whether an entry exists within the archive, without throwing an exception if it doesn't.
+     *
+     * @param relativePath
+     *     the path of the entry to check. Paths that are not relative are never considered to exist.
+     *
+     * @return {@code true} if the archive contains an entry at {@code relativePath}
+     *
+     * @throws IOException
+     *     if the archive could not be unpacked or opened
+     */
+    public boolean containsEntry(String relativePath) throws IOException {
+        if (relativePath.length() == 0 || !isPathRelative(relativePath)) {
+            return false;
+        }
+
+        EntryIndex index = getEntryIndex();
+        return index.isFile(relativePath) || index.isDirectory(relativePath);
+    }
+
+    /**
+     * Get the root of the contents of this application archive. Depending on the {@link UnpackMode}, this is either
+     * the directory the archive was unpacked to, or the root of a zip {@link FileSystem} over the archive itself.
+     * <p/>
+     * Note that when the archive is unpacked on demand, this is not the same location as {@link #getRootURI()}: entries
+     * are looked up in the archive, but reported at the location they are (or will be) extracted to.
+     *
+     * @return the root of this archive's contents
+     *
+     * @throws IOException
+     *     if the archive could not be unpacked or opened
+     */
+    protected synchronized Path getRootPath() throws IOException {
+        if (rootPath == null) {
+            switch (getUnpackMode()) {
+            case NONE:
+                archiveFileSystem = openArchiveFileSystem(getApplicationFile());
+                rootPath = archiveFileSystem.getPath("/");
+                rootURI = rootPath.toUri();
+                break;
+            case ON_DEMAND:
+                archiveFileSystem = openArchiveFileSystem(getApplicationFile());
+                rootPath = archiveFileSystem.getPath("/");
+                rootURI = getExtractionDirectory().toURI();
+                break;
+            default:
+                File unpackedDirectory = unpackJar();
+                rootPath = unpackedDirectory.toPath();
+                rootURI = unpackedDirectory.toURI();
+                break;
+            }
+        }
+
+        return rootPath;
+    }
+
+    /**
+     * Get the URI of the root of the contents of this application archive. This is the base of the URIs returned by
+     * {@link #resolvePath(java.net.URI)}.
+     *
+     * @return the URI of this archive's root
+     *
+     * @throws IllegalStateException
+     *     if the archive could not be unpacked or opened
+     */
+    protected synchronized URI getRootURI() {
+        if (rootURI == null) {
+            try {
+                getRootPath();
+            } catch (IOException e) {
+                throw new IllegalStateException(
+                    String.format("Could not open application archive '%s'", getApplicationFile().getAbsolutePath()),
+                    e);
+            }
+        }
+
+        return rootURI;
+    }
+
     /**
      * Get a {@link File} pointing to the application archive file itself.
      *
@@ -333,11 +1070,81 @@ public abstract class ApplicationArchive {
         return applicationFile;
     }
 
+    /**
+     * Get the way the contents of this application archive are accessed.
+     *
+     * @return the unpack mode of this archive
+     */
+    public UnpackMode getUnpackMode() {
+        return unpackMode == null ? UnpackMode.FULL : unpackMode;
+    }
+
+    /**
+     * Get the number of threads entries of this archive are extracted with.
+     *
+     * @return the number of unpack threads; 1 or less means entries are extracted on the calling thread
+     */
+    public int getUnpackThreads() {
+        return unpackThreads;
+    }
+
+    /**
+     * Get the cache the unpacked contents of this archive are taken from, or extracted to.
+     *
+     * @return the unpack cache, or {@code null} if the archive is unpacked into a new temporary directory
+     */
+    public UnpackCache getUnpackCache() {
+        return unpackCache;
+    }
+
+    /**
+     * Get the cache that the annotated classes in the libraries of this archive are taken from.
+     *
+     * @return the annotation index cache, or {@code null} if libraries are always scanned
+     */
+    public AnnotationIndexCache getAnnotationIndexCache() {
+        return annotationIndexCache;
+    }
+
+    /**
+     * Set the cache that the annotated classes in the libraries of this archive are taken from.
+     *
+     * @param annotationIndexCache
+     *     the annotation index cache to use, or {@code null} to always scan libraries
+     *
+     * @see AnnotationScanner
+     */
+    public void setAnnotationIndexCache(AnnotationIndexCache annotationIndexCache) {
+        this.annotationIndexCache = annotationIndexCache;
+    }
+
+    /**
+     * Whether the contents of this archive are read straight from the archive file, instead of from an unpacked
+     * copy.
+     *
+     * @return {@code true} if this archive is read in place
+     */
+    public boolean isReadInPlace() {
+        return getUnpackMode() == UnpackMode.NONE;
+    }
+
+    /**
+     * Whether entries of this archive are only extracted when they are asked for as a {@link File}.
+     *
+     * @return {@code true} if this archive has not been unpacked up front
+     */
+    public boolean isUnpackedOnDemand() {
+        return getUnpackMode() != UnpackMode.FULL;
+    }
+
     /**
      * Turns a path into one relative to the location where the archive was unpacked.
      * <p/>
      * Example: archive was unpacked into C:\\unpackedpath, and we pass this method the path C:\\unpackedpath\somefile
      * .txt. The returned value will be the relative path "somefile".
+     * <p/>
+     * When the archive is read in place, the root is an opaque {@code jar:} URI, which {@link URI#relativize(URI)}
+     * cannot handle. In that case the root is stripped from the supplied path instead.
      *
      * @param path
      *     the path to relativize
@@ -345,7 +1152,18 @@ public abstract class ApplicationArchive {
      * @return the relativized path
      */
     public URI relativizePath(URI path) {
-        return unpackedPath.toURI().relativize(path);
+        URI root = getRootURI();
+
+        if (root.isOpaque()) {
+            String rootString = root.toString();
+            String pathString = path.toString();
+            if (pathString.startsWith(rootString)) {
+                return URI.create(pathString.substring(rootString.length()));
+            }
+            return path;
+        }
+
+        return root.relativize(path);
     }
 
     /**
@@ -360,15 +1178,101 @@ public abstract class ApplicationArchive {
      * @see URI#resolve(java.net.URI)
      */
     public URI resolvePath(URI uri) {
-        return getUnpackedPath().toURI().resolve(uri);
+        URI root = getRootURI();
+
+        if (root.isOpaque()) {
+            if (uri.isAbsolute()) {
+                return uri;
+            }
+            return URI.create(root.toString() + uri.toString());
+        }
+
+        return root.resolve(uri);
     }
 
     /**
      * Get the path where the archive has been unpacked.
      *
-     * @return a {@link File} representing the temporary directory this application archive has been unpacked to.
+     * @return a {@link File} representing the temporary directory this application archive has been unpacked to, or
+     *         {@code null} if the archive is read in place. When the archive is unpacked on demand, this directory only
+     *         contains the entries that have been asked for so far.
      */
     public File getUnpackedPath() {
         return unpackedPath;
     }
+
+    /**
+     * Checks whether this application archive has been {@link #close() closed}.
+     *
+     * @return {@code true} if {@link #close()} has been called
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Releases all resources held by this application archive: the archive file system is closed, and the directories
+     * the archive was unpacked to are deleted. If the archive was unpacked into an {@link UnpackCache}, the cache entry
+     * is released instead of deleted, so other archives with the same contents can still use it.
+     * <p/>
+     * Subclasses that hand out class loaders must close those before calling this method, as some platforms refuse to
+     * delete files that are still opened by a class loader. Closing an archive more than once has no effect. An
+     * archive must not be used after it has been closed.
+     *
+     * @throws IOException
+     *     if the archive file system could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (archiveFileSystem != null) {
+                archiveFileSystem.close();
+            }
+        } finally {
+            if (unpackedPath != null) {
+                if (unpackedPathCached) {
+                    unpackCache.release(unpackedPath);
+                } else {
+                    deleteTemporaryDirectory(unpackedPath);
+                }
+            }
+            deleteTemporaryDirectory(materializedPath);
+        }
+    }
+
+    /**
+     * Deletes a temporary directory and everything in it, logging a warning if it could not be deleted entirely.
+     *
+     * @param directory
+     *     the directory to delete, may be {@code null}
+     */
+    private void deleteTemporaryDirectory(File directory) {
+        if (directory != null && !FileUtils.deleteQuietly(directory)) {
+            LOGGER.warn(String.format("Could not delete temporary directory '%s'", directory.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * The ways in which the contents of an application archive can be accessed.
+     */
+    public enum UnpackMode {
+        /**
+         * Unpack the entire archive into a temporary directory up front.
+         */
+        FULL,
+        /**
+         * Only extract entries when they are asked for as a {@link File}, for instance by the class loader. Entries
+         * are looked up in the archive's central directory, but are reported at the location they are extracted to.
+         */
+        ON_DEMAND,
+        /**
+         * Do not unpack anything; read entries straight from the archive file through a zip {@link FileSystem}.
+         */
+        NONE
+    }
 }
@@ -25,6 +25,7 @@ import java.io.IOException;
 import javax.enterprise.deploy.shared.ModuleType;
 
 import com.infosupport.ellison.core.exceptions.ArchiveFormatUnsupportedException;
+import com.infosupport.ellison.core.util.Constants;
 
 /**
  * {@code ApplicationArchive} factory.
@@ -34,6 +35,10 @@ import com.infosupport.ellison.core.exceptions.ArchiveFormatUnsupportedException
 public class ApplicationArchiveFactory {
     private static final String EXCEPTION_FORMAT = "Cannot handle application archive '%s': %s";
     private static ApplicationArchiveFactory instance = new ApplicationArchiveFactory();
+    private ApplicationArchive.UnpackMode unpackMode = ApplicationArchive.UnpackMode.ON_DEMAND;
+    private int unpackThreads = Constants.DEFAULT_UNPACK_THREADS;
+    private UnpackCache unpackCache;
+    private AnnotationIndexCache annotationIndexCache;
 
     protected ApplicationArchiveFactory() {
     }
@@ -47,6 +52,94 @@ public class ApplicationArchiveFactory {
         return instance;
     }
 
+    /**
+     * Get the way the contents of created application archives will be accessed.
+     *
+     * @return the unpack mode passed to created application archives
+     */
+    public ApplicationArchive.UnpackMode getUnpackMode() {
+        return unpackMode;
+    }
+
+    /**
+     * Set the way the contents of created application archives will be accessed. By default, archives are unpacked
+     * on demand ({@link ApplicationArchive.UnpackMode#ON_DEMAND}); {@link ApplicationArchive.UnpackMode#NONE} reads
+     * them in place, and {@link ApplicationArchive.UnpackMode#FULL} unpacks each archive into a temporary directory
+     * up front.
+     *
+     * @param unpackMode
+     *     the unpack mode to pass to created application archives
+     */
+    public void setUnpackMode(ApplicationArchive.UnpackMode unpackMode) {
+        this.unpackMode = unpackMode;
+    }
+
+    /**
+     * Get the number of threads created application archives extract their entries with.
+     *
+     * @return the number of unpack threads passed to created application archives
+     */
+    public int getUnpackThreads() {
+        return unpackThreads;
+    }
+
+    /**
+     * Set the number of threads created application archives extract their entries with. Defaults to the number of
+     * available processors.
+     *
+     * @param unpackThreads
+     *     the number of unpack threads to pass to created application archives. Extraction happens on a single
+     *     thread if this is 1 or less.
+     */
+    public void setUnpackThreads(int unpackThreads) {
+        this.unpackThreads = unpackThreads;
+    }
+
+    /**
+     * Get the cache created application archives take their unpacked contents from.
+     *
+     * @return the unpack cache, or {@code null} if archives are always unpacked into a new temporary directory
+     */
+    public UnpackCache getUnpackCache() {
+        return unpackCache;
+    }
+
+    /**
+     * Set the cache created application archives take their unpacked contents from. Archives that are unpacked up
+     * front ({@link ApplicationArchive.UnpackMode#FULL}) are taken from the cache as a whole, archives that are
+     * unpacked on demand ({@link ApplicationArchive.UnpackMode#ON_DEMAND}) reuse the entries extracted by previous
+     * analyses; see {@link #setUnpackMode(ApplicationArchive.UnpackMode)}. By default, no cache is used, so nothing is
+     * kept on disk after an archive has been closed.
+     *
+     * @param unpackCache
+     *     the unpack cache to use, or {@code null} to disable caching
+     */
+    public void setUnpackCache(UnpackCache unpackCache) {
+        this.unpackCache = unpackCache;
+    }
+
+    /**
+     * Get the cache created application archives take the annotated classes in their libraries from.
+     *
+     * @return the annotation index cache, or {@code null} if libraries are always scanned
+     */
+    public AnnotationIndexCache getAnnotationIndexCache() {
+        return annotationIndexCache;
+    }
+
+    /**
+     * Set the cache created application archives take the annotated classes in their libraries from, so that
+     * libraries that were scanned by a previous analysis aren't scanned again. By default, no cache is used.
+     *
+     * @param annotationIndexCache
+     *     the annotation index cache to use, or {@code null} to disable caching
+     *
+     * @see ApplicationArchive#setAnnotationIndexCache(AnnotationIndexCache)
+     */
+    public void setAnnotationIndexCache(AnnotationIndexCache annotationIndexCache) {
+        this.annotationIndexCache = annotationIndexCache;
+    }
+
     /**
      * Get the extension for a filename, <strong>without</strong> the period.
      *
@@ -88,7 +181,7 @@ public class ApplicationArchiveFactory {
 
     /**
      * Depending on the extension of the supplied file, returns a specific {@code ApplicationArchive} implementation
-     * instance.
+     * instance. A directory is handled as an exploded WAR, regardless of its name.
      *
      * @param application
      *     the application archive file to handle
@@ -102,22 +195,36 @@ public class ApplicationArchiveFactory {
      *     will be thrown if {@code application} refers to a non-existent file
      * @see EARApplicationArchive
      * @see WARApplicationArchive
+     * @see ExplodedWARApplicationArchive
      */
     public ApplicationArchive createApplicationArchive(File application)
         throws ArchiveFormatUnsupportedException, IOException {
-        String fileExtension = getFileNameExtensionWithPeriod(application.getName());
-
-        if (fileExtension == null) {
-            throw new ArchiveFormatUnsupportedException(
-                String.format(EXCEPTION_FORMAT, application.getAbsolutePath(), "no extension"));
-        } else if (fileExtension.equalsIgnoreCase(ModuleType.WAR.getModuleExtension())) {
-            // This is Sparta!
-            return new WARApplicationArchive(application);
-        } else if (fileExtension.equalsIgnoreCase(ModuleType.EAR.getModuleExtension())) {
-            return new EARApplicationArchive(application);
+        ApplicationArchive applicationArchive;
+
+        if (application.isDirectory()) {
+            applicationArchive = new ExplodedWARApplicationArchive(application);
         } else {
-            throw new ArchiveFormatUnsupportedException(String.format(EXCEPTION_FORMAT, application.getAbsolutePath(),
-                                                                      "unknown extension '" + fileExtension + "'"));
+            String fileExtension = getFileNameExtensionWithPeriod(application.getName());
+
+            if (fileExtension == null) {
+                throw new ArchiveFormatUnsupportedException(
+                    String.format(EXCEPTION_FORMAT, application.getAbsolutePath(), "no extension"));
+            } else if (fileExtension.equalsIgnoreCase(ModuleType.WAR.getModuleExtension())) {
+                // This is Sparta!
+                applicationArchive = new WARApplicationArchive(application, getUnpackMode(), getUnpackThreads(),
+                                                               getUnpackCache());
+            } else if (fileExtension.equalsIgnoreCase(ModuleType.EAR.getModuleExtension())) {
+                applicationArchive = new EARApplicationArchive(application, getUnpackMode(), getUnpackThreads(),
+                                                               getUnpackCache());
+            } else {
+                throw new ArchiveFormatUnsupportedException(
+                    String.format(EXCEPTION_FORMAT, application.getAbsolutePath(),
+                                  "unknown extension '" + fileExtension + "'"));
+            }
         }
+
+        applicationArchive.setAnnotationIndexCache(getAnnotationIndexCache());
+
+        return applicationArchive;
     }
 }
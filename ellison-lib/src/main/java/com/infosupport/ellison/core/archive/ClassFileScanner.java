@@ -0,0 +1,446 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Finds the class files of an application, and hands their contents to a {@link ClassFileVisitor}. No classes are
+ * loaded.
+ * <p/>
+ * Every directory and library containing classes is a root, and the roots are scanned concurrently. Class files are
+ * read through the {@link ApplicationArchive} they are in, so nothing is extracted, and libraries in WEB-INF/lib are
+ * scanned regardless of the way the archive is unpacked. A root that cannot be read is logged and skipped.
+ *
+ * @author StefanZ
+ */
+public class ClassFileScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassFileScanner.class);
+    private static final String CLASSES_DIRECTORY = "WEB-INF/classes";
+    private static final String LIBRARY_DIRECTORY = "WEB-INF/lib";
+    private static final String CLASS_FILE_EXTENSION = ".class";
+    private final int scanThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param scanThreads
+     *     the maximum number of roots to scan at the same time. Roots are scanned one after another if this is 1 or
+     *     less.
+     */
+    public ClassFileScanner(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+    /**
+     * Scans the classes of a web application: the classes in WEB-INF/classes, and those in the libraries in
+     * WEB-INF/lib. For an {@link ExplodedWARApplicationArchive}, its separate classes directory and additional
+     * libraries are scanned as well. The class paths of the class loaders the application delegates to are not
+     * scanned.
+     *
+     * @param applicationArchive
+     *     the application to scan
+     * @param visitor
+     *     the visitor to hand the class files to
+     *
+     * @throws IOException
+     *     if the contents of {@code applicationArchive} could not be listed
+     */
+    public void scan(ApplicationArchive applicationArchive, ClassFileVisitor visitor) throws IOException {
+        scanRoots(findRoots(applicationArchive), new VisitingRootScan(visitor));
+    }
+
+    /**
+     * Scans the directories and libraries on a class path.
+     *
+     * @param classPath
+     *     the URLs of the directories and libraries to scan
+     * @param visitor
+     *     the visitor to hand the class files to
+     */
+    public void scan(Collection<URL> classPath, ClassFileVisitor visitor) {
+        scanRoots(findRoots(classPath), new VisitingRootScan(visitor));
+    }
+
+    /**
+     * Finds the roots of a web application, see {@link #scan(ApplicationArchive, ClassFileVisitor)}.
+     *
+     * @param applicationArchive
+     *     the application to find the roots of
+     *
+     * @return the roots, starting with the classes directory
+     *
+     * @throws IOException
+     *     if the contents of {@code applicationArchive} could not be listed
+     */
+    static List<Root> findRoots(ApplicationArchive applicationArchive) throws IOException {
+        List<Root> roots = new ArrayList<>();
+        File classesDirectory = null;
+
+        if (applicationArchive instanceof ExplodedWARApplicationArchive) {
+            classesDirectory = ((ExplodedWARApplicationArchive) applicationArchive).getClassesDirectory();
+        }
+        if (classesDirectory == null) {
+            roots.add(new ArchiveDirectoryRoot(applicationArchive, CLASSES_DIRECTORY));
+        } else {
+            roots.add(new DirectoryRoot(classesDirectory.toPath()));
+        }
+
+        try {
+            for (URI library : applicationArchive.findFilesByGlobPattern(LIBRARY_DIRECTORY, "*.jar", false)) {
+                roots.add(new ArchiveLibraryRoot(applicationArchive, library.getPath()));
+            }
+        } catch (FileNotFoundException e) {
+            LOGGER.debug("No libraries in this application archive.");
+        }
+
+        if (applicationArchive instanceof WARApplicationArchive) {
+            for (URL library : ((WARApplicationArchive) applicationArchive).getAdditionalLibraryURLs()) {
+                roots.add(createRoot(library));
+            }
+        }
+
+        return roots;
+    }
+
+    /**
+     * Finds the roots on a class path.
+     *
+     * @param classPath
+     *     the URLs of the directories and libraries on the class path
+     *
+     * @return the roots, in the order of {@code classPath}
+     */
+    static List<Root> findRoots(Collection<URL> classPath) {
+        List<Root> roots = new ArrayList<>(classPath.size());
+
+        for (URL url : classPath) {
+            roots.add(createRoot(url));
+        }
+
+        return roots;
+    }
+
+    /**
+     * Creates the root for a directory or library on a class path.
+     *
+     * @param url
+     *     the URL of the directory or library
+     *
+     * @return a root that walks the directory if {@code url} points to a directory on disk, and reads the library
+     *         from {@code url} otherwise
+     */
+    private static Root createRoot(final URL url) {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                File file = new File(url.toURI());
+                if (file.isDirectory()) {
+                    return new DirectoryRoot(file.toPath());
+                }
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                LOGGER.debug(String.format("Cannot treat '%s' as a file; reading it as a library", url), e);
+            }
+        }
+
+        return new LibraryRoot(url.toString()) {
+            @Override
+            InputStream open() throws IOException {
+                return url.openStream();
+            }
+        };
+    }
+
+    /**
+     * Scans roots, concurrently if there are several of them.
+     *
+     * @param roots
+     *     the roots to scan
+     * @param rootScan
+     *     what to do with each root
+     */
+    void scanRoots(List<Root> roots, final RootScan rootScan) {
+        int threadCount = Math.min(scanThreads, roots.size());
+
+        if (threadCount <= 1) {
+            for (Root root : roots) {
+                scanRoot(root, rootScan);
+            }
+            return;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<Void>> scans = new ArrayList<>(roots.size());
+        try {
+            for (final Root root : roots) {
+                scans.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        scanRoot(root, rootScan);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> scan : scans) {
+                scan.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning for class files", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Scans a single root, logging rather than propagating any error reading it.
+     *
+     * @param root
+     *     the root to scan
+     * @param rootScan
+     *     what to do with the root
+     */
+    private static void scanRoot(Root root, RootScan rootScan) {
+        try {
+            rootScan.scan(root);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not scan '%s' for class files", root.name), e);
+        }
+    }
+
+    /**
+     * What to do with each root that is scanned.
+     */
+    interface RootScan {
+        /**
+         * Scans a single root.
+         *
+         * @param root
+         *     the root to scan
+         *
+         * @throws IOException
+         *     if the root could not be read
+         */
+        void scan(Root root) throws IOException;
+    }
+
+    /**
+     * Hands the class files of every root to a visitor.
+     */
+    private static final class VisitingRootScan implements RootScan {
+        private final ClassFileVisitor visitor;
+
+        VisitingRootScan(ClassFileVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void scan(Root root) throws IOException {
+            root.scan(visitor);
+        }
+    }
+
+    /**
+     * A directory or library containing class files.
+     */
+    abstract static class Root {
+        final String name;
+
+        /**
+         * Constructor.
+         *
+         * @param name
+         *     a name for the root, used in messages
+         */
+        Root(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Hands all class files in this root to a visitor.
+         *
+         * @param visitor
+         *     the visitor to hand the class files to
+         *
+         * @throws IOException
+         *     if the root could not be read
+         */
+        abstract void scan(ClassFileVisitor visitor) throws IOException;
+    }
+
+    /**
+     * A directory on disk.
+     */
+    private static final class DirectoryRoot extends Root {
+        private final Path directory;
+
+        DirectoryRoot(Path directory) {
+            super(directory.toString());
+            this.directory = directory;
+        }
+
+        @Override
+        void scan(final ClassFileVisitor visitor) throws IOException {
+            final String separator = directory.getFileSystem().getSeparator();
+
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    String name = directory.relativize(file).toString().replace(separator, "/");
+                    if (attributes.isRegularFile() && name.endsWith(CLASS_FILE_EXTENSION)) {
+                        visitor.visitClassFile(name, Files.readAllBytes(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    /**
+     * A directory within an application archive.
+     */
+    private static final class ArchiveDirectoryRoot extends Root {
+        private final ApplicationArchive applicationArchive;
+        private final String directory;
+
+        ArchiveDirectoryRoot(ApplicationArchive applicationArchive, String directory) {
+            super(directory);
+            this.applicationArchive = applicationArchive;
+            this.directory = directory;
+        }
+
+        @Override
+        void scan(ClassFileVisitor visitor) throws IOException {
+            Collection<URI> classFiles;
+            try {
+                classFiles = applicationArchive.findFilesByGlobPattern(directory, "*" + CLASS_FILE_EXTENSION, true);
+            } catch (FileNotFoundException e) {
+                return;
+            }
+
+            for (URI classFile : classFiles) {
+                String path = classFile.getPath();
+                try (InputStream classInputStream = applicationArchive.getInputStream(path)) {
+                    visitor.visitClassFile(path.substring(directory.length() + 1),
+                                           ByteStreams.toByteArray(classInputStream));
+                }
+            }
+        }
+    }
+
+    /**
+     * A JAR file, which is read as a stream from start to end.
+     */
+    abstract static class LibraryRoot extends Root {
+        LibraryRoot(String name) {
+            super(name);
+        }
+
+        /**
+         * Opens the library.
+         *
+         * @return a stream of the contents of the library
+         *
+         * @throws IOException
+         *     if the library could not be opened
+         */
+        abstract InputStream open() throws IOException;
+
+        @Override
+        void scan(ClassFileVisitor visitor) throws IOException {
+            scan(new BufferedInputStream(open()), visitor);
+        }
+
+        /**
+         * Hands all class files in a library that has already been opened to a visitor.
+         *
+         * @param library
+         *     a stream of the contents of the library, which is closed afterwards
+         * @param visitor
+         *     the visitor to hand the class files to
+         *
+         * @throws IOException
+         *     if the library could not be read
+         */
+        static void scan(InputStream library, ClassFileVisitor visitor) throws IOException {
+            try (ZipInputStream zipInputStream = new ZipInputStream(library)) {
+                for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null;
+                     entry = zipInputStream.getNextEntry()) {
+                    if (!entry.isDirectory() && entry.getName().endsWith(CLASS_FILE_EXTENSION)) {
+                        visitor.visitClassFile(entry.getName(), ByteStreams.toByteArray(zipInputStream));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A JAR file within an application archive.
+     */
+    private static final class ArchiveLibraryRoot extends LibraryRoot {
+        private final ApplicationArchive applicationArchive;
+        private final String path;
+
+        ArchiveLibraryRoot(ApplicationArchive applicationArchive, String path) {
+            super(path);
+            this.applicationArchive = applicationArchive;
+            this.path = path;
+        }
+
+        @Override
+        InputStream open() throws IOException {
+            return applicationArchive.getInputStream(path);
+        }
+    }
+}
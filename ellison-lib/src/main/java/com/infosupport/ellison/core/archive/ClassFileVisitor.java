@@ -0,0 +1,41 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+/**
+ * Receives the class files found by a {@link ClassFileScanner}.
+ * <p/>
+ * Class files from different directories and libraries may be visited concurrently, so implementations must be
+ * thread-safe.
+ *
+ * @author StefanZ
+ */
+public interface ClassFileVisitor {
+    /**
+     * Visits a class file.
+     *
+     * @param name
+     *     the path of the class file, relative to the directory or library containing it (e.g. {@code
+     *     com/example/Bean.class})
+     * @param contents
+     *     the contents of the class file
+     */
+    void visitClassFile(String name, byte[] contents);
+}
@@ -20,14 +20,48 @@
 package com.infosupport.ellison.core.archive;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * Implements {@link ApplicationArchive} for EAR (Enterprise Archive).
+ * <p/>
+ * The web modules of the EAR are listed in its deployment descriptor, META-INF/application.xml. If the EAR has no
+ * deployment descriptor, every WAR in its root is taken to be a web module. Each web module can be opened as a {@link
+ * WARApplicationArchive} of its own (see {@link #openWebModule(String)}), whose class loader has the class loader of
+ * this archive as its parent. The latter loads the libraries in the library directory of the EAR ({@code lib} by
+ * default), so that they are shared by all web modules.
  *
  * @author StefanZ
  */
 public class EARApplicationArchive extends ApplicationArchive {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EARApplicationArchive.class);
+    private static final String APPLICATION_DESCRIPTOR = "META-INF/application.xml";
+    private static final String DEFAULT_LIBRARY_DIRECTORY = "lib";
+    private List<String> webModules;
+    private String libraryDirectory;
+    private ClassLoader cachedClassLoader;
     /**
      * Constructor.
      *
@@ -44,10 +78,244 @@ public class EARApplicationArchive extends ApplicationArchive {
     }
 
     /**
-     * {@inheritDoc}
+     * Constructor.
+     *
+     * @param applicationFile
+     *     the application archive file to use
+     * @param unpackMode
+     *     how the contents of the archive should be accessed
+     *
+     * @throws IOException
+     *     when there was an error opening or unpacking the application archive. Specifically, a {@link
+     *     java.io.FileNotFoundException} is thrown if {@code applicationFile} does not point to an existing file.
+     * @see ApplicationArchive#ApplicationArchive(java.io.File, ApplicationArchive.UnpackMode)
+     */
+    public EARApplicationArchive(File applicationFile, UnpackMode unpackMode) throws IOException {
+        super(applicationFile, unpackMode);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param applicationFile
+     *     the application archive file to use
+     * @param unpackMode
+     *     how the contents of the archive should be accessed
+     * @param unpackThreads
+     *     the number of threads to extract entries with
+     * @param unpackCache
+     *     the cache to take the unpacked contents of the archive from, may be {@code null}
+     *
+     * @throws IOException
+     *     when there was an error opening or unpacking the application archive. Specifically, a {@link
+     *     java.io.FileNotFoundException} is thrown if {@code applicationFile} does not point to an existing file.
+     * @see ApplicationArchive#ApplicationArchive(java.io.File, ApplicationArchive.UnpackMode, int, UnpackCache)
+     */
+    public EARApplicationArchive(File applicationFile, UnpackMode unpackMode, int unpackThreads,
+                                 UnpackCache unpackCache) throws IOException {
+        super(applicationFile, unpackMode, unpackThreads, unpackCache);
+    }
+
+    /**
+     * Get the web modules of this EAR.
+     *
+     * @return the paths of the web modules within this archive, relative to its root, in the order in which they are
+     *         listed in the deployment descriptor
+     *
+     * @throws IOException
+     *     if the deployment descriptor could not be read or parsed
+     */
+    public synchronized List<String> getWebModules() throws IOException {
+        if (webModules == null) {
+            readApplicationDescriptor();
+        }
+
+        return webModules;
+    }
+
+    /**
+     * Get the directory containing the libraries shared by all modules of this EAR.
+     *
+     * @return the library directory, relative to the root of this archive, or the empty string if the EAR has no
+     *         library directory
+     *
+     * @throws IOException
+     *     if the deployment descriptor could not be read or parsed
+     */
+    public synchronized String getLibraryDirectory() throws IOException {
+        if (libraryDirectory == null) {
+            readApplicationDescriptor();
+        }
+
+        return libraryDirectory;
+    }
+
+    /**
+     * Reads the web modules and the library directory from the deployment descriptor, or determines them by
+     * convention if the EAR has no deployment descriptor.
+     *
+     * @throws IOException
+     *     if the deployment descriptor could not be read or parsed
+     */
+    private void readApplicationDescriptor() throws IOException {
+        List<String> foundWebModules = new ArrayList<>();
+        String foundLibraryDirectory = DEFAULT_LIBRARY_DIRECTORY;
+
+        if (containsEntry(APPLICATION_DESCRIPTOR)) {
+            Document applicationDescriptor = parseApplicationDescriptor();
+            NodeList webURIs = applicationDescriptor.getElementsByTagNameNS("*", "web-uri");
+            for (int i = 0; i < webURIs.getLength(); i++) {
+                foundWebModules.add(stripSlashes(webURIs.item(i).getTextContent()));
+            }
+
+            NodeList libraryDirectories = applicationDescriptor.getElementsByTagNameNS("*", "library-directory");
+            if (libraryDirectories.getLength() > 0) {
+                // An empty library-directory element means there is no library directory at all
+                foundLibraryDirectory = stripSlashes(((Element) libraryDirectories.item(0)).getTextContent());
+            }
+        } else {
+            for (URI war : findFilesByGlobPattern(null, "*.war", false)) {
+                foundWebModules.add(war.getPath());
+            }
+        }
+
+        LOGGER.debug(String.format("Found web modules %s in application archive '%s'", foundWebModules,
+                                   getApplicationFile().getName()));
+        webModules = Collections.unmodifiableList(foundWebModules);
+        libraryDirectory = foundLibraryDirectory;
+    }
+
+    /**
+     * Parses the deployment descriptor. Any DTD referred to by the descriptor is ignored, so that descriptors of old
+     * J2EE versions can be parsed without network access.
+     *
+     * @return the parsed deployment descriptor
+     *
+     * @throws IOException
+     *     if the deployment descriptor could not be read or parsed
+     */
+    private Document parseApplicationDescriptor() throws IOException {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+
+        try (InputStream applicationDescriptor = getInputStream(APPLICATION_DESCRIPTOR)) {
+            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            documentBuilder.setEntityResolver(new EntityResolver() {
+                @Override
+                public InputSource resolveEntity(String publicId, String systemId) {
+                    return new InputSource(new StringReader(""));
+                }
+            });
+            return documentBuilder.parse(applicationDescriptor);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException(String.format("Could not parse '%s' in application archive '%s'",
+                                                APPLICATION_DESCRIPTOR, getApplicationFile().getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Removes surrounding whitespace, as well as leading and trailing slashes, from a path in the deployment
+     * descriptor.
+     *
+     * @param path
+     *     the path to strip
+     *
+     * @return {@code path} without surrounding whitespace and slashes
+     */
+    private static String stripSlashes(String path) {
+        String strippedPath = path.trim();
+        while (strippedPath.startsWith("/")) {
+            strippedPath = strippedPath.substring(1);
+        }
+        while (strippedPath.endsWith("/")) {
+            strippedPath = strippedPath.substring(0, strippedPath.length() - 1);
+        }
+        return strippedPath;
+    }
+
+    /**
+     * Opens a web module of this EAR as an application archive of its own. The module is unpacked in the same way as
+     * this archive and shares its annotation index cache, and its class loader has the class loader of this archive
+     * as its parent. The caller is responsible for closing the returned archive, which must happen before this archive
+     * is closed.
+     *
+     * @param webModule
+     *     the path of the web module within this archive, as returned by {@link #getWebModules()}
+     *
+     * @return an application archive for {@code webModule}
+     *
+     * @throws IOException
+     *     if the web module could not be extracted from this archive, or could not be opened
+     */
+    public WARApplicationArchive openWebModule(String webModule) throws IOException {
+        File moduleFile = getFile(webModule);
+        WARApplicationArchive moduleArchive = null;
+
+        if (moduleFile.isDirectory()) {
+            moduleArchive = new ExplodedWARApplicationArchive(moduleFile);
+        } else {
+            moduleArchive =
+                new WARApplicationArchive(moduleFile, getUnpackMode(), getUnpackThreads(), getUnpackCache());
+        }
+        moduleArchive.setParentClassLoader(getClassLoader());
+        moduleArchive.setAnnotationIndexCache(getAnnotationIndexCache());
+
+        return moduleArchive;
+    }
+
+    /**
+     * Creates a class loader for the libraries in the library directory of this EAR. This class loader is the parent
+     * of the class loaders of all web modules.
+     *
+     * @return a classloader capable of loading classes from the shared libraries of the application
+     */
+    @Override
+    public synchronized ClassLoader getClassLoader() {
+        if (cachedClassLoader != null) {
+            return cachedClassLoader;
+        }
+
+        Collection<URI> libraries = Collections.emptyList();
+        try {
+            String directory = getLibraryDirectory();
+            if (directory.length() > 0) {
+                libraries = findFilesByGlobPattern(directory, "*.jar", false);
+            }
+        } catch (FileNotFoundException e) {
+            LOGGER.info("No shared libraries in this application archive.");
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                String.format("Could not read the deployment descriptor of application archive '%s'",
+                              getApplicationFile().getAbsolutePath()), e);
+        }
+
+        try {
+            cachedClassLoader = new IndexedJarClassLoader(new URL[0], this.getClass().getClassLoader(), this,
+                                                          libraries, Collections.<String>emptySet());
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Could not read the libraries of application archive '%s'",
+                                                          getApplicationFile().getAbsolutePath()), e);
+        }
+
+        return cachedClassLoader;
+    }
+
+    /**
+     * Closes the class loader returned by {@link #getClassLoader()}, if one was created, before releasing the resources
+     * held by the archive itself.
+     *
+     * @throws IOException
+     *     if the class loader or the archive could not be closed
      */
     @Override
-    public ClassLoader getClassLoader() {
-        return null;
+    public synchronized void close() throws IOException {
+        try {
+            if (cachedClassLoader instanceof IndexedJarClassLoader) {
+                ((IndexedJarClassLoader) cachedClassLoader).close();
+            }
+            cachedClassLoader = null;
+        } finally {
+            super.close();
+        }
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable index of the paths of all entries in an application archive.
+ * <p/>
+ * Paths are relative to the root of the archive, use forward slashes as separators, and have no leading or trailing
+ * slashes. Files and directories are kept in two sorted arrays, so that the files below a directory form a contiguous
+ * range that can be found with a binary search.
+ *
+ * @author StefanZ
+ */
+final class EntryIndex {
+    private static final String[] NO_PATHS = new String[0];
+    private final String[] files;
+    private final String[] directories;
+
+    /**
+     * Constructor.
+     *
+     * @param files
+     *     the paths of all files in the archive
+     * @param directories
+     *     the paths of all directories in the archive. The parent directories of {@code files} are added to this
+     *     automatically, so only empty directories need to be included.
+     */
+    EntryIndex(Collection<String> files, Collection<String> directories) {
+        Set<String> allDirectories = new TreeSet<>();
+
+        for (String directory : directories) {
+            addDirectoryAndParents(allDirectories, stripSlashes(directory));
+        }
+
+        String[] sortedFiles = new String[files.size()];
+        int i = 0;
+        for (String file : files) {
+            String path = stripSlashes(file);
+            sortedFiles[i++] = path;
+            int lastSlash = path.lastIndexOf('/');
+            if (lastSlash != -1) {
+                addDirectoryAndParents(allDirectories, path.substring(0, lastSlash));
+            }
+        }
+        Arrays.sort(sortedFiles);
+
+        this.files = sortedFiles;
+        this.directories = allDirectories.toArray(NO_PATHS);
+    }
+
+    /**
+     * Adds a directory and all of its parent directories (except for the root) to a set.
+     *
+     * @param directorySet
+     *     the set to add to
+     * @param directory
+     *     the directory to add
+     */
+    private static void addDirectoryAndParents(Set<String> directorySet, String directory) {
+        String current = directory;
+        while (current.length() > 0 && directorySet.add(current)) {
+            int lastSlash = current.lastIndexOf('/');
+            current = lastSlash == -1 ? "" : current.substring(0, lastSlash);
+        }
+    }
+
+    /**
+     * Removes leading and trailing slashes from a path.
+     *
+     * @param path
+     *     the path to strip
+     *
+     * @return {@code path} without leading or trailing slashes
+     */
+    private static String stripSlashes(String path) {
+        int begin = 0;
+        int end = path.length();
+        while (begin < end && path.charAt(begin) == '/') {
+            begin++;
+        }
+        while (end > begin && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(begin, end);
+    }
+
+    /**
+     * Compiles a wildcard pattern, as understood by {@link org.apache.commons.io.FilenameUtils#wildcardMatch(String,
+     * String)}, into a regular expression. A {@code ?} matches exactly one character, a {@code *} matches any number
+     * of characters, and every other character matches itself, case-sensitively.
+     *
+     * @param wildcardPattern
+     *     the pattern to compile
+     *
+     * @return a regular expression that matches the same names as {@code wildcardPattern}
+     */
+    static Pattern compileWildcardPattern(String wildcardPattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+
+        for (int i = 0; i < wildcardPattern.length(); i++) {
+            char c = wildcardPattern.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * Checks whether a path points to a file in the archive.
+     *
+     * @param path
+     *     the path to check
+     *
+     * @return {@code true} if {@code path} is a file
+     */
+    boolean isFile(String path) {
+        return Arrays.binarySearch(files, stripSlashes(path)) >= 0;
+    }
+
+    /**
+     * Checks whether a path points to a directory in the archive.
+     *
+     * @param path
+     *     the path to check. The empty string denotes the root of the archive.
+     *
+     * @return {@code true} if {@code path} is a directory
+     */
+    boolean isDirectory(String path) {
+        String directory = stripSlashes(path);
+        return directory.length() == 0 || Arrays.binarySearch(directories, directory) >= 0;
+    }
+
+    /**
+     * Finds all files in a directory whose names match a compiled wildcard pattern.
+     *
+     * @param directory
+     *     the directory to search in; the empty string denotes the root of the archive
+     * @param namePattern
+     *     the pattern the file names (without their directories) must match, see {@link
+     *     #compileWildcardPattern(String)}
+     * @param recursive
+     *     whether to include files in subdirectories of {@code directory}
+     *
+     * @return the paths of all matching files, in lexicographical order
+     */
+    List<String> findFiles(String directory, Pattern namePattern, boolean recursive) {
+        String stripped = stripSlashes(directory);
+        String prefix = stripped.length() == 0 ? "" : stripped + "/";
+        List<String> matches = new ArrayList<>();
+        Matcher matcher = namePattern.matcher("");
+
+        int position = Arrays.binarySearch(files, prefix);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        for (; position < files.length && files[position].startsWith(prefix); position++) {
+            String file = files[position];
+            int lastSlash = file.lastIndexOf('/');
+            if ((recursive || lastSlash < prefix.length()) && matcher.reset(file).region(lastSlash + 1, file.length())
+                .matches()) {
+                matches.add(file);
+            }
+        }
+
+        return matches;
+    }
+}
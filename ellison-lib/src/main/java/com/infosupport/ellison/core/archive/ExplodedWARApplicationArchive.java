@@ -0,0 +1,140 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Implements {@link ApplicationArchive} for exploded WARs, i.e. directories laid out like the contents of a WAR.
+ * <p/>
+ * This can be used to check an application without packaging it first, for instance by pointing it at {@code
+ * target/<finalName>} of a Maven build, or at {@code src/main/webapp} together with {@code target/classes}. Nothing
+ * is copied or unpacked: entries are read straight from the directory, and the class loader is built from the
+ * directories and libraries themselves.
+ *
+ * @author StefanZ
+ */
+public class ExplodedWARApplicationArchive extends WARApplicationArchive {
+    private final File classesDirectory;
+    private final File[] libraries;
+
+    /**
+     * Constructor.
+     *
+     * @param webappDirectory
+     *     the root directory of the exploded WAR. Classes are loaded from its WEB-INF/classes directory, and libraries
+     *     from its WEB-INF/lib directory.
+     *
+     * @throws FileNotFoundException
+     *     if {@code webappDirectory} is not an existing directory
+     */
+    public ExplodedWARApplicationArchive(File webappDirectory) throws FileNotFoundException {
+        this(webappDirectory, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param webappDirectory
+     *     the root directory of the web application, containing the pages and the WEB-INF directory
+     * @param classesDirectory
+     *     the directory to load the classes of the application from instead of WEB-INF/classes, such as {@code
+     *     target/classes}. May be {@code null}, in which case WEB-INF/classes is used.
+     * @param libraries
+     *     JAR files or class directories to put on the class path after the libraries in WEB-INF/lib, such as the
+     *     dependencies of a project that hasn't been packaged yet
+     *
+     * @throws FileNotFoundException
+     *     if {@code webappDirectory} or {@code classesDirectory} is not an existing directory
+     */
+    public ExplodedWARApplicationArchive(File webappDirectory, File classesDirectory, File... libraries)
+        throws FileNotFoundException {
+        super(webappDirectory, webappDirectory.toPath());
+
+        if (classesDirectory != null && !classesDirectory.isDirectory()) {
+            throw new FileNotFoundException(
+                String.format("Directory does not exist: %s", classesDirectory.getAbsolutePath()));
+        }
+        this.classesDirectory = classesDirectory;
+        this.libraries = libraries.clone();
+    }
+
+    /**
+     * Get the directory classes of the application are loaded from, if it is not the WEB-INF/classes directory of the
+     * exploded WAR.
+     *
+     * @return the classes directory, or {@code null} if WEB-INF/classes is used
+     */
+    public File getClassesDirectory() {
+        return classesDirectory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected URL getClassesURL(URL mainURL) throws MalformedURLException {
+        if (classesDirectory == null) {
+            return super.getClassesURL(mainURL);
+        }
+
+        return classesDirectory.toURI().toURL();
+    }
+
+    /**
+     * Get the packages that the root of the exploded WAR and its WEB-INF/classes directory contain classes or resources
+     * in. If a separate classes directory or additional libraries are used, these are not known, and {@code null} is
+     * returned.
+     *
+     * @return the packages in the exploded WAR, or {@code null} if unknown
+     */
+    @Override
+    protected Collection<String> findLocalPackages() {
+        if (classesDirectory != null || libraries.length > 0) {
+            return null;
+        }
+
+        return super.findLocalPackages();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Collection<URL> getAdditionalLibraryURLs() {
+        Collection<URL> libraryURLs = new ArrayList<>(libraries.length);
+
+        for (File library : libraries) {
+            try {
+                libraryURLs.add(library.toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException(
+                    String.format("Cannot create a URL for library '%s'", library.getAbsolutePath()), e);
+            }
+        }
+
+        return libraryURLs;
+    }
+}
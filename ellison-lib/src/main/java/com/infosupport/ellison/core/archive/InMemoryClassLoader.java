@@ -0,0 +1,217 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class loader that loads classes and resources from byte arrays held in memory.
+ * <p/>
+ * Classes and resources are looked up in a number of sources, in order. Each source maps resource names (as passed
+ * to {@link ClassLoader#getResource(String)}) to their contents, and has a base URI that is used to build the URLs of
+ * its resources. These URLs can only be opened through the {@link URL} instances returned by this class loader, as
+ * their protocol handler is not registered with the JVM.
+ *
+ * @author StefanZ
+ * @see InMemoryWARApplicationArchive
+ */
+public class InMemoryClassLoader extends ClassLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryClassLoader.class);
+    private final Map<String, Map<String, byte[]>> sources;
+    private final URLStreamHandler urlStreamHandler;
+
+    /**
+     * Constructor.
+     *
+     * @param sources
+     *     the sources to load classes and resources from, keyed by their base URI, in the order in which they should be
+     *     searched
+     * @param parent
+     *     the parent class loader
+     */
+    public InMemoryClassLoader(Map<URI, Map<String, byte[]>> sources, ClassLoader parent) {
+        super(parent);
+        this.sources = new LinkedHashMap<>();
+        for (Map.Entry<URI, Map<String, byte[]>> source : sources.entrySet()) {
+            this.sources.put(source.getKey().toString(), source.getValue());
+        }
+        urlStreamHandler = new InMemoryURLStreamHandler();
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String resourceName = name.replace('.', '/') + ".class";
+
+        for (Map<String, byte[]> source : sources.values()) {
+            byte[] classBytes = source.get(resourceName);
+            if (classBytes != null) {
+                definePackageFor(name);
+                return defineClass(name, classBytes, 0, classBytes.length);
+            }
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        for (Map.Entry<String, Map<String, byte[]>> source : sources.entrySet()) {
+            if (source.getValue().containsKey(name)) {
+                return createURL(source.getKey(), name);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) throws IOException {
+        List<URL> resources = new ArrayList<>();
+
+        for (Map.Entry<String, Map<String, byte[]>> source : sources.entrySet()) {
+            if (source.getValue().containsKey(name)) {
+                URL resource = createURL(source.getKey(), name);
+                if (resource != null) {
+                    resources.add(resource);
+                }
+            }
+        }
+
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * Defines the package of a class that is about to be defined, unless it has been defined already.
+     *
+     * @param className
+     *     the fully qualified name of the class
+     */
+    private void definePackageFor(String className) {
+        int lastDot = className.lastIndexOf('.');
+        if (lastDot > 0) {
+            String packageName = className.substring(0, lastDot);
+            if (getPackage(packageName) == null) {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            }
+        }
+    }
+
+    /**
+     * Creates a URL for a resource that is handled by this class loader's protocol handler.
+     *
+     * @param sourceURI
+     *     the base URI of the source containing the resource
+     * @param name
+     *     the name of the resource
+     *
+     * @return the URL of the resource, or {@code null} if no URL could be created
+     */
+    private URL createURL(String sourceURI, String name) {
+        try {
+            return new URL(null, sourceURI + name, urlStreamHandler);
+        } catch (MalformedURLException e) {
+            LOGGER.warn(String.format("Could not create a URL for resource '%s' in '%s'", name, sourceURI), e);
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the contents of a resource by its URL.
+     *
+     * @param url
+     *     the URL of the resource, as created by {@link #createURL(String, String)}
+     *
+     * @return the contents of the resource, or {@code null} if there is no such resource
+     */
+    private byte[] getContents(URL url) {
+        String urlString = url.toString();
+
+        for (Map.Entry<String, Map<String, byte[]>> source : sources.entrySet()) {
+            if (urlString.startsWith(source.getKey())) {
+                byte[] contents = source.getValue().get(urlString.substring(source.getKey().length()));
+                if (contents != null) {
+                    return contents;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * {@link URLStreamHandler} that opens the URLs created by this class loader.
+     */
+    private class InMemoryURLStreamHandler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            byte[] contents = getContents(url);
+
+            if (contents == null) {
+                throw new FileNotFoundException(String.format("No resource '%s' in memory", url));
+            }
+
+            return new InMemoryURLConnection(url, contents);
+        }
+    }
+
+    /**
+     * {@link URLConnection} to a resource held in memory.
+     */
+    private static class InMemoryURLConnection extends URLConnection {
+        private final byte[] contents;
+
+        InMemoryURLConnection(URL url, byte[] contents) {
+            super(url);
+            this.contents = contents;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(contents);
+        }
+
+        @Override
+        public int getContentLength() {
+            return contents.length;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.lang.CharUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Implements {@link ApplicationArchive} for WARs (Web application ARchives) that are held in memory.
+ * <p/>
+ * The contents of the archive are never written to disk: pages and descriptors are read through {@link
+ * #getInputStream(String)}, and classes and resources are loaded by an {@link InMemoryClassLoader}. Consequently,
+ * {@link #getFile(String)}, {@link #getFiles(java.util.Collection)} and {@link #getPath(String)} are not supported.
+ * <p/>
+ * Entries are reported at URIs of the form {@code memory:/<name>/<entry>}.
+ *
+ * @author StefanZ
+ */
+public class InMemoryWARApplicationArchive extends ApplicationArchive {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryWARApplicationArchive.class);
+    private static final String URI_SCHEME = "memory";
+    private static final String CLASSES_DIRECTORY = "WEB-INF/classes/";
+    private static final String LIB_DIRECTORY = "WEB-INF/lib";
+    private final NavigableMap<String, byte[]> entries;
+    private final EntryIndex entryIndex;
+    private ClassLoader cachedClassLoader = null;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *     the name of the application, for instance the file name the WAR would have on disk
+     * @param entries
+     *     the contents of the WAR, keyed by their paths relative to the root of the WAR. Directories do not need to be
+     *     included; they are implied by the paths of the files in them.
+     *
+     * @throws SecurityException
+     *     if one of the paths in {@code entries} is not relative
+     */
+    public InMemoryWARApplicationArchive(String name, Map<String, byte[]> entries) {
+        super(new File(name), createRootURI(name));
+        this.entries = new TreeMap<>();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            String entryName = normalizeEntryName(entry.getKey());
+            if (entryName.length() > 0 && !entryName.endsWith("/")) {
+                this.entries.put(entryName, entry.getValue());
+            }
+        }
+        entryIndex = new EntryIndex(this.entries.keySet(), Collections.<String>emptyList());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *     the name of the application, for instance the file name the WAR would have on disk
+     * @param warInputStream
+     *     a stream of the contents of a WAR file. The stream is read entirely, but not closed.
+     *
+     * @throws IOException
+     *     if {@code warInputStream} could not be read as a zip archive
+     * @throws SecurityException
+     *     if one of the entries in the WAR has a path that is not relative
+     */
+    public InMemoryWARApplicationArchive(String name, InputStream warInputStream) throws IOException {
+        this(name, readEntries(warInputStream));
+    }
+
+    /**
+     * Reads all file entries of a zip archive into memory.
+     *
+     * @param zipInputStream
+     *     a stream of the contents of the zip archive. The stream is read entirely, but not closed.
+     *
+     * @return the contents of the file entries in the archive, keyed by their names
+     *
+     * @throws IOException
+     *     if {@code zipInputStream} could not be read as a zip archive
+     */
+    private static NavigableMap<String, byte[]> readEntries(InputStream zipInputStream) throws IOException {
+        NavigableMap<String, byte[]> zipEntries = new TreeMap<>();
+        ZipInputStream zip = new ZipInputStream(zipInputStream);
+
+        for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip.getNextEntry()) {
+            if (!zipEntry.isDirectory()) {
+                zipEntries.put(zipEntry.getName(), ByteStreams.toByteArray(zip));
+            }
+        }
+
+        return zipEntries;
+    }
+
+    /**
+     * Creates the URI of the root of an in-memory archive.
+     *
+     * @param name
+     *     the name of the application
+     *
+     * @return a URI of the form {@code memory:/<name>/}
+     */
+    private static URI createRootURI(String name) {
+        try {
+            return new URI(URI_SCHEME, null, "/" + name + "/", null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(String.format("Cannot create a URI for application '%s'", name), e);
+        }
+    }
+
+    /**
+     * Strips leading slashes from an entry name, and makes sure it does not point outside of the archive. This check is
+     * done on the name alone, as {@code relativePath} never refers to anything on disk.
+     *
+     * @param relativePath
+     *     the entry name to check
+     *
+     * @return {@code relativePath} without leading slashes
+     *
+     * @throws SecurityException
+     *     if {@code relativePath} contains a directory component consisting of only two dots, or starts with a
+     *     backslash or a drive letter
+     */
+    private static String normalizeEntryName(String relativePath) {
+        String entryName = relativePath;
+        while (entryName.startsWith("/")) {
+            entryName = entryName.substring(1);
+        }
+
+        boolean isNotRelative = entryName.startsWith("\\");
+        isNotRelative = isNotRelative || ("/" + entryName.replace('\\', '/') + "/").contains("/../");
+        isNotRelative = isNotRelative
+            || (entryName.length() > 1 && CharUtils.isAsciiAlpha(entryName.charAt(0)) && entryName.charAt(1) == ':');
+        if (isNotRelative) {
+            throw new SecurityException("Supplied paths must be relative!");
+        }
+
+        return entryName;
+    }
+
+    /**
+     * Not supported, as the contents of this archive are never written to disk.
+     *
+     * @throws UnsupportedOperationException
+     *     always
+     */
+    @Override
+    public File getFile(String relativePath) throws IOException {
+        throw new UnsupportedOperationException(
+            String.format("In-memory application archive '%s' has no files on disk", getApplicationFile().getName()));
+    }
+
+    /**
+     * Not supported, as the contents of this archive are never written to disk.
+     *
+     * @throws UnsupportedOperationException
+     *     always
+     */
+    @Override
+    public Collection<File> getFiles(Collection<URI> relativePaths) throws IOException {
+        throw new UnsupportedOperationException(
+            String.format("In-memory application archive '%s' has no files on disk", getApplicationFile().getName()));
+    }
+
+    /**
+     * Not supported, as the contents of this archive do not belong to any {@link java.nio.file.FileSystem}.
+     *
+     * @throws UnsupportedOperationException
+     *     always
+     */
+    @Override
+    public Path getPath(String relativePath) throws IOException {
+        throw new UnsupportedOperationException(
+            String.format("In-memory application archive '%s' has no file system", getApplicationFile().getName()));
+    }
+
+    /**
+     * Not supported, as the contents of this archive do not belong to any {@link java.nio.file.FileSystem}.
+     *
+     * @throws UnsupportedOperationException
+     *     always
+     */
+    @Override
+    protected Path getRootPath() throws IOException {
+        throw new UnsupportedOperationException(
+            String.format("In-memory application archive '%s' has no file system", getApplicationFile().getName()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getInputStream(String relativePath) throws IOException {
+        byte[] contents = entries.get(normalizeEntryName(relativePath));
+
+        if (contents == null) {
+            throw new FileNotFoundException(String.format("No file '%s' in application archive", relativePath));
+        }
+
+        return new ByteArrayInputStream(contents);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsEntry(String relativePath) throws IOException {
+        String entryName = null;
+        try {
+            entryName = normalizeEntryName(relativePath);
+        } catch (SecurityException e) {
+            return false;
+        }
+
+        return entryName.length() > 0 && (entryIndex.isFile(entryName) || entryIndex.isDirectory(entryName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<URI> findFilesByGlobPattern(String basePath, String wildcardPattern, boolean doRecursively)
+        throws FileNotFoundException {
+        String prefix = "";
+
+        if (basePath != null) {
+            try {
+                prefix = normalizeEntryName(basePath);
+            } catch (SecurityException e) {
+                throw new SecurityException(
+                    "It is not permitted to supply base paths containing references to parent directories ('..').");
+            }
+            if (entryIndex.isFile(prefix)) {
+                throw new IllegalArgumentException(
+                    String.format("Basepath '%s' is not a directory within the archive", basePath));
+            }
+            if (!entryIndex.isDirectory(prefix)) {
+                throw new FileNotFoundException(String.format("Basepath '%s' does not exist within archive '%s'",
+                                                              basePath, getApplicationFile().getName()));
+            }
+        }
+
+        return toRelativeURIs(
+            entryIndex.findFiles(prefix, EntryIndex.compileWildcardPattern(wildcardPattern), doRecursively));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected EntryIndex getEntryIndex() {
+        return entryIndex;
+    }
+
+    /**
+     * Creates an {@link InMemoryClassLoader} that loads classes and resources from the root of the WAR, from
+     * WEB-INF/classes and from every library in WEB-INF/lib, in that order. The libraries are read into memory when the
+     * class loader is created.
+     *
+     * @return a classloader capable of loading classes and libraries from the application.
+     */
+    @Override
+    public synchronized ClassLoader getClassLoader() {
+        if (cachedClassLoader != null) {
+            return cachedClassLoader;
+        }
+
+        Map<URI, Map<String, byte[]>> sources = new LinkedHashMap<>();
+        sources.put(getRootURI(), Collections.<String, byte[]>unmodifiableMap(entries));
+
+        Map<String, byte[]> classes = new TreeMap<>();
+        for (Map.Entry<String, byte[]> entry : getEntriesBelow(CLASSES_DIRECTORY).entrySet()) {
+            classes.put(entry.getKey().substring(CLASSES_DIRECTORY.length()), entry.getValue());
+        }
+        sources.put(resolvePath(URI.create(CLASSES_DIRECTORY)), classes);
+
+        try {
+            for (URI libFile : findFilesByGlobPattern(LIB_DIRECTORY, "*.jar", false)) {
+                try (InputStream libInputStream = getInputStream(libFile.getPath())) {
+                    sources.put(URI.create(resolvePath(libFile) + "!/"), readEntries(libInputStream));
+                } catch (IOException e) {
+                    throw new IllegalStateException(
+                        String.format("Could not read library '%s' in application archive '%s'", libFile,
+                                      getApplicationFile().getName()), e);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            LOGGER.info("No libraries in this application archive.");
+        }
+
+        cachedClassLoader = new InMemoryClassLoader(sources, this.getClass().getClassLoader());
+
+        return cachedClassLoader;
+    }
+
+    /**
+     * Drops the class loader returned by {@link #getClassLoader()}, so that the libraries it read into memory can be
+     * garbage collected.
+     *
+     * @throws IOException
+     *     if the archive could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        cachedClassLoader = null;
+        super.close();
+    }
+
+    /**
+     * Get all entries whose names start with a prefix.
+     *
+     * @param prefix
+     *     the prefix of the entry names, for instance a directory name ending with a slash
+     *
+     * @return a view of all entries whose names start with {@code prefix}
+     */
+    private NavigableMap<String, byte[]> getEntriesBelow(String prefix) {
+        return entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+}
@@ -0,0 +1,721 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.CodeSource;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Class loader for WARs that looks up classes and resources in the libraries in WEB-INF/lib through an index, rather
+ * than by asking every library in turn.
+ * <p/>
+ * When the class loader is created, the entries of every library are listed once, and an index is built from each
+ * package (the directory part of an entry name) to the libraries containing it, in class path order. Looking up a
+ * class or resource then only touches the libraries that contain its package, however many libraries there are.
+ * Likewise, the URLs passed to the constructor (the root of the WAR and WEB-INF/classes) are only searched for the
+ * packages they are known to contain, and always before the libraries.
+ * <p/>
+ * If the application archive is unpacked on demand, the libraries are read straight from the archive: it is
+ * memory-mapped and libraries that are stored in it without compression are read from the mapping. Compressed
+ * libraries are extracted once, like other entries that are unpacked on demand, and mapped from where they were
+ * extracted to, rather than inflated into the heap. These libraries have URLs of the form {@code
+ * jar:<war>!/WEB-INF/lib/<library>}, from which the library itself can be read as a stream, and resources in them have
+ * URLs of the form {@code jar:<war>!/WEB-INF/lib/<library>!/<name>}. Otherwise, the libraries are opened where they
+ * were unpacked to. Either way, {@link #getURLs()} includes the locations of the libraries, so that annotation
+ * scanners can find them.
+ * <p/>
+ * The URLs of libraries read from the application archive, and of resources in them, can only be opened through the
+ * {@link URL} instances returned by this class loader.
+ *
+ * @author StefanZ
+ * @see ApplicationArchive.UnpackMode
+ */
+public class IndexedJarClassLoader extends OnDemandClassLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedJarClassLoader.class);
+    private static final Library[] NO_LIBRARIES = new Library[0];
+    private final Set<String> localPackages;
+    private final URL[] libraryURLs;
+    private final URLStreamHandler urlStreamHandler;
+    private volatile List<Library> libraries;
+    private volatile Map<String, Library[]> packageIndex;
+    private volatile ZipIndex applicationIndex;
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param urls
+     *     the URLs to load classes and resources from before looking in the libraries
+     * @param parent
+     *     the parent class loader
+     * @param applicationArchive
+     *     the application archive containing the libraries
+     * @param libraries
+     *     the paths of the libraries within {@code applicationArchive}, relative to its root, in the order in which
+     *     they should be searched
+     * @param localPackages
+     *     the packages {@code urls} contain classes or resources in, written as directories (e.g. {@code com/example},
+     *     or the empty string for the root). May be {@code null} if unknown, in which case {@code urls} are searched
+     *     for every class and resource.
+     * @param entryPrefixes
+     *     the directories within {@code applicationArchive} that are extracted on demand, see {@link
+     *     OnDemandClassLoader#OnDemandClassLoader(java.net.URL[], ClassLoader, ApplicationArchive, String...)}. May be
+     *     empty if {@code urls} can be read in place.
+     *
+     * @throws IOException
+     *     if the application archive or one of the libraries could not be read
+     */
+    public IndexedJarClassLoader(URL[] urls, ClassLoader parent, ApplicationArchive applicationArchive,
+                                 Collection<URI> libraries, Collection<String> localPackages,
+                                 String... entryPrefixes) throws IOException {
+        super(urls, parent, applicationArchive, entryPrefixes);
+        this.urlStreamHandler = new LibraryURLStreamHandler();
+        this.localPackages = localPackages == null ? null : new HashSet<>(localPackages);
+
+        List<Library> openedLibraries = new ArrayList<>(libraries.size());
+        try {
+            if (applicationArchive.isUnpackedOnDemand()) {
+                openNestedLibraries(applicationArchive, libraries, openedLibraries);
+            } else {
+                openUnpackedLibraries(applicationArchive, libraries, openedLibraries);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Library library : openedLibraries) {
+                IOUtils.closeQuietly(library);
+            }
+            IOUtils.closeQuietly(this);
+            throw e;
+        }
+
+        this.libraryURLs = new URL[openedLibraries.size()];
+        for (int i = 0; i < libraryURLs.length; i++) {
+            libraryURLs[i] = openedLibraries.get(i).url;
+        }
+        this.libraries = Collections.unmodifiableList(openedLibraries);
+        this.packageIndex = buildPackageIndex(openedLibraries);
+    }
+
+    /**
+     * Opens libraries that are read straight from a (packed) application archive.
+     *
+     * @param applicationArchive
+     *     the application archive to read from
+     * @param libraryPaths
+     *     the paths of the libraries within the archive
+     * @param openedLibraries
+     *     the list to add the opened libraries to
+     *
+     * @throws IOException
+     *     if the archive could not be mapped, or a library could not be read
+     */
+    private void openNestedLibraries(ApplicationArchive applicationArchive, Collection<URI> libraryPaths,
+                                     List<Library> openedLibraries) throws IOException {
+        if (libraryPaths.isEmpty()) {
+            return;
+        }
+
+        File applicationFile = applicationArchive.getApplicationFile();
+        applicationIndex = ZipIndex.open(applicationFile);
+        String applicationURI = applicationFile.toURI().toString();
+        ZipIndex[] libraryIndexes = new ZipIndex[libraryPaths.size()];
+        List<URI> compressedLibraryPaths = new ArrayList<>();
+
+        int libraryNumber = 0;
+        for (URI libraryPath : libraryPaths) {
+            if (!applicationIndex.contains(libraryPath.getPath())) {
+                throw new FileNotFoundException(
+                    String.format("No library '%s' in application archive '%s'", libraryPath.getPath(),
+                                  applicationFile.getAbsolutePath()));
+            }
+            if (applicationIndex.isStored(libraryPath.getPath())) {
+                libraryIndexes[libraryNumber] = applicationIndex.getNested(libraryPath.getPath());
+            } else {
+                compressedLibraryPaths.add(libraryPath);
+            }
+            libraryNumber++;
+        }
+
+        if (compressedLibraryPaths.size() == libraryPaths.size()) {
+            // Nothing is read from the mapped archive itself
+            applicationIndex.close();
+            applicationIndex = null;
+        }
+
+        Iterator<File> extractedLibraries = compressedLibraryPaths.isEmpty()
+            ? Collections.<File>emptyIterator()
+            : applicationArchive.getFiles(compressedLibraryPaths).iterator();
+        libraryNumber = 0;
+        for (URI libraryPath : libraryPaths) {
+            ZipIndex libraryIndex = libraryIndexes[libraryNumber++];
+            if (libraryIndex == null) {
+                libraryIndex = ZipIndex.open(extractedLibraries.next());
+            }
+            String libraryLocation = applicationURI + "!/" + libraryPath.getPath();
+            openedLibraries.add(new NestedLibrary(createURL(libraryLocation), libraryLocation + "!/", libraryIndex));
+        }
+    }
+
+    /**
+     * Opens libraries that have been unpacked from the application archive.
+     *
+     * @param applicationArchive
+     *     the application archive the libraries were unpacked from
+     * @param libraryPaths
+     *     the paths of the libraries within the archive
+     * @param openedLibraries
+     *     the list to add the opened libraries to
+     *
+     * @throws IOException
+     *     if a library could not be opened
+     */
+    private static void openUnpackedLibraries(ApplicationArchive applicationArchive, Collection<URI> libraryPaths,
+                                              List<Library> openedLibraries) throws IOException {
+        for (URI libraryPath : libraryPaths) {
+            File libraryFile = applicationArchive.getFile(libraryPath.getPath());
+            openedLibraries.add(new UnpackedLibrary(libraryFile.toURI().toURL(), new ZipFile(libraryFile)));
+        }
+    }
+
+    /**
+     * Builds the index from packages to the libraries containing them.
+     *
+     * @param libraries
+     *     the libraries to index, in class path order
+     *
+     * @return the libraries containing each package, in class path order
+     */
+    private static Map<String, Library[]> buildPackageIndex(List<Library> libraries) {
+        Map<String, List<Library>> librariesByPackage = new HashMap<>();
+
+        for (Library library : libraries) {
+            for (String entryName : library.getEntryNames()) {
+                String packageName = getPackageDirectory(entryName);
+                List<Library> packageLibraries = librariesByPackage.get(packageName);
+                if (packageLibraries == null) {
+                    packageLibraries = new ArrayList<>(1);
+                    librariesByPackage.put(packageName, packageLibraries);
+                }
+                if (packageLibraries.isEmpty() || packageLibraries.get(packageLibraries.size() - 1) != library) {
+                    packageLibraries.add(library);
+                }
+            }
+        }
+
+        Map<String, Library[]> packageIndex = new HashMap<>(librariesByPackage.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Library>> entry : librariesByPackage.entrySet()) {
+            packageIndex.put(entry.getKey(), entry.getValue().toArray(NO_LIBRARIES));
+        }
+
+        return packageIndex;
+    }
+
+    /**
+     * Get the package of a class file or resource, written as a directory.
+     *
+     * @param name
+     *     the name of the class file or resource
+     *
+     * @return the directory part of {@code name}, or the empty string if it has none
+     */
+    static String getPackageDirectory(String name) {
+        int lastSlash = name.lastIndexOf('/');
+        return lastSlash == -1 ? "" : name.substring(0, lastSlash);
+    }
+
+    /**
+     * Get the URLs this class loader loads classes and resources from, including the locations of the libraries. The
+     * location of a library can be opened to read the library as a whole.
+     *
+     * @return the URLs of this class loader
+     */
+    @Override
+    public URL[] getURLs() {
+        URL[] urls = super.getURLs();
+        URL[] allURLs = new URL[urls.length + libraryURLs.length];
+
+        System.arraycopy(urls, 0, allURLs, 0, urls.length);
+        System.arraycopy(libraryURLs, 0, allURLs, urls.length, libraryURLs.length);
+        return allURLs;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String resourceName = name.replace('.', '/') + ".class";
+        String packageName = getPackageDirectory(resourceName);
+
+        if (isLocalPackage(packageName)) {
+            try {
+                return super.findClass(name);
+            } catch (ClassNotFoundException e) {
+                LOGGER.trace(String.format("Class '%s' not found outside of the libraries", name), e);
+            }
+        }
+
+        for (Library library : getLibraries(packageName)) {
+            if (library.contains(resourceName)) {
+                return defineLibraryClass(name, resourceName, library);
+            }
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        String packageName = getPackageDirectory(name);
+
+        if (isLocalPackage(packageName)) {
+            URL resource = super.findResource(name);
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        for (Library library : getLibraries(packageName)) {
+            if (library.contains(name)) {
+                return createURL(library.baseURL + name);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        String packageName = getPackageDirectory(name);
+        List<URL> resources = new ArrayList<>();
+
+        if (isLocalPackage(packageName)) {
+            resources.addAll(Collections.list(super.findResources(name)));
+        }
+
+        for (Library library : getLibraries(packageName)) {
+            if (library.contains(name)) {
+                URL resource = createURL(library.baseURL + name);
+                if (resource != null) {
+                    resources.add(resource);
+                }
+            }
+        }
+
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * Closes this class loader and all libraries it opened.
+     *
+     * @throws IOException
+     *     if the class loader or one of the libraries could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        List<Library> openedLibraries = libraries;
+        ZipIndex openedApplicationIndex = applicationIndex;
+        libraries = Collections.emptyList();
+        packageIndex = Collections.emptyMap();
+        applicationIndex = null;
+
+        try {
+            super.close();
+        } finally {
+            if (openedLibraries != null) {
+                for (Library library : openedLibraries) {
+                    IOUtils.closeQuietly(library);
+                }
+            }
+            IOUtils.closeQuietly(openedApplicationIndex);
+        }
+    }
+
+    /**
+     * Checks whether the URLs passed to the constructor need to be searched for a package.
+     *
+     * @param packageName
+     *     the package, written as a directory
+     *
+     * @return {@code true} if the URLs may contain entries in the package
+     */
+    private boolean isLocalPackage(String packageName) {
+        return localPackages == null || localPackages.contains(packageName);
+    }
+
+    /**
+     * Get the libraries that contain entries in a package.
+     *
+     * @param packageName
+     *     the package, written as a directory
+     *
+     * @return the libraries containing the package, in class path order
+     */
+    private Library[] getLibraries(String packageName) {
+        Library[] packageLibraries = packageIndex.get(packageName);
+        return packageLibraries == null ? NO_LIBRARIES : packageLibraries;
+    }
+
+    /**
+     * Defines a class whose class file is located in a library.
+     *
+     * @param name
+     *     the fully qualified name of the class
+     * @param resourceName
+     *     the name of the class file
+     * @param library
+     *     the library containing the class file
+     *
+     * @return the defined class
+     *
+     * @throws ClassNotFoundException
+     *     if the class file could not be read
+     */
+    private Class<?> defineLibraryClass(String name, String resourceName, Library library)
+        throws ClassNotFoundException {
+        byte[] classBytes = null;
+
+        try {
+            classBytes = library.getBytes(resourceName);
+            definePackageFor(name, library);
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+
+        return defineClass(name, classBytes, 0, classBytes.length, library.codeSource);
+    }
+
+    /**
+     * Defines the package of a class that is about to be defined, unless it has been defined already. The package is
+     * sealed and versioned according to the manifest of the library containing the class.
+     *
+     * @param className
+     *     the fully qualified name of the class
+     * @param library
+     *     the library containing the class
+     *
+     * @throws IOException
+     *     if the manifest of the library could not be read
+     */
+    private void definePackageFor(String className, Library library) throws IOException {
+        int lastDot = className.lastIndexOf('.');
+        if (lastDot > 0) {
+            String packageName = className.substring(0, lastDot);
+            if (getPackage(packageName) == null) {
+                Manifest manifest = library.getManifest();
+                try {
+                    if (manifest == null) {
+                        definePackage(packageName, null, null, null, null, null, null, null);
+                    } else {
+                        definePackage(packageName, manifest, library.url);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Another thread defined the package in the meantime
+                    LOGGER.debug(String.format("Package '%s' was defined concurrently", packageName), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a URL that is handled by this class loader's protocol handler.
+     *
+     * @param file
+     *     the part of the URL following {@code jar:}
+     *
+     * @return the URL, or {@code null} if no URL could be created
+     */
+    private URL createURL(String file) {
+        try {
+            return new URL("jar", "", -1, file, urlStreamHandler);
+        } catch (MalformedURLException e) {
+            LOGGER.warn(String.format("Could not create a URL for resource '%s'", file), e);
+            return null;
+        }
+    }
+
+    /**
+     * A library on the class path of the application.
+     */
+    private abstract static class Library implements Closeable {
+        final URL url;
+        final String baseURL;
+        final CodeSource codeSource;
+        private Manifest manifest;
+        private boolean manifestRead;
+
+        /**
+         * Constructor.
+         *
+         * @param url
+         *     the location of the library
+         * @param baseURL
+         *     the prefix of the URLs of resources in the library, following {@code jar:}
+         */
+        Library(URL url, String baseURL) {
+            this.url = url;
+            this.baseURL = baseURL;
+            this.codeSource = new CodeSource(url, (Certificate[]) null);
+        }
+
+        /**
+         * Get the names of all files in the library.
+         *
+         * @return the names of all files in the library
+         */
+        abstract Collection<String> getEntryNames();
+
+        /**
+         * Checks whether the library contains a file.
+         *
+         * @param name
+         *     the name of the file
+         *
+         * @return {@code true} if the library contains a file named {@code name}
+         */
+        abstract boolean contains(String name);
+
+        /**
+         * Reads a file from the library.
+         *
+         * @param name
+         *     the name of the file
+         *
+         * @return the contents of the file, or {@code null} if there is no such file
+         *
+         * @throws IOException
+         *     if the file could not be read
+         */
+        abstract byte[] getBytes(String name) throws IOException;
+
+        /**
+         * Get the manifest of the library. The manifest is read the first time it is asked for.
+         *
+         * @return the manifest, or {@code null} if the library has none
+         *
+         * @throws IOException
+         *     if the manifest could not be read
+         */
+        synchronized Manifest getManifest() throws IOException {
+            if (!manifestRead) {
+                byte[] manifestBytes = getBytes(JarFile.MANIFEST_NAME);
+                if (manifestBytes != null) {
+                    manifest = new Manifest(new ByteArrayInputStream(manifestBytes));
+                }
+                manifestRead = true;
+            }
+
+            return manifest;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * A library that is read from the application archive, or from where it was extracted to on demand.
+     */
+    private static final class NestedLibrary extends Library {
+        final ZipIndex index;
+
+        NestedLibrary(URL url, String baseURL, ZipIndex index) {
+            super(url, baseURL);
+            this.index = index;
+        }
+
+        @Override
+        Collection<String> getEntryNames() {
+            return index.getEntryNames();
+        }
+
+        @Override
+        boolean contains(String name) {
+            return index.contains(name);
+        }
+
+        @Override
+        byte[] getBytes(String name) throws IOException {
+            return index.getBytes(name);
+        }
+
+        @Override
+        public void close() {
+            index.close();
+        }
+    }
+
+    /**
+     * A library that has been unpacked from the application archive.
+     */
+    private static final class UnpackedLibrary extends Library {
+        private final ZipFile zipFile;
+
+        UnpackedLibrary(URL url, ZipFile zipFile) {
+            super(url, url + "!/");
+            this.zipFile = zipFile;
+        }
+
+        @Override
+        Collection<String> getEntryNames() {
+            List<String> entryNames = new ArrayList<>(zipFile.size());
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    entryNames.add(entry.getName());
+                }
+            }
+            return entryNames;
+        }
+
+        @Override
+        boolean contains(String name) {
+            ZipEntry entry = zipFile.getEntry(name);
+            return entry != null && !entry.isDirectory();
+        }
+
+        @Override
+        byte[] getBytes(String name) throws IOException {
+            ZipEntry entry = zipFile.getEntry(name);
+
+            if (entry == null || entry.isDirectory()) {
+                return null;
+            }
+
+            try (InputStream entryInputStream = zipFile.getInputStream(entry)) {
+                return ByteStreams.toByteArray(entryInputStream);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * {@link URLStreamHandler} that opens the URLs of libraries read from the application archive, and of resources in
+     * libraries.
+     */
+    private class LibraryURLStreamHandler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            String file = url.getFile();
+
+            for (Library library : libraries) {
+                if (library instanceof NestedLibrary && file.equals(library.url.getFile())) {
+                    return new LibraryURLConnection(url, ((NestedLibrary) library).index);
+                }
+                if (file.startsWith(library.baseURL)) {
+                    byte[] contents = library.getBytes(file.substring(library.baseURL.length()));
+                    if (contents != null) {
+                        return new ResourceURLConnection(url, contents);
+                    }
+                }
+            }
+
+            throw new FileNotFoundException(String.format("No resource '%s' in the libraries of the application", url));
+        }
+    }
+
+    /**
+     * {@link URLConnection} to a library read from the application archive, which streams the library from its
+     * mapping.
+     */
+    private static class LibraryURLConnection extends URLConnection {
+        private final ZipIndex index;
+
+        LibraryURLConnection(URL url, ZipIndex index) {
+            super(url);
+            this.index = index;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return index.openStream();
+        }
+
+        @Override
+        public int getContentLength() {
+            return index.size();
+        }
+    }
+
+    /**
+     * {@link URLConnection} to a resource in a library.
+     */
+    private static class ResourceURLConnection extends URLConnection {
+        private final byte[] contents;
+
+        ResourceURLConnection(URL url, byte[] contents) {
+            super(url);
+            this.contents = contents;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(contents);
+        }
+
+        @Override
+        public int getContentLength() {
+            return contents.length;
+        }
+    }
+}
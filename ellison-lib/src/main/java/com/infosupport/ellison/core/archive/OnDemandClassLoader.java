@@ -0,0 +1,106 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Enumeration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link URLClassLoader} for application archives that are unpacked on demand.
+ * <p/>
+ * Before looking up a class or resource, this class loader extracts the corresponding entry from the application
+ * archive (if there is one), so that only the entries that are actually used end up on disk.
+ *
+ * @author StefanZ
+ * @see ApplicationArchive.UnpackMode#ON_DEMAND
+ */
+public class OnDemandClassLoader extends URLClassLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OnDemandClassLoader.class);
+    private final ApplicationArchive applicationArchive;
+    private final String[] entryPrefixes;
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param urls
+     *     the URLs to load classes and resources from. These should point to the locations the entries of {@code
+     *     applicationArchive} are extracted to.
+     * @param parent
+     *     the parent class loader
+     * @param applicationArchive
+     *     the application archive to extract entries from
+     * @param entryPrefixes
+     *     the directories within {@code applicationArchive} that classes and resources are looked up in, relative to
+     *     the root of the archive, and ending with a slash (the root itself is denoted by the empty string)
+     */
+    public OnDemandClassLoader(URL[] urls, ClassLoader parent, ApplicationArchive applicationArchive,
+                               String... entryPrefixes) {
+        super(urls, parent);
+        this.applicationArchive = applicationArchive;
+        this.entryPrefixes = entryPrefixes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        extractEntries(name.replace('.', '/') + ".class");
+        return super.findClass(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        extractEntries(name);
+        return super.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        extractEntries(name);
+        return super.findResources(name);
+    }
+
+    /**
+     * Extracts the entry {@code name} from every directory in {@link #entryPrefixes} that contains it.
+     *
+     * @param name
+     *     the name of the class file or resource, as passed to {@link ClassLoader#getResource(String)}
+     */
+    private void extractEntries(String name) {
+        for (String entryPrefix : entryPrefixes) {
+            String entryName = entryPrefix + name;
+            try {
+                if (applicationArchive.containsEntry(entryName)) {
+                    applicationArchive.getFile(entryName);
+                }
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Could not extract '%s' from application archive '%s'", entryName,
+                                          applicationArchive.getApplicationFile().getAbsolutePath()), e);
+            }
+        }
+    }
+}
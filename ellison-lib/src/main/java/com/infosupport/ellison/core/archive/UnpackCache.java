@@ -0,0 +1,443 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A persistent, content-addressed cache of unpacked application archives.
+ * <p/>
+ * Every archive is unpacked into a directory named after the SHA-1 hash of its contents, so an archive that hasn't
+ * changed since a previous analysis (even one run by another process) doesn't have to be unpacked again. Archives that
+ * are unpacked on demand get a directory of their own (the hash followed by {@code .partial}), which only holds the
+ * entries that have been asked for so far, by this or any previous analysis. When the total size of the cache exceeds
+ * its maximum size, the least recently used entries are evicted.
+ * <p/>
+ * The cache is safe to use from concurrent analyses: <ul> <li>archives are unpacked into a temporary directory, which
+ * is then atomically renamed to its final name</li> <li>files extracted on demand are written to a temporary file,
+ * which is then atomically renamed to its final name</li> <li>an entry that is in use is protected by a shared lock on
+ * a lock file next to it, and is only evicted by whoever manages to acquire an exclusive lock on that file</li> </ul>
+ * As file locks are held on behalf of the entire JVM, the leases on entries are shared by all instances within the
+ * JVM.
+ *
+ * @author StefanZ
+ */
+public class UnpackCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnpackCache.class);
+    private static final Pattern ENTRY_NAME_PATTERN = Pattern.compile("[0-9a-f]{40}(\\.partial)?");
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+    private static final String SIZE_FILE_SUFFIX = ".size";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Map<File, Lease> LEASES = new HashMap<>();
+    private final File cacheDirectory;
+    private final long maxSize;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheDirectory
+     *     the directory to keep unpacked archives in. It is created if it doesn't exist yet.
+     * @param maxSize
+     *     the maximum total size (in bytes) of all unpacked archives in the cache. An entry that is in use is never
+     *     evicted, so the actual size may temporarily exceed this.
+     */
+    public UnpackCache(File cacheDirectory, long maxSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the directory unpacked archives are kept in.
+     *
+     * @return the cache directory
+     */
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Get the maximum total size of all unpacked archives in the cache.
+     *
+     * @return the maximum size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the unpacked contents of an application archive, unpacking it into the cache first if it isn't in there
+     * yet.
+     * <p/>
+     * The returned directory is protected from eviction until it is passed to {@link #release(java.io.File)}.
+     *
+     * @param applicationArchive
+     *     the application archive to get the unpacked contents of
+     *
+     * @return the directory containing the unpacked contents of {@code applicationArchive}. This directory must not be
+     *         modified.
+     *
+     * @throws IOException
+     *     if the archive could not be read or unpacked, or if the cache directory is not accessible
+     */
+    public File acquire(ApplicationArchive applicationArchive) throws IOException {
+        File applicationFile = applicationArchive.getApplicationFile();
+        String key = getKey(applicationArchive);
+        File entryDirectory = new File(cacheDirectory, key);
+
+        Files.createDirectories(cacheDirectory.toPath());
+        File lockFile = getLockFile(key);
+        lock(lockFile);
+        boolean acquired = false;
+
+        try {
+            if (entryDirectory.isDirectory()) {
+                LOGGER.debug("Reusing unpacked archive '{}' for '{}'", entryDirectory, applicationFile);
+            } else {
+                unpack(applicationArchive, key, entryDirectory);
+            }
+            if (!entryDirectory.setLastModified(System.currentTimeMillis())) {
+                LOGGER.debug("Could not update the last use of '{}'", entryDirectory);
+            }
+            acquired = true;
+        } finally {
+            if (!acquired) {
+                unlock(lockFile);
+            }
+        }
+
+        evict();
+
+        return entryDirectory;
+    }
+
+    /**
+     * Gets a directory to extract the entries of an application archive to on demand. If the archive has been
+     * unpacked entirely by {@link #acquire(ApplicationArchive)} before, that directory is returned, and nothing needs
+     * to be extracted. Otherwise, the returned directory holds the entries that were extracted from an archive with
+     * the same contents before.
+     * <p/>
+     * Entries must be extracted into the returned directory by writing them to a temporary file in the same directory,
+     * and then atomically renaming that to the name of the entry, as the directory may be used by several analyses at
+     * the same time. It is protected from eviction until it is passed to {@link #release(java.io.File)}.
+     *
+     * @param applicationArchive
+     *     the application archive to get the extraction directory of
+     *
+     * @return the directory to extract the entries of {@code applicationArchive} to
+     *
+     * @throws IOException
+     *     if the archive could not be read, or if the cache directory is not accessible
+     */
+    public File acquireOnDemand(ApplicationArchive applicationArchive) throws IOException {
+        String key = getKey(applicationArchive);
+        File entryDirectory = new File(cacheDirectory, key);
+
+        Files.createDirectories(cacheDirectory.toPath());
+        File lockFile = getLockFile(key);
+        lock(lockFile);
+        if (!entryDirectory.isDirectory()) {
+            unlock(lockFile);
+            key = key + PARTIAL_SUFFIX;
+            entryDirectory = new File(cacheDirectory, key);
+            lockFile = getLockFile(key);
+            lock(lockFile);
+        }
+        boolean acquired = false;
+
+        try {
+            Files.createDirectories(entryDirectory.toPath());
+            if (!entryDirectory.setLastModified(System.currentTimeMillis())) {
+                LOGGER.debug("Could not update the last use of '{}'", entryDirectory);
+            }
+            acquired = true;
+        } finally {
+            if (!acquired) {
+                unlock(lockFile);
+            }
+        }
+
+        evict();
+
+        return entryDirectory;
+    }
+
+    /**
+     * Signals that a directory returned by {@link #acquire(ApplicationArchive)} or {@link
+     * #acquireOnDemand(ApplicationArchive)} is no longer in use, so that it may be evicted. Directories that were not
+     * acquired from this cache are ignored.
+     *
+     * @param entryDirectory
+     *     the directory to release
+     */
+    public void release(File entryDirectory) {
+        if (cacheDirectory.equals(entryDirectory.getParentFile())) {
+            String key = entryDirectory.getName();
+            if (key.endsWith(PARTIAL_SUFFIX) && entryDirectory.isDirectory()) {
+                writeEntrySize(key, entryDirectory);
+            }
+            unlock(getLockFile(key));
+        }
+    }
+
+    /**
+     * Computes the key under which the unpacked contents of an archive are stored.
+     *
+     * @param applicationArchive
+     *     the archive to compute the key of
+     *
+     * @return the hexadecimal SHA-1 hash of the contents of the archive file
+     *
+     * @throws IOException
+     *     if the archive file could not be read
+     */
+    private static String getKey(ApplicationArchive applicationArchive) throws IOException {
+        return com.google.common.io.Files.hash(applicationArchive.getApplicationFile(), Hashing.sha1()).toString();
+    }
+
+    /**
+     * Unpacks an archive into the cache. The archive is first unpacked into a temporary directory within the cache
+     * directory, which is then renamed to {@code entryDirectory} in one atomic step. If another process beat us to it,
+     * the temporary directory is removed again.
+     */
+    private void unpack(ApplicationArchive applicationArchive, String key, File entryDirectory) throws IOException {
+        File temporaryDirectory = Files.createTempDirectory(cacheDirectory.toPath(), key + ".").toFile();
+
+        try {
+            applicationArchive.unpackJarInto(applicationArchive.getApplicationFile(), temporaryDirectory);
+            writeEntrySize(key, temporaryDirectory);
+            moveIntoPlace(temporaryDirectory, entryDirectory);
+            LOGGER.debug("Unpacked '{}' into '{}'", applicationArchive.getApplicationFile(), entryDirectory);
+        } finally {
+            if (temporaryDirectory.exists()) {
+                FileUtils.deleteQuietly(temporaryDirectory);
+            }
+        }
+
+        if (!entryDirectory.isDirectory()) {
+            throw new IOException(String.format("Could not add '%s' to the unpack cache at '%s'",
+                                                applicationArchive.getApplicationFile().getAbsolutePath(),
+                                                cacheDirectory.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Atomically renames a freshly unpacked directory to its final name. Losing the race against another process that
+     * unpacked the same archive is not an error.
+     */
+    private void moveIntoPlace(File temporaryDirectory, File entryDirectory) throws IOException {
+        try {
+            Files.move(temporaryDirectory.toPath(), entryDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!entryDirectory.isDirectory()) {
+                throw e;
+            }
+            LOGGER.debug("'{}' was unpacked concurrently by another process", entryDirectory);
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries that are not in use, until the total size of the cache no longer exceeds
+     * {@link #getMaxSize()}.
+     */
+    private void evict() {
+        List<File> entryDirectories = new ArrayList<>();
+        long totalSize = 0;
+        File[] files = cacheDirectory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.isDirectory() && ENTRY_NAME_PATTERN.matcher(file.getName()).matches()) {
+                entryDirectories.add(file);
+                totalSize += getEntrySize(file);
+            }
+        }
+
+        Collections.sort(entryDirectories, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+
+        for (File entryDirectory : entryDirectories) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            long entrySize = getEntrySize(entryDirectory);
+            if (tryEvict(entryDirectory)) {
+                totalSize -= entrySize;
+            }
+        }
+    }
+
+    /**
+     * Evicts a single entry, unless it is in use by this or another process.
+     *
+     * @return whether the entry was evicted
+     */
+    private boolean tryEvict(File entryDirectory) {
+        String key = entryDirectory.getName();
+        File lockFile = getLockFile(key);
+        File evictedDirectory = null;
+
+        try {
+            // Hold on to the leases while the entry is moved away, so no thread within this JVM can start using it
+            synchronized (LEASES) {
+                if (LEASES.containsKey(lockFile)) {
+                    return false;
+                }
+
+                try (FileChannel lockChannel = openLockFile(lockFile); FileLock lock = lockChannel.tryLock()) {
+                    if (lock == null) {
+                        return false;
+                    }
+                    evictedDirectory = Files.createTempDirectory(cacheDirectory.toPath(), key + ".").toFile();
+                    Files.move(entryDirectory.toPath(), evictedDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    Files.deleteIfExists(new File(cacheDirectory, key + SIZE_FILE_SUFFIX).toPath());
+                }
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            LOGGER.warn(String.format("Could not evict '%s' from the unpack cache", entryDirectory), e);
+            return false;
+        } finally {
+            if (evictedDirectory != null) {
+                FileUtils.deleteQuietly(evictedDirectory);
+            }
+        }
+
+        LOGGER.debug("Evicted '{}' from the unpack cache", entryDirectory);
+        return true;
+    }
+
+    /**
+     * Records the size of an entry, so that it doesn't have to be computed every time the cache is evicted. The size
+     * of an entry that is extracted on demand is recorded whenever it is released, as it grows while it is used.
+     */
+    private void writeEntrySize(String key, File entryDirectory) {
+        String size = Long.toString(FileUtils.sizeOfDirectory(entryDirectory));
+        try {
+            Files.write(new File(cacheDirectory, key + SIZE_FILE_SUFFIX).toPath(), size.getBytes(UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not record the size of '%s'", entryDirectory), e);
+        }
+    }
+
+    /**
+     * Get the size of an entry, as recorded when it was unpacked or last released.
+     */
+    private long getEntrySize(File entryDirectory) {
+        File sizeFile = new File(cacheDirectory, entryDirectory.getName() + SIZE_FILE_SUFFIX);
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(sizeFile.toPath()), UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return FileUtils.sizeOfDirectory(entryDirectory);
+        }
+    }
+
+    /**
+     * Takes (or shares) the lease on an entry, acquiring a shared lock on its lock file if this is the first lease
+     * within this JVM.
+     */
+    private static void lock(File lockFile) throws IOException {
+        synchronized (LEASES) {
+            Lease lease = LEASES.get(lockFile);
+
+            if (lease == null) {
+                FileChannel lockChannel = openLockFile(lockFile);
+                try {
+                    lockChannel.lock(0, Long.MAX_VALUE, true);
+                } catch (IOException | RuntimeException e) {
+                    lockChannel.close();
+                    throw e;
+                }
+                lease = new Lease(lockChannel);
+                LEASES.put(lockFile, lease);
+            }
+            lease.count++;
+        }
+    }
+
+    /**
+     * Gives back a lease on an entry, releasing the lock on its lock file if this was the last lease within this JVM.
+     */
+    private static void unlock(File lockFile) {
+        synchronized (LEASES) {
+            Lease lease = LEASES.get(lockFile);
+
+            if (lease != null) {
+                lease.count--;
+                if (lease.count == 0) {
+                    LEASES.remove(lockFile);
+                    try {
+                        lease.lockChannel.close();
+                    } catch (IOException e) {
+                        LOGGER.warn(String.format("Could not release the lock on '%s'", lockFile), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private File getLockFile(String key) {
+        return new File(cacheDirectory, key + LOCK_FILE_SUFFIX).getAbsoluteFile();
+    }
+
+    private static FileChannel openLockFile(File lockFile) throws IOException {
+        return FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * The shared lock this JVM holds on an entry, along with the number of archives using it.
+     */
+    private static class Lease {
+        private final FileChannel lockChannel;
+        private int count;
+
+        Lease(FileChannel lockChannel) {
+            this.lockChannel = lockChannel;
+        }
+    }
+}
@@ -26,18 +26,15 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.net.URLConnection;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
-
-import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Collections2;
-
 /**
  * Implements {@link ApplicationArchive} for EAR (Enterprise Archive).
  *
@@ -45,7 +42,9 @@ import com.google.common.collect.Collections2;
  */
 public class WARApplicationArchive extends ApplicationArchive {
     private static final Logger LOGGER = LoggerFactory.getLogger(WARApplicationArchive.class);
+    private static final String CLASSES_DIRECTORY = "WEB-INF/classes/";
     private ClassLoader cachedClassLoader = null;
+    private ClassLoader parentClassLoader = null;
 
     /**
      * Constructor.
@@ -62,11 +61,66 @@ public class WARApplicationArchive extends ApplicationArchive {
         super(applicationFile);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param applicationFile
+     *     the application archive file to use
+     * @param unpackMode
+     *     how the contents of the archive should be accessed
+     *
+     * @throws IOException
+     *     when there was an error opening or unpacking the application archive. Specifically, a {@link
+     *     FileNotFoundException} is thrown if {@code applicationFile} does not point to an existing file.
+     * @see ApplicationArchive#ApplicationArchive(java.io.File, ApplicationArchive.UnpackMode)
+     */
+    public WARApplicationArchive(File applicationFile, UnpackMode unpackMode) throws IOException {
+        super(applicationFile, unpackMode);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param applicationFile
+     *     the application archive file to use
+     * @param unpackMode
+     *     how the contents of the archive should be accessed
+     * @param unpackThreads
+     *     the number of threads to extract entries with
+     * @param unpackCache
+     *     the cache to take the unpacked contents of the archive from, may be {@code null}
+     *
+     * @throws IOException
+     *     when there was an error opening or unpacking the application archive. Specifically, a {@link
+     *     FileNotFoundException} is thrown if {@code applicationFile} does not point to an existing file.
+     * @see ApplicationArchive#ApplicationArchive(java.io.File, ApplicationArchive.UnpackMode, int, UnpackCache)
+     */
+    public WARApplicationArchive(File applicationFile, UnpackMode unpackMode, int unpackThreads,
+                                 UnpackCache unpackCache) throws IOException {
+        super(applicationFile, unpackMode, unpackThreads, unpackCache);
+    }
+
+    /**
+     * Constructor for WARs whose contents are already on disk.
+     *
+     * @param applicationFile
+     *     a file naming the application, used in messages
+     * @param rootDirectory
+     *     the directory containing the contents of the WAR
+     *
+     * @throws FileNotFoundException
+     *     if {@code rootDirectory} is not an existing directory
+     * @see ApplicationArchive#ApplicationArchive(java.io.File, java.nio.file.Path)
+     */
+    protected WARApplicationArchive(File applicationFile, Path rootDirectory) throws FileNotFoundException {
+        super(applicationFile, rootDirectory);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public ClassLoader getClassLoader() {
+    public synchronized ClassLoader getClassLoader() {
         ClassLoader warClassLoader = null;
         Collection<URI> libFiles = null;
 
@@ -79,8 +133,8 @@ public class WARApplicationArchive extends ApplicationArchive {
         URL classesURL = null;
 
         try {
-            mainURL = getUnpackedPath().toURI().toURL();
-            classesURL = new URL(mainURL, "WEB-INF/classes/");
+            mainURL = getRootURI().toURL();
+            classesURL = getClassesURL(mainURL);
         } catch (MalformedURLException e) {
             // This should never happen, as long as unpackJar() returns a valid path
             LOGGER.warn("Somehow, a malformed URL got into WARApplicationArchive.getClassLoader().", e);
@@ -95,13 +149,10 @@ public class WARApplicationArchive extends ApplicationArchive {
                 LOGGER.info("No libraries in this application archive.");
             }
 
-            if (libFiles != null) {
-                Collection<URL> jarURLS = Collections2.transform(libFiles, new JarURIToURLTransform());
-                urlList.addAll(jarURLS);
-            }
-            
-            warClassLoader =
-                new URLClassLoader(urlList.toArray(new URL[urlList.size()]), this.getClass().getClassLoader());
+            urlList.addAll(getAdditionalLibraryURLs());
+
+            URL[] urls = urlList.toArray(new URL[urlList.size()]);
+            warClassLoader = createIndexedJarClassLoader(urls, libFiles);
         }
 
         cachedClassLoader = warClassLoader;
@@ -110,43 +161,121 @@ public class WARApplicationArchive extends ApplicationArchive {
     }
 
     /**
-     * {@link Function} that transforms a file to a URL for which connections may <strong>not</strong> be cached.
+     * Get the class loader that is used as the parent of the class loader of this WAR.
      *
-     * @see URLConnection#setUseCaches(boolean)
-     * @see URLConnection#setDefaultUseCaches(boolean)
+     * @return the parent class loader; by default, the class loader that loaded this class
      */
-    class JarURIToURLTransform implements Function<URI, URL> {
-        @Nullable
-        @Override
-        public URL apply(@Nullable URI input) {
-            URL jarURL = null;
-            try {
-                jarURL = new URL("jar:" + resolvePath(input).toString() + "!/");
-            } catch (IOException e) {
-                LOGGER.warn(String.format("Could not add JAR '%s' to classloader for application archive '%s'",
-                                          input.toString(), getApplicationFile().getAbsolutePath()), e);
+    public ClassLoader getParentClassLoader() {
+        return parentClassLoader == null ? this.getClass().getClassLoader() : parentClassLoader;
+    }
+
+    /**
+     * Set the class loader that is used as the parent of the class loader of this WAR, for instance the class loader
+     * of the libraries of the EAR containing this WAR. This has no effect once {@link #getClassLoader()} has been
+     * called.
+     *
+     * @param parentClassLoader
+     *     the parent class loader, or {@code null} to use the class loader that loaded this class
+     */
+    public void setParentClassLoader(ClassLoader parentClassLoader) {
+        this.parentClassLoader = parentClassLoader;
+    }
+
+    /**
+     * Get the URL of the directory classes of the application are loaded from.
+     *
+     * @param mainURL
+     *     the URL of the root of the WAR
+     *
+     * @return the URL of the WEB-INF/classes directory within the WAR
+     *
+     * @throws MalformedURLException
+     *     if no URL could be created
+     */
+    protected URL getClassesURL(URL mainURL) throws MalformedURLException {
+        return new URL(mainURL, CLASSES_DIRECTORY);
+    }
+
+    /**
+     * Get the URLs of libraries that are not part of the WAR itself, but should be on the class path of the
+     * application nonetheless.
+     *
+     * @return the URLs of additional libraries; this implementation returns an empty collection
+     */
+    protected Collection<URL> getAdditionalLibraryURLs() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Closes the class loader returned by {@link #getClassLoader()}, if one was created, before releasing the resources
+     * held by the archive itself.
+     *
+     * @throws IOException
+     *     if the class loader or the archive could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (cachedClassLoader instanceof URLClassLoader) {
+                ((URLClassLoader) cachedClassLoader).close();
             }
+            cachedClassLoader = null;
+        } finally {
+            super.close();
+        }
+    }
 
+    /**
+     * Get the packages that the root of the WAR and WEB-INF/classes contain classes or resources in, so that the
+     * class loader only searches them for these packages.
+     *
+     * @return the packages, written as directories (e.g. {@code com/example}, or the empty string for the root), or
+     *         {@code null} if the class loader should search the root of the WAR and WEB-INF/classes for every class
+     *         and resource
+     */
+    protected Collection<String> findLocalPackages() {
+        Collection<String> localPackages = new HashSet<>();
 
-            /* Connection caching basically prevents deleting the
-               backing files (I dare you, remove the next block,
-               and watch your temp directory filling up).
-               Turn off connection caching for these libraries,
-               as we might want to delete them when they're no
-               longer being used. */
-            if (jarURL != null) {
-                URLConnection c = null;
-                try {
-                    c = jarURL.openConnection();
-                    c.setDefaultUseCaches(false);
-                    c.setUseCaches(false);
-                } catch (IOException e) {
-                    LOGGER.error("Caught an exception trying to open a connection to what should be an existing "
-                                     + "file. This should NEVER happen.", e);
+        try {
+            for (URI file : findFilesByGlobPattern(null, "*", true)) {
+                String path = file.getPath();
+                localPackages.add(IndexedJarClassLoader.getPackageDirectory(path));
+                if (path.startsWith(CLASSES_DIRECTORY)) {
+                    localPackages.add(IndexedJarClassLoader.getPackageDirectory(
+                        path.substring(CLASSES_DIRECTORY.length())));
                 }
             }
+        } catch (FileNotFoundException e) {
+            LOGGER.warn("Could not list the contents of this application archive.", e);
+            return null;
+        }
 
-            return jarURL;
+        return localPackages;
+    }
+
+    /**
+     * Creates a class loader that finds the classes and resources in the libraries through an index.
+     *
+     * @param urls
+     *     the URLs of the root of the WAR and of WEB-INF/classes, followed by any additional libraries
+     * @param libFiles
+     *     the libraries in WEB-INF/lib, may be {@code null}
+     *
+     * @return the created class loader
+     *
+     * @see IndexedJarClassLoader
+     */
+    private ClassLoader createIndexedJarClassLoader(URL[] urls, Collection<URI> libFiles) {
+        Collection<URI> libraries = libFiles == null ? Collections.<URI>emptyList() : libFiles;
+        String[] entryPrefixes = getUnpackMode() == UnpackMode.ON_DEMAND ? new String[] {"", CLASSES_DIRECTORY}
+            : new String[0];
+
+        try {
+            return new IndexedJarClassLoader(urls, getParentClassLoader(), this, libraries,
+                                             findLocalPackages(), entryPrefixes);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Could not read the libraries of application archive '%s'",
+                                                          getApplicationFile().getAbsolutePath()), e);
         }
     }
 }
@@ -0,0 +1,594 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only view of a zip archive held in a {@link ByteBuffer}, with an index of its entries.
+ * <p/>
+ * The central directory of the archive is parsed once, when the index is created. After that, an entry is read by
+ * jumping straight to its data: stored entries are copied out of the buffer, and deflated entries are inflated into a
+ * new array. A jar that is stored without compression in another archive can be indexed in place, see {@link
+ * #getNested(String)}; a compressed one has to be extracted first.
+ * <p/>
+ * An index created by {@link #open(File)} memory-maps the archive, and {@link #close()} unmaps it again. Once the
+ * index is closed, reading an entry from it, or from an index nested in it, fails with an {@link IOException} rather
+ * than touching memory that is no longer mapped.
+ * <p/>
+ * Instances are safe for use by multiple threads, as every read works on its own duplicate of the buffer.
+ *
+ * @author StefanZ
+ */
+final class ZipIndex implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZipIndex.class);
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+    private static final Charset ENTRY_NAME_CHARSET = Charset.forName("UTF-8");
+    private final ByteBuffer data;
+    private final Map<String, Entry> entries;
+    private final Mapping mapping;
+    private final boolean ownsMapping;
+
+    /**
+     * Constructor.
+     *
+     * @param data
+     *     the contents of the zip archive. The buffer's contents should not be changed afterwards; its position and
+     *     limit are not used.
+     *
+     * @throws IOException
+     *     if {@code data} does not contain a valid zip archive
+     */
+    ZipIndex(ByteBuffer data) throws IOException {
+        this(data, new Mapping(null), true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param data
+     *     the contents of the zip archive
+     * @param mapping
+     *     the mapping {@code data} is part of
+     * @param ownsMapping
+     *     whether closing this index should close {@code mapping}
+     *
+     * @throws IOException
+     *     if {@code data} does not contain a valid zip archive
+     */
+    private ZipIndex(ByteBuffer data, Mapping mapping, boolean ownsMapping) throws IOException {
+        this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.data.clear();
+        this.entries = Collections.unmodifiableMap(readCentralDirectory(this.data));
+        this.mapping = mapping;
+        this.ownsMapping = ownsMapping;
+    }
+
+    /**
+     * Creates an index of a zip archive on disk. The file is memory-mapped rather than read, until the index is
+     * closed.
+     *
+     * @param zipFile
+     *     the zip archive to index
+     *
+     * @return the index of {@code zipFile}
+     *
+     * @throws IOException
+     *     if {@code zipFile} could not be mapped, or is not a valid zip archive
+     */
+    static ZipIndex open(File zipFile) throws IOException {
+        ByteBuffer mappedData;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(zipFile, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Zip archive '%s' is too large to be mapped into memory",
+                                                    zipFile.getAbsolutePath()));
+            }
+
+            mappedData = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            return new ZipIndex(mappedData, new Mapping(mappedData), true);
+        } catch (IOException | RuntimeException e) {
+            unmap(mappedData);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses the central directory of a zip archive.
+     *
+     * @param data
+     *     the contents of the zip archive, in little-endian byte order
+     *
+     * @return all file entries of the archive, keyed by their names, in the order of the central directory
+     *
+     * @throws IOException
+     *     if no valid central directory could be found
+     */
+    private static Map<String, Entry> readCentralDirectory(ByteBuffer data) throws IOException {
+        int end = findEndOfCentralDirectory(data);
+        int entryCount = data.getShort(end + 10) & 0xffff;
+        long centralDirectoryOffset = data.getInt(end + 16) & 0xffffffffL;
+
+        if (entryCount == 0xffff || centralDirectoryOffset == 0xffffffffL) {
+            throw new IOException("Zip64 archives are not supported");
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>(entryCount * 4 / 3 + 1);
+        int position = (int) centralDirectoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            if (position + CENTRAL_HEADER_LENGTH > data.capacity()
+                || data.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid central directory entry in zip archive");
+            }
+
+            int method = data.getShort(position + 10) & 0xffff;
+            long compressedSize = data.getInt(position + 20) & 0xffffffffL;
+            long size = data.getInt(position + 24) & 0xffffffffL;
+            int nameLength = data.getShort(position + 28) & 0xffff;
+            int extraLength = data.getShort(position + 30) & 0xffff;
+            int commentLength = data.getShort(position + 32) & 0xffff;
+            long localHeaderOffset = data.getInt(position + 42) & 0xffffffffL;
+            String name = readString(data, position + CENTRAL_HEADER_LENGTH, nameLength);
+
+            if (!name.endsWith("/")) {
+                entries.put(name, new Entry(localHeaderOffset, method, compressedSize, size));
+            }
+            position += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Finds the end of central directory record, which is located at the end of the archive, followed only by the
+     * archive comment.
+     *
+     * @param data
+     *     the contents of the zip archive, in little-endian byte order
+     *
+     * @return the position of the end of central directory record
+     *
+     * @throws IOException
+     *     if there is no end of central directory record
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer data) throws IOException {
+        int lowestPosition = Math.max(0, data.capacity() - END_LENGTH - MAX_COMMENT_LENGTH);
+
+        for (int position = data.capacity() - END_LENGTH; position >= lowestPosition; position--) {
+            if (data.getInt(position) == END_SIGNATURE) {
+                return position;
+            }
+        }
+
+        throw new IOException("Not a zip archive: no end of central directory record found");
+    }
+
+    /**
+     * Decodes an entry name.
+     *
+     * @param data
+     *     the buffer to read from
+     * @param position
+     *     the position of the first byte of the name
+     * @param length
+     *     the number of bytes in the name
+     *
+     * @return the decoded name
+     */
+    private static String readString(ByteBuffer data, int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = data.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, ENTRY_NAME_CHARSET);
+    }
+
+    /**
+     * Checks whether the archive contains a file.
+     *
+     * @param name
+     *     the name of the entry, relative to the root of the archive, without a leading slash
+     *
+     * @return {@code true} if the archive contains a file named {@code name}
+     */
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Get the names of all files in the archive.
+     *
+     * @return the names of all files in the archive, in the order in which they appear in its central directory
+     */
+    Collection<String> getEntryNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * Checks whether an entry is stored in the archive without compression.
+     *
+     * @param name
+     *     the name of the entry
+     *
+     * @return {@code true} if the archive contains a file named {@code name} that is not compressed
+     */
+    boolean isStored(String name) {
+        Entry entry = entries.get(name);
+        return entry != null && entry.method == ZipEntry.STORED;
+    }
+
+    /**
+     * Indexes a zip archive that is stored in this archive without compression. The nested index reads from the
+     * buffer of this archive, without copying it, and can no longer be read from once this index is closed.
+     *
+     * @param name
+     *     the name of the entry holding the nested archive
+     *
+     * @return the index of the nested archive
+     *
+     * @throws IOException
+     *     if there is no such entry, it is compressed, or it is not a valid zip archive
+     */
+    ZipIndex getNested(String name) throws IOException {
+        Entry entry = entries.get(name);
+
+        if (entry == null || entry.method != ZipEntry.STORED) {
+            throw new IOException(String.format("Zip entry '%s' is not stored without compression", name));
+        }
+
+        acquireReadLock();
+        try {
+            return new ZipIndex(getCompressedData(name, entry).slice(), mapping, false);
+        } finally {
+            mapping.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the contents of an entry into a new array.
+     *
+     * @param name
+     *     the name of the entry
+     *
+     * @return the contents of the entry, or {@code null} if there is no such entry
+     *
+     * @throws IOException
+     *     if the entry could not be read, or the index has been closed
+     */
+    byte[] getBytes(String name) throws IOException {
+        Entry entry = entries.get(name);
+
+        if (entry == null) {
+            return null;
+        }
+
+        byte[] contents;
+        acquireReadLock();
+        try {
+            ByteBuffer compressedData = getCompressedData(name, entry);
+            contents = new byte[compressedData.remaining()];
+            compressedData.get(contents);
+        } finally {
+            mapping.lock.readLock().unlock();
+        }
+
+        return entry.method == ZipEntry.STORED ? contents : inflate(name, entry, contents);
+    }
+
+    /**
+     * Get the size of the archive.
+     *
+     * @return the size of the archive, in bytes
+     */
+    int size() {
+        return data.capacity();
+    }
+
+    /**
+     * Opens a stream that reads the archive as a whole.
+     *
+     * @return a stream over the bytes of the archive, which fails with an {@link IOException} once the index is
+     *         closed
+     */
+    InputStream openStream() {
+        return new ArchiveInputStream(data.duplicate());
+    }
+
+    /**
+     * Closes this index. If it mapped its archive into memory, the archive is unmapped, which also ends the use of
+     * the indexes nested in it. Closing a nested index has no effect.
+     */
+    @Override
+    public void close() {
+        if (!ownsMapping) {
+            return;
+        }
+
+        mapping.lock.writeLock().lock();
+        try {
+            if (!mapping.closed) {
+                mapping.closed = true;
+                if (mapping.mappedData != null) {
+                    unmap(mapping.mappedData);
+                }
+            }
+        } finally {
+            mapping.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Acquires the read lock of the mapping, so that it cannot be unmapped while it is read from. The caller has to
+     * release the lock when done.
+     *
+     * @throws IOException
+     *     if the index has been closed, in which case the lock is not held
+     */
+    private void acquireReadLock() throws IOException {
+        mapping.lock.readLock().lock();
+        if (mapping.closed) {
+            mapping.lock.readLock().unlock();
+            throw new IOException("Zip archive has been closed");
+        }
+    }
+
+    /**
+     * Unmaps a memory-mapped buffer right away, rather than when it is garbage collected, so that the file it maps
+     * does not stay mapped (and, on Windows, locked) for longer than needed. There is no public API for this, so the
+     * JDK internals that release the buffer are called reflectively: {@code sun.misc.Unsafe.invokeCleaner} on Java 9
+     * and later, and the buffer's cleaner before that. If neither is available, the buffer is left to the garbage
+     * collector.
+     * <p/>
+     * The buffer must not be accessed after it has been unmapped.
+     *
+     * @param mappedData
+     *     the buffer returned by {@link FileChannel#map(FileChannel.MapMode, long, long)}
+     */
+    private static void unmap(ByteBuffer mappedData) {
+        try {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), mappedData);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = mappedData.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(mappedData);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Could not unmap zip archive, leaving it to the garbage collector", e);
+        }
+    }
+
+    /**
+     * Get the compressed data of an entry.
+     *
+     * @param name
+     *     the name of the entry, used in messages
+     * @param entry
+     *     the entry to read
+     *
+     * @return a new buffer whose position and limit delimit the compressed data of {@code entry}
+     *
+     * @throws IOException
+     *     if the local header of the entry is invalid
+     */
+    private ByteBuffer getCompressedData(String name, Entry entry) throws IOException {
+        ByteBuffer buffer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (entry.localHeaderOffset + LOCAL_HEADER_LENGTH > buffer.capacity()
+            || buffer.getInt((int) entry.localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException(String.format("Invalid local header for zip entry '%s'", name));
+        }
+
+        int header = (int) entry.localHeaderOffset;
+        long start = header + LOCAL_HEADER_LENGTH + (buffer.getShort(header + 26) & 0xffff)
+            + (buffer.getShort(header + 28) & 0xffff);
+        if (start + entry.compressedSize > buffer.capacity()) {
+            throw new IOException(String.format("Zip entry '%s' extends past the end of the archive", name));
+        }
+
+        buffer.limit((int) (start + entry.compressedSize));
+        buffer.position((int) start);
+        return buffer;
+    }
+
+    /**
+     * Inflates the contents of a deflated entry.
+     *
+     * @param name
+     *     the name of the entry, used in messages
+     * @param entry
+     *     the entry to inflate
+     * @param input
+     *     the compressed data of the entry
+     *
+     * @return the inflated contents
+     *
+     * @throws IOException
+     *     if the entry uses an unsupported compression method, or its data is corrupt
+     */
+    private static byte[] inflate(String name, Entry entry, byte[] input) throws IOException {
+        if (entry.method != ZipEntry.DEFLATED) {
+            throw new IOException(
+                String.format("Zip entry '%s' uses unsupported compression method %d", name, entry.method));
+        }
+        if (entry.size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Zip entry '%s' is too large to be read into memory", name));
+        }
+
+        byte[] contents = new byte[(int) entry.size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            boolean paddingSupplied = false;
+            while (length < contents.length && !inflater.finished()) {
+                int inflated = inflater.inflate(contents, length, contents.length - length);
+                if (inflated == 0) {
+                    // Inflaters in "nowrap" mode may need one byte past the end of the compressed data
+                    if (paddingSupplied || !inflater.needsInput()) {
+                        throw new IOException(String.format("Unexpected end of zip entry '%s'", name));
+                    }
+                    inflater.setInput(new byte[1]);
+                    paddingSupplied = true;
+                }
+                length += inflated;
+            }
+            if (length != contents.length) {
+                throw new IOException(String.format("Unexpected end of zip entry '%s'", name));
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(String.format("Corrupt data in zip entry '%s'", name), e);
+        } finally {
+            inflater.end();
+        }
+
+        return contents;
+    }
+
+    /**
+     * The memory an archive, and the archives nested in it, are read from, with the lock that keeps it from being
+     * unmapped while it is read.
+     */
+    private static final class Mapping {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final ByteBuffer mappedData;
+        boolean closed;
+
+        /**
+         * Constructor.
+         *
+         * @param mappedData
+         *     the mapped buffer to unmap when the mapping is closed, or {@code null} if the archive is not mapped
+         */
+        Mapping(ByteBuffer mappedData) {
+            this.mappedData = mappedData;
+        }
+    }
+
+    /**
+     * {@link InputStream} reading the remaining contents of a buffer, so that archives can be streamed without copying
+     * them. Every read holds the read lock of the mapping.
+     */
+    private final class ArchiveInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ArchiveInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            acquireReadLock();
+            try {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            } finally {
+                mapping.lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            acquireReadLock();
+            try {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            } finally {
+                mapping.lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.min(Math.max(count, 0), buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * The location and size of an entry's data, as recorded in the central directory.
+     */
+    private static final class Entry {
+        final long localHeaderOffset;
+        final int method;
+        final long compressedSize;
+        final long size;
+
+        Entry(long localHeaderOffset, int method, long compressedSize, long size) {
+            this.localHeaderOffset = localHeaderOffset;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+    }
+}
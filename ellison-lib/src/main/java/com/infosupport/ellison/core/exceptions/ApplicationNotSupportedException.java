@@ -37,4 +37,18 @@ public class ApplicationNotSupportedException extends Exception {
     public ApplicationNotSupportedException(String message) {
         super(message);
     }
+
+    /**
+     * Constructor.
+     *
+     * @param message
+     *     the message that should accompany the exception
+     * @param cause
+     *     the cause of the exception
+     *
+     * @see Exception#Exception(String, Throwable)
+     */
+    public ApplicationNotSupportedException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
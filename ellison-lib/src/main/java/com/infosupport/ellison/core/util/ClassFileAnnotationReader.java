@@ -0,0 +1,390 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a class-level annotation straight from the bytes of class files, without loading the classes.
+ * <p/>
+ * Class files are first searched for the descriptor of the annotation type, which has to be in the constant pool of
+ * every class annotated with it. Only the class files that contain it are parsed: the constant pool is read, fields
+ * and methods are skipped, and the {@code RuntimeVisibleAnnotations} attribute of the class is searched for the
+ * annotation. Only annotations with runtime retention can be found this way.
+ *
+ * @author StefanZ
+ */
+public class ClassFileAnnotationReader {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+    private final String annotationDescriptor;
+    private final byte[] annotationDescriptorBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param annotationClassName
+     *     the fully qualified name of the annotation type to look for, e.g. {@code javax.annotation.ManagedBean}
+     */
+    public ClassFileAnnotationReader(String annotationClassName) {
+        this.annotationDescriptor = "L" + annotationClassName.replace('.', '/') + ";";
+        this.annotationDescriptorBytes = annotationDescriptor.getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Checks whether a class file may be annotated with the annotation, by searching it for the descriptor of the
+     * annotation type. This is much cheaper than {@link #read(byte[])}, and never gives false negatives.
+     *
+     * @param classFile
+     *     the contents of the class file
+     *
+     * @return {@code false} if the class file is certainly not annotated with the annotation
+     */
+    public boolean mayBeAnnotated(byte[] classFile) {
+        byte first = annotationDescriptorBytes[0];
+        int last = classFile.length - annotationDescriptorBytes.length;
+
+        for (int i = 0; i <= last; i++) {
+            if (classFile[i] == first && matchesAt(classFile, i)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether the descriptor of the annotation type is found at a position in a class file.
+     *
+     * @param classFile
+     *     the contents of the class file
+     * @param position
+     *     the position to check
+     *
+     * @return {@code true} if the class file contains the descriptor at {@code position}
+     */
+    private boolean matchesAt(byte[] classFile, int position) {
+        for (int j = 1; j < annotationDescriptorBytes.length; j++) {
+            if (classFile[position + j] != annotationDescriptorBytes[j]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the annotation from a class file.
+     *
+     * @param classFile
+     *     the contents of the class file
+     *
+     * @return {@code null} if the class is not annotated with the annotation. Otherwise, a pair consisting of the
+     *         binary name of the class (e.g. {@code com.example.Outer$Inner}) and the elements explicitly set in the
+     *         annotation. Elements of primitive types and strings are mapped to their values, enum constants to their
+     *         names, and classes to their descriptors; elements whose values are annotations or arrays are left out.
+     *
+     * @throws IOException
+     *     if {@code classFile} is not a valid class file
+     */
+    public Pair<String, Map<String, Object>> read(byte[] classFile) throws IOException {
+        if (!mayBeAnnotated(classFile)) {
+            return null;
+        }
+
+        try {
+            return parse(classFile);
+        } catch (ClassCastException | IndexOutOfBoundsException | NullPointerException e) {
+            // Constant pool indexes pointing at the wrong kind of constant, or outside of the constant pool
+            throw new IOException("Invalid class file", e);
+        }
+    }
+
+    /**
+     * Parses a class file that may contain the annotation.
+     *
+     * @param classFile
+     *     the contents of the class file
+     *
+     * @return see {@link #read(byte[])}
+     *
+     * @throws IOException
+     *     if {@code classFile} is not a valid class file
+     */
+    private Pair<String, Map<String, Object>> parse(byte[] classFile) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+
+        Object[] constantPool = readConstantPool(input);
+        input.readUnsignedShort();
+        String className = ((String) constantPool[(Integer) constantPool[input.readUnsignedShort()]]).replace('/', '.');
+        input.readUnsignedShort();
+        skipFully(input, 2 * input.readUnsignedShort());
+        skipMembers(input);
+        skipMembers(input);
+
+        int attributeCount = input.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = (String) constantPool[input.readUnsignedShort()];
+            int attributeLength = input.readInt();
+
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+                Map<String, Object> elements = readAnnotations(input, constantPool);
+                return elements == null ? null : new Pair<>(className, elements);
+            }
+            skipFully(input, attributeLength);
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the constant pool of a class file. Strings are stored as {@link String}s, numbers as their boxed values,
+     * and class and string constants as the {@link Integer} index of their name. Other constants are not stored.
+     *
+     * @param input
+     *     the class file, positioned at the constant pool count
+     *
+     * @return the constant pool, indexed like in the class file
+     *
+     * @throws IOException
+     *     if the constant pool could not be read
+     */
+    private static Object[] readConstantPool(DataInputStream input) throws IOException {
+        Object[] constantPool = new Object[input.readUnsignedShort()];
+
+        for (int i = 1; i < constantPool.length; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    constantPool[i] = input.readUTF();
+                    break;
+                case CONSTANT_INTEGER:
+                    constantPool[i] = input.readInt();
+                    break;
+                case CONSTANT_FLOAT:
+                    constantPool[i] = input.readFloat();
+                    break;
+                case CONSTANT_LONG:
+                    constantPool[i++] = input.readLong();
+                    break;
+                case CONSTANT_DOUBLE:
+                    constantPool[i++] = input.readDouble();
+                    break;
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                    constantPool[i] = input.readUnsignedShort();
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    skipFully(input, 2);
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    skipFully(input, 3);
+                    break;
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    skipFully(input, 4);
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown constant pool tag %d at index %d", tag, i));
+            }
+        }
+
+        return constantPool;
+    }
+
+    /**
+     * Skips the fields or the methods of a class file, including their attributes.
+     *
+     * @param input
+     *     the class file, positioned at the field or method count
+     *
+     * @throws IOException
+     *     if the class file ends prematurely
+     */
+    private static void skipMembers(DataInputStream input) throws IOException {
+        int memberCount = input.readUnsignedShort();
+
+        for (int i = 0; i < memberCount; i++) {
+            skipFully(input, 6);
+            int attributeCount = input.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                skipFully(input, 2);
+                skipFully(input, input.readInt());
+            }
+        }
+    }
+
+    /**
+     * Searches a {@code RuntimeVisibleAnnotations} attribute for the annotation.
+     *
+     * @param input
+     *     the class file, positioned at the annotation count of the attribute
+     * @param constantPool
+     *     the constant pool of the class file
+     *
+     * @return the elements of the annotation, or {@code null} if the attribute does not contain it
+     *
+     * @throws IOException
+     *     if the attribute could not be read
+     */
+    private Map<String, Object> readAnnotations(DataInputStream input, Object[] constantPool) throws IOException {
+        int annotationCount = input.readUnsignedShort();
+
+        for (int i = 0; i < annotationCount; i++) {
+            String type = (String) constantPool[input.readUnsignedShort()];
+            boolean found = annotationDescriptor.equals(type);
+            Map<String, Object> elements = new HashMap<>();
+            int elementCount = input.readUnsignedShort();
+
+            for (int j = 0; j < elementCount; j++) {
+                String elementName = (String) constantPool[input.readUnsignedShort()];
+                Object value = readElementValue(input, constantPool);
+                if (value != null) {
+                    elements.put(elementName, value);
+                }
+            }
+            if (found) {
+                return elements;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the value of an annotation element.
+     *
+     * @param input
+     *     the class file, positioned at the tag of the element value
+     * @param constantPool
+     *     the constant pool of the class file
+     *
+     * @return the value of the element, or {@code null} if it is an annotation or an array
+     *
+     * @throws IOException
+     *     if the element value could not be read
+     */
+    private Object readElementValue(DataInputStream input, Object[] constantPool) throws IOException {
+        char tag = (char) input.readUnsignedByte();
+
+        switch (tag) {
+            case 'B':
+                return ((Integer) constantPool[input.readUnsignedShort()]).byteValue();
+            case 'C':
+                return (char) ((Integer) constantPool[input.readUnsignedShort()]).intValue();
+            case 'S':
+                return ((Integer) constantPool[input.readUnsignedShort()]).shortValue();
+            case 'Z':
+                return ((Integer) constantPool[input.readUnsignedShort()]) != 0;
+            case 'I':
+            case 'J':
+            case 'F':
+            case 'D':
+            case 's':
+            case 'c':
+                return constantPool[input.readUnsignedShort()];
+            case 'e':
+                input.readUnsignedShort();
+                return constantPool[input.readUnsignedShort()];
+            case '@':
+                skipAnnotation(input, constantPool);
+                return null;
+            case '[':
+                int valueCount = input.readUnsignedShort();
+                for (int i = 0; i < valueCount; i++) {
+                    readElementValue(input, constantPool);
+                }
+                return null;
+            default:
+                throw new IOException(String.format("Unknown element value tag '%s'", tag));
+        }
+    }
+
+    /**
+     * Skips a nested annotation.
+     *
+     * @param input
+     *     the class file, positioned at the type of the annotation
+     * @param constantPool
+     *     the constant pool of the class file
+     *
+     * @throws IOException
+     *     if the annotation could not be read
+     */
+    private void skipAnnotation(DataInputStream input, Object[] constantPool) throws IOException {
+        input.readUnsignedShort();
+        int elementCount = input.readUnsignedShort();
+
+        for (int i = 0; i < elementCount; i++) {
+            input.readUnsignedShort();
+            readElementValue(input, constantPool);
+        }
+    }
+
+    /**
+     * Skips a number of bytes, failing if the class file ends before that.
+     *
+     * @param input
+     *     the class file
+     * @param byteCount
+     *     the number of bytes to skip
+     *
+     * @throws IOException
+     *     if fewer than {@code byteCount} bytes are left
+     */
+    private static void skipFully(DataInputStream input, int byteCount) throws IOException {
+        if (input.skipBytes(byteCount) != byteCount) {
+            throw new IOException("Unexpected end of class file");
+        }
+    }
+}
@@ -31,9 +31,55 @@ public final class Constants {
     public static final String TEMP_DIR_PREFIX = "el-static-checker_";
 
     /**
-     * The size of the buffer used to unpack files in JARs.
+     * The suggested maximum total size (in bytes) of the unpacked archives kept in an unpack cache, see {@link
+     * com.infosupport.ellison.core.archive.ApplicationArchiveFactory#setUnpackCache}. No cache is used by default.
      */
-    public static final int UNPACK_BUFFER_SIZE = 4096;
+    public static final long DEFAULT_UNPACK_CACHE_SIZE = 1024L * 1024 * 1024;
+
+    /**
+     * The suggested maximum total size (in bytes) of the indexes kept in an annotation index cache, see {@link
+     * com.infosupport.ellison.core.archive.ApplicationArchiveFactory#setAnnotationIndexCache}. No cache is used by
+     * default.
+     */
+    public static final long DEFAULT_ANNOTATION_INDEX_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The size of the buffer used to unpack files in JARs. Every unpack thread allocates one buffer of this size when
+     * it starts, which it reuses for all files it unpacks.
+     */
+    public static final int UNPACK_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The default number of threads used to unpack files in JARs.
+     */
+    public static final int DEFAULT_UNPACK_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default number of threads used to check the web modules of an enterprise application.
+     */
+    public static final int DEFAULT_MODULE_CHECK_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default number of threads used to scan the classes and libraries of an application for annotations.
+     */
+    public static final int DEFAULT_ANNOTATION_SCAN_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default number of threads used to read the resource bundles of an application.
+     */
+    public static final int DEFAULT_BUNDLE_READ_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default number of threads used to resolve the expressions of an application while its pages are being
+     * parsed, see {@link com.infosupport.ellison.core.ELApplicationChecker#setPipelined(boolean)}.
+     */
+    public static final int DEFAULT_RESOLVE_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of parsed pages whose expressions may wait to be resolved while pages are being parsed. Parsing
+     * pauses when this many pages are waiting, which bounds the number of expressions held in memory.
+     */
+    public static final int PIPELINE_QUEUE_CAPACITY = 64;
 
     /**
      * Constructor. This is private, as this is a utility class.
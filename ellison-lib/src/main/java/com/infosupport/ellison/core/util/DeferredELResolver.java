@@ -0,0 +1,146 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.util;
+
+import com.infosupport.ellison.core.api.StaticELResolver;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.el.ELContext;
+
+/**
+ * A {@link StaticELResolver} that defers creating the resolver it delegates to until it is needed.
+ * <p/>
+ * The delegate is created by a factory, either in the background once {@link #start(Executor)} has been called, or
+ * in the thread of the first query that reaches it. In both cases it is created only once, with the context class
+ * loader of the thread that created this resolver, as resolvers of web applications usually look up their
+ * configuration through it. Queries that arrive while the delegate is being created wait for it.
+ * <p/>
+ * The kinds of bases the delegate handles have to be given up front, so that an {@link ELResolverChain} can pass
+ * queries by without creating the delegate.
+ *
+ * @param <T>
+ *     the type of the resolver that is delegated to
+ *
+ * @author StefanZ
+ */
+public class DeferredELResolver<T extends StaticELResolver> extends StaticELResolver {
+    private final FutureTask<T> creation;
+    private final Class<?>[] baseTypes;
+
+    /**
+     * Constructor.
+     *
+     * @param factory
+     *     creates the resolver to delegate to
+     * @param baseTypes
+     *     the kinds of bases the created resolver handles, see {@link StaticELResolver#getBaseTypes()}. May be {@code
+     *     null} if it may handle any base.
+     */
+    public DeferredELResolver(final Callable<T> factory, Class<?>[] baseTypes) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        this.creation = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                Thread thread = Thread.currentThread();
+                ClassLoader originalClassLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(contextClassLoader);
+                try {
+                    return factory.call();
+                } finally {
+                    thread.setContextClassLoader(originalClassLoader);
+                }
+            }
+        });
+        this.baseTypes = baseTypes == null ? null : baseTypes.clone();
+    }
+
+    /**
+     * Starts creating the resolver to delegate to in the background. This has no effect if it is already being
+     * created.
+     *
+     * @param executor
+     *     the executor to create the resolver with
+     */
+    public void start(Executor executor) {
+        executor.execute(creation);
+    }
+
+    /**
+     * Get the resolver to delegate to, creating it in the calling thread if that hasn't been started yet, and waiting
+     * for it to be created otherwise.
+     *
+     * @return the created resolver
+     *
+     * @throws IllegalStateException
+     *     if the resolver could not be created, or the calling thread was interrupted while waiting for it
+     */
+    public T get() {
+        creation.run();
+
+        try {
+            return creation.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Could not create resolver", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for resolver to be created", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the base types given to the constructor
+     */
+    @Override
+    public Class<?>[] getBaseTypes() {
+        return baseTypes == null ? null : baseTypes.clone();
+    }
+
+    /**
+     * Cancels creating the resolver to delegate to, if that hasn't finished yet. If the resolver is being created,
+     * the thread creating it is interrupted; this does not wait for it to stop. Queries that reach this resolver
+     * afterwards fail.
+     */
+    @Override
+    public void close() {
+        creation.cancel(true);
+    }
+
+    /**
+     * Passes the query on to the resolver delegated to, once it has been created.
+     *
+     * @see StaticELResolver#getValue(javax.el.ELContext, Object, Object)
+     */
+    @Override
+    public Object getValue(ELContext context, Object base, Object property) {
+        return get().getValue(context, base, property);
+    }
+}
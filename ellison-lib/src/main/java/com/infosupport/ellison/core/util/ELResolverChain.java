@@ -22,7 +22,11 @@ package com.infosupport.ellison.core.util;
 import com.infosupport.ellison.core.api.StaticELResolver;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.el.ELContext;
 
 /**
@@ -31,12 +35,16 @@ import javax.el.ELContext;
  * All child resolvers will be tried to resolve a particular query, until either {@code context.isPropertyResolved()}
  * becomes true, or all chain resolvers failed to resolve the query.
  * <p/>
- * Note that child resolvers are queried in the order they were added.
+ * Note that child resolvers are queried in the order they were added. Only the children that handle the kind of base
+ * of a query (see {@link StaticELResolver#getBaseTypes()}) are tried. Which children these are is worked out once per
+ * class of base, so most queries go straight to the one resolver that can resolve them.
  *
  * @author StefanZ
  */
 public class ELResolverChain extends StaticELResolver {
+    private static final StaticELResolver[] NO_RESOLVERS = new StaticELResolver[0];
     private List<StaticELResolver> elResolverList;
+    private final ConcurrentMap<Class<?>, StaticELResolver[]> resolversByBaseType = new ConcurrentHashMap<>();
 
     /**
      * No-argument constructor.
@@ -46,18 +54,96 @@ public class ELResolverChain extends StaticELResolver {
     }
 
     /**
-     * Adds a resolver to the list of this chain's children.
+     * Adds a resolver to the list of this chain's children. All resolvers should be added before the chain is used to
+     * resolve queries from multiple threads.
      *
      * @param childResolver
      *     The resolver to add.
      */
     public void addResolver(StaticELResolver childResolver) {
         elResolverList.add(childResolver);
+        resolversByBaseType.clear();
+    }
+
+    /**
+     * Closes all children of this chain, in the order they were added.
+     */
+    @Override
+    public void close() {
+        for (StaticELResolver staticELResolver : elResolverList) {
+            staticELResolver.close();
+        }
+    }
+
+    /**
+     * Get the kinds of bases the children of this chain handle.
+     *
+     * @return the base types of all children, or {@code null} if any of them may handle any base
+     */
+    @Override
+    public Class<?>[] getBaseTypes() {
+        Set<Class<?>> baseTypes = new LinkedHashSet<>();
+
+        for (StaticELResolver staticELResolver : elResolverList) {
+            Class<?>[] childBaseTypes = staticELResolver.getBaseTypes();
+            if (childBaseTypes == null) {
+                return null;
+            }
+            for (Class<?> childBaseType : childBaseTypes) {
+                baseTypes.add(childBaseType);
+            }
+        }
+
+        return baseTypes.toArray(new Class<?>[baseTypes.size()]);
+    }
+
+    /**
+     * Get the children that handle a kind of base, in the order they were added.
+     *
+     * @param baseType
+     *     the class of the base, or {@link #ROOT} for a {@code null} base
+     *
+     * @return the children whose base types include {@code baseType} or one of its supertypes, or that may handle any
+     *         base
+     */
+    private StaticELResolver[] getResolvers(Class<?> baseType) {
+        StaticELResolver[] resolvers = resolversByBaseType.get(baseType);
+
+        if (resolvers == null) {
+            List<StaticELResolver> matchingResolvers = new ArrayList<>();
+            for (StaticELResolver staticELResolver : elResolverList) {
+                if (handlesBaseType(staticELResolver, baseType)) {
+                    matchingResolvers.add(staticELResolver);
+                }
+            }
+            resolvers = matchingResolvers.toArray(NO_RESOLVERS);
+            resolversByBaseType.putIfAbsent(baseType, resolvers);
+        }
+
+        return resolvers;
+    }
+
+    /**
+     * Checks whether a resolver handles a kind of base.
+     */
+    private static boolean handlesBaseType(StaticELResolver staticELResolver, Class<?> baseType) {
+        Class<?>[] resolverBaseTypes = staticELResolver.getBaseTypes();
+
+        if (resolverBaseTypes == null) {
+            return true;
+        }
+        for (Class<?> resolverBaseType : resolverBaseTypes) {
+            if (resolverBaseType == baseType || (baseType != ROOT && resolverBaseType.isAssignableFrom(baseType))) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
 	/**
-	 * Tries all child resolvers (in order) to resolve the query. All children are tried, until one succeeds in resolving, or until
-	 * no more children are left to try.
+	 * Tries all child resolvers that handle {@code base} (in order) to resolve the query. These children are tried,
+	 * until one succeeds in resolving, or until no more children are left to try.
 	 * 
 	 * Can throw a runtime ELCheckerException when this expression can or will lead to problems at runtime. This exception contains
 	 * an instanceof {@link com.infosupport.ellison.core.api.ELError} which indicates what kind of problem was
@@ -77,7 +163,7 @@ public class ELResolverChain extends StaticELResolver {
     public Object getValue(ELContext context, Object base, Object property) {
         Object result = null;
 
-        for (StaticELResolver staticELResolver : elResolverList) {
+        for (StaticELResolver staticELResolver : getResolvers(base == null ? ROOT : base.getClass())) {
             result = staticELResolver.getValue(context, base, property);
 
             if (context.isPropertyResolved()) {
@@ -0,0 +1,226 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the keys of a properties file, as {@link java.util.Properties#load(Reader)} would, without keeping the values.
+ * <p/>
+ * Comments, blank lines, escapes (including {@code \\uXXXX}) and lines continued by a trailing backslash are handled
+ * like {@code Properties} does. The values are skipped over as they are read, so they never take up any memory.
+ *
+ * @author StefanZ
+ */
+public final class PropertiesKeyReader {
+    /**
+     * Constructor. This is private, as this is a utility class.
+     */
+    private PropertiesKeyReader() {
+    }
+
+    /**
+     * Reads the keys of a properties file.
+     *
+     * @param reader
+     *     the contents of the properties file. For a file in the standard encoding, read it as ISO-8859-1.
+     *
+     * @return the keys, in the order they appear in. A key that appears more than once is returned more than once.
+     *
+     * @throws IOException
+     *     if the properties file could not be read, or contains a malformed {@code \\uXXXX} escape
+     */
+    public static List<String> readKeys(Reader reader) throws IOException {
+        PushbackReader input =
+            new PushbackReader(reader instanceof BufferedReader ? reader : new BufferedReader(reader));
+        List<String> keys = new ArrayList<>();
+        StringBuilder key = new StringBuilder();
+
+        for (int c = skipWhitespace(input, true); c != -1; c = skipWhitespace(input, true)) {
+            if (c == '#' || c == '!') {
+                skipComment(input);
+                continue;
+            }
+
+            key.setLength(0);
+            int terminator = readKey(input, c, key);
+            keys.add(key.toString());
+            if (!isEndOfLine(terminator)) {
+                skipValue(input);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Reads a key, unescaping it.
+     *
+     * @param input
+     *     the reader positioned right after the first character of the key
+     * @param first
+     *     the first character of the key
+     * @param key
+     *     the builder to append the key to
+     *
+     * @return the character that ended the key: a separator, whitespace, a line terminator, or -1 at the end of the
+     *         file
+     */
+    private static int readKey(PushbackReader input, int first, StringBuilder key) throws IOException {
+        int c = first;
+
+        while (c != -1 && c != '=' && c != ':' && !isWhitespace(c) && !isEndOfLine(c)) {
+            if (c == '\\') {
+                int escaped = input.read();
+                if (escaped == -1) {
+                    return -1;
+                } else if (isEndOfLine(escaped)) {
+                    c = continueLine(input, escaped);
+                    continue;
+                }
+                key.append(unescape(input, escaped));
+            } else {
+                key.append((char) c);
+            }
+            c = input.read();
+        }
+
+        return c;
+    }
+
+    /**
+     * Skips the rest of a value, up to the end of its logical line.
+     */
+    private static void skipValue(PushbackReader input) throws IOException {
+        for (int c = input.read(); c != -1 && !isEndOfLine(c); c = input.read()) {
+            if (c == '\\') {
+                int escaped = input.read();
+                if (escaped == -1) {
+                    return;
+                } else if (isEndOfLine(escaped)) {
+                    int next = continueLine(input, escaped);
+                    if (next == -1) {
+                        return;
+                    }
+                    input.unread(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a comment line. Comments cannot be continued onto the next line.
+     */
+    private static void skipComment(PushbackReader input) throws IOException {
+        int c = input.read();
+        while (c != -1 && !isEndOfLine(c)) {
+            c = input.read();
+        }
+    }
+
+    /**
+     * Moves on to the next natural line of a logical line that was continued with a backslash.
+     *
+     * @param input
+     *     the reader positioned right after the line terminator
+     * @param lineTerminator
+     *     the line terminator that followed the backslash
+     *
+     * @return the first character of the next line that isn't leading whitespace, or -1 at the end of the file
+     */
+    private static int continueLine(PushbackReader input, int lineTerminator) throws IOException {
+        if (lineTerminator == '\r') {
+            int c = input.read();
+            if (c != '\n' && c != -1) {
+                input.unread(c);
+            }
+        }
+
+        return skipWhitespace(input, false);
+    }
+
+    /**
+     * Skips whitespace.
+     *
+     * @param input
+     *     the reader to skip whitespace in
+     * @param skipLineTerminators
+     *     whether line terminators count as whitespace
+     *
+     * @return the first character that isn't skipped, or -1 at the end of the file
+     */
+    private static int skipWhitespace(PushbackReader input, boolean skipLineTerminators) throws IOException {
+        int c = input.read();
+        while (isWhitespace(c) || (skipLineTerminators && isEndOfLine(c))) {
+            c = input.read();
+        }
+        return c;
+    }
+
+    /**
+     * Unescapes the character following a backslash.
+     */
+    private static char unescape(PushbackReader input, int escaped) throws IOException {
+        switch (escaped) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'u':
+                return readUnicodeEscape(input);
+            default:
+                return (char) escaped;
+        }
+    }
+
+    /**
+     * Reads the four hexadecimal digits of a {@code \\uXXXX} escape.
+     */
+    private static char readUnicodeEscape(PushbackReader input) throws IOException {
+        int value = 0;
+
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(input.read(), 16);
+            if (digit == -1) {
+                throw new IOException("Malformed \\uxxxx encoding");
+            }
+            value = (value << 4) | digit;
+        }
+
+        return (char) value;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    private static boolean isEndOfLine(int c) {
+        return c == '\r' || c == '\n';
+    }
+}
@@ -28,6 +28,9 @@ import com.infosupport.ellison.jsf12impl.exceptions.ApplicationConfigurationExce
 import com.infosupport.ellison.jsf12impl.resolvers.JSFELResolver;
 import com.infosupport.ellison.jsf12impl.util.ServletContextFactory;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import javax.servlet.ServletContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +53,33 @@ public class JSFELApplicationCheckerFactory implements ELApplicationCheckerFacto
      * This field is used to cache the configuration for the application archive, which takes a while to parse.
      */
     private ServletContext lastServletContext;
+    /**
+     * The servlet contexts of all application archives that have not been closed yet, for when the web modules of an
+     * enterprise application are checked concurrently, and {@code lastCheckedApplicationArchive} keeps changing.
+     */
+    private final Map<ApplicationArchive, ServletContext> servletContexts = new HashMap<>();
+    private int parseThreads = 1;
+
+    /**
+     * Get the number of threads the created {@link ELFinder}s parse pages with.
+     *
+     * @return the number of parse threads
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * Set the number of threads the created {@link ELFinder}s parse pages with, see {@link
+     * JSFELFinder#JSFELFinder(int)}. Parsing pages concurrently takes a thread pool of this size for every
+     * application that is checked. Defaults to 1, which parses pages one after another in the calling thread.
+     *
+     * @param parseThreads
+     *     the number of threads to parse pages with
+     */
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
 
     /**
      * Create a {@link PageFinder}.
@@ -85,7 +115,7 @@ public class JSFELApplicationCheckerFactory implements ELApplicationCheckerFacto
      */
     @Override
     public ELFinder createELFinder(ApplicationArchive applicationArchive) {
-        return new JSFELFinder();
+        return new JSFELFinder(parseThreads);
     }
 
     /**
@@ -105,7 +135,7 @@ public class JSFELApplicationCheckerFactory implements ELApplicationCheckerFacto
         StaticELResolver elResolver = null;
 
         try {
-            elResolver = new JSFELResolver(getServletContext(applicationArchive));
+            elResolver = new JSFELResolver(getServletContext(applicationArchive), applicationArchive);
         } catch (ApplicationConfigurationException e) {
             LOGGER.error("Could not create a StaticELResolver. Did you check if this factory can handle the application"
                              + " archive?", e);
@@ -137,18 +167,56 @@ public class JSFELApplicationCheckerFactory implements ELApplicationCheckerFacto
         return canHandleApplicationArchive;
     }
 
+    /**
+     * Get the servlet context for an application archive, reusing the one created earlier if there is one. This may be
+     * called concurrently for different archives, as the web modules of an enterprise application are checked
+     * concurrently; servlet contexts are created outside of the lock guarding the cache.
+     *
+     * @param applicationArchive
+     *     the application archive to get the servlet context for
+     *
+     * @return the servlet context for {@code applicationArchive}
+     *
+     * @throws ApplicationConfigurationException
+     *     if no servlet context could be created for {@code applicationArchive}
+     */
     protected ServletContext getServletContext(ApplicationArchive applicationArchive)
         throws ApplicationConfigurationException {
         ServletContext servletContext;
 
-        if (applicationArchive.equals(lastCheckedApplicationArchive)) {
-            servletContext = lastServletContext;
-        } else {
+        synchronized (this) {
+            if (applicationArchive.equals(lastCheckedApplicationArchive)) {
+                return lastServletContext;
+            }
+            removeClosedApplicationArchives();
+            servletContext = servletContexts.get(applicationArchive);
+        }
+
+        if (servletContext == null) {
             servletContext = ServletContextFactory.createServletContext(applicationArchive);
+        }
+
+        synchronized (this) {
+            servletContexts.put(applicationArchive, servletContext);
             lastCheckedApplicationArchive = applicationArchive;
             lastServletContext = servletContext;
         }
 
         return servletContext;
     }
+
+    /**
+     * Removes the servlet contexts of closed application archives from the cache. A servlet context refers to the class
+     * loader of its application archive, so these would otherwise never be garbage collected. The caller must hold the
+     * lock on this object.
+     */
+    private void removeClosedApplicationArchives() {
+        Iterator<ApplicationArchive> iterator = servletContexts.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().isClosed()) {
+                iterator.remove();
+            }
+        }
+    }
 }
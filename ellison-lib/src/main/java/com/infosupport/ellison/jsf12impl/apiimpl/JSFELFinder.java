@@ -20,20 +20,30 @@
 package com.infosupport.ellison.jsf12impl.apiimpl;
 
 import com.infosupport.ellison.core.api.ELError;
-import com.infosupport.ellison.core.api.ELFinder;
 import com.infosupport.ellison.core.api.LocationAwareELExpression;
+import com.infosupport.ellison.core.api.StreamingELFinder;
 import com.infosupport.ellison.core.archive.ApplicationArchive;
 import com.infosupport.ellison.core.util.Location;
 import com.infosupport.ellison.core.util.LocationAwareELExpressionString;
 import com.infosupport.ellison.core.util.Pair;
 import com.infosupport.ellison.jsf12impl.util.JSFPageParser;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -54,50 +64,254 @@ import org.xml.sax.SAXException;
  *
  * @author StefanZ
  */
-public class JSFELFinder implements ELFinder {
+public class JSFELFinder implements StreamingELFinder {
+    private final int parseThreads;
+    /**
+     * The page parser of every thread that parses pages. Parsers are reset between pages, rather than created anew.
+     */
+    private final ThreadLocal<JSFPageParser> pageParsers = new ThreadLocal<>();
+
+    /**
+     * Constructor. Pages are parsed one after another in the calling thread.
+     */
+    public JSFELFinder() {
+        this(1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parseThreads
+     *     the number of threads to parse pages with. Pages are parsed one after another in the calling thread if this
+     *     is 1 or less. Otherwise, every call to {@code findELExpressions} parses its pages on that many threads,
+     *     which take the pages one by one.
+     */
+    public JSFELFinder(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * Get the number of threads pages are parsed with.
+     *
+     * @return the number of parse threads
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Pages are parsed concurrently if this finder has more than one parse thread, but the expressions and errors are
+     * always returned in the order of {@code pages}, as if the pages had been parsed one after another.
+     */
     @Override
     public Pair<Collection<LocationAwareELExpression>, Collection<ELError>> findELExpressions(Collection<URI> pages,
                                                                                               ApplicationArchive
                                                                                                   applicationArchive) {
+        final AtomicReferenceArray<Pair<Collection<LocationAwareELExpression>, Collection<ELError>>> pageResults =
+            new AtomicReferenceArray<>(pages.size());
+
+        try {
+            findELExpressions(pages, applicationArchive, new PageHandler() {
+                @Override
+                public void handlePage(int pageIndex, URI page, Collection<LocationAwareELExpression> expressions,
+                                       Collection<ELError> errors) {
+                    pageResults.set(pageIndex, new Pair<>(expressions, errors));
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("Interrupted while parsing the pages of application '%s'",
+                                                          applicationArchive.getApplicationFile().getName()), e);
+        }
+
         Collection<LocationAwareELExpression> expressions = new ArrayList<>();
         Collection<ELError> errors = new ArrayList<>();
+        for (int i = 0; i < pageResults.length(); i++) {
+            expressions.addAll(pageResults.get(i).first());
+            errors.addAll(pageResults.get(i).second());
+        }
+
+        return new Pair<>(expressions, errors);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Pages are parsed concurrently if this finder has more than one parse thread, with the context class loader of
+     * the calling thread. Otherwise, they are parsed one after another in the calling thread, and {@code pageHandler}
+     * is called in the order of {@code pages}.
+     */
+    @Override
+    public void findELExpressions(Collection<URI> pages, ApplicationArchive applicationArchive,
+                                  PageHandler pageHandler) throws InterruptedException {
+        int threadCount = Math.min(parseThreads, pages.size());
 
-        for (URI pageURI : pages) {
-            File pageFile = null;
+        if (threadCount > 1) {
+            findELExpressionsConcurrently(pages, applicationArchive, threadCount, pageHandler);
+        } else {
             try {
-                pageFile = applicationArchive.getFile(pageURI.toString());
-            } catch (IOException e) {
-                errors.add(new ELError(String.format("Could not find page '%s'", pageURI.toString()),
-                                       new LocationAwareELExpressionString("", new Location(pageURI, 0, 0)),
+                int pageIndex = 0;
+                for (URI pageURI : pages) {
+                    findELExpressions(pageIndex++, pageURI, applicationArchive, pageHandler);
+                }
+            } finally {
+                pageParsers.remove();
+            }
+        }
+    }
+
+    /**
+     * Parses pages concurrently, passing the expressions and errors found in every page on as soon as it has been
+     * parsed. Every thread takes the next page that hasn't been taken yet until all pages have been parsed, so no more
+     * than {@code threadCount} tasks are ever queued, however many pages there are.
+     *
+     * @param pages
+     *     the pages to parse
+     * @param applicationArchive
+     *     the application archive containing the pages
+     * @param threadCount
+     *     the number of threads to parse the pages with
+     * @param pageHandler
+     *     the handler to pass the expressions and errors of every page to
+     *
+     * @throws InterruptedException
+     *     if the calling thread was interrupted, or {@code pageHandler} threw an {@code InterruptedException}
+     */
+    private void findELExpressionsConcurrently(Collection<URI> pages, final ApplicationArchive applicationArchive,
+                                               int threadCount, final PageHandler pageHandler)
+        throws InterruptedException {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final List<URI> pageList = new ArrayList<>(pages);
+        final AtomicInteger nextPageIndex = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        CompletionService<Void> parseTasks = new ExecutorCompletionService<>(executorService);
+
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                parseTasks.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        Thread.currentThread().setContextClassLoader(contextClassLoader);
+                        int pageIndex = nextPageIndex.getAndIncrement();
+                        while (pageIndex < pageList.size() && !Thread.currentThread().isInterrupted()) {
+                            findELExpressions(pageIndex, pageList.get(pageIndex), applicationArchive, pageHandler);
+                            pageIndex = nextPageIndex.getAndIncrement();
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            // Waits for the threads in the order they finish, so that the first failure ends the others
+            for (int i = 0; i < threadCount; i++) {
+                parseTasks.take().get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the expressions in a single page, and passes them on to a page handler.
+     *
+     * @param pageIndex
+     *     the position of the page within the pages being parsed
+     * @param pageURI
+     *     the page to parse
+     * @param applicationArchive
+     *     the application archive containing the page
+     * @param pageHandler
+     *     the handler to pass the expressions and errors of the page to
+     *
+     * @throws InterruptedException
+     *     if {@code pageHandler} was interrupted
+     */
+    private void findELExpressions(int pageIndex, URI pageURI, ApplicationArchive applicationArchive,
+                                   PageHandler pageHandler) throws InterruptedException {
+        Collection<LocationAwareELExpression> pageExpressions = new ArrayList<>();
+        Collection<ELError> pageErrors = new ArrayList<>();
+
+        findELExpressions(pageURI, applicationArchive, pageExpressions, pageErrors);
+        pageHandler.handlePage(pageIndex, pageURI, pageExpressions, pageErrors);
+    }
+
+    /**
+     * Finds the expressions in a single page.
+     *
+     * @param pageURI
+     *     the page to parse
+     * @param applicationArchive
+     *     the application archive containing the page
+     * @param expressions
+     *     the collection to add the found expressions to
+     * @param errors
+     *     the collection to add the found errors to
+     */
+    private void findELExpressions(URI pageURI, ApplicationArchive applicationArchive,
+                                   Collection<LocationAwareELExpression> expressions, Collection<ELError> errors) {
+        InputStream pageInputStream = null;
+        try {
+            pageInputStream = applicationArchive.getInputStream(pageURI.toString());
+        } catch (IOException e) {
+            errors.add(new ELError(String.format("Could not find page '%s'", pageURI.toString()),
+                                   new LocationAwareELExpressionString("", new Location(pageURI, 0, 0)),
+                                   ELError.ELErrorSeverity.ERROR));
+        }
+
+        if (pageInputStream != null) {
+            JSFPageParser pageParser = getPageParser(applicationArchive);
+
+            try (InputStream pageContents = pageInputStream) {
+                InputSource pageInputSource = new InputSource(pageContents);
+                pageInputSource.setSystemId(applicationArchive.resolvePath(pageURI).toString());
+                pageParser.parse(pageInputSource);
+            } catch (SAXException | IOException e) {
+                errors.add(new ELError(e.getMessage(),
+                                       new LocationAwareELExpressionString(null, new Location(pageURI, 0, 0)),
                                        ELError.ELErrorSeverity.ERROR));
+                return;
             }
-            JSFPageParser pageParser = null;
-            boolean pageParsingFailed = false;
-
-            if (pageFile != null) {
-                try {
-                    pageParser = new JSFPageParser(applicationArchive);
-                } catch (SAXException | ParserConfigurationException e) {
-                    throw new RuntimeException("Could not setup an XML parser to handle JSF pages.", e);
-                }
 
+            errors.addAll(pageParser.getErrors());
+            expressions.addAll(pageParser.getExpressions());
+        }
+    }
 
-                try {
-                    pageParser.parse(pageFile);
-                } catch (SAXException | IOException e) {
-                    pageParsingFailed = true;
-                    errors.add(new ELError(e.getMessage(),
-                                           new LocationAwareELExpressionString(null, new Location(pageURI, 0, 0)),
-                                           ELError.ELErrorSeverity.ERROR));
-                }
+    /**
+     * Get the page parser of the calling thread, ready to parse a page of an application archive. The parser is
+     * created the first time a thread asks for one, and reset every time after that.
+     *
+     * @param applicationArchive
+     *     the application archive the page to parse is in
+     *
+     * @return a parser that has not parsed anything yet, or has been reset
+     */
+    private JSFPageParser getPageParser(ApplicationArchive applicationArchive) {
+        JSFPageParser pageParser = pageParsers.get();
 
-                if (!pageParsingFailed) {
-                    errors.addAll(pageParser.getErrors());
-                    expressions.addAll(pageParser.getExpressions());
-                }
+        if (pageParser != null && pageParser.getApplicationArchive() == applicationArchive) {
+            pageParser.reset();
+        } else {
+            try {
+                pageParser = new JSFPageParser(applicationArchive);
+            } catch (SAXException | ParserConfigurationException e) {
+                throw new RuntimeException("Could not setup an XML parser to handle JSF pages.", e);
             }
+            pageParsers.set(pageParser);
         }
 
-        return new Pair<>(expressions, errors);
+        return pageParser;
     }
 }
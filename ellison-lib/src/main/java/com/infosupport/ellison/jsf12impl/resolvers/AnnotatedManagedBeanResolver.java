@@ -20,26 +20,40 @@
 package com.infosupport.ellison.jsf12impl.resolvers;
 
 import com.infosupport.ellison.core.api.StaticELResolver;
+import com.infosupport.ellison.core.archive.ApplicationArchive;
+import com.infosupport.ellison.core.archive.AnnotationIndexCache;
+import com.infosupport.ellison.core.archive.AnnotationScanner;
+import com.infosupport.ellison.core.util.ClassFileAnnotationReader;
+import com.infosupport.ellison.core.util.Constants;
 
 import java.beans.Introspector;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.ManagedBean;
 import javax.el.ELContext;
-import org.reflections.Reflections;
-import org.reflections.scanners.TypeAnnotationsScanner;
-import org.reflections.util.ClasspathHelper;
-import org.reflections.util.ConfigurationBuilder;
-import org.reflections.util.FilterBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Finds all classes on the classpath annotated with the {@link ManagedBean} annotation,
  * and resolves EL expressions referring to these.
+ * <p/>
+ * Classes are found by reading their class files (see {@link ClassFileAnnotationReader}), so that only the annotated
+ * classes themselves are loaded, and none of them are initialized.
  *
  * @author StefanZ
  */
 public class AnnotatedManagedBeanResolver extends StaticELResolver {
+    static final Class<?>[] BASE_TYPES = {ROOT};
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotatedManagedBeanResolver.class);
     private Map<String, Class<?>> annotatedBeans;
 
     /**
@@ -49,25 +63,144 @@ public class AnnotatedManagedBeanResolver extends StaticELResolver {
      * with the key being the name of the bean ({@link javax.annotation.ManagedBean#value()}). If the name of the
      * bean is an empty string, then {@link Introspector#decapitalize(String)} is called on the simple name of the
      * bean class ({@link Class#getSimpleName()}).
+     * <p/>
+     * This scans the class paths of all parents of the context class loader as well; use {@link
+     * #AnnotatedManagedBeanResolver(com.infosupport.ellison.core.archive.ApplicationArchive)} to scan the classes of
+     * an application only.
      */
     public AnnotatedManagedBeanResolver() {
-        annotatedBeans = new HashMap<>();
-        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        Reflections reflections = new Reflections(
-            new ConfigurationBuilder().filterInputsBy(new FilterBuilder().include(".*\\.class"))
-                .setUrls(ClasspathHelper.forClassLoader(classLoader)).setScanners(new TypeAnnotationsScanner()));
-        Set<Class<?>> managedBeanClasses = reflections.getTypesAnnotatedWith(ManagedBean.class);
+        this(getClassPath(Thread.currentThread().getContextClassLoader()),
+             Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Constructor.
+     * Only the directories and libraries in {@code classPath} are scanned for the presence of a {@code @ManagedBean}
+     * annotation, in parallel. The found classes are loaded by {@code classLoader}, and named as described in {@link
+     * #AnnotatedManagedBeanResolver()}.
+     *
+     * @param classPath
+     *     the directories and libraries to scan
+     * @param classLoader
+     *     the class loader to load the annotated classes with
+     */
+    public AnnotatedManagedBeanResolver(Collection<URL> classPath, ClassLoader classLoader) {
+        annotatedBeans = loadManagedBeanClasses(createAnnotationScanner(null).scan(classPath), classLoader);
+    }
+
+    /**
+     * Constructor.
+     * Only the classes of {@code applicationArchive} itself (WEB-INF/classes and the libraries in WEB-INF/lib) are
+     * scanned for the presence of a {@code @ManagedBean} annotation, in parallel. The found classes are loaded by the
+     * class loader of {@code applicationArchive}, and named as described in {@link #AnnotatedManagedBeanResolver()}.
+     * <p/>
+     * Libraries that are in the {@link ApplicationArchive#getAnnotationIndexCache() annotation index cache} of {@code
+     * applicationArchive} are not scanned again.
+     *
+     * @param applicationArchive
+     *     the application archive to scan
+     *
+     * @see AnnotationScanner#scan(com.infosupport.ellison.core.archive.ApplicationArchive)
+     */
+    public AnnotatedManagedBeanResolver(ApplicationArchive applicationArchive) {
+        Map<String, Map<String, Object>> managedBeans = Collections.emptyMap();
+
+        try {
+            managedBeans = createAnnotationScanner(applicationArchive.getAnnotationIndexCache()).scan(
+                applicationArchive);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not list the classes of application archive '%s'",
+                                      applicationArchive.getApplicationFile().getAbsolutePath()), e);
+        }
+        annotatedBeans = loadManagedBeanClasses(managedBeans, applicationArchive.getClassLoader());
+    }
+
+    /**
+     * Creates a scanner for classes annotated with {@link ManagedBean}.
+     *
+     * @param annotationIndexCache
+     *     the cache to take the managed beans in libraries from, may be {@code null}
+     *
+     * @return the created scanner
+     */
+    private static AnnotationScanner createAnnotationScanner(AnnotationIndexCache annotationIndexCache) {
+        return new AnnotationScanner(ManagedBean.class.getName(), Constants.DEFAULT_ANNOTATION_SCAN_THREADS,
+                                     annotationIndexCache);
+    }
+
+    /**
+     * Get the class path of a class loader and all of its parents.
+     *
+     * @param classLoader
+     *     the class loader to get the class path of
+     *
+     * @return the URLs of all {@link URLClassLoader}s from {@code classLoader} up to the bootstrap class loader
+     */
+    private static Collection<URL> getClassPath(ClassLoader classLoader) {
+        Set<URL> classPath = new LinkedHashSet<>();
 
-        for (Class<?> managedBeanClass : managedBeanClasses) {
-            ManagedBean annotation = managedBeanClass.getAnnotation(ManagedBean.class);
-            String elName = annotation.value();
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (current instanceof URLClassLoader) {
+                classPath.addAll(Arrays.asList(((URLClassLoader) current).getURLs()));
+            }
+        }
+
+        return classPath;
+    }
+
+    /**
+     * Loads the classes of the found managed beans, without initializing them, and names them.
+     *
+     * @param managedBeans
+     *     the binary names of the managed bean classes, together with the elements of their annotations
+     * @param classLoader
+     *     the class loader to load the classes with
+     *
+     * @return the managed bean classes, by name
+     */
+    private static Map<String, Class<?>> loadManagedBeanClasses(Map<String, Map<String, Object>> managedBeans,
+                                                                ClassLoader classLoader) {
+        Map<String, Class<?>> managedBeanClasses = new HashMap<>();
+
+        for (Map.Entry<String, Map<String, Object>> managedBean : managedBeans.entrySet()) {
+            Class<?> managedBeanClass;
+            try {
+                managedBeanClass = Class.forName(managedBean.getKey(), false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOGGER.warn(String.format("Could not load managed bean class '%s'", managedBean.getKey()), e);
+                continue;
+            }
+
+            Object value = managedBean.getValue().get("value");
+            String elName = value == null ? "" : value.toString();
 
             if (elName.length() == 0) {
                 elName = Introspector.decapitalize(managedBeanClass.getSimpleName());
             }
 
-            annotatedBeans.put(elName, managedBeanClass);
+            managedBeanClasses.put(elName, managedBeanClass);
         }
+
+        return managedBeanClasses;
+    }
+
+    /**
+     * Get the annotated managed beans this resolver resolves.
+     *
+     * @return an unmodifiable view of the classes of the annotated managed beans, by name
+     */
+    public Map<String, Class<?>> getAnnotatedBeans() {
+        return Collections.unmodifiableMap(annotatedBeans);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@link #ROOT} only, as this resolver only resolves the names of managed beans
+     */
+    @Override
+    public Class<?>[] getBaseTypes() {
+        return BASE_TYPES.clone();
     }
 
     @Override
@@ -19,10 +19,12 @@
  */
 package com.infosupport.ellison.jsf12impl.resolvers;
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.el.ELContext;
 
@@ -36,38 +38,74 @@ import com.infosupport.ellison.core.api.StaticELResolver;
  * java.net.URL}, which has a property {@code protocol} (see {@link java.net.URL#getProtocol()}). Assuming there is a
  * {@code URL} class or subclass that is configured as a managed bean under the name {@code urlBean},
  * the following EL expression would refer to the {@code protocol} property: {@code #{urlBean.protocol}}.
+ * <p/>
+ * The properties of a class are looked up through {@link Introspector} only once, after which their types are kept
+ * with the class itself (see {@link ClassValue}). This cache is shared by all instances, and is safe to use from
+ * multiple threads.
  *
  * @author StefanZ
  */
 public class ClassPropertyELResolver extends StaticELResolver {
+    private static final Class<?>[] BASE_TYPES = {Class.class};
     private static final Logger LOGGER = LoggerFactory.getLogger(ClassPropertyELResolver.class);
+    private static final ClassValue<Map<String, Class<?>>> PROPERTY_TYPES = new ClassValue<Map<String, Class<?>>>() {
+        @Override
+        protected Map<String, Class<?>> computeValue(Class<?> beanClass) {
+            return findPropertyTypes(beanClass);
+        }
+    };
+
+    /**
+     * Finds the types of all properties of a class.
+     *
+     * @param beanClass
+     *     the class to find the properties of
+     *
+     * @return an immutable map of the names of the properties of {@code beanClass} to their types. The type of an
+     *         indexed property that can only be accessed by index is {@code null}. If the class could not be
+     *         introspected, the map is empty.
+     */
+    private static Map<String, Class<?>> findPropertyTypes(Class<?> beanClass) {
+        PropertyDescriptor[] propertyDescriptors;
+
+        try {
+            propertyDescriptors = Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            LOGGER.debug(String.format("Caught an exception while trying to get bean information for class '%s'",
+                                       beanClass.getCanonicalName()), e);
+            return Collections.emptyMap();
+        }
+
+        Map<String, Class<?>> propertyTypes = new HashMap<>(propertyDescriptors.length * 2);
+        for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            propertyTypes.put(propertyDescriptor.getName(), propertyDescriptor.getPropertyType());
+        }
+
+        return Collections.unmodifiableMap(propertyTypes);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@code Class} only, as this resolver only resolves properties of classes
+     */
+    @Override
+    public Class<?>[] getBaseTypes() {
+        return BASE_TYPES.clone();
+    }
 
     @Override
     public Object getValue(ELContext context, Object base, Object property) {
         if (base instanceof Class) {
+            Map<String, Class<?>> propertyTypes = PROPERTY_TYPES.get((Class<?>) base);
             String propertyName = property.toString();
-            Class beanClass = (Class) base;
-            BeanInfo beanInfo = null;
 
-            try {
-                beanInfo = Introspector.getBeanInfo(beanClass);
-            } catch (IntrospectionException e) {
-                LOGGER.debug(String.format("Caught an exception while trying to get bean information for class '%s'",
-                                           beanClass.getCanonicalName()), e);
-            }
-
-            if (beanInfo != null) {
-                PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-                for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                    if (propertyDescriptor.getName().equals(propertyName)) {
-                        context.setPropertyResolved(true);
-                        return propertyDescriptor.getPropertyType();
-                    }
-                }
+            if (propertyTypes.containsKey(propertyName)) {
+                context.setPropertyResolved(true);
+                return propertyTypes.get(propertyName);
             }
         }
 
         return base;
     }
 }
-
@@ -19,33 +19,220 @@
  */
 package com.infosupport.ellison.jsf12impl.resolvers;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.infosupport.ellison.core.archive.ApplicationArchive;
+import com.infosupport.ellison.core.util.DeferredELResolver;
 import com.infosupport.ellison.core.util.ELResolverChain;
 
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import javax.el.ELContext;
 import javax.servlet.ServletContext;
 
 /**
  * The {@link com.infosupport.ellison.core.api.StaticELResolver} to be used for resolving Expression
  * Language expressions within JSF 1.2 applications.
+ * <p/>
+ * The names an expression can start with are looked up in the {@link RootSymbolTable} built from the managed beans,
+ * annotated managed beans and resource bundles of the application, which settles name collisions between them once.
+ * All other property steps are passed on to the chained resolvers.
+ * <p/>
+ * Scanning the application for annotated managed beans and reading its resource bundles can take a while, so the
+ * resolvers doing this, and the root symbol table, are only created by the first query that needs them: properties
+ * of classes are resolved without them. Building the root symbol table starts reading the resource bundles in the
+ * background, while the annotation scan runs in the calling thread.
+ * That background task reads the application archive, so this resolver must be {@link #close() closed} before the
+ * archive is; closing it interrupts the task if it is still running.
  *
  * @author StefanZ
  */
 public class JSFELResolver extends ELResolverChain {
+    private final Map<String, Class<?>> managedBeans;
+    private final DeferredELResolver<AnnotatedManagedBeanResolver> annotatedManagedBeanResolver;
+    private final DeferredELResolver<ResourceBundleResolver> resourceBundleResolver;
+    private final DeferredRootSymbolTable rootSymbolTable = new DeferredRootSymbolTable();
+    private final ExecutorService executorService;
 
     /**
-     * Constructor.
+     * Constructor. Annotated managed beans are looked for on the whole class path of the context class loader, see
+     * {@link AnnotatedManagedBeanResolver#AnnotatedManagedBeanResolver()}.
      *
      * @param servletContext
      *     the servlet context for which to (attempt to) resolve Expression Language expressions.
      */
-    public JSFELResolver(ServletContext servletContext) {
+    public JSFELResolver(final ServletContext servletContext) {
+        this(servletContext, new Callable<AnnotatedManagedBeanResolver>() {
+            @Override
+            public AnnotatedManagedBeanResolver call() {
+                return new AnnotatedManagedBeanResolver();
+            }
+        }, new Callable<ResourceBundleResolver>() {
+            @Override
+            public ResourceBundleResolver call() {
+                return new ResourceBundleResolver(servletContext);
+            }
+        });
+    }
+
+    /**
+     * Constructor. Annotated managed beans are only looked for in the classes and libraries of {@code
+     * applicationArchive}, see {@link AnnotatedManagedBeanResolver#AnnotatedManagedBeanResolver(ApplicationArchive)},
+     * and the keys of resource bundles are read from its properties files where possible, see {@link
+     * ResourceBundleResolver#ResourceBundleResolver(ServletContext, ApplicationArchive)}.
+     *
+     * @param servletContext
+     *     the servlet context for which to (attempt to) resolve Expression Language expressions.
+     * @param applicationArchive
+     *     the application archive {@code servletContext} was created for
+     */
+    public JSFELResolver(final ServletContext servletContext, final ApplicationArchive applicationArchive) {
+        this(servletContext, new Callable<AnnotatedManagedBeanResolver>() {
+            @Override
+            public AnnotatedManagedBeanResolver call() {
+                return new AnnotatedManagedBeanResolver(applicationArchive);
+            }
+        }, new Callable<ResourceBundleResolver>() {
+            @Override
+            public ResourceBundleResolver call() {
+                return new ResourceBundleResolver(servletContext, applicationArchive);
+            }
+        });
+    }
+
+    /**
+     * Constructor. The annotated managed bean and resource bundle resolvers are not created yet.
+     *
+     * @param servletContext
+     *     the servlet context for which to (attempt to) resolve Expression Language expressions.
+     * @param annotatedManagedBeanResolverFactory
+     *     creates the resolver for the annotated managed beans of the application
+     * @param resourceBundleResolverFactory
+     *     creates the resolver for the resource bundles of the application
+     */
+    private JSFELResolver(ServletContext servletContext,
+                          Callable<AnnotatedManagedBeanResolver> annotatedManagedBeanResolverFactory,
+                          Callable<ResourceBundleResolver> resourceBundleResolverFactory) {
         ManagedBeanELResolver managedBeanELResolver = new ManagedBeanELResolver(servletContext);
-        ClassPropertyELResolver classPropertyELResolver = new ClassPropertyELResolver();
-        ResourceBundleResolver resourceBundleResolver = new ResourceBundleResolver(servletContext);
-        AnnotatedManagedBeanResolver annotatedManagedBeanResolver = new AnnotatedManagedBeanResolver();
+        managedBeans = managedBeanELResolver.getManagedBeans();
+        annotatedManagedBeanResolver = new DeferredELResolver<>(annotatedManagedBeanResolverFactory,
+                                                                AnnotatedManagedBeanResolver.BASE_TYPES);
+        resourceBundleResolver = new DeferredELResolver<>(resourceBundleResolverFactory,
+                                                          ResourceBundleResolver.BASE_TYPES);
 
         addResolver(managedBeanELResolver);
         addResolver(annotatedManagedBeanResolver);
-        addResolver(classPropertyELResolver);
+        addResolver(new ClassPropertyELResolver());
         addResolver(resourceBundleResolver);
+
+        // The thread is only started by the first prefetch; it is a daemon, so it never keeps the JVM alive
+        executorService = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("jsf-el-resolver-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Starts creating the resource bundle resolver in the background, unless that has been started already or this
+     * resolver has been closed, so that the resource bundles are read while the annotation scan runs.
+     */
+    private void prefetchResourceBundleResolver() {
+        synchronized (executorService) {
+            if (!executorService.isShutdown()) {
+                resourceBundleResolver.start(executorService);
+                executorService.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Get the table the names expressions can start with are looked up in. This reads the annotated managed beans
+     * and resource bundles of the application, if that hasn't been done yet.
+     *
+     * @return the root symbol table of the application
+     */
+    public RootSymbolTable getRootSymbolTable() {
+        return rootSymbolTable.get();
+    }
+
+    /**
+     * Resolves the first name of an expression through the root symbol table, and passes all other property steps on
+     * to the chained resolvers. The first name builds the root symbol table, see {@link #getRootSymbolTable()}.
+     *
+     * @param context
+     *     the context under which to try resolving
+     * @param base
+     *     the base object of the property, {@code null} for the first name of an expression
+     * @param property
+     *     the property to look for in {@code base}
+     *
+     * @return {@code base} if the query couldn't be resolved, the class of the found property otherwise
+     *
+     * @see ELResolverChain#getValue(javax.el.ELContext, Object, Object)
+     */
+    @Override
+    public Object getValue(ELContext context, Object base, Object property) {
+        if (base == null) {
+            RootSymbolTable.RootSymbol rootSymbol = rootSymbolTable.get().get(property.toString());
+
+            if (rootSymbol != null) {
+                context.setPropertyResolved(true);
+                return rootSymbol.getValue();
+            }
+
+            return null;
+        }
+
+        return super.getValue(context, base, property);
+    }
+
+    /**
+     * Cancels creating the deferred resolvers and the root symbol table, if that hasn't been done yet. Creation that
+     * is still running is interrupted rather than waited for, see {@link DeferredELResolver#close()}.
+     */
+    @Override
+    public void close() {
+        synchronized (executorService) {
+            executorService.shutdownNow();
+        }
+        super.close();
+        rootSymbolTable.cancel(true);
+    }
+
+    /**
+     * Builds the root symbol table in the thread that needs it first, once the deferred resolvers have been created.
+     */
+    private final class DeferredRootSymbolTable extends FutureTask<RootSymbolTable> {
+        DeferredRootSymbolTable() {
+            super(new Callable<RootSymbolTable>() {
+                @Override
+                public RootSymbolTable call() {
+                    prefetchResourceBundleResolver();
+                    return new RootSymbolTable(managedBeans, annotatedManagedBeanResolver.get().getAnnotatedBeans(),
+                                               resourceBundleResolver.get().getResourceBundles());
+                }
+            });
+        }
+
+        @Override
+        public RootSymbolTable get() {
+            run();
+
+            try {
+                return super.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Could not build the root symbol table", cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the root symbol table", e);
+            }
+        }
     }
 }
@@ -20,6 +20,7 @@
 package com.infosupport.ellison.jsf12impl.resolvers;
 
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -47,6 +48,7 @@ import com.sun.faces.mgbean.ManagedBeanPreProcessingException;
  * @author StefanZ
  */
 public class ManagedBeanELResolver extends StaticELResolver {
+    private static final Class<?>[] BASE_TYPES = {ROOT};
     private static final Logger LOGGER = LoggerFactory.getLogger(ManagedBeanELResolver.class);
     private Map<String, Class<?>> managedBeans;
     
@@ -119,6 +121,25 @@ public class ManagedBeanELResolver extends StaticELResolver {
         }
     }
 
+    /**
+     * Get the managed beans this resolver resolves.
+     *
+     * @return an unmodifiable view of the classes of the managed beans, by name
+     */
+    public Map<String, Class<?>> getManagedBeans() {
+        return Collections.unmodifiableMap(managedBeans);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@link #ROOT} only, as this resolver only resolves the names of managed beans
+     */
+    @Override
+    public Class<?>[] getBaseTypes() {
+        return BASE_TYPES.clone();
+    }
+
 	/**
 	 * Resolves a {@code property} for a specific {@code base}. A ELCheckerException is thrown when this expression can or will lead
 	 * to problems at runtime. This exception contains an instanceof
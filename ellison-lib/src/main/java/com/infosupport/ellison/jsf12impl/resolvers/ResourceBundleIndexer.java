@@ -0,0 +1,336 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.resolvers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.infosupport.ellison.core.archive.ApplicationArchive;
+import com.infosupport.ellison.core.archive.ExplodedWARApplicationArchive;
+import com.infosupport.ellison.core.util.PropertiesKeyReader;
+
+/**
+ * Reads the keys of resource bundles straight from the {@code .properties} files in WEB-INF/classes of an application
+ * archive, without loading the bundles through the class loader of the application.
+ * <p/>
+ * The files are looked up like {@link ResourceBundle#getBundle(String, Locale)} would (see {@link
+ * ResourceBundle.Control#getCandidateLocales(String, Locale)}), except that there is no fallback to the default locale
+ * of the JVM. They are read in parallel, and only their keys are kept; the resulting bundles map every key to an empty
+ * string. A bundle that is (partly) defined by a class, that lacks a file for one of the locales, or whose files
+ * cannot be read, is not indexed, so that it can be loaded the regular way instead.
+ *
+ * @author StefanZ
+ */
+public class ResourceBundleIndexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceBundleIndexer.class);
+    private static final String CLASSES_DIRECTORY = "WEB-INF/classes/";
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    private static final ResourceBundle.Control CONTROL =
+        ResourceBundle.Control.getControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+    private final ApplicationArchive applicationArchive;
+    private final int readThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param applicationArchive
+     *     the application archive to read the resource bundles from
+     * @param readThreads
+     *     the maximum number of files to read at the same time. Files are read one after another if this is 1 or less.
+     */
+    public ResourceBundleIndexer(ApplicationArchive applicationArchive, int readThreads) {
+        this.applicationArchive = applicationArchive;
+        this.readThreads = readThreads;
+    }
+
+    /**
+     * Reads the keys of resource bundles.
+     *
+     * @param baseNames
+     *     the base names of the resource bundles, such as {@code com.example.Messages}
+     * @param locales
+     *     the locales to read the bundles for
+     *
+     * @return for every base name that could be indexed, the bundle for every locale in {@code locales} (in that
+     *         order). The bundles only contain keys, and {@link ResourceBundle#getLocale()} returns the locale they
+     *         were read for.
+     */
+    public Map<String, Map<Locale, ResourceBundle>> index(Collection<String> baseNames, List<Locale> locales) {
+        Map<String, Map<Locale, List<String>>> filesByBaseName = new LinkedHashMap<>();
+        Set<String> files = new LinkedHashSet<>();
+
+        for (String baseName : baseNames) {
+            Map<Locale, List<String>> filesByLocale = findFiles(baseName, locales);
+            if (filesByLocale != null) {
+                filesByBaseName.put(baseName, filesByLocale);
+                for (List<String> localeFiles : filesByLocale.values()) {
+                    files.addAll(localeFiles);
+                }
+            }
+        }
+
+        Map<String, List<String>> keysByFile = readKeys(files);
+        Map<String, Map<Locale, ResourceBundle>> bundles = new HashMap<>();
+
+        for (Map.Entry<String, Map<Locale, List<String>>> baseNameFiles : filesByBaseName.entrySet()) {
+            Map<Locale, ResourceBundle> bundlesByLocale = createBundles(baseNameFiles.getValue(), keysByFile);
+            if (bundlesByLocale == null) {
+                LOGGER.info("Could not read all files of resource bundle '{}'", baseNameFiles.getKey());
+            } else {
+                bundles.put(baseNameFiles.getKey(), bundlesByLocale);
+            }
+        }
+
+        return bundles;
+    }
+
+    /**
+     * Finds the {@code .properties} files a resource bundle is made up of, for every locale.
+     *
+     * @param baseName
+     *     the base name of the bundle
+     * @param locales
+     *     the locales to find the files for
+     *
+     * @return the paths of the files within WEB-INF/classes for every locale, most specific first, or {@code null} if
+     *         the bundle can't be indexed
+     */
+    private Map<Locale, List<String>> findFiles(String baseName, List<Locale> locales) {
+        Map<Locale, List<String>> filesByLocale = new LinkedHashMap<>();
+
+        for (Locale locale : locales) {
+            List<String> localeFiles = new ArrayList<>();
+
+            for (Locale candidateLocale : CONTROL.getCandidateLocales(baseName, locale)) {
+                String bundleName = CONTROL.toBundleName(baseName, candidateLocale);
+                if (exists(CONTROL.toResourceName(bundleName, "class"))) {
+                    LOGGER.debug("Resource bundle '{}' is defined by class '{}'", baseName, bundleName);
+                    return null;
+                }
+
+                String file = CONTROL.toResourceName(bundleName, "properties");
+                if (exists(file)) {
+                    localeFiles.add(file);
+                }
+            }
+
+            if (localeFiles.isEmpty()) {
+                LOGGER.debug("No properties file of resource bundle '{}' for locale '{}'", baseName, locale);
+                return null;
+            }
+            filesByLocale.put(locale, localeFiles);
+        }
+
+        return filesByLocale;
+    }
+
+    /**
+     * Creates the bundles of a base name from the keys of their files.
+     *
+     * @return the bundles, or {@code null} if one of their files could not be read
+     */
+    private static Map<Locale, ResourceBundle> createBundles(Map<Locale, List<String>> filesByLocale,
+                                                             Map<String, List<String>> keysByFile) {
+        Map<Locale, ResourceBundle> bundlesByLocale = new LinkedHashMap<>();
+
+        for (Map.Entry<Locale, List<String>> localeFiles : filesByLocale.entrySet()) {
+            Set<String> keys = new HashSet<>();
+            for (String file : localeFiles.getValue()) {
+                List<String> fileKeys = keysByFile.get(file);
+                if (fileKeys == null) {
+                    return null;
+                }
+                keys.addAll(fileKeys);
+            }
+            bundlesByLocale.put(localeFiles.getKey(), new KeySetResourceBundle(localeFiles.getKey(), keys));
+        }
+
+        return bundlesByLocale;
+    }
+
+    /**
+     * Reads the keys of files, in parallel. Keys that appear in several files are shared between them.
+     *
+     * @param files
+     *     the paths of the files within WEB-INF/classes
+     *
+     * @return the keys of every file that could be read
+     */
+    private Map<String, List<String>> readKeys(Collection<String> files) {
+        final Map<String, List<String>> keysByFile = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, String> sharedKeys = new ConcurrentHashMap<>();
+        int threadCount = Math.min(readThreads, files.size());
+
+        if (threadCount <= 1) {
+            for (String file : files) {
+                readKeys(file, keysByFile, sharedKeys);
+            }
+            return keysByFile;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        List<Future<Void>> reads = new ArrayList<>(files.size());
+        try {
+            for (final String file : files) {
+                reads.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        readKeys(file, keysByFile, sharedKeys);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> read : reads) {
+                read.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading resource bundles", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        return keysByFile;
+    }
+
+    /**
+     * Reads the keys of a single file, logging rather than propagating any error reading it.
+     */
+    private void readKeys(String file, Map<String, List<String>> keysByFile, ConcurrentMap<String, String> sharedKeys) {
+        try (Reader reader = new InputStreamReader(open(file), ISO_8859_1)) {
+            List<String> keys = PropertiesKeyReader.readKeys(reader);
+            for (int i = 0; i < keys.size(); i++) {
+                String sharedKey = sharedKeys.putIfAbsent(keys.get(i), keys.get(i));
+                if (sharedKey != null) {
+                    keys.set(i, sharedKey);
+                }
+            }
+            keysByFile.put(file, keys);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read resource bundle file '%s'", file), e);
+        }
+    }
+
+    /**
+     * Get the separate classes directory of an exploded WAR.
+     *
+     * @return the classes directory, or {@code null} if classes are in WEB-INF/classes of the archive
+     */
+    private File getClassesDirectory() {
+        if (applicationArchive instanceof ExplodedWARApplicationArchive) {
+            return ((ExplodedWARApplicationArchive) applicationArchive).getClassesDirectory();
+        }
+        return null;
+    }
+
+    private boolean exists(String file) {
+        File classesDirectory = getClassesDirectory();
+
+        if (classesDirectory != null) {
+            return new File(classesDirectory, file).isFile();
+        }
+
+        try {
+            return applicationArchive.containsEntry(CLASSES_DIRECTORY + file);
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not look up '%s'", file), e);
+            return false;
+        }
+    }
+
+    private InputStream open(String file) throws IOException {
+        File classesDirectory = getClassesDirectory();
+
+        if (classesDirectory != null) {
+            return Files.newInputStream(new File(classesDirectory, file).toPath());
+        }
+
+        return applicationArchive.getInputStream(CLASSES_DIRECTORY + file);
+    }
+
+    /**
+     * A resource bundle that only knows its keys, which all map to an empty string.
+     */
+    private static final class KeySetResourceBundle extends ResourceBundle {
+        private final Locale locale;
+        private final Set<String> keys;
+
+        KeySetResourceBundle(Locale locale, Set<String> keys) {
+            this.locale = locale;
+            this.keys = Collections.unmodifiableSet(keys);
+        }
+
+        @Override
+        public Locale getLocale() {
+            return locale;
+        }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            return keys.contains(key) ? "" : null;
+        }
+
+        @Override
+        protected Set<String> handleKeySet() {
+            return keys;
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            return Collections.enumeration(keys);
+        }
+    }
+}
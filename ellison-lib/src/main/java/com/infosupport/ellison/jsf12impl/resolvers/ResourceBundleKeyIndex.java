@@ -0,0 +1,145 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.resolvers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable index of the keys of a resource bundle, recording for every key which locales of the bundle define it.
+ * <p/>
+ * The locales of the bundle are numbered in the order they were added, and every key maps to a bit set of the
+ * numbers of the locales defining it. Checking whether a key is defined in all locales is a single lookup and a
+ * comparison of bit sets; the locales that lack a key are only worked out when they are asked for.
+ *
+ * @author StefanZ
+ */
+public final class ResourceBundleKeyIndex {
+    private final List<Locale> locales;
+    private final Map<String, BitSet> coverageByKey;
+    private final BitSet fullCoverage;
+
+    /**
+     * Constructor.
+     *
+     * @param locales
+     *     the locales of the bundle
+     * @param keySets
+     *     for every locale in {@code locales}, at the same position, the keys the bundle defines for that locale
+     */
+    public ResourceBundleKeyIndex(List<Locale> locales, List<? extends Collection<String>> keySets) {
+        if (locales.size() != keySets.size()) {
+            throw new IllegalArgumentException(String.format("Got %d locales, but %d sets of keys", locales.size(),
+                                                             keySets.size()));
+        }
+
+        Map<String, BitSet> coverage = new HashMap<>();
+        for (int i = 0; i < keySets.size(); i++) {
+            for (String key : keySets.get(i)) {
+                BitSet keyCoverage = coverage.get(key);
+                if (keyCoverage == null) {
+                    keyCoverage = new BitSet(locales.size());
+                    coverage.put(key, keyCoverage);
+                }
+                keyCoverage.set(i);
+            }
+        }
+
+        this.locales = Collections.unmodifiableList(new ArrayList<>(locales));
+        this.coverageByKey = coverage;
+        this.fullCoverage = new BitSet(locales.size());
+        this.fullCoverage.set(0, locales.size());
+    }
+
+    /**
+     * Get the locales of the bundle.
+     *
+     * @return the locales, numbered by their position in the list
+     */
+    public List<Locale> getLocales() {
+        return locales;
+    }
+
+    /**
+     * Checks whether any locale of the bundle defines a key.
+     *
+     * @param key
+     *     the key to check
+     *
+     * @return {@code true} if at least one locale defines {@code key}
+     */
+    public boolean isDefined(String key) {
+        return coverageByKey.containsKey(key);
+    }
+
+    /**
+     * Checks whether every locale of the bundle defines a key.
+     *
+     * @param key
+     *     the key to check
+     *
+     * @return {@code true} if all locales define {@code key}
+     */
+    public boolean isDefinedInAllLocales(String key) {
+        BitSet coverage = coverageByKey.get(key);
+        return coverage != null && coverage.equals(fullCoverage);
+    }
+
+    /**
+     * Get the number of the first locale that defines a key.
+     *
+     * @param key
+     *     the key to look for
+     *
+     * @return the position in {@link #getLocales()} of the first locale defining {@code key}, or -1 if no locale
+     *         defines it
+     */
+    public int getFirstDefiningLocale(String key) {
+        BitSet coverage = coverageByKey.get(key);
+        return coverage == null ? -1 : coverage.nextSetBit(0);
+    }
+
+    /**
+     * Get the locales that lack a key.
+     *
+     * @param key
+     *     the key to look for
+     *
+     * @return the positions in {@link #getLocales()} of the locales that do not define {@code key}, in ascending order
+     */
+    public List<Integer> getMissingLocales(String key) {
+        BitSet coverage = coverageByKey.get(key);
+        List<Integer> missingLocales = new ArrayList<>();
+
+        for (int i = 0; i < locales.size(); i++) {
+            if (coverage == null || !coverage.get(i)) {
+                missingLocales.add(i);
+            }
+        }
+
+        return missingLocales;
+    }
+}
@@ -20,12 +20,17 @@
 package com.infosupport.ellison.jsf12impl.resolvers;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 
 import javax.el.ELContext;
 import javax.faces.FactoryFinder;
@@ -36,7 +41,9 @@ import javax.servlet.ServletContext;
 import com.infosupport.ellison.core.api.ELError;
 import com.infosupport.ellison.core.api.LocationAwareELExpression;
 import com.infosupport.ellison.core.api.StaticELResolver;
+import com.infosupport.ellison.core.archive.ApplicationArchive;
 import com.infosupport.ellison.core.exceptions.ELCheckerException;
+import com.infosupport.ellison.core.util.Constants;
 import com.infosupport.ellison.jsf12impl.apiimpl.JSFELExpression;
 import com.sun.faces.application.ApplicationAssociate;
 import com.sun.faces.application.ApplicationResourceBundle;
@@ -47,6 +54,7 @@ import com.sun.faces.application.ApplicationResourceBundle;
  * @author StefanZ
  */
 public class ResourceBundleResolver extends StaticELResolver {
+    static final Class<?>[] BASE_TYPES = {ROOT, LocaleResourceBundlesMap.class};
     private Map<String, LocaleResourceBundlesMap> resourceBundleLocaleCollectionMap;
 
     /**
@@ -63,28 +71,112 @@ public class ResourceBundleResolver extends StaticELResolver {
      * @see javax.faces.application.Application#getSupportedLocales()
      */
     public ResourceBundleResolver(ServletContext servletContext) {
+        this(servletContext, (ResourceBundleIndexer) null);
+    }
+
+    /**
+     * Constructor. The keys of resource bundles that consist of {@code .properties} files in WEB-INF/classes are read
+     * straight from {@code applicationArchive} by a {@link ResourceBundleIndexer}, so that neither the bundles nor
+     * their values are loaded. All other resource bundles are loaded like {@link
+     * #ResourceBundleResolver(ServletContext)} does.
+     *
+     * @param servletContext
+     *     the servlet context in which to find the necessary configuration
+     * @param applicationArchive
+     *     the application archive {@code servletContext} was created for
+     */
+    public ResourceBundleResolver(ServletContext servletContext, ApplicationArchive applicationArchive) {
+        this(servletContext, new ResourceBundleIndexer(applicationArchive, Constants.DEFAULT_BUNDLE_READ_THREADS));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param servletContext
+     *     the servlet context in which to find the necessary configuration
+     * @param resourceBundleIndexer
+     *     the indexer to read the keys of resource bundles with, may be {@code null} to load all bundles through
+     *     {@link ApplicationResourceBundle#getResourceBundle(java.util.Locale)}
+     */
+    private ResourceBundleResolver(ServletContext servletContext, ResourceBundleIndexer resourceBundleIndexer) {
         resourceBundleLocaleCollectionMap = new HashMap<>();
         ApplicationAssociate applicationAssociate = ApplicationAssociate.getInstance(servletContext);
-        Application application = getApplication();
+        Map<String, ApplicationResourceBundle> applicationResourceBundles = applicationAssociate.getResourceBundles();
+
+        if (applicationResourceBundles.isEmpty()) {
+            return;
+        }
+
+        List<Locale> locales = getLocales(getApplication());
+        Map<String, Map<Locale, ResourceBundle>> indexedBundles = Collections.emptyMap();
+
+        if (resourceBundleIndexer != null) {
+            Set<String> baseNames = new HashSet<>();
+            for (ApplicationResourceBundle applicationResourceBundle : applicationResourceBundles.values()) {
+                baseNames.add(applicationResourceBundle.getBaseName());
+            }
+            indexedBundles = resourceBundleIndexer.index(baseNames, locales);
+        }
 
-        for (Map.Entry<String, ApplicationResourceBundle> applicationResourceBundleEntry : applicationAssociate
-            .getResourceBundles().entrySet()) {
+        for (Map.Entry<String, ApplicationResourceBundle> applicationResourceBundleEntry : applicationResourceBundles
+            .entrySet()) {
             LocaleResourceBundlesMap localeResourceBundlesMap =
                 new LocaleResourceBundlesMap(applicationResourceBundleEntry.getKey());
-            localeResourceBundlesMap.put(application.getDefaultLocale(), applicationResourceBundleEntry.getValue()
-                .getResourceBundle(application.getDefaultLocale()));
-            Iterator<Locale> supportedLocales = application.getSupportedLocales();
-
-            while (supportedLocales.hasNext()) {
-                Locale supportedLocale = supportedLocales.next();
-                localeResourceBundlesMap
-                    .put(supportedLocale, applicationResourceBundleEntry.getValue().getResourceBundle(supportedLocale));
+            Map<Locale, ResourceBundle> indexedBundle =
+                indexedBundles.get(applicationResourceBundleEntry.getValue().getBaseName());
+
+            if (indexedBundle != null) {
+                localeResourceBundlesMap.putAll(indexedBundle);
+            } else {
+                for (Locale locale : locales) {
+                    localeResourceBundlesMap
+                        .put(locale, applicationResourceBundleEntry.getValue().getResourceBundle(locale));
+                }
             }
 
             resourceBundleLocaleCollectionMap.put(applicationResourceBundleEntry.getKey(), localeResourceBundlesMap);
         }
     }
 
+    /**
+     * Get the locales of an application: its default locale, followed by its supported locales.
+     *
+     * @param application
+     *     the application to get the locales of
+     *
+     * @return the distinct locales of {@code application}
+     */
+    private static List<Locale> getLocales(Application application) {
+        Set<Locale> locales = new LinkedHashSet<>();
+        locales.add(application.getDefaultLocale());
+        Iterator<Locale> supportedLocales = application.getSupportedLocales();
+
+        while (supportedLocales.hasNext()) {
+            locales.add(supportedLocales.next());
+        }
+
+        return new ArrayList<>(locales);
+    }
+
+    /**
+     * Get the resource bundles this resolver resolves.
+     *
+     * @return an unmodifiable view of the resource bundles, by name
+     */
+    public Map<String, LocaleResourceBundlesMap> getResourceBundles() {
+        return Collections.unmodifiableMap(resourceBundleLocaleCollectionMap);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@link #ROOT} for the names of resource bundles, and {@link LocaleResourceBundlesMap} for their keys
+     */
+    @Override
+    public Class<?>[] getBaseTypes() {
+        return BASE_TYPES.clone();
+    }
+
     /**
      * Get the value for a resource bundle or its properties.
      * 
@@ -121,28 +213,21 @@ public class ResourceBundleResolver extends StaticELResolver {
             }
         } else if (base instanceof LocaleResourceBundlesMap) {
             LocaleResourceBundlesMap localeResourceBundlesMap = (LocaleResourceBundlesMap) base;
-            List<ResourceBundle> resourceBundlesWithoutProperty = new ArrayList<>();
-
-            for (Map.Entry<Locale, ResourceBundle> localeResourceBundleEntry : localeResourceBundlesMap.entrySet()) {
-                ResourceBundle resourceBundle = localeResourceBundleEntry.getValue();
-
-                if (resourceBundle.containsKey(propertyName)) {
-                    context.setPropertyResolved(true);
-                    returnValue = resourceBundle.getObject(propertyName);
-                } else {
-                    resourceBundlesWithoutProperty.add(resourceBundle);
-                }
-            }
+            ResourceBundleKeyIndex keyIndex = localeResourceBundlesMap.getKeyIndex();
 
-            if (resourceBundlesWithoutProperty.size() == localeResourceBundlesMap.size()) {
+            if (keyIndex.isDefinedInAllLocales(propertyName)) {
+                context.setPropertyResolved(true);
+                returnValue = localeResourceBundlesMap.getObject(keyIndex.getFirstDefiningLocale(propertyName),
+                                                                 propertyName);
+            } else if (!keyIndex.isDefined(propertyName)) {
                 throw new ELCheckerException(String.format(
                     "None of the locales for resource bundle '%s' contain a " + "property named '%s'",
                     localeResourceBundlesMap.getBundleName(), propertyName),
                                              (LocationAwareELExpression) context.getContext(JSFELExpression.class),
                                              ELError.ELErrorSeverity.ERROR);
-            } else if (resourceBundlesWithoutProperty.size() > 0) {
-                throwMissingFromSomeLocalesException(context, propertyName, localeResourceBundlesMap,
-                                                     resourceBundlesWithoutProperty);
+            } else {
+                context.setPropertyResolved(true);
+                throwMissingFromSomeLocalesException(context, propertyName, localeResourceBundlesMap, keyIndex);
             }
         }
 
@@ -151,13 +236,14 @@ public class ResourceBundleResolver extends StaticELResolver {
 
     private void throwMissingFromSomeLocalesException(ELContext context, String propertyName,
                                                       LocaleResourceBundlesMap localeResourceBundlesMap,
-                                                      List<ResourceBundle> resourceBundlesWithoutProperty) {
+                                                      ResourceBundleKeyIndex keyIndex) {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("Resource bundle '%s' does not contain property '%s' for the following locales: ",
                                 localeResourceBundlesMap.getBundleName(), propertyName));
+        List<Integer> missingLocales = keyIndex.getMissingLocales(propertyName);
 
-        for (int i = 0; i < resourceBundlesWithoutProperty.size(); i++) {
-            Locale locale = resourceBundlesWithoutProperty.get(i).getLocale();
+        for (int i = 0; i < missingLocales.size(); i++) {
+            Locale locale = keyIndex.getLocales().get(missingLocales.get(i));
 
             if (i > 0) {
                 sb.append(", ");
@@ -182,6 +268,7 @@ public class ResourceBundleResolver extends StaticELResolver {
     public static class LocaleResourceBundlesMap extends HashMap<Locale, ResourceBundle> {
         private static final long serialVersionUID = -2606631418043897571L;
         private String bundleName = null;
+        private transient volatile IndexedBundles indexedBundles;
 
         /**
          * Constructor.
@@ -197,5 +284,93 @@ public class ResourceBundleResolver extends StaticELResolver {
         public String getBundleName() {
             return bundleName;
         }
+
+        /**
+         * Get the index of the keys of the resource bundles in this map. The index is built when it is first asked
+         * for, and rebuilt after this map has been modified.
+         *
+         * @return an index of the keys of the resource bundles, whose locales are those of the bundles themselves
+         *         ({@link ResourceBundle#getLocale()}), in the iteration order of this map
+         */
+        public ResourceBundleKeyIndex getKeyIndex() {
+            return getIndexedBundles().keyIndex;
+        }
+
+        /**
+         * Gets an object from one of the resource bundles in this map.
+         *
+         * @param locale
+         *     the position of the bundle's locale in {@link ResourceBundleKeyIndex#getLocales()} of {@link
+         *     #getKeyIndex()}
+         * @param key
+         *     the key of the object
+         *
+         * @return the object
+         *
+         * @see ResourceBundle#getObject(String)
+         */
+        public Object getObject(int locale, String key) {
+            return getIndexedBundles().bundles[locale].getObject(key);
+        }
+
+        private IndexedBundles getIndexedBundles() {
+            IndexedBundles current = indexedBundles;
+
+            if (current == null) {
+                synchronized (this) {
+                    current = indexedBundles;
+                    if (current == null) {
+                        current = new IndexedBundles(values());
+                        indexedBundles = current;
+                    }
+                }
+            }
+
+            return current;
+        }
+
+        @Override
+        public ResourceBundle put(Locale key, ResourceBundle value) {
+            indexedBundles = null;
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends Locale, ? extends ResourceBundle> m) {
+            indexedBundles = null;
+            super.putAll(m);
+        }
+
+        @Override
+        public ResourceBundle remove(Object key) {
+            indexedBundles = null;
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            indexedBundles = null;
+            super.clear();
+        }
+
+        /**
+         * The resource bundles of the map, in the order they were indexed in, along with their index.
+         */
+        private static final class IndexedBundles {
+            private final ResourceBundle[] bundles;
+            private final ResourceBundleKeyIndex keyIndex;
+
+            IndexedBundles(Collection<ResourceBundle> resourceBundles) {
+                bundles = resourceBundles.toArray(new ResourceBundle[resourceBundles.size()]);
+                List<Locale> locales = new ArrayList<>(bundles.length);
+                List<Set<String>> keySets = new ArrayList<>(bundles.length);
+
+                for (ResourceBundle bundle : bundles) {
+                    locales.add(bundle.getLocale());
+                    keySets.add(bundle.keySet());
+                }
+                keyIndex = new ResourceBundleKeyIndex(locales, keySets);
+            }
+        }
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.resolvers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.infosupport.ellison.jsf12impl.resolvers.ResourceBundleResolver.LocaleResourceBundlesMap;
+
+/**
+ * Immutable table of the names an EL expression can start with in a JSF application: managed beans from the JSF
+ * configuration files, annotated managed beans, and resource bundles.
+ * <p/>
+ * When a name is defined by more than one source, the first of these sources (in the order above) wins. Such
+ * collisions are detected and logged once, when the table is built, so resolving a name is a single lookup.
+ *
+ * @author StefanZ
+ */
+public class RootSymbolTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RootSymbolTable.class);
+    private final Map<String, RootSymbol> rootSymbols;
+    private final List<String> collisions;
+
+    /**
+     * Constructor.
+     *
+     * @param managedBeans
+     *     the managed beans from the JSF configuration files, by name
+     * @param annotatedBeans
+     *     the annotated managed beans, by name
+     * @param resourceBundles
+     *     the resource bundles, by name
+     */
+    public RootSymbolTable(Map<String, Class<?>> managedBeans, Map<String, Class<?>> annotatedBeans,
+                           Map<String, LocaleResourceBundlesMap> resourceBundles) {
+        Map<String, RootSymbol> symbols = new HashMap<>();
+        List<String> foundCollisions = new ArrayList<>();
+
+        addRootSymbols(symbols, foundCollisions, managedBeans, Source.FACES_CONFIG);
+        addRootSymbols(symbols, foundCollisions, annotatedBeans, Source.ANNOTATION);
+        addRootSymbols(symbols, foundCollisions, resourceBundles, Source.RESOURCE_BUNDLE);
+
+        this.rootSymbols = Collections.unmodifiableMap(symbols);
+        this.collisions = Collections.unmodifiableList(foundCollisions);
+    }
+
+    /**
+     * Adds the names defined by a source to the table, unless an earlier source already defined them.
+     *
+     * @param symbols
+     *     the table to add to
+     * @param foundCollisions
+     *     the list to add a message to for every name that was already defined
+     * @param values
+     *     the values of the names defined by the source
+     * @param source
+     *     the source defining the names
+     */
+    private static void addRootSymbols(Map<String, RootSymbol> symbols, List<String> foundCollisions,
+                                       Map<String, ?> values, Source source) {
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            RootSymbol existingSymbol = symbols.get(entry.getKey());
+
+            if (existingSymbol == null) {
+                symbols.put(entry.getKey(), new RootSymbol(entry.getValue(), source));
+            } else {
+                String collision = String.format(
+                    "Name collision on name '%s': it is defined by %s (%s) and by %s (%s). The former is used. Please "
+                        + "check your configuration.", entry.getKey(), existingSymbol.getSource().getDescription(),
+                    describe(existingSymbol.getValue()), source.getDescription(), describe(entry.getValue()));
+                LOGGER.warn(collision);
+                foundCollisions.add(collision);
+            }
+        }
+    }
+
+    /**
+     * Describes the value of a name in a message.
+     */
+    private static String describe(Object value) {
+        if (value instanceof Class) {
+            return ((Class<?>) value).getCanonicalName();
+        } else if (value instanceof LocaleResourceBundlesMap) {
+            return ((LocaleResourceBundlesMap) value).getBundleName();
+        }
+
+        return String.valueOf(value);
+    }
+
+    /**
+     * Looks up a name.
+     *
+     * @param name
+     *     the name to look up
+     *
+     * @return the symbol the name refers to, or {@code null} if no source defines it
+     */
+    public RootSymbol get(String name) {
+        return rootSymbols.get(name);
+    }
+
+    /**
+     * Get the collisions that were found while building this table.
+     *
+     * @return a message for every name that was defined by more than one source, in the order they were found
+     */
+    public List<String> getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * The sources names can be defined by, in order of precedence.
+     */
+    public enum Source {
+        FACES_CONFIG("a managed bean in the JSF configuration"),
+        ANNOTATION("an annotated managed bean"),
+        RESOURCE_BUNDLE("a resource bundle");
+
+        private final String description;
+
+        Source(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Get a description of this source, for use in messages.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * What a name refers to.
+     */
+    public static final class RootSymbol {
+        private final Object value;
+        private final Source source;
+
+        RootSymbol(Object value, Source source) {
+            this.value = value;
+            this.source = source;
+        }
+
+        /**
+         * Get the value a name resolves to.
+         *
+         * @return the class of a managed bean, or the {@link LocaleResourceBundlesMap} of a resource bundle
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Get the source that defined the name.
+         *
+         * @return the source of this symbol
+         */
+        public Source getSource() {
+            return source;
+        }
+    }
+}
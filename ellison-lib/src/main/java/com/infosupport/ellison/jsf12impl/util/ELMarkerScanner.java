@@ -0,0 +1,133 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the Expression Language expressions in text, without parsing it.
+ * <p/>
+ * Most attribute values and text in JSF pages contain no expressions at all, and parsing them only yields literal text
+ * that is thrown away. This scanner looks for the <code>#{</code> and <code>${</code> markers expressions start with,
+ * so that only the expressions themselves are handed to the EL parser. It follows the escaping rules of the parser: a
+ * backslash in literal text escapes the character after it (so <code>\#{</code> is not an expression), and a
+ * <code>}</code> inside a string literal within an expression does not end that expression.
+ *
+ * @author StefanZ
+ */
+public final class ELMarkerScanner {
+    private ELMarkerScanner() {
+    }
+
+    /**
+     * Finds the expressions in text.
+     *
+     * @param text
+     *     the text to search
+     *
+     * @return every expression in {@code text}, including its markers and braces (e.g. {@code #{bean.property}}), in
+     *         the order they appear. An expression that is not closed runs to the end of {@code text}, so that the
+     *         parser can report it.
+     */
+    public static List<String> findExpressions(CharSequence text) {
+        int length = text.length();
+        int position = findExpressionStart(text, 0, length);
+
+        if (position == -1) {
+            return Collections.emptyList();
+        }
+
+        List<String> expressions = new ArrayList<>();
+        while (position != -1) {
+            int end = findExpressionEnd(text, position + 2, length);
+            expressions.add(text.subSequence(position, end).toString());
+            position = findExpressionStart(text, end, length);
+        }
+
+        return expressions;
+    }
+
+    /**
+     * Checks whether a list of expressions contains both immediate (<code>${</code>) and deferred (<code>#{</code>)
+     * expressions, which the parser only reports as an error when it sees them together.
+     *
+     * @param expressions
+     *     expressions as returned by {@link #findExpressions(CharSequence)}
+     *
+     * @return {@code true} if both kinds of expression are in {@code expressions}
+     */
+    public static boolean isMixedSyntax(List<String> expressions) {
+        for (int i = 1; i < expressions.size(); i++) {
+            if (expressions.get(i).charAt(0) != expressions.get(0).charAt(0)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the start of the next expression in literal text.
+     *
+     * @return the index of the {@code #} or {@code $} the next expression starts with, or -1 if there is none
+     */
+    private static int findExpressionStart(CharSequence text, int from, int length) {
+        for (int i = from; i < length - 1; i++) {
+            char c = text.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if ((c == '#' || c == '$') && text.charAt(i + 1) == '{') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the end of an expression, skipping over string literals.
+     *
+     * @return the index just after the <code>}</code> that closes the expression, or {@code length} if it isn't closed
+     */
+    private static int findExpressionEnd(CharSequence text, int from, int length) {
+        char quote = 0;
+
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '}') {
+                return i + 1;
+            }
+        }
+
+        return length;
+    }
+}
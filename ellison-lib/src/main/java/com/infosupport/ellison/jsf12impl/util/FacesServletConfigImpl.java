@@ -28,6 +28,7 @@ import com.sun.enterprise.deployment.io.DeploymentDescriptorFileFactory;
 import com.sun.enterprise.deployment.util.XModuleType;
 import com.sun.enterprise.deployment.web.InitializationParameter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import javax.faces.webapp.FacesServlet;
 import javax.servlet.ServletConfig;
@@ -95,9 +96,9 @@ public class FacesServletConfigImpl implements ServletConfig {
             DeploymentDescriptorFileFactory.getDDFileFor(XModuleType.WAR);
         deploymentDescriptorFile.setXMLValidation(false);
 
-        try {
-            return deploymentDescriptorFile
-                .read(null, applicationArchive.getFile(deploymentDescriptorFile.getDeploymentDescriptorPath()));
+        try (InputStream deploymentDescriptor = applicationArchive
+            .getInputStream(deploymentDescriptorFile.getDeploymentDescriptorPath())) {
+            return deploymentDescriptorFile.read(null, deploymentDescriptor);
         } catch (SAXParseException | IOException e) {
             throw new ApplicationConfigurationException(e);
         }
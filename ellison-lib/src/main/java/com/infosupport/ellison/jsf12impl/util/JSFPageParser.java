@@ -39,6 +39,8 @@ import org.xml.sax.*;
  * of all found expressions.
  */
 public class JSFPageParser extends SAXParser {
+    private static SAXParserFactory saxParserFactory;
+    private final ApplicationArchive applicationArchive;
     private SAXParser delegate;
     private JSFSAXHandler jsfSaxHandler;
 
@@ -56,13 +58,8 @@ public class JSFPageParser extends SAXParser {
      * @see XMLReader#setProperty(String, Object)
      */
     public JSFPageParser(ApplicationArchive applicationArchive) throws SAXException, ParserConfigurationException {
-        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-        saxParserFactory.setValidating(false);
-        saxParserFactory.setNamespaceAware(true);
-        saxParserFactory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
-        saxParserFactory.setFeature("http://xml.org/sax/features/validation", false);
-
-        delegate = saxParserFactory.newSAXParser();
+        this.applicationArchive = applicationArchive;
+        delegate = newSAXParser();
         XMLReader xmlReader = delegate.getXMLReader();
         jsfSaxHandler = new JSFSAXHandler(applicationArchive);
         xmlReader.setEntityResolver(jsfSaxHandler);
@@ -70,6 +67,50 @@ public class JSFPageParser extends SAXParser {
         xmlReader.setEntityResolver(jsfSaxHandler);
     }
 
+    /**
+     * Creates a {@code SAXParser} through a factory that is configured once, and shared by all page parsers. As
+     * factories need not be thread-safe, parsers are created one at a time.
+     *
+     * @return a new parser that is not validating, and namespace aware
+     *
+     * @throws SAXException
+     *     if the factory could not be configured
+     * @throws ParserConfigurationException
+     *     if the factory could not be configured, or it could not create a parser
+     */
+    private static synchronized SAXParser newSAXParser() throws SAXException, ParserConfigurationException {
+        if (saxParserFactory == null) {
+            SAXParserFactory newSAXParserFactory = SAXParserFactory.newInstance();
+            newSAXParserFactory.setValidating(false);
+            newSAXParserFactory.setNamespaceAware(true);
+            newSAXParserFactory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+            newSAXParserFactory.setFeature("http://xml.org/sax/features/validation", false);
+            saxParserFactory = newSAXParserFactory;
+        }
+
+        return saxParserFactory.newSAXParser();
+    }
+
+    /**
+     * Get the application archive this parser parses pages of.
+     *
+     * @return the application archive given to the constructor
+     */
+    public ApplicationArchive getApplicationArchive() {
+        return applicationArchive;
+    }
+
+    /**
+     * Resets this parser, so that it can parse another page. The expressions and errors found in the previous page
+     * are forgotten, but collections returned by {@link #getExpressions()} and {@link #getErrors()} before are left
+     * untouched.
+     */
+    @Override
+    public void reset() {
+        delegate.reset();
+        jsfSaxHandler.reset();
+    }
+
     @Override
     public Parser getParser() throws SAXException {
         return delegate.getParser();
@@ -115,6 +156,25 @@ public class JSFPageParser extends SAXParser {
         delegate.parse(f, jsfSaxHandler);
     }
 
+    /**
+     * Parses the content given by {@code inputSource} using the default {@link JSFSAXHandler}.
+     * <p/>
+     * The system ID of {@code inputSource} is used to determine the location of any found expressions, so it should
+     * be set to the (absolute) URI of the page within the application archive.
+     *
+     * @param inputSource
+     *     the input source of the page to parse
+     *
+     * @throws SAXException
+     *     if any SAX error occurs during processing
+     * @throws IOException
+     *     if any IO error occurs during processing
+     * @see ApplicationArchive#resolvePath(java.net.URI)
+     */
+    public void parse(InputSource inputSource) throws SAXException, IOException {
+        delegate.parse(inputSource, jsfSaxHandler);
+    }
+
     /**
      * Gets all the found expressions within the current document.
      *
@@ -64,11 +64,23 @@ public class JSFSAXExpressionHolder {
      */
     public JSFSAXExpressionHolder(ApplicationArchive applicationArchive) {
         stringBuffer = new StringBuffer();
+        this.applicationArchive = applicationArchive;
+        reset();
+    }
+
+    /**
+     * Forgets the expressions and errors found so far, and any text that was being read, so that the expressions in
+     * another document can be saved. The collections returned by {@link #getELExpressions()} and {@link
+     * #getElErrors()} before are left untouched.
+     */
+    public void reset() {
+        stringBuffer.setLength(0);
+        inText = false;
+        beginLocator = null;
         elExpressions = new ArrayList<>();
         elErrors = new ArrayList<>();
         unmodifiableELErrors = Collections.unmodifiableCollection(elErrors);
         unmodifiableELExpressions = Collections.unmodifiableCollection(elExpressions);
-        this.applicationArchive = applicationArchive;
     }
 
     /**
@@ -117,7 +129,7 @@ public class JSFSAXExpressionHolder {
      */
     public void endText() {
         if (inText) {
-            addExpression(stringBuffer.toString(), beginLocator);
+            addExpression(stringBuffer, beginLocator);
             stringBuffer.setLength(0);
             inText = false;
         }
@@ -132,31 +144,56 @@ public class JSFSAXExpressionHolder {
         endText();
     }
 
-    private void addExpression(String expressionString, Locator locator) {
-        Node elNode = null;
-        String trimmedExpressionString = expressionString.trim();
-        Location location = null;
-
-        if (trimmedExpressionString.length() > 0) {
-            location = new Location(applicationArchive.relativizePath(URI.create(locator.getSystemId())),
-                                    locator.getLineNumber(), locator.getColumnNumber());
-            try {
-                elNode = ExpressionBuilder.createNode(trimmedExpressionString);
-            } catch (ELException e) {
-                elErrors.add(new ELError(String.format("%s: %s", e.getMessage(), e.getCause().getMessage()),
-                                         new LocationAwareELExpressionString(trimmedExpressionString, location),
-                                         ELError.ELErrorSeverity.ERROR));
-            }
+    /**
+     * Parses the expressions in an attribute value or a piece of text, and saves the checkable expressions and errors
+     * found in them. Text is only parsed if {@link ELMarkerScanner} finds expressions in it, and then only the
+     * expressions themselves are parsed, unless they mix immediate and deferred syntax, which the parser has to see
+     * as a whole to report.
+     *
+     * @param text
+     *     the attribute value or text
+     * @param locator
+     *     the location of {@code text} within the document
+     */
+    private void addExpression(CharSequence text, Locator locator) {
+        List<String> expressionStrings = ELMarkerScanner.findExpressions(text);
+
+        if (expressionStrings.isEmpty()) {
+            return;
+        }
 
-            if (elNode != null) {
-                Pair<List<LocationAwareELExpression>, List<ELError>> foundExpressionsAndErrors =
-                    ELNodeUtil.extractCheckableExpressions(elNode, location);
-                elExpressions.addAll(foundExpressionsAndErrors.first());
-                elErrors.addAll(foundExpressionsAndErrors.second());
+        Location location = new Location(applicationArchive.relativizePath(URI.create(locator.getSystemId())),
+                                         locator.getLineNumber(), locator.getColumnNumber());
+
+        if (ELMarkerScanner.isMixedSyntax(expressionStrings)) {
+            parseExpression(text.toString().trim(), location);
+        } else {
+            for (String expressionString : expressionStrings) {
+                parseExpression(expressionString, location);
             }
         }
     }
 
+    private void parseExpression(String expressionString, Location location) {
+        Node elNode = null;
+
+        try {
+            elNode = ExpressionBuilder.createNode(expressionString);
+        } catch (ELException e) {
+            String message = e.getCause() == null ? e.getMessage()
+                : String.format("%s: %s", e.getMessage(), e.getCause().getMessage());
+            elErrors.add(new ELError(message, new LocationAwareELExpressionString(expressionString, location),
+                                     ELError.ELErrorSeverity.ERROR));
+        }
+
+        if (elNode != null) {
+            Pair<List<LocationAwareELExpression>, List<ELError>> foundExpressionsAndErrors =
+                ELNodeUtil.extractCheckableExpressions(elNode, location);
+            elExpressions.addAll(foundExpressionsAndErrors.first());
+            elErrors.addAll(foundExpressionsAndErrors.second());
+        }
+    }
+
     /**
      * Gets all the found expressions within the current document.
      *
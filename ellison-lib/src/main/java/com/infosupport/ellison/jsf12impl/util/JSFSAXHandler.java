@@ -50,6 +50,14 @@ public class JSFSAXHandler extends DefaultHandler {
         jsfSaxExpressionHolder = new JSFSAXExpressionHolder(applicationArchive);
     }
 
+    /**
+     * Resets this handler, so that it can handle another document. See {@link JSFSAXExpressionHolder#reset()}.
+     */
+    public void reset() {
+        locator = null;
+        jsfSaxExpressionHolder.reset();
+    }
+
     @Override
     public InputSource resolveEntity(String publicId, String systemId) throws IOException, SAXException {
         return new InputSource(new StringReader(""));
@@ -23,6 +23,8 @@ import com.infosupport.ellison.core.ELApplicationChecker;
 import com.infosupport.ellison.core.api.*;
 import com.infosupport.ellison.core.archive.ApplicationArchive;
 import com.infosupport.ellison.core.archive.ApplicationArchiveFactory;
+import com.infosupport.ellison.core.archive.EARApplicationArchive;
+import com.infosupport.ellison.core.archive.WARApplicationArchive;
 import com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException;
 import com.infosupport.ellison.core.exceptions.ArchiveFormatUnsupportedException;
 import com.infosupport.ellison.core.exceptions.ELCheckerException;
@@ -33,13 +35,18 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
@@ -69,9 +76,14 @@ public class ELApplicationCheckerTest {
     @Mock ELFinder elFinder;
     @Mock StaticELResolver elResolver;
     @Mock ELError elError;
+    @Mock EARApplicationArchive earApplicationArchive;
+    @Mock WARApplicationArchive firstWebModule;
+    @Mock WARApplicationArchive secondWebModule;
+    ClassLoader originalClassLoader;
 
     @Before
     public void setup() {
+        originalClassLoader = Thread.currentThread().getContextClassLoader();
         elApplicationChecker = spy(new ELApplicationChecker());
         emptyErrorCollection = Collections.emptyList(); // Have to do this in two steps... Generics hooray!
         emptyErrorCollection = Collections.unmodifiableCollection(emptyErrorCollection);
@@ -181,6 +193,8 @@ public class ELApplicationCheckerTest {
         }
 
         assertThat(caughtException, is(notNullValue()));
+        verify(applicationArchive).close();
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
     }
 
     /**
@@ -212,9 +226,309 @@ public class ELApplicationCheckerTest {
         Collection<ELError> result = elApplicationChecker.checkApplication(applicationFile);
 
         verify(elApplicationChecker).checkExpressions(emptyELExpressionCollection, elResolver);
+        InOrder inOrder = inOrder(elResolver, applicationArchive);
+        inOrder.verify(elResolver).close();
+        inOrder.verify(applicationArchive).close();
         assertThat(result, is(equalTo(twoErrorCollection)));
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
     }
 
+    /**
+     * Tests that {@link ELApplicationChecker#checkApplication(ApplicationArchive)} leaves closing the archive to the
+     * caller.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckApplication_ApplicationArchiveNotClosed() throws Exception {
+        // Mock setup
+        when(elApplicationCheckerFactory.canHandleApplication(applicationArchive)).thenReturn(true);
+        when(elApplicationCheckerFactory.createPageFinder(applicationArchive)).thenReturn(pageFinder);
+        when(elApplicationCheckerFactory.createELFinder(applicationArchive)).thenReturn(elFinder);
+        when(elApplicationCheckerFactory.createELResolver(applicationArchive)).thenReturn(elResolver);
+        when(pageFinder.findPages(any(ApplicationArchive.class))).thenReturn(emptyPagesCollection);
+        when(elFinder.findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class))).thenReturn(
+            new Pair<Collection<LocationAwareELExpression>, Collection<ELError>>(emptyELExpressionCollection,
+                                                                                 oneErrorCollection));
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        Collection<ELError> result = elApplicationChecker.checkApplication(applicationArchive);
+
+        verify(applicationArchive, never()).close();
+        assertThat(result, is(equalTo(oneErrorCollection)));
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
+    }
+
+
+    /**
+     * Tests that the web modules of an enterprise application are checked on their own, that unsupported modules are
+     * skipped, and that all modules are closed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckApplication_EnterpriseApplication() throws Exception {
+        // Mock setup
+        when(earApplicationArchive.getApplicationFile()).thenReturn(applicationFile);
+        when(earApplicationArchive.getWebModules()).thenReturn(Arrays.asList("first.war", "second.war"));
+        when(earApplicationArchive.openWebModule("first.war")).thenReturn(firstWebModule);
+        when(earApplicationArchive.openWebModule("second.war")).thenReturn(secondWebModule);
+        when(secondWebModule.getApplicationFile()).thenReturn(applicationFile);
+        when(elApplicationCheckerFactory.canHandleApplication(firstWebModule)).thenReturn(true);
+        when(elApplicationCheckerFactory.canHandleApplication(secondWebModule)).thenReturn(false);
+        when(elApplicationCheckerFactory.createPageFinder(firstWebModule)).thenReturn(pageFinder);
+        when(elApplicationCheckerFactory.createELFinder(firstWebModule)).thenReturn(elFinder);
+        when(elApplicationCheckerFactory.createELResolver(firstWebModule)).thenReturn(elResolver);
+        when(pageFinder.findPages(any(ApplicationArchive.class))).thenReturn(emptyPagesCollection);
+        when(elFinder.findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class))).thenReturn(
+            new Pair<Collection<LocationAwareELExpression>, Collection<ELError>>(emptyELExpressionCollection,
+                                                                                 oneErrorCollection));
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        Collection<ELError> result = elApplicationChecker.checkApplication(earApplicationArchive);
+
+        verify(firstWebModule).close();
+        verify(secondWebModule).close();
+        verify(earApplicationArchive, never()).close();
+        assertThat(result, is(equalTo(oneErrorCollection)));
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
+    }
+
+    /**
+     * Tests that an enterprise application without web modules is not supported.
+     *
+     * @throws Exception
+     */
+    @Test(expected = ApplicationNotSupportedException.class)
+    public void testCheckApplication_EnterpriseApplicationWithoutWebModules() throws Exception {
+        // Mock setup
+        when(earApplicationArchive.getApplicationFile()).thenReturn(applicationFile);
+        when(earApplicationArchive.getWebModules()).thenReturn(Collections.<String>emptyList());
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        elApplicationChecker.checkApplication(earApplicationArchive);
+    }
+
+    /**
+     * Tests that pages are checked while they are being parsed in pipelined mode, and that the errors are returned in
+     * page order, even though the pages are handed over in another order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckApplication_Pipelined() throws Exception {
+        final List<URI> pages = Arrays.asList(URI.create("a.xhtml"), URI.create("b.xhtml"), URI.create("c.xhtml"));
+        final List<ELError> resolveErrors = new ArrayList<>();
+        final List<ELError> parseErrors = new ArrayList<>();
+        final List<LocationAwareELExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            resolveErrors.add(mock(ELError.class));
+            parseErrors.add(mock(ELError.class));
+            expressions.add(mock(LocationAwareELExpression.class));
+            ELCheckerException elCheckerException = new ELCheckerException(resolveErrors.get(i));
+            when(expressions.get(i).getValue(elResolver)).thenThrow(elCheckerException);
+        }
+        StreamingELFinder streamingELFinder = mock(StreamingELFinder.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                StreamingELFinder.PageHandler pageHandler =
+                    (StreamingELFinder.PageHandler) invocation.getArguments()[2];
+                for (int i = pages.size() - 1; i >= 0; i--) {
+                    pageHandler.handlePage(i, pages.get(i), Collections.singletonList(expressions.get(i)),
+                                           Collections.singletonList(parseErrors.get(i)));
+                }
+                return null;
+            }
+        }).when(streamingELFinder).findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class),
+                                                     any(StreamingELFinder.PageHandler.class));
+        when(elApplicationCheckerFactory.canHandleApplication(applicationArchive)).thenReturn(true);
+        when(elApplicationCheckerFactory.createPageFinder(applicationArchive)).thenReturn(pageFinder);
+        when(elApplicationCheckerFactory.createELFinder(applicationArchive)).thenReturn(streamingELFinder);
+        when(elApplicationCheckerFactory.createELResolver(applicationArchive)).thenReturn(elResolver);
+        when(pageFinder.findPages(any(ApplicationArchive.class))).thenReturn(pages);
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        elApplicationChecker.setPipelined(true);
+        elApplicationChecker.setResolveThreads(2);
+        Collection<ELError> result = elApplicationChecker.checkApplication(applicationArchive);
+
+        List<ELError> expectedErrors = new ArrayList<>(resolveErrors);
+        expectedErrors.addAll(parseErrors);
+        assertThat(new ArrayList<>(result), is(equalTo(expectedErrors)));
+        verify(streamingELFinder, never()).findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class));
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
+    }
+
+    /**
+     * Tests that {@link ELApplicationChecker#checkApplication(ApplicationArchive, ELCheckListener)} passes the errors,
+     * pages and phases on to the listener in the order in which they are found.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckApplication_Listener() throws Exception {
+        URI page = URI.create("a.xhtml");
+        ELError resolveError = mock(ELError.class);
+        ELError parseError = mock(ELError.class);
+        LocationAwareELExpression expression = mock(LocationAwareELExpression.class);
+        ELCheckerException elCheckerException = new ELCheckerException(resolveError);
+        ELCheckListener listener = mock(ELCheckListener.class);
+        when(expression.getValue(elResolver)).thenThrow(elCheckerException);
+        when(elApplicationCheckerFactory.canHandleApplication(applicationArchive)).thenReturn(true);
+        when(elApplicationCheckerFactory.createPageFinder(applicationArchive)).thenReturn(pageFinder);
+        when(elApplicationCheckerFactory.createELFinder(applicationArchive)).thenReturn(elFinder);
+        when(elApplicationCheckerFactory.createELResolver(applicationArchive)).thenReturn(elResolver);
+        when(pageFinder.findPages(any(ApplicationArchive.class))).thenReturn(Collections.singletonList(page));
+        when(elFinder.findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class))).thenReturn(
+            new Pair<Collection<LocationAwareELExpression>, Collection<ELError>>(
+                Collections.singletonList(expression), Collections.singletonList(parseError)));
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        elApplicationChecker.checkApplication(applicationArchive, listener);
+
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onError(parseError);
+        inOrder.verify(listener).onPhaseDone(ELCheckListener.Phase.PARSE);
+        inOrder.verify(listener).onError(resolveError);
+        inOrder.verify(listener).onPageDone(page);
+        inOrder.verify(listener).onPhaseDone(ELCheckListener.Phase.RESOLVE);
+        verifyNoMoreInteractions(listener);
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
+    }
+
+    /**
+     * Tests that when pages are not pipelined, the syntax errors are passed on to the listener in page order before
+     * the parse phase is done, and that every page is resolved and passed on, together with its errors, before the
+     * next page is resolved. The errors are still returned with the errors found while resolving first.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckApplication_StreamingListener() throws Exception {
+        final List<URI> pages = Arrays.asList(URI.create("a.xhtml"), URI.create("b.xhtml"));
+        final List<ELError> resolveErrors = Arrays.asList(mock(ELError.class), mock(ELError.class));
+        final List<ELError> parseErrors = Arrays.asList(mock(ELError.class), mock(ELError.class));
+        final List<LocationAwareELExpression> expressions =
+            Arrays.asList(mock(LocationAwareELExpression.class), mock(LocationAwareELExpression.class));
+        final List<ELCheckerException> elCheckerExceptions =
+            Arrays.asList(new ELCheckerException(resolveErrors.get(0)), new ELCheckerException(resolveErrors.get(1)));
+        StreamingELFinder streamingELFinder = mock(StreamingELFinder.class);
+        final ELCheckListener listener = mock(ELCheckListener.class);
+        when(expressions.get(0).getValue(elResolver)).thenThrow(elCheckerExceptions.get(0));
+        when(expressions.get(1).getValue(elResolver)).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                // The first page must have been passed on before the second one is resolved
+                verify(listener).onPageDone(pages.get(0));
+                throw elCheckerExceptions.get(1);
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                StreamingELFinder.PageHandler pageHandler =
+                    (StreamingELFinder.PageHandler) invocation.getArguments()[2];
+                for (int i = pages.size() - 1; i >= 0; i--) {
+                    pageHandler.handlePage(i, pages.get(i), Collections.singletonList(expressions.get(i)),
+                                           Collections.singletonList(parseErrors.get(i)));
+                }
+                return null;
+            }
+        }).when(streamingELFinder).findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class),
+                                                     any(StreamingELFinder.PageHandler.class));
+        when(elApplicationCheckerFactory.canHandleApplication(applicationArchive)).thenReturn(true);
+        when(elApplicationCheckerFactory.createPageFinder(applicationArchive)).thenReturn(pageFinder);
+        when(elApplicationCheckerFactory.createELFinder(applicationArchive)).thenReturn(streamingELFinder);
+        when(elApplicationCheckerFactory.createELResolver(applicationArchive)).thenReturn(elResolver);
+        when(pageFinder.findPages(any(ApplicationArchive.class))).thenReturn(pages);
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        elApplicationChecker.checkApplication(applicationArchive, listener);
+        Collection<ELError> result = elApplicationChecker.checkApplication(applicationArchive);
+
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onError(parseErrors.get(0));
+        inOrder.verify(listener).onError(parseErrors.get(1));
+        inOrder.verify(listener).onPhaseDone(ELCheckListener.Phase.PARSE);
+        inOrder.verify(listener).onError(resolveErrors.get(0));
+        inOrder.verify(listener).onPageDone(pages.get(0));
+        inOrder.verify(listener).onError(resolveErrors.get(1));
+        inOrder.verify(listener).onPageDone(pages.get(1));
+        inOrder.verify(listener).onPhaseDone(ELCheckListener.Phase.RESOLVE);
+        verifyNoMoreInteractions(listener);
+        List<ELError> expectedErrors = new ArrayList<>(resolveErrors);
+        expectedErrors.addAll(parseErrors);
+        assertThat(new ArrayList<>(result), is(equalTo(expectedErrors)));
+        verify(streamingELFinder, never()).findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class));
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
+    }
+
+    /**
+     * Tests that in pipelined mode, the errors found while parsing and resolving a page are passed on to the listener
+     * in page order, the latter followed by the page itself, even though the pages are handed over in another order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckApplication_PipelinedListener() throws Exception {
+        final List<URI> pages = Arrays.asList(URI.create("a.xhtml"), URI.create("b.xhtml"), URI.create("c.xhtml"));
+        final List<ELError> resolveErrors = new ArrayList<>();
+        final List<ELError> parseErrors = new ArrayList<>();
+        final List<LocationAwareELExpression> expressions = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            resolveErrors.add(mock(ELError.class));
+            parseErrors.add(mock(ELError.class));
+            expressions.add(mock(LocationAwareELExpression.class));
+            ELCheckerException elCheckerException = new ELCheckerException(resolveErrors.get(i));
+            when(expressions.get(i).getValue(elResolver)).thenThrow(elCheckerException);
+        }
+        StreamingELFinder streamingELFinder = mock(StreamingELFinder.class);
+        ELCheckListener listener = mock(ELCheckListener.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                StreamingELFinder.PageHandler pageHandler =
+                    (StreamingELFinder.PageHandler) invocation.getArguments()[2];
+                for (int i = pages.size() - 1; i >= 0; i--) {
+                    pageHandler.handlePage(i, pages.get(i), Collections.singletonList(expressions.get(i)),
+                                           Collections.singletonList(parseErrors.get(i)));
+                }
+                return null;
+            }
+        }).when(streamingELFinder).findELExpressions(anyCollectionOf(URI.class), any(ApplicationArchive.class),
+                                                     any(StreamingELFinder.PageHandler.class));
+        when(elApplicationCheckerFactory.canHandleApplication(applicationArchive)).thenReturn(true);
+        when(elApplicationCheckerFactory.createPageFinder(applicationArchive)).thenReturn(pageFinder);
+        when(elApplicationCheckerFactory.createELFinder(applicationArchive)).thenReturn(streamingELFinder);
+        when(elApplicationCheckerFactory.createELResolver(applicationArchive)).thenReturn(elResolver);
+        when(pageFinder.findPages(any(ApplicationArchive.class))).thenReturn(pages);
+
+        // Run
+        elApplicationChecker.addSupportedELCheckerApplicationFactory(elApplicationCheckerFactory);
+        elApplicationChecker.setPipelined(true);
+        elApplicationChecker.setResolveThreads(2);
+        elApplicationChecker.checkApplication(applicationArchive, listener);
+
+        InOrder parseOrder = inOrder(listener);
+        for (ELError parseError : parseErrors) {
+            parseOrder.verify(listener).onError(parseError);
+        }
+        parseOrder.verify(listener).onPhaseDone(ELCheckListener.Phase.PARSE);
+        InOrder resolveOrder = inOrder(listener);
+        for (int i = 0; i < pages.size(); i++) {
+            resolveOrder.verify(listener).onError(resolveErrors.get(i));
+            resolveOrder.verify(listener).onPageDone(pages.get(i));
+        }
+        resolveOrder.verify(listener).onPhaseDone(ELCheckListener.Phase.RESOLVE);
+        assertThat(Thread.currentThread().getContextClassLoader(), is(theInstance(originalClassLoader)));
+    }
 
     /**
      * Tests that {@link ELApplicationChecker#checkExpressions(java.util.Collection, StaticELResolver)} does not report
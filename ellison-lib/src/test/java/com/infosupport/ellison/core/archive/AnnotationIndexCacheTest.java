@@ -0,0 +1,141 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link AnnotationIndexCache} class.
+ *
+ * @author StefanZ
+ */
+public class AnnotationIndexCacheTest {
+    private static final String ANNOTATION = "javax.annotation.ManagedBean";
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    File cacheDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+    }
+
+    /**
+     * Creates an index containing a single class without elements.
+     */
+    private static Map<String, Map<String, Object>> createIndex(String className) {
+        return Collections.singletonMap(className, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Tests whether an index is read back with the names and the values of all elements intact.
+     */
+    @Test
+    public void testPutAndGet() throws Exception {
+        AnnotationIndexCache annotationIndexCache = new AnnotationIndexCache(cacheDirectory, Long.MAX_VALUE);
+        Map<String, Object> elements = new HashMap<>();
+        elements.put("string", "value");
+        elements.put("int", 1);
+        elements.put("long", 2L);
+        elements.put("float", 3.0f);
+        elements.put("double", 4.0);
+        elements.put("byte", (byte) 5);
+        elements.put("char", 'c');
+        elements.put("short", (short) 6);
+        elements.put("boolean", true);
+        elements.put("array", null);
+        Map<String, Map<String, Object>> index = new HashMap<>();
+        index.put("com.example.Bean", elements);
+        index.put("com.example.OtherBean", Collections.<String, Object>emptyMap());
+        String key = AnnotationIndexCache.getKey(ANNOTATION, new byte[] {1, 2, 3});
+
+        annotationIndexCache.put(key, index);
+
+        assertThat(annotationIndexCache.get(key), is(equalTo(index)));
+    }
+
+    @Test
+    public void testGet_NotCached() {
+        AnnotationIndexCache annotationIndexCache = new AnnotationIndexCache(cacheDirectory, Long.MAX_VALUE);
+
+        assertThat(annotationIndexCache.get(AnnotationIndexCache.getKey(ANNOTATION, new byte[0])), is(nullValue()));
+    }
+
+    /**
+     * Tests whether an entry that cannot be read is treated as a cache miss.
+     */
+    @Test
+    public void testGet_Corrupt() throws Exception {
+        AnnotationIndexCache annotationIndexCache = new AnnotationIndexCache(cacheDirectory, Long.MAX_VALUE);
+        String key = AnnotationIndexCache.getKey(ANNOTATION, new byte[0]);
+        cacheDirectory.mkdirs();
+        Files.write(new byte[] {0, 0, 0, 1, 0}, new File(cacheDirectory, key));
+
+        assertThat(annotationIndexCache.get(key), is(nullValue()));
+    }
+
+    /**
+     * Tests whether libraries are keyed by both their contents and the annotation they are indexed for.
+     */
+    @Test
+    public void testGetKey() {
+        String key = AnnotationIndexCache.getKey(ANNOTATION, new byte[] {1, 2, 3});
+
+        assertThat(key.matches("[0-9a-f]{40}"), is(true));
+        assertThat(AnnotationIndexCache.getKey(ANNOTATION, new byte[] {1, 2, 3}), is(equalTo(key)));
+        assertThat(AnnotationIndexCache.getKey(ANNOTATION, new byte[] {1, 2, 4}), is(not(equalTo(key))));
+        assertThat(AnnotationIndexCache.getKey("java.lang.Deprecated", new byte[] {1, 2, 3}), is(not(equalTo(key))));
+    }
+
+    /**
+     * Tests whether the least recently used entries are evicted once the cache grows beyond its maximum size.
+     */
+    @Test
+    public void testPut_EvictsLeastRecentlyUsed() throws Exception {
+        AnnotationIndexCache unboundedCache = new AnnotationIndexCache(cacheDirectory, Long.MAX_VALUE);
+        String oldKey = AnnotationIndexCache.getKey(ANNOTATION, new byte[] {1});
+        String recentKey = AnnotationIndexCache.getKey(ANNOTATION, new byte[] {2});
+        String newKey = AnnotationIndexCache.getKey(ANNOTATION, new byte[] {3});
+        unboundedCache.put(oldKey, createIndex("com.example.Old"));
+        unboundedCache.put(recentKey, createIndex("com.example.Rec"));
+        long entrySize = new File(cacheDirectory, oldKey).length();
+        new File(cacheDirectory, oldKey).setLastModified(System.currentTimeMillis() - 20000);
+        new File(cacheDirectory, recentKey).setLastModified(System.currentTimeMillis() - 10000);
+        AnnotationIndexCache annotationIndexCache = new AnnotationIndexCache(cacheDirectory, 2 * entrySize);
+
+        annotationIndexCache.put(newKey, createIndex("com.example.New"));
+
+        assertThat(annotationIndexCache.get(oldKey), is(nullValue()));
+        assertThat(annotationIndexCache.get(recentKey), is(equalTo(createIndex("com.example.Rec"))));
+        assertThat(annotationIndexCache.get(newKey), is(equalTo(createIndex("com.example.New"))));
+    }
+}
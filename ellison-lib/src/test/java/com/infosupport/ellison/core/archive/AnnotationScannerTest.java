@@ -0,0 +1,144 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link AnnotationScanner} class.
+ *
+ * @author StefanZ
+ */
+public class AnnotationScannerTest {
+    private static final String ANNOTATION = Deprecated.class.getName();
+    private static final String LIBRARY_CLASS = LibraryClass.class.getName();
+    private static final String APPLICATION_CLASS = ApplicationClass.class.getName();
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    File warFile;
+    byte[] library;
+
+    @Before
+    public void setup() throws Exception {
+        File libraryFile = temporaryFolder.newFile("library.jar");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(libraryFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry(toClassFileName(LIBRARY_CLASS)));
+            zipOutputStream.write(readClassFile(LIBRARY_CLASS));
+            zipOutputStream.putNextEntry(new ZipEntry(toClassFileName(getClass().getName())));
+            zipOutputStream.write(readClassFile(getClass().getName()));
+        }
+        library = Files.toByteArray(libraryFile);
+
+        warFile = temporaryFolder.newFile("application.war");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(warFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/classes/" + toClassFileName(APPLICATION_CLASS)));
+            zipOutputStream.write(readClassFile(APPLICATION_CLASS));
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/lib/library.jar"));
+            zipOutputStream.write(library);
+        }
+    }
+
+    private static String toClassFileName(String className) {
+        return className.replace('.', '/') + ".class";
+    }
+
+    private byte[] readClassFile(String className) throws IOException {
+        try (InputStream classInputStream = getClass().getResourceAsStream("/" + toClassFileName(className))) {
+            return ByteStreams.toByteArray(classInputStream);
+        }
+    }
+
+    @Test
+    public void testScan_WithoutCache() throws Exception {
+        try (WARApplicationArchive applicationArchive =
+                 new WARApplicationArchive(warFile, ApplicationArchive.UnpackMode.NONE)) {
+            Map<String, Map<String, Object>> annotatedClasses =
+                new AnnotationScanner(ANNOTATION, 2, null).scan(applicationArchive);
+
+            assertThat(annotatedClasses.keySet(), hasItems(APPLICATION_CLASS, LIBRARY_CLASS));
+            assertThat(annotatedClasses.size(), is(2));
+        }
+    }
+
+    /**
+     * Tests whether the annotated classes in libraries are added to the cache, and those in WEB-INF/classes aren't.
+     */
+    @Test
+    public void testScan_AddsLibrariesToCache() throws Exception {
+        File cacheDirectory = temporaryFolder.newFolder("cache");
+        AnnotationIndexCache annotationIndexCache = new AnnotationIndexCache(cacheDirectory, Long.MAX_VALUE);
+
+        try (WARApplicationArchive applicationArchive =
+                 new WARApplicationArchive(warFile, ApplicationArchive.UnpackMode.NONE)) {
+            new AnnotationScanner(ANNOTATION, 2, annotationIndexCache).scan(applicationArchive);
+        }
+
+        Map<String, Map<String, Object>> index =
+            annotationIndexCache.get(AnnotationIndexCache.getKey(ANNOTATION, library));
+        assertThat(index.keySet(), is(equalTo(Collections.singleton(LIBRARY_CLASS))));
+        assertThat(cacheDirectory.list().length, is(1));
+    }
+
+    /**
+     * Tests whether a library that is in the cache is not scanned, while WEB-INF/classes still is.
+     */
+    @Test
+    public void testScan_TakesLibrariesFromCache() throws Exception {
+        AnnotationIndexCache annotationIndexCache =
+            new AnnotationIndexCache(temporaryFolder.newFolder("cache"), Long.MAX_VALUE);
+        annotationIndexCache.put(AnnotationIndexCache.getKey(ANNOTATION, library), Collections.singletonMap(
+            "com.example.CachedClass", Collections.<String, Object>emptyMap()));
+
+        try (WARApplicationArchive applicationArchive =
+                 new WARApplicationArchive(warFile, ApplicationArchive.UnpackMode.ON_DEMAND)) {
+            Map<String, Map<String, Object>> annotatedClasses =
+                new AnnotationScanner(ANNOTATION, 2, annotationIndexCache).scan(applicationArchive);
+
+            assertThat(annotatedClasses.keySet(), hasItems(APPLICATION_CLASS, "com.example.CachedClass"));
+            assertThat(annotatedClasses.size(), is(2));
+        }
+    }
+
+    @Deprecated
+    public static class LibraryClass {
+    }
+
+    @Deprecated
+    public static class ApplicationClass {
+    }
+}
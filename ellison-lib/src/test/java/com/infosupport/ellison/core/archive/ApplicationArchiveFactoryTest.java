@@ -139,6 +139,44 @@ public class ApplicationArchiveFactoryTest {
         // Succeed (No exception should be thrown)
     }
 
+    @Test
+    public void testCreateApplicationArchive_Directory() throws Exception {
+        File directory = new File(getClass().getResource("/").toURI());
+
+        try (ApplicationArchive applicationArchive = applicationArchiveFactory.createApplicationArchive(directory)) {
+            assertThat(applicationArchive, is(instanceOf(ExplodedWARApplicationArchive.class)));
+        }
+    }
+
+    /**
+     * Tests whether no caches are used by default, so that nothing is written outside of the temporary directories
+     * of the archives.
+     */
+    @Test
+    public void testGetCaches_NoneByDefault() throws Exception {
+        ApplicationArchiveFactory defaultApplicationArchiveFactory = new ApplicationArchiveFactory();
+
+        assertThat(defaultApplicationArchiveFactory.getUnpackCache(), is(nullValue()));
+        assertThat(defaultApplicationArchiveFactory.getAnnotationIndexCache(), is(nullValue()));
+    }
+
+    /**
+     * Tests whether created archives take the annotated classes in their libraries from the configured cache.
+     */
+    @Test
+    public void testCreateApplicationArchive_AnnotationIndexCache() throws Exception {
+        File directory = new File(getClass().getResource("/").toURI());
+        AnnotationIndexCache defaultAnnotationIndexCache = applicationArchiveFactory.getAnnotationIndexCache();
+        AnnotationIndexCache annotationIndexCache = new AnnotationIndexCache(directory, 0);
+        applicationArchiveFactory.setAnnotationIndexCache(annotationIndexCache);
+
+        try (ApplicationArchive applicationArchive = applicationArchiveFactory.createApplicationArchive(directory)) {
+            assertThat(applicationArchive.getAnnotationIndexCache(), is(sameInstance(annotationIndexCache)));
+        } finally {
+            applicationArchiveFactory.setAnnotationIndexCache(defaultAnnotationIndexCache);
+        }
+    }
+
     @Test
     public void testCreateApplicationArchive_Unsupported() throws Exception {
         File file = mock(File.class);
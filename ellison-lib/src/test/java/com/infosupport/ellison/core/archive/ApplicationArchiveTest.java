@@ -22,12 +22,14 @@ package com.infosupport.ellison.core.archive;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.infosupport.ellison.core.archive.ApplicationArchive;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -38,7 +40,9 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import javax.annotation.Nullable;
 import junitx.util.PrivateAccessor;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.RandomStringUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -66,6 +70,9 @@ public class ApplicationArchiveTest {
     static File inputJar = null;
     static Collection<String> inputJarContents = null;
     @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive applicationArchive;
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive inPlaceApplicationArchive;
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive onDemandApplicationArchive;
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive parallelApplicationArchive;
 
     @BeforeClass
     public static void setupClass() throws Exception {
@@ -78,6 +85,20 @@ public class ApplicationArchiveTest {
     @Before
     public void setupTest() {
         doReturn(inputJar).when(applicationArchive).getApplicationFile();
+        doReturn(inputJar).when(inPlaceApplicationArchive).getApplicationFile();
+        doReturn(ApplicationArchive.UnpackMode.NONE).when(inPlaceApplicationArchive).getUnpackMode();
+        doReturn(inputJar).when(onDemandApplicationArchive).getApplicationFile();
+        doReturn(ApplicationArchive.UnpackMode.ON_DEMAND).when(onDemandApplicationArchive).getUnpackMode();
+        doReturn(inputJar).when(parallelApplicationArchive).getApplicationFile();
+        doReturn(4).when(parallelApplicationArchive).getUnpackThreads();
+    }
+
+    @After
+    public void tearDownTest() throws Exception {
+        applicationArchive.close();
+        inPlaceApplicationArchive.close();
+        onDemandApplicationArchive.close();
+        parallelApplicationArchive.close();
     }
 
     /**
@@ -107,7 +128,8 @@ public class ApplicationArchiveTest {
     public void testUnpackJar_IOException() throws Exception {
         doReturn(inputJar).when(applicationArchive).getApplicationFile();
         doThrow(IOException.class).when(applicationArchive)
-            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class));
+            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class),
+                            Matchers.any(byte[].class));
 
         applicationArchive.unpackJar();
     }
@@ -116,7 +138,8 @@ public class ApplicationArchiveTest {
     public void testUnpackJar_SecurityException() throws Exception {
         doReturn(inputJar).when(applicationArchive).getApplicationFile();
         doThrow(SecurityException.class).when(applicationArchive)
-            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class));
+            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class),
+                            Matchers.any(byte[].class));
 
         applicationArchive.unpackJar();
     }
@@ -125,7 +148,8 @@ public class ApplicationArchiveTest {
     public void testUnpackJar_FileNotFoundException() throws Exception {
         doReturn(inputJar).when(applicationArchive).getApplicationFile();
         doThrow(FileNotFoundException.class).when(applicationArchive)
-            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class));
+            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class),
+                            Matchers.any(byte[].class));
 
         applicationArchive.unpackJar();
     }
@@ -240,4 +264,206 @@ public class ApplicationArchiveTest {
 
         assertThat(returnedPath, is(equalTo(relativePath)));
     }
+
+    /**
+     * Tests whether an archive that is read in place can find all its files, without ever unpacking the entire
+     * archive.
+     */
+    @Test
+    public void testReadInPlace_GetFile() throws Exception {
+        for (String inputJarContent : inputJarContents) {
+            File content = inPlaceApplicationArchive.getFile(inputJarContent);
+
+            assertThat(content, is(notNullValue()));
+            assertThat(content.isDirectory(), is(equalTo(inputJarContent.endsWith("/"))));
+        }
+
+        verify(inPlaceApplicationArchive, never()).unpackJarHelper(inputJar);
+        assertThat(inPlaceApplicationArchive.getUnpackedPath(), is(nullValue()));
+    }
+
+    /**
+     * Tests whether reading an archive in place yields the same files as unpacking it.
+     */
+    @Test
+    public void testReadInPlace_FindFilesByGlobPattern() throws Exception {
+        List<URI> expectedClassFiles = new ArrayList<>(applicationArchive.findFilesByGlobPattern("com", "*.class"));
+        List<URI> actualClassFiles =
+            new ArrayList<>(inPlaceApplicationArchive.findFilesByGlobPattern("com", "*.class"));
+
+        Collections.sort(expectedClassFiles);
+        Collections.sort(actualClassFiles);
+
+        assertThat(actualClassFiles.isEmpty(), is(false));
+        assertThat(actualClassFiles, is(equalTo(expectedClassFiles)));
+    }
+
+    @Test
+    public void testReadInPlace_GetInputStream() throws Exception {
+        String manifest = "META-INF/MANIFEST.MF";
+        byte[] expectedContents = null;
+        byte[] actualContents = null;
+
+        try (InputStream expectedInputStream = applicationArchive.getInputStream(manifest);
+             InputStream actualInputStream = inPlaceApplicationArchive.getInputStream(manifest)) {
+            expectedContents = ByteStreams.toByteArray(expectedInputStream);
+            actualContents = ByteStreams.toByteArray(actualInputStream);
+        }
+
+        assertThat(actualContents, is(equalTo(expectedContents)));
+    }
+
+    @Test
+    public void testReadInPlace_ResolveAndRelativizePath() throws Exception {
+        URI relativePath = URI.create("META-INF/MANIFEST.MF");
+
+        URI absolutePath = inPlaceApplicationArchive.resolvePath(relativePath);
+        URI returnedPath = inPlaceApplicationArchive.relativizePath(absolutePath);
+
+        assertThat(absolutePath.getScheme(), is(equalTo("jar")));
+        assertThat(returnedPath, is(equalTo(relativePath)));
+    }
+
+    /**
+     * Tests whether an archive that is unpacked on demand only extracts the file that is asked for.
+     */
+    @Test
+    public void testUnpackOnDemand_GetFile() throws Exception {
+        File manifest = onDemandApplicationArchive.getFile("META-INF/MANIFEST.MF");
+        File unpackedPath = onDemandApplicationArchive.getUnpackedPath();
+
+        assertThat(manifest.isFile(), is(true));
+        assertThat(manifest.toURI(),
+                   is(equalTo(onDemandApplicationArchive.resolvePath(URI.create("META-INF/MANIFEST.MF")))));
+        assertThat(new File(unpackedPath, "com").exists(), is(false));
+        verify(onDemandApplicationArchive, never()).unpackJarHelper(inputJar);
+    }
+
+    /**
+     * Tests whether an archive that is unpacked on demand extracts a set of files in one go, to the locations returned
+     * by {@link ApplicationArchive#resolvePath(java.net.URI)}.
+     */
+    @Test
+    public void testUnpackOnDemand_GetFiles() throws Exception {
+        List<URI> classFiles = new ArrayList<>(onDemandApplicationArchive.findFilesByGlobPattern("com", "*.class"));
+
+        List<File> extractedFiles = new ArrayList<>(onDemandApplicationArchive.getFiles(classFiles));
+
+        assertThat(extractedFiles.size(), is(equalTo(classFiles.size())));
+        for (int i = 0; i < classFiles.size(); i++) {
+            assertThat(extractedFiles.get(i).isFile(), is(true));
+            assertThat(extractedFiles.get(i).toURI(),
+                       is(equalTo(onDemandApplicationArchive.resolvePath(classFiles.get(i)))));
+        }
+        assertThat(new File(onDemandApplicationArchive.getUnpackedPath(), "META-INF").exists(), is(false));
+    }
+
+    @Test
+    public void testContainsEntry() throws Exception {
+        assertThat(onDemandApplicationArchive.containsEntry("META-INF/MANIFEST.MF"), is(true));
+        assertThat(onDemandApplicationArchive.containsEntry("META-INF/NO-SUCH-FILE"), is(false));
+        assertThat(onDemandApplicationArchive.containsEntry("../META-INF/MANIFEST.MF"), is(false));
+    }
+
+    /**
+     * Tests whether unpacking an archive using multiple threads yields the same files as unpacking it on a single
+     * thread.
+     */
+    @Test
+    public void testUnpackJar_Parallel() throws Exception {
+        File sequentialDirectory = applicationArchive.unpackJar();
+        File parallelDirectory = parallelApplicationArchive.unpackJar();
+
+        for (String inputJarContent : inputJarContents) {
+            File expectedFile = new File(sequentialDirectory, inputJarContent);
+            File actualFile = new File(parallelDirectory, inputJarContent);
+
+            assertThat(actualFile.isDirectory(), is(equalTo(inputJarContent.endsWith("/"))));
+            if (!actualFile.isDirectory()) {
+                assertThat(Files.toByteArray(actualFile), is(equalTo(Files.toByteArray(expectedFile))));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnpackJar_ParallelIOException() throws Exception {
+        doThrow(IOException.class).when(parallelApplicationArchive)
+            .unpackJarEntry(Matchers.any(File.class), Matchers.any(JarFile.class), Matchers.any(JarEntry.class),
+                            Matchers.any(byte[].class));
+
+        parallelApplicationArchive.unpackJar();
+    }
+
+    /**
+     * Tests whether closing an archive deletes the directory it was unpacked to, and whether closing it twice is
+     * harmless.
+     */
+    @Test
+    public void testClose_DeletesUnpackedPath() throws Exception {
+        File unpackedPath = applicationArchive.unpackJar();
+
+        applicationArchive.close();
+        applicationArchive.close();
+
+        assertThat(unpackedPath.exists(), is(false));
+    }
+
+    /**
+     * Tests whether closing an archive that is read in place deletes the files that were copied out of it.
+     */
+    @Test
+    public void testClose_ReadInPlace() throws Exception {
+        File manifest = inPlaceApplicationArchive.getFile("META-INF/MANIFEST.MF");
+
+        inPlaceApplicationArchive.close();
+
+        assertThat(manifest.exists(), is(false));
+    }
+
+    /**
+     * Tests whether closing an archive that was unpacked into an {@link UnpackCache} leaves the cached contents in
+     * place.
+     */
+    @Test
+    public void testClose_KeepsCachedUnpackedPath() throws Exception {
+        File cacheDirectory = Files.createTempDir();
+        try {
+            PrivateAccessor.setField(applicationArchive, "unpackCache",
+                                     new UnpackCache(cacheDirectory, Long.MAX_VALUE));
+            File unpackedPath = applicationArchive.unpackJar();
+
+            applicationArchive.close();
+
+            assertThat(new File(unpackedPath, "META-INF/MANIFEST.MF").isFile(), is(true));
+        } finally {
+            FileUtils.deleteQuietly(cacheDirectory);
+        }
+    }
+
+    /**
+     * Tests whether an archive that is unpacked on demand extracts its files into the unpack cache, where they are
+     * found by the next archive with the same contents, and kept after the archive is closed.
+     */
+    @Test
+    public void testUnpackOnDemand_ReusesCachedFiles() throws Exception {
+        File cacheDirectory = Files.createTempDir();
+        try {
+            UnpackCache unpackCache = new UnpackCache(cacheDirectory, Long.MAX_VALUE);
+            PrivateAccessor.setField(onDemandApplicationArchive, "unpackCache", unpackCache);
+            PrivateAccessor.setField(inPlaceApplicationArchive, "unpackCache", unpackCache);
+            doReturn(ApplicationArchive.UnpackMode.ON_DEMAND).when(inPlaceApplicationArchive).getUnpackMode();
+            File manifest = onDemandApplicationArchive.getFile("META-INF/MANIFEST.MF");
+
+            onDemandApplicationArchive.close();
+
+            assertThat(manifest.isFile(), is(true));
+            assertThat(manifest.getParentFile().listFiles().length, is(equalTo(1)));
+            File cachedPath = inPlaceApplicationArchive.getExtractionDirectory();
+            assertThat(cachedPath, is(equalTo(manifest.getParentFile().getParentFile())));
+            assertThat(new File(cachedPath, "META-INF/MANIFEST.MF").isFile(), is(true));
+        } finally {
+            inPlaceApplicationArchive.close();
+            FileUtils.deleteQuietly(cacheDirectory);
+        }
+    }
 }
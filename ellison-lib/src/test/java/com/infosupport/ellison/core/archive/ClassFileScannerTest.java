@@ -0,0 +1,160 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link ClassFileScanner} class.
+ *
+ * @author StefanZ
+ */
+public class ClassFileScannerTest {
+    private static final String LIBRARY_CLASS = "com/infosupport/ellison/core/archive/EntryIndex.class";
+    private static final String APPLICATION_CLASS = "com/infosupport/ellison/core/util/Pair.class";
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    ClassFileScanner classFileScanner = new ClassFileScanner(2);
+    CollectingClassFileVisitor visitor = new CollectingClassFileVisitor();
+    File warFile;
+    File libraryFile;
+
+    @Before
+    public void setup() throws Exception {
+        libraryFile = temporaryFolder.newFile("library.jar");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(libraryFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zipOutputStream.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+            zipOutputStream.putNextEntry(new ZipEntry(LIBRARY_CLASS));
+            zipOutputStream.write(readClassFile(LIBRARY_CLASS));
+        }
+
+        warFile = temporaryFolder.newFile("application.war");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(warFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry("index.xhtml"));
+            zipOutputStream.write("<html/>".getBytes("UTF-8"));
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/classes/" + APPLICATION_CLASS));
+            zipOutputStream.write(readClassFile(APPLICATION_CLASS));
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/lib/library.jar"));
+            zipOutputStream.write(Files.toByteArray(libraryFile));
+        }
+    }
+
+    /**
+     * Reads a class file from the class path.
+     *
+     * @param name
+     *     the path of the class file
+     *
+     * @return the contents of the class file
+     */
+    private byte[] readClassFile(String name) throws IOException {
+        try (InputStream classInputStream = getClass().getResourceAsStream("/" + name)) {
+            return ByteStreams.toByteArray(classInputStream);
+        }
+    }
+
+    /**
+     * Tests whether the classes in WEB-INF/classes and in the libraries in WEB-INF/lib are found, without extracting
+     * anything from the archive.
+     */
+    @Test
+    public void testScan_ApplicationArchiveUnpackedOnDemand() throws Exception {
+        try (WARApplicationArchive applicationArchive =
+                 new WARApplicationArchive(warFile, ApplicationArchive.UnpackMode.ON_DEMAND)) {
+            classFileScanner.scan(applicationArchive, visitor);
+
+            assertThat(visitor.names, is(equalTo(asSet(APPLICATION_CLASS, LIBRARY_CLASS))));
+            assertThat(new File(applicationArchive.getUnpackedPath(), "WEB-INF").exists(), is(false));
+        }
+    }
+
+    @Test
+    public void testScan_ApplicationArchiveReadInPlace() throws Exception {
+        try (WARApplicationArchive applicationArchive =
+                 new WARApplicationArchive(warFile, ApplicationArchive.UnpackMode.NONE)) {
+            classFileScanner.scan(applicationArchive, visitor);
+
+            assertThat(visitor.names, is(equalTo(asSet(APPLICATION_CLASS, LIBRARY_CLASS))));
+        }
+    }
+
+    @Test
+    public void testScan_ClassPath() throws Exception {
+        File classesDirectory = temporaryFolder.newFolder("classes");
+        File classFile = new File(classesDirectory, APPLICATION_CLASS);
+        Files.createParentDirs(classFile);
+        Files.write(readClassFile(APPLICATION_CLASS), classFile);
+
+        classFileScanner.scan(Arrays.asList(classesDirectory.toURI().toURL(), libraryFile.toURI().toURL()), visitor);
+
+        assertThat(visitor.names, is(equalTo(asSet(APPLICATION_CLASS, LIBRARY_CLASS))));
+    }
+
+    /**
+     * Tests whether a library that cannot be read is skipped.
+     */
+    @Test
+    public void testScan_UnreadableLibrary() throws Exception {
+        URL noSuchLibrary = new File(temporaryFolder.getRoot(), "nosuchlibrary.jar").toURI().toURL();
+
+        classFileScanner.scan(Arrays.asList(noSuchLibrary, libraryFile.toURI().toURL()), visitor);
+
+        assertThat(visitor.names, is(equalTo(asSet(LIBRARY_CLASS))));
+    }
+
+    private static Set<String> asSet(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * Collects the names of the visited class files.
+     */
+    private static class CollectingClassFileVisitor implements ClassFileVisitor {
+        final Set<String> names = Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public void visitClassFile(String name, byte[] contents) {
+            assertThat(contents.length, is(not(0)));
+            names.add(name);
+        }
+    }
+}
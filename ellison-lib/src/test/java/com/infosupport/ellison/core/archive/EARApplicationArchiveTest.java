@@ -0,0 +1,163 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link EARApplicationArchive} class.
+ *
+ * @author StefanZ
+ */
+public class EARApplicationArchiveTest {
+    private static final String EXAMPLE_RESOURCE = "META-INF/maven/com.infosupport/ellison/pom.properties";
+    private static final String APPLICATION_DESCRIPTOR =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<application xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"5\">\n"
+        + "  <module><web><web-uri>second.war</web-uri><context-root>/second</context-root></web></module>\n"
+        + "  <module><ejb>ejbs.jar</ejb></module>\n"
+        + "  <module><web><web-uri> /first.war </web-uri><context-root>/first</context-root></web></module>\n"
+        + "%s</application>\n";
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Creates an EAR containing two empty web modules, and {@code example.jar} in its library directory.
+     *
+     * @param applicationDescriptor
+     *     the contents of META-INF/application.xml, or {@code null} to leave out the deployment descriptor
+     * @param libraryDirectory
+     *     the directory to put {@code example.jar} in
+     *
+     * @return the created EAR
+     */
+    private File createEAR(String applicationDescriptor, String libraryDirectory) throws Exception {
+        File earFile = temporaryFolder.newFile("application.ear");
+        byte[] exampleJar = Files.toByteArray(new File(getClass().getResource("/example.jar").toURI()));
+
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(earFile))) {
+            if (applicationDescriptor != null) {
+                zipOutputStream.putNextEntry(new ZipEntry("META-INF/application.xml"));
+                zipOutputStream.write(applicationDescriptor.getBytes(Charset.forName("UTF-8")));
+            }
+            zipOutputStream.putNextEntry(new ZipEntry(libraryDirectory + "/example.jar"));
+            zipOutputStream.write(exampleJar);
+            for (String webModule : Arrays.asList("first.war", "second.war")) {
+                zipOutputStream.putNextEntry(new ZipEntry(webModule));
+                zipOutputStream.write(createEmptyWAR());
+            }
+        }
+
+        return earFile;
+    }
+
+    /**
+     * Creates a WAR that only contains a WEB-INF directory.
+     *
+     * @return the contents of the WAR
+     */
+    private byte[] createEmptyWAR() throws IOException {
+        File warFile = temporaryFolder.newFile();
+
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(warFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/"));
+        }
+
+        return Files.toByteArray(warFile);
+    }
+
+    /**
+     * Tests whether only the web modules are taken from the deployment descriptor, in the order in which they are
+     * listed, and whether the default library directory is used if the descriptor does not name one.
+     */
+    @Test
+    public void testGetWebModules_FromApplicationDescriptor() throws Exception {
+        File earFile = createEAR(String.format(APPLICATION_DESCRIPTOR, ""), "lib");
+
+        try (EARApplicationArchive applicationArchive = new EARApplicationArchive(earFile)) {
+            assertThat(applicationArchive.getWebModules(), is(equalTo(Arrays.asList("second.war", "first.war"))));
+            assertThat(applicationArchive.getLibraryDirectory(), is(equalTo("lib")));
+        }
+    }
+
+    @Test
+    public void testGetWebModules_NoApplicationDescriptor() throws Exception {
+        File earFile = createEAR(null, "lib");
+
+        try (EARApplicationArchive applicationArchive = new EARApplicationArchive(earFile)) {
+            assertThat(applicationArchive.getWebModules(), is(equalTo(Arrays.asList("first.war", "second.war"))));
+        }
+    }
+
+    @Test
+    public void testGetLibraryDirectory_Configured() throws Exception {
+        String libraryDirectory = "<library-directory>shared/</library-directory>";
+        File earFile = createEAR(String.format(APPLICATION_DESCRIPTOR, libraryDirectory), "shared");
+
+        try (EARApplicationArchive applicationArchive = new EARApplicationArchive(earFile)) {
+            assertThat(applicationArchive.getLibraryDirectory(), is(equalTo("shared")));
+            assertThat(applicationArchive.getClassLoader().getResource(EXAMPLE_RESOURCE), is(notNullValue()));
+        }
+    }
+
+    /**
+     * Tests whether an empty library-directory element disables the shared libraries.
+     */
+    @Test
+    public void testGetLibraryDirectory_Empty() throws Exception {
+        File earFile = createEAR(String.format(APPLICATION_DESCRIPTOR, "<library-directory/>"), "lib");
+
+        try (EARApplicationArchive applicationArchive = new EARApplicationArchive(earFile)) {
+            assertThat(applicationArchive.getLibraryDirectory(), is(equalTo("")));
+            assertThat(applicationArchive.getClassLoader().getResource(EXAMPLE_RESOURCE), is(nullValue()));
+        }
+    }
+
+    /**
+     * Tests whether the classes and resources of the shared libraries can be found through the class loader of a web
+     * module.
+     */
+    @Test
+    public void testOpenWebModule_SharedLibraries() throws Exception {
+        File earFile = createEAR(String.format(APPLICATION_DESCRIPTOR, ""), "lib");
+
+        try (EARApplicationArchive applicationArchive = new EARApplicationArchive(earFile);
+             WARApplicationArchive moduleArchive = applicationArchive.openWebModule("first.war")) {
+            assertThat(moduleArchive.getParentClassLoader(), is(sameInstance(applicationArchive.getClassLoader())));
+            assertThat(moduleArchive.getClassLoader().getResource(EXAMPLE_RESOURCE).toString(),
+                       containsString("lib/example.jar!/"));
+        }
+    }
+}
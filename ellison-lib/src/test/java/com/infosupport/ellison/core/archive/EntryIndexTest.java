@@ -0,0 +1,113 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link EntryIndex} class.
+ *
+ * @author StefanZ
+ */
+public class EntryIndexTest {
+    EntryIndex entryIndex;
+
+    @Before
+    public void setup() {
+        entryIndex = new EntryIndex(
+            Arrays.asList("index.xhtml", "/WEB-INF/web.xml", "WEB-INF/classes/com/A.class",
+                          "WEB-INF/classes/com/sub/B.class", "WEB-INF/classes/com/sub/readme.txt",
+                          "WEB-INF/classesX/C.class"),
+            Arrays.asList("META-INF/", "empty"));
+    }
+
+    /**
+     * Tests whether files and directories are told apart, and parent directories are implied by the files in them.
+     */
+    @Test
+    public void testIsFileAndIsDirectory() {
+        assertThat(entryIndex.isFile("WEB-INF/web.xml"), is(true));
+        assertThat(entryIndex.isFile("/index.xhtml"), is(true));
+        assertThat(entryIndex.isFile("WEB-INF"), is(false));
+        assertThat(entryIndex.isDirectory("WEB-INF/classes/com/sub/"), is(true));
+        assertThat(entryIndex.isDirectory("WEB-INF"), is(true));
+        assertThat(entryIndex.isDirectory("META-INF"), is(true));
+        assertThat(entryIndex.isDirectory("empty"), is(true));
+        assertThat(entryIndex.isDirectory(""), is(true));
+        assertThat(entryIndex.isDirectory("index.xhtml"), is(false));
+        assertThat(entryIndex.isDirectory("nonexistent"), is(false));
+    }
+
+    /**
+     * Tests whether only the files directly inside a directory are found when not searching recursively, and siblings
+     * sharing a name prefix are left out.
+     */
+    @Test
+    public void testFindFiles_NonRecursive() {
+        List<String> found = entryIndex.findFiles("WEB-INF/classes", EntryIndex.compileWildcardPattern("*"), false);
+
+        assertThat(found, is(equalTo(Collections.<String>emptyList())));
+
+        found = entryIndex.findFiles("WEB-INF/classes/com", EntryIndex.compileWildcardPattern("*.class"), false);
+
+        assertThat(found, is(equalTo(Arrays.asList("WEB-INF/classes/com/A.class"))));
+    }
+
+    /**
+     * Tests whether files in subdirectories are found when searching recursively, with the pattern applied to the
+     * names of the files only.
+     */
+    @Test
+    public void testFindFiles_Recursive() {
+        List<String> found =
+            entryIndex.findFiles("WEB-INF/classes", EntryIndex.compileWildcardPattern("*.class"), true);
+
+        assertThat(found, is(equalTo(Arrays.asList("WEB-INF/classes/com/A.class", "WEB-INF/classes/com/sub/B.class"))));
+
+        found = entryIndex.findFiles("", EntryIndex.compileWildcardPattern("*.x*"), true);
+
+        assertThat(found, is(equalTo(Arrays.asList("WEB-INF/web.xml", "index.xhtml"))));
+    }
+
+    /**
+     * Tests whether compiled wildcard patterns match whole names, and treat regular expression metacharacters
+     * literally.
+     */
+    @Test
+    public void testCompileWildcardPattern() {
+        Pattern pattern = EntryIndex.compileWildcardPattern("?.cl*s");
+
+        assertThat(pattern.matcher("A.class").matches(), is(true));
+        assertThat(pattern.matcher("A.cls").matches(), is(true));
+        assertThat(pattern.matcher("AB.class").matches(), is(false));
+        assertThat(pattern.matcher("AXclass").matches(), is(false));
+        assertThat(EntryIndex.compileWildcardPattern("a+(b)").matcher("a+(b)").matches(), is(true));
+        assertThat(EntryIndex.compileWildcardPattern("*").matcher("").matches(), is(true));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link ExplodedWARApplicationArchive} class.
+ *
+ * @author StefanZ
+ */
+public class ExplodedWARApplicationArchiveTest {
+    static final String BACKING_BEAN_CLASS_FILE = "com/example/HelloWorldBacking.class";
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    File webappDirectory;
+    File classesDirectory;
+
+    /**
+     * Lays out the contents of a WAR the way a Maven project does before it is packaged: pages and descriptors in one
+     * directory, compiled classes in another.
+     */
+    @Before
+    public void setup() throws Exception {
+        webappDirectory = temporaryFolder.newFolder("webapp");
+        classesDirectory = temporaryFolder.newFolder("classes");
+
+        File war = new File(getClass().getResource("/jsf12-helloworld-nolibs.war").toURI());
+        try (JarFile jar = new JarFile(war)) {
+            for (JarEntry jarEntry : Collections.list(jar.entries())) {
+                String name = jarEntry.getName();
+                File destination = name.startsWith("WEB-INF/classes/")
+                    ? new File(classesDirectory, name.substring("WEB-INF/classes/".length()))
+                    : new File(webappDirectory, name);
+                if (!jarEntry.isDirectory()) {
+                    Files.createParentDirs(destination);
+                    try (InputStream entryInputStream = jar.getInputStream(jarEntry)) {
+                        Files.write(ByteStreams.toByteArray(entryInputStream), destination);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests whether entries are read straight from the directory, without being copied.
+     */
+    @Test
+    public void testGetFile_NotCopied() throws Exception {
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory)) {
+            File webXml = archive.getFile("WEB-INF/web.xml");
+
+            assertThat(webXml.getCanonicalFile(), is(equalTo(new File(webappDirectory, "WEB-INF/web.xml")
+                                                                  .getCanonicalFile())));
+            assertThat(archive.getUnpackedPath(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testFindFilesByGlobPattern() throws Exception {
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory)) {
+            Collection<URI> descriptors = archive.findFilesByGlobPattern("WEB-INF", "*.xml");
+
+            assertThat(descriptors, hasItem(URI.create("WEB-INF/web.xml")));
+        }
+    }
+
+    /**
+     * Tests whether closing the archive leaves the directory alone.
+     */
+    @Test
+    public void testClose_KeepsDirectory() throws Exception {
+        ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory);
+        archive.getClassLoader();
+
+        archive.close();
+
+        assertThat(new File(webappDirectory, "WEB-INF/web.xml").isFile(), is(true));
+    }
+
+    /**
+     * Tests whether classes are loaded from a separate classes directory.
+     */
+    @Test
+    public void testGetClassLoader_SeparateClassesDirectory() throws Exception {
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory,
+                                                                                       classesDirectory)) {
+            ClassLoader classLoader = archive.getClassLoader();
+
+            Class<?> backingBean = Class.forName("com.example.HelloWorldBacking", true, classLoader);
+
+            assertThat(backingBean.getClassLoader(), is(sameInstance(classLoader)));
+            assertThat(classLoader.getResource("WEB-INF/web.xml"), is(notNullValue()));
+        }
+    }
+
+    /**
+     * Tests whether additional libraries are put on the class path.
+     */
+    @Test
+    public void testGetClassLoader_AdditionalLibraries() throws Exception {
+        File library = new File(getClass().getResource("/example.jar").toURI());
+
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory,
+                                                                                       classesDirectory, library)) {
+            ClassLoader classLoader = archive.getClassLoader();
+
+            assertThat(classLoader.getResource("com/infosupport/ellison/util/Pair.class"), is(notNullValue()));
+            assertThat(classLoader.getResource(BACKING_BEAN_CLASS_FILE), is(notNullValue()));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testConstructor_NoSuchClassesDirectory() throws Exception {
+        new ExplodedWARApplicationArchive(webappDirectory, new File(temporaryFolder.getRoot(), "nosuchdirectory"));
+    }
+}
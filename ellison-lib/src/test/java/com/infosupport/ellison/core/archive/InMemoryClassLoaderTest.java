@@ -0,0 +1,85 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link InMemoryClassLoader} class.
+ *
+ * @author StefanZ
+ */
+public class InMemoryClassLoaderTest {
+    InMemoryClassLoader classLoader;
+
+    @Before
+    public void setup() throws Exception {
+        Map<URI, Map<String, byte[]>> sources = new LinkedHashMap<>();
+        sources.put(URI.create("memory:/first/"), Collections.singletonMap("resource.txt", "first".getBytes("UTF-8")));
+        sources.put(URI.create("memory:/second/"),
+                    Collections.singletonMap("resource.txt", "second".getBytes("UTF-8")));
+        classLoader = new InMemoryClassLoader(sources, null);
+    }
+
+    /**
+     * Tests whether resources are found in the first source that contains them, and can be read through their URL.
+     */
+    @Test
+    public void testGetResource() throws Exception {
+        URL resource = classLoader.getResource("resource.txt");
+
+        assertThat(resource.toString(), is(equalTo("memory:/first/resource.txt")));
+        try (InputStream resourceInputStream = resource.openStream()) {
+            assertThat(new String(ByteStreams.toByteArray(resourceInputStream), "UTF-8"), is(equalTo("first")));
+        }
+    }
+
+    @Test
+    public void testGetResources() throws Exception {
+        List<URL> resources = Collections.list(classLoader.getResources("resource.txt"));
+
+        assertThat(resources.size(), is(equalTo(2)));
+        assertThat(resources.get(1).toString(), is(equalTo("memory:/second/resource.txt")));
+    }
+
+    @Test
+    public void testGetResource_NoSuchResource() throws Exception {
+        assertThat(classLoader.getResource("no-such-resource.txt"), is(nullValue()));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testFindClass_NoSuchClass() throws Exception {
+        classLoader.loadClass("com.example.NoSuchClass");
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link InMemoryWARApplicationArchive} class.
+ *
+ * @author StefanZ
+ */
+public class InMemoryWARApplicationArchiveTest {
+    InMemoryWARApplicationArchive warApplicationArchive;
+    InMemoryWARApplicationArchive syntheticApplicationArchive;
+
+    @Before
+    public void setup() throws Exception {
+        try (InputStream warInputStream = getClass().getResourceAsStream("/jsf12-helloworld-nolibs.war")) {
+            warApplicationArchive = new InMemoryWARApplicationArchive("helloworld.war", warInputStream);
+        }
+
+        Map<String, byte[]> entries = new HashMap<>();
+        entries.put("index.xhtml", "<html/>".getBytes("UTF-8"));
+        entries.put("/pages/sub/page.xhtml", "<html/>".getBytes("UTF-8"));
+        entries.put("pages/other.jsp", "<html/>".getBytes("UTF-8"));
+        try (InputStream jarInputStream = getClass().getResourceAsStream("/example.jar")) {
+            entries.put("WEB-INF/lib/example.jar", ByteStreams.toByteArray(jarInputStream));
+        }
+        syntheticApplicationArchive = new InMemoryWARApplicationArchive("synthetic.war", entries);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        warApplicationArchive.close();
+        syntheticApplicationArchive.close();
+    }
+
+    @Test
+    public void testGetInputStream() throws Exception {
+        try (InputStream webXml = warApplicationArchive.getInputStream("WEB-INF/web.xml")) {
+            assertThat(new String(ByteStreams.toByteArray(webXml), "UTF-8"), containsString("<web-app"));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testGetInputStream_FileNotFound() throws Exception {
+        warApplicationArchive.getInputStream("WEB-INF/no-such-file.xml");
+    }
+
+    @Test(expected = SecurityException.class)
+    public void testGetInputStream_NotRelativeFilePath() throws Exception {
+        warApplicationArchive.getInputStream("WEB-INF/../../etc/passwd");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetFile_Unsupported() throws Exception {
+        warApplicationArchive.getFile("WEB-INF/web.xml");
+    }
+
+    @Test
+    public void testFindFilesByGlobPattern() throws Exception {
+        Collection<URI> allPages = syntheticApplicationArchive.findFilesByGlobPattern(null, "*.xhtml");
+        Collection<URI> rootPages = syntheticApplicationArchive.findFilesByGlobPattern(null, "*.xhtml", false);
+        Collection<URI> subPages = syntheticApplicationArchive.findFilesByGlobPattern("pages", "*");
+
+        assertThat(allPages, hasItems(URI.create("index.xhtml"), URI.create("pages/sub/page.xhtml")));
+        assertThat(allPages.size(), is(equalTo(2)));
+        assertThat(rootPages, hasItems(URI.create("index.xhtml")));
+        assertThat(rootPages.size(), is(equalTo(1)));
+        assertThat(subPages, hasItems(URI.create("pages/sub/page.xhtml"), URI.create("pages/other.jsp")));
+        assertThat(subPages.size(), is(equalTo(2)));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testFindFilesByGlobPattern_NoSuchDirectory() throws Exception {
+        syntheticApplicationArchive.findFilesByGlobPattern("nosuchdirectory", "*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindFilesByGlobPattern_NotADirectory() throws Exception {
+        syntheticApplicationArchive.findFilesByGlobPattern("index.xhtml", "*");
+    }
+
+    @Test
+    public void testContainsEntry() throws Exception {
+        assertThat(syntheticApplicationArchive.containsEntry("pages/sub/page.xhtml"), is(true));
+        assertThat(syntheticApplicationArchive.containsEntry("pages/sub"), is(true));
+        assertThat(syntheticApplicationArchive.containsEntry("pages/sub/nopage.xhtml"), is(false));
+        assertThat(syntheticApplicationArchive.containsEntry("../pages/sub/page.xhtml"), is(false));
+    }
+
+    @Test
+    public void testResolveAndRelativizePath() throws Exception {
+        URI relativePath = URI.create("pages/sub/page.xhtml");
+
+        URI absolutePath = syntheticApplicationArchive.resolvePath(relativePath);
+
+        assertThat(absolutePath, is(equalTo(URI.create("memory:/synthetic.war/pages/sub/page.xhtml"))));
+        assertThat(syntheticApplicationArchive.relativizePath(absolutePath), is(equalTo(relativePath)));
+    }
+
+    /**
+     * Tests whether the class loader loads classes from WEB-INF/classes, and resources from the root of the WAR.
+     */
+    @Test
+    public void testGetClassLoader() throws Exception {
+        ClassLoader classLoader = warApplicationArchive.getClassLoader();
+
+        Class<?> backingBean = Class.forName("com.example.HelloWorldBacking", true, classLoader);
+        URL webXml = classLoader.getResource("WEB-INF/web.xml");
+
+        assertThat(backingBean.getClassLoader(), is(sameInstance(classLoader)));
+        assertThat(webXml, is(notNullValue()));
+        try (InputStream webXmlInputStream = webXml.openStream()) {
+            assertThat(new String(ByteStreams.toByteArray(webXmlInputStream), "UTF-8"), containsString("<web-app"));
+        }
+        assertThat(warApplicationArchive.getClassLoader(), is(sameInstance(classLoader)));
+    }
+
+    /**
+     * Tests whether the class loader finds resources in the libraries in WEB-INF/lib.
+     */
+    @Test
+    public void testGetClassLoader_Libraries() throws Exception {
+        ClassLoader classLoader = syntheticApplicationArchive.getClassLoader();
+
+        URL pairClass = classLoader.getResource("com/infosupport/ellison/util/Pair.class");
+        URL pomProperties = classLoader.getResource("META-INF/maven/com.infosupport/ellison/pom.properties");
+
+        assertThat(pairClass, is(notNullValue()));
+        assertThat(pomProperties.toString(),
+                   is(equalTo("memory:/synthetic.war/WEB-INF/lib/example.jar!/"
+                                  + "META-INF/maven/com.infosupport/ellison/pom.properties")));
+    }
+}
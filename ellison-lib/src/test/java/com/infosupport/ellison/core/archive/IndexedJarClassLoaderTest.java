@@ -0,0 +1,266 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Answers.CALLS_REAL_METHODS;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the {@link IndexedJarClassLoader} class.
+ *
+ * @author StefanZ
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IndexedJarClassLoaderTest {
+    private static final String CLASS_NAME = "com.infosupport.ellison.core.archive.EntryIndex";
+    private static final String CLASS_RESOURCE = "com/infosupport/ellison/core/archive/EntryIndex.class";
+    private static final List<URI> LIBRARIES =
+        Arrays.asList(URI.create("WEB-INF/lib/stored.jar"), URI.create("WEB-INF/lib/deflated.jar"));
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive applicationArchive;
+    File warFile;
+    IndexedJarClassLoader classLoader;
+
+    @Before
+    public void setup() throws Exception {
+        byte[] exampleJar = Files.toByteArray(new File(getClass().getResource("/example.jar").toURI()));
+        byte[] classJar = createClassJar();
+
+        warFile = temporaryFolder.newFile("nested.war");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(warFile))) {
+            ZipEntry storedEntry = new ZipEntry("WEB-INF/lib/stored.jar");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(exampleJar.length);
+            CRC32 crc = new CRC32();
+            crc.update(exampleJar);
+            storedEntry.setCrc(crc.getValue());
+            zipOutputStream.putNextEntry(storedEntry);
+            zipOutputStream.write(exampleJar);
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/lib/deflated.jar"));
+            zipOutputStream.write(classJar);
+        }
+        doReturn(warFile).when(applicationArchive).getApplicationFile();
+
+        doReturn(ApplicationArchive.UnpackMode.NONE).when(applicationArchive).getUnpackMode();
+        doReturn(Collections.singletonList(new File(temporaryFolder.getRoot(), "classes.jar"))).when(applicationArchive)
+            .getFiles(Collections.singletonList(URI.create("WEB-INF/lib/deflated.jar")));
+
+        classLoader = new IndexedJarClassLoader(new URL[0], null, applicationArchive, LIBRARIES,
+                                                Collections.<String>emptySet());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        classLoader.close();
+    }
+
+    /**
+     * Creates a jar with a manifest and a single class, taken from the test class path.
+     *
+     * @return the contents of the jar
+     */
+    private byte[] createClassJar() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, "1.2.3");
+        File classJar = temporaryFolder.newFile("classes.jar");
+
+        try (JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(classJar), manifest);
+             InputStream classInputStream = getClass().getResourceAsStream("/" + CLASS_RESOURCE)) {
+            jarOutputStream.putNextEntry(new ZipEntry(CLASS_RESOURCE));
+            ByteStreams.copy(classInputStream, jarOutputStream);
+        }
+
+        return Files.toByteArray(classJar);
+    }
+
+    /**
+     * Tests whether a class is defined from a compressed library by this class loader, with its package taken from
+     * the manifest of the library.
+     */
+    @Test
+    public void testLoadClass_FromLibrary() throws Exception {
+        Class<?> loadedClass = classLoader.loadClass(CLASS_NAME);
+
+        assertThat(loadedClass.getClassLoader(), is(sameInstance((ClassLoader) classLoader)));
+        assertThat(loadedClass.getPackage().getImplementationVersion(), is(equalTo("1.2.3")));
+        assertThat(loadedClass.getProtectionDomain().getCodeSource().getLocation().toString(),
+                   is(equalTo("jar:" + warFile.toURI() + "!/WEB-INF/lib/deflated.jar")));
+    }
+
+    /**
+     * Tests whether only the compressed library is extracted, and whether its resources can no longer be read once
+     * the class loader is closed.
+     */
+    @Test
+    public void testClose_CompressedLibraryExtracted() throws Exception {
+        URL resource = classLoader.getResource(CLASS_RESOURCE);
+
+        verify(applicationArchive).getFiles(Collections.singletonList(URI.create("WEB-INF/lib/deflated.jar")));
+        verify(applicationArchive, never()).getFile(anyString());
+        classLoader.close();
+
+        try {
+            resource.openStream();
+            fail("Read from a closed class loader");
+        } catch (FileNotFoundException e) {
+            assertThat(e.getMessage(), containsString(CLASS_RESOURCE));
+        }
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testLoadClass_NoSuchClass() throws Exception {
+        classLoader.loadClass("com.infosupport.ellison.NoSuchClass");
+    }
+
+    /**
+     * Tests whether resources are found in the first library that contains them, and can be read through their URL.
+     */
+    @Test
+    public void testGetResource_FromStoredLibrary() throws Exception {
+        URL resource = classLoader.getResource("META-INF/MANIFEST.MF");
+
+        assertThat(resource.toString(),
+                   is(equalTo("jar:" + warFile.toURI() + "!/WEB-INF/lib/stored.jar!/META-INF/MANIFEST.MF")));
+        try (InputStream resourceInputStream = resource.openStream()) {
+            assertThat(ByteStreams.toByteArray(resourceInputStream).length, is(not(0)));
+        }
+    }
+
+    @Test
+    public void testGetResource_NoSuchEntry() throws Exception {
+        assertThat(classLoader.getResource("META-INF/NO-SUCH-FILE"), is(nullValue()));
+    }
+
+    @Test
+    public void testGetResources_AllLibraries() throws Exception {
+        List<URL> resources = Collections.list(classLoader.getResources("META-INF/MANIFEST.MF"));
+
+        assertThat(resources.size(), is(equalTo(2)));
+        assertThat(resources.get(1).toString(), containsString("deflated.jar!/"));
+    }
+
+    /**
+     * Tests whether the URLs of the class loader include the libraries, and whether a library can be read as a whole
+     * through its URL.
+     */
+    @Test
+    public void testGetURLs_LibrariesIncluded() throws Exception {
+        URL[] urls = classLoader.getURLs();
+
+        assertThat(urls.length, is(equalTo(2)));
+        assertThat(urls[1].toString(), is(equalTo("jar:" + warFile.toURI() + "!/WEB-INF/lib/deflated.jar")));
+        try (InputStream libraryInputStream = urls[0].openStream()) {
+            assertThat(ByteStreams.toByteArray(libraryInputStream),
+                       is(equalTo(Files.toByteArray(new File(getClass().getResource("/example.jar").toURI())))));
+        }
+        try (ZipInputStream zipInputStream = new ZipInputStream(urls[1].openStream())) {
+            assertThat(zipInputStream.getNextEntry().getName(), is(equalTo("META-INF/MANIFEST.MF")));
+            assertThat(zipInputStream.getNextEntry().getName(), is(equalTo(CLASS_RESOURCE)));
+        }
+    }
+
+    /**
+     * Tests whether the URLs passed to the constructor are searched before the libraries, but only for the packages
+     * they are known to contain.
+     */
+    @Test
+    public void testGetResource_LocalPackages() throws Exception {
+        File classesDirectory = temporaryFolder.newFolder("classes");
+        File manifest = new File(classesDirectory, "META-INF/MANIFEST.MF");
+        Files.createParentDirs(manifest);
+        Files.write("Manifest-Version: 1.0\n", manifest, Charset.forName("UTF-8"));
+        URL[] urls = {classesDirectory.toURI().toURL()};
+
+        try (IndexedJarClassLoader localClassLoader = new IndexedJarClassLoader(
+            urls, null, applicationArchive, LIBRARIES, Collections.singleton("META-INF"))) {
+            assertThat(localClassLoader.getResource("META-INF/MANIFEST.MF"), is(equalTo(manifest.toURI().toURL())));
+            assertThat(Collections.list(localClassLoader.getResources("META-INF/MANIFEST.MF")).size(), is(equalTo(3)));
+        }
+        try (IndexedJarClassLoader localClassLoader = new IndexedJarClassLoader(
+            urls, null, applicationArchive, LIBRARIES, Collections.singleton("WEB-INF"))) {
+            assertThat(localClassLoader.getResource("META-INF/MANIFEST.MF").toString(), containsString("stored.jar!/"));
+        }
+    }
+
+    /**
+     * Tests whether libraries that have been unpacked are read from where they were unpacked to, and reported by
+     * {@link IndexedJarClassLoader#getURLs()}.
+     */
+    @Test
+    public void testLoadClass_UnpackedLibraries() throws Exception {
+        File classJar = new File(temporaryFolder.getRoot(), "classes.jar");
+        doReturn(ApplicationArchive.UnpackMode.FULL).when(applicationArchive).getUnpackMode();
+        doReturn(classJar).when(applicationArchive).getFile("WEB-INF/lib/classes.jar");
+
+        try (IndexedJarClassLoader unpackedClassLoader = new IndexedJarClassLoader(
+            new URL[0], null, applicationArchive, Collections.singleton(URI.create("WEB-INF/lib/classes.jar")),
+            null)) {
+            Class<?> loadedClass = unpackedClassLoader.loadClass(CLASS_NAME);
+
+            assertThat(loadedClass.getClassLoader(), is(sameInstance((ClassLoader) unpackedClassLoader)));
+            assertThat(unpackedClassLoader.getURLs(), is(equalTo(new URL[] {classJar.toURI().toURL()})));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testConstructor_NoSuchLibrary() throws Exception {
+        new IndexedJarClassLoader(new URL[0], null, applicationArchive,
+                                  Collections.singletonList(URI.create("WEB-INF/lib/missing.jar")), null);
+    }
+}
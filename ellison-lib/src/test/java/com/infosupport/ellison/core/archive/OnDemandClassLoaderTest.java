@@ -0,0 +1,86 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Answers.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Tests the {@link OnDemandClassLoader} class.
+ *
+ * @author StefanZ
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OnDemandClassLoaderTest {
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive applicationArchive;
+    OnDemandClassLoader classLoader;
+
+    @Before
+    public void setup() throws Exception {
+        File inputJar = new File(getClass().getResource("/example.jar").toURI());
+        doReturn(inputJar).when(applicationArchive).getApplicationFile();
+        doReturn(ApplicationArchive.UnpackMode.ON_DEMAND).when(applicationArchive).getUnpackMode();
+
+        URL rootURL = applicationArchive.getRootURI().toURL();
+        classLoader = new OnDemandClassLoader(new URL[] {rootURL}, null, applicationArchive, "");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        classLoader.close();
+        applicationArchive.close();
+    }
+
+    /**
+     * Tests whether asking for a resource extracts it from the archive.
+     */
+    @Test
+    public void testFindResource_Extracts() throws Exception {
+        File manifest = new File(applicationArchive.getUnpackedPath(), "META-INF/MANIFEST.MF");
+        assertThat(manifest.exists(), is(false));
+
+        URL resource = classLoader.getResource("META-INF/MANIFEST.MF");
+
+        assertThat(resource, is(notNullValue()));
+        assertThat(manifest.isFile(), is(true));
+    }
+
+    @Test
+    public void testFindResource_NoSuchEntry() throws Exception {
+        assertThat(classLoader.getResource("META-INF/NO-SUCH-FILE"), is(nullValue()));
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testFindClass_NoSuchEntry() throws Exception {
+        classLoader.loadClass("com.example.NoSuchClass");
+    }
+}
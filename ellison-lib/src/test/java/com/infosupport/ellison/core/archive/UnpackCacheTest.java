@@ -0,0 +1,169 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Answers.CALLS_REAL_METHODS;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the {@link UnpackCache} class.
+ *
+ * @author StefanZ
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class UnpackCacheTest {
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive jarApplicationArchive;
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive warApplicationArchive;
+    @Mock(answer = CALLS_REAL_METHODS) ApplicationArchive copiedApplicationArchive;
+    File cacheDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        cacheDirectory = temporaryFolder.newFolder("cache");
+        doReturn(new File(getClass().getResource("/example.jar").toURI())).when(jarApplicationArchive)
+            .getApplicationFile();
+        doReturn(new File(getClass().getResource("/jsf12-helloworld-nolibs.war").toURI()))
+            .when(warApplicationArchive).getApplicationFile();
+    }
+
+    /**
+     * Tests whether an archive is only unpacked once, even when it is acquired multiple times.
+     */
+    @Test
+    public void testAcquire_UnpacksOnce() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, Long.MAX_VALUE);
+
+        File firstDirectory = unpackCache.acquire(jarApplicationArchive);
+        File secondDirectory = unpackCache.acquire(jarApplicationArchive);
+
+        assertThat(secondDirectory, is(equalTo(firstDirectory)));
+        assertThat(new File(firstDirectory, "META-INF/MANIFEST.MF").isFile(), is(true));
+        verify(jarApplicationArchive, times(1)).unpackJarInto(any(File.class), any(File.class));
+    }
+
+    /**
+     * Tests whether archives are cached by their contents, rather than by their names.
+     */
+    @Test
+    public void testAcquire_SameContentsDifferentFile() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, Long.MAX_VALUE);
+        File copiedJar = temporaryFolder.newFile("copy.jar");
+        Files.copy(jarApplicationArchive.getApplicationFile(), copiedJar);
+        doReturn(copiedJar).when(copiedApplicationArchive).getApplicationFile();
+
+        File originalDirectory = unpackCache.acquire(jarApplicationArchive);
+        File copiedDirectory = new UnpackCache(cacheDirectory, Long.MAX_VALUE).acquire(copiedApplicationArchive);
+
+        assertThat(copiedDirectory, is(equalTo(originalDirectory)));
+        verify(copiedApplicationArchive, never()).unpackJarInto(any(File.class), any(File.class));
+    }
+
+    /**
+     * Tests whether the least recently used entry is evicted once the cache grows too large.
+     */
+    @Test
+    public void testAcquire_EvictsReleasedEntries() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, 0);
+
+        File jarDirectory = unpackCache.acquire(jarApplicationArchive);
+        unpackCache.release(jarDirectory);
+        File warDirectory = unpackCache.acquire(warApplicationArchive);
+
+        assertThat(jarDirectory.exists(), is(false));
+        assertThat(warDirectory.isDirectory(), is(true));
+    }
+
+    /**
+     * Tests whether an entry that is still in use is never evicted.
+     */
+    @Test
+    public void testAcquire_DoesNotEvictEntriesInUse() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, 0);
+
+        File jarDirectory = unpackCache.acquire(jarApplicationArchive);
+        File warDirectory = unpackCache.acquire(warApplicationArchive);
+
+        assertThat(jarDirectory.isDirectory(), is(true));
+        assertThat(warDirectory.isDirectory(), is(true));
+    }
+
+    /**
+     * Tests whether the entries extracted on demand are kept for the next archive with the same contents.
+     */
+    @Test
+    public void testAcquireOnDemand_KeepsExtractedEntries() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, Long.MAX_VALUE);
+
+        File firstDirectory = unpackCache.acquireOnDemand(jarApplicationArchive);
+        assertThat(new File(firstDirectory, "extracted").createNewFile(), is(true));
+        unpackCache.release(firstDirectory);
+        File secondDirectory = unpackCache.acquireOnDemand(jarApplicationArchive);
+
+        assertThat(secondDirectory, is(equalTo(firstDirectory)));
+        assertThat(new File(secondDirectory, "extracted").isFile(), is(true));
+        verify(jarApplicationArchive, never()).unpackJarInto(any(File.class), any(File.class));
+    }
+
+    /**
+     * Tests whether an archive that was unpacked entirely before is used by archives that are unpacked on demand.
+     */
+    @Test
+    public void testAcquireOnDemand_UsesUnpackedArchive() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, Long.MAX_VALUE);
+
+        File unpackedDirectory = unpackCache.acquire(jarApplicationArchive);
+        unpackCache.release(unpackedDirectory);
+        File onDemandDirectory = unpackCache.acquireOnDemand(jarApplicationArchive);
+
+        assertThat(onDemandDirectory, is(equalTo(unpackedDirectory)));
+    }
+
+    /**
+     * Tests whether an entry that is extracted on demand is evicted once it has been released.
+     */
+    @Test
+    public void testAcquireOnDemand_EvictsReleasedEntries() throws Exception {
+        UnpackCache unpackCache = new UnpackCache(cacheDirectory, 0);
+
+        File jarDirectory = unpackCache.acquireOnDemand(jarApplicationArchive);
+        Files.write(new byte[1], new File(jarDirectory, "extracted"));
+        unpackCache.release(jarDirectory);
+        File warDirectory = unpackCache.acquireOnDemand(warApplicationArchive);
+
+        assertThat(jarDirectory.exists(), is(false));
+        assertThat(warDirectory.isDirectory(), is(true));
+    }
+}
@@ -32,6 +32,7 @@ import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import javax.annotation.Nullable;
+import org.junit.After;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,9 +41,6 @@ import org.mockito.runners.MockitoJUnitRunner;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
-import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link com.infosupport.ellison.core.archive.WARApplicationArchive}.
@@ -85,6 +83,13 @@ public class WARApplicationArchiveTest {
             new File(WARApplicationArchive.class.getResource("/jsf12-helloworld-nowebinf.war").toURI());
     }
 
+    @After
+    public void tearDown() throws Exception {
+        if (warApplicationArchive != null) {
+            warApplicationArchive.close();
+        }
+    }
+
     /**
      * Tests whether {@link com.infosupport.ellison.core.archive.WARApplicationArchive#getClassLoader()}
      * returns
@@ -211,23 +216,6 @@ public class WARApplicationArchiveTest {
         warApplicationArchive = new WARApplicationArchive(inputFile);
     }
 
-    /**
-     * Make a {@link java.net.MalformedURLException} get thrown within {@link
-     * com.infosupport.ellison.core.archive.WARApplicationArchive.JarURIToURLTransform#
-     * apply(java.net.URI)}
-     */
-    @Test
-    public void testJarURIToURLTransform_apply_IOException() {
-        warApplicationArchive = mock(WARApplicationArchive.class);
-        WARApplicationArchive.JarURIToURLTransform transform = warApplicationArchive.new JarURIToURLTransform();
-        URI uriToTransform = URI.create("file:/");
-
-        when(warApplicationArchive.getApplicationFile()).thenReturn(new File(uriToTransform));
-        when(warApplicationArchive.resolvePath(any(URI.class))).thenThrow((Class) IOException.class);
-
-        assertThat(transform.apply(uriToTransform), is(nullValue()));
-    }
-
     /**
      * Assert that creating a classloader only happens once, and that any subsequent calls to {@link
      * com.infosupport.ellison.core.archive.WARApplicationArchive#getClassLoader()} return the same
@@ -244,6 +232,27 @@ public class WARApplicationArchiveTest {
         assertThat(warApplicationArchive.getClassLoader(), is(sameInstance(classLoader)));
     }
 
+    /**
+     * Tests whether {@link com.infosupport.ellison.core.archive.WARApplicationArchive#close()} closes the classloader,
+     * and deletes the directory the archive was unpacked to.
+     */
+    @Test
+    public void testClose() throws Exception {
+        warApplicationArchive = new WARApplicationArchive(noLibsInputApplicationArchive);
+        ClassLoader classLoader = warApplicationArchive.getClassLoader();
+        File unpackedPath = warApplicationArchive.getUnpackedPath();
+
+        warApplicationArchive.close();
+
+        assertThat(unpackedPath.exists(), is(false));
+        try {
+            classLoader.loadClass("com.example.HelloWorldBacking");
+            fail();
+        } catch (ClassNotFoundException e) {
+            // Success!
+        }
+    }
+
     /**
      * This method calls {@link com.infosupport.ellison.core.archive.ApplicationArchive#getFile(String)}
      * on every item in {@code filenames}. If one of the
@@ -0,0 +1,188 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link ZipIndex} class.
+ *
+ * @author StefanZ
+ */
+public class ZipIndexTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    File exampleJar;
+    ZipIndex zipIndex;
+
+    @Before
+    public void setup() throws Exception {
+        exampleJar = new File(getClass().getResource("/example.jar").toURI());
+        zipIndex = ZipIndex.open(exampleJar);
+    }
+
+    @After
+    public void tearDown() {
+        zipIndex.close();
+    }
+
+    /**
+     * Tests whether the index lists the same files as {@link ZipFile}, and reads the same contents for them.
+     */
+    @Test
+    public void testGetBytes_SameAsZipFile() throws Exception {
+        List<String> expectedNames = new ArrayList<>();
+
+        try (ZipFile zipFile = new ZipFile(exampleJar)) {
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (!entry.isDirectory()) {
+                    expectedNames.add(entry.getName());
+                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                        assertThat(zipIndex.getBytes(entry.getName()),
+                                   is(equalTo(ByteStreams.toByteArray(inputStream))));
+                    }
+                }
+            }
+        }
+
+        assertThat(new ArrayList<>(zipIndex.getEntryNames()), is(equalTo(expectedNames)));
+    }
+
+    @Test
+    public void testGetBytes_NoSuchEntry() throws Exception {
+        assertThat(zipIndex.contains("META-INF/NO-SUCH-FILE"), is(false));
+        assertThat(zipIndex.getBytes("META-INF/NO-SUCH-FILE"), is(nullValue()));
+        assertThat(zipIndex.isStored("META-INF/NO-SUCH-FILE"), is(false));
+    }
+
+    /**
+     * Tests whether a jar that is stored in an archive can be indexed in place, which is how nested jars are read.
+     */
+    @Test
+    public void testGetNested_Stored() throws Exception {
+        try (ZipIndex outerIndex = ZipIndex.open(createOuterZip())) {
+            ZipIndex nestedIndex = outerIndex.getNested("lib/stored.jar");
+
+            assertThat(outerIndex.isStored("lib/stored.jar"), is(true));
+            assertThat(nestedIndex.getEntryNames(), is(equalTo(zipIndex.getEntryNames())));
+            assertThat(nestedIndex.getBytes("META-INF/MANIFEST.MF"),
+                       is(equalTo(zipIndex.getBytes("META-INF/MANIFEST.MF"))));
+            assertThat(ByteStreams.toByteArray(nestedIndex.openStream()),
+                       is(equalTo(Files.toByteArray(exampleJar))));
+        }
+    }
+
+    /**
+     * Tests whether a compressed jar is refused, as it cannot be indexed without inflating it first.
+     */
+    @Test(expected = IOException.class)
+    public void testGetNested_Deflated() throws Exception {
+        try (ZipIndex outerIndex = ZipIndex.open(createOuterZip())) {
+            assertThat(outerIndex.isStored("lib/deflated.jar"), is(false));
+            outerIndex.getNested("lib/deflated.jar");
+        }
+    }
+
+    /**
+     * Tests whether reading from a closed index, or from an index nested in it, fails instead of touching the
+     * unmapped archive, while the entry names remain available.
+     */
+    @Test
+    public void testClose_ReadsFail() throws Exception {
+        ZipIndex outerIndex = ZipIndex.open(createOuterZip());
+        ZipIndex nestedIndex = outerIndex.getNested("lib/stored.jar");
+        InputStream nestedInputStream = nestedIndex.openStream();
+
+        outerIndex.close();
+        nestedIndex.close();
+
+        assertThat(outerIndex.contains("lib/deflated.jar"), is(true));
+        assertThat(nestedIndex.contains("META-INF/MANIFEST.MF"), is(true));
+        for (ZipIndex closedIndex : new ZipIndex[] {outerIndex, nestedIndex}) {
+            try {
+                closedIndex.getBytes(closedIndex.getEntryNames().iterator().next());
+                fail("Read from a closed index");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), containsString("closed"));
+            }
+        }
+        try {
+            nestedInputStream.read();
+            fail("Read from a closed index");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("closed"));
+        }
+    }
+
+    /**
+     * Creates a zip archive holding the example jar twice: once stored, as {@code lib/stored.jar}, and once deflated,
+     * as {@code lib/deflated.jar}.
+     *
+     * @return the zip archive
+     */
+    private File createOuterZip() throws IOException {
+        byte[] exampleJarBytes = Files.toByteArray(exampleJar);
+        File outerZip = temporaryFolder.newFile("outer.zip");
+
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(outerZip))) {
+            ZipEntry storedEntry = new ZipEntry("lib/stored.jar");
+            storedEntry.setMethod(ZipEntry.STORED);
+            storedEntry.setSize(exampleJarBytes.length);
+            CRC32 crc = new CRC32();
+            crc.update(exampleJarBytes);
+            storedEntry.setCrc(crc.getValue());
+            zipOutputStream.putNextEntry(storedEntry);
+            zipOutputStream.write(exampleJarBytes);
+            zipOutputStream.putNextEntry(new ZipEntry("lib/deflated.jar"));
+            zipOutputStream.write(exampleJarBytes);
+        }
+
+        return outerZip;
+    }
+
+    @Test(expected = IOException.class)
+    public void testConstructor_NotAZipArchive() throws Exception {
+        new ZipIndex(ByteBuffer.wrap("Not a zip archive".getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
+import javax.annotation.ManagedBean;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link ClassFileAnnotationReader} class.
+ *
+ * @author StefanZ
+ */
+public class ClassFileAnnotationReaderTest {
+    ClassFileAnnotationReader managedBeanReader = new ClassFileAnnotationReader(ManagedBean.class.getName());
+
+    /**
+     * Reads the class file of a class from the test class path.
+     *
+     * @param someClass
+     *     the class to read the class file of
+     *
+     * @return the contents of the class file
+     */
+    private static byte[] readClassFile(Class<?> someClass) throws IOException {
+        String classFile = "/" + someClass.getName().replace('.', '/') + ".class";
+
+        try (InputStream classInputStream = ClassFileAnnotationReaderTest.class.getResourceAsStream(classFile)) {
+            return ByteStreams.toByteArray(classInputStream);
+        }
+    }
+
+    @Test
+    public void testRead_ExplicitName() throws Exception {
+        Pair<String, Map<String, Object>> annotation = managedBeanReader.read(readClassFile(NamedBean.class));
+
+        assertThat(annotation.first(), is(equalTo(NamedBean.class.getName())));
+        assertThat(annotation.second().get("value"), is(equalTo((Object) "namedBean")));
+    }
+
+    @Test
+    public void testRead_ImplicitName() throws Exception {
+        Pair<String, Map<String, Object>> annotation = managedBeanReader.read(readClassFile(UnnamedBean.class));
+
+        assertThat(annotation.first(), is(equalTo(UnnamedBean.class.getName())));
+        assertThat(annotation.second().isEmpty(), is(true));
+    }
+
+    /**
+     * Tests whether a class that only refers to the annotation, without being annotated with it, is not reported.
+     */
+    @Test
+    public void testRead_NotAnnotated() throws Exception {
+        byte[] classFile = readClassFile(ReferringClass.class);
+
+        assertThat(managedBeanReader.mayBeAnnotated(classFile), is(true));
+        assertThat(managedBeanReader.read(classFile), is(nullValue()));
+        assertThat(managedBeanReader.mayBeAnnotated(readClassFile(Pair.class)), is(false));
+    }
+
+    /**
+     * Tests whether the values of elements of various types are read, and whether other annotations on the class are
+     * skipped.
+     */
+    @Test
+    public void testRead_ElementTypes() throws Exception {
+        ClassFileAnnotationReader reader = new ClassFileAnnotationReader(TestAnnotation.class.getName());
+
+        Map<String, Object> elements = reader.read(readClassFile(NamedBean.class)).second();
+
+        assertThat(elements.get("number"), is(equalTo((Object) 42L)));
+        assertThat(elements.get("flag"), is(equalTo((Object) Boolean.TRUE)));
+        assertThat(elements.get("character"), is(equalTo((Object) 'x')));
+        assertThat(elements.get("type"), is(equalTo((Object) "METHOD")));
+        assertThat(elements.get("someClass"), is(equalTo((Object) "Ljava/lang/String;")));
+        assertThat(elements.containsKey("names"), is(false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_NotAClassFile() throws Exception {
+        byte[] classFile = readClassFile(NamedBean.class);
+        classFile[0] = 0;
+
+        managedBeanReader.read(classFile);
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface TestAnnotation {
+        long number();
+
+        boolean flag();
+
+        char character();
+
+        ElementType type();
+
+        Class<?> someClass();
+
+        String[] names();
+    }
+
+    @TestAnnotation(number = 42L, flag = true, character = 'x', type = ElementType.METHOD, someClass = String.class,
+                    names = {"a", "b"})
+    @ManagedBean("namedBean")
+    public static class NamedBean {
+    }
+
+    @ManagedBean
+    public static class UnnamedBean {
+    }
+
+    public static class ReferringClass {
+        ManagedBean annotation;
+    }
+}
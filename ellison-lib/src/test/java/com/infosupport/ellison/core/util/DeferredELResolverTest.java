@@ -0,0 +1,180 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.util;
+
+import com.infosupport.ellison.core.api.StaticELResolver;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.el.ELContext;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the {@link DeferredELResolver} class.
+ *
+ * @author StefanZ
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DeferredELResolverTest {
+    @Mock ELContext elContext;
+    @Mock StaticELResolver delegate;
+
+    /**
+     * Tests whether the delegate is created by the first query, once, and whether queries are passed on to it.
+     */
+    @Test
+    public void testGetValue_CreatedOnFirstQuery() {
+        final AtomicInteger creations = new AtomicInteger();
+        when(delegate.getValue(elContext, null, "bean")).thenReturn(String.class);
+        DeferredELResolver<StaticELResolver> deferredELResolver =
+            new DeferredELResolver<>(new Callable<StaticELResolver>() {
+                @Override
+                public StaticELResolver call() {
+                    creations.incrementAndGet();
+                    return delegate;
+                }
+            }, new Class<?>[] {StaticELResolver.ROOT});
+
+        assertThat(deferredELResolver.getBaseTypes(), is(equalTo(new Class<?>[] {StaticELResolver.ROOT})));
+        assertThat(creations.get(), is(equalTo(0)));
+
+        assertThat(deferredELResolver.getValue(elContext, null, "bean"), is(equalTo((Object) String.class)));
+        deferredELResolver.getValue(elContext, null, "bean");
+
+        assertThat(creations.get(), is(equalTo(1)));
+        verify(delegate, times(2)).getValue(elContext, null, "bean");
+    }
+
+    /**
+     * Tests whether a delegate created in the background gets the context class loader of the thread that created the
+     * deferred resolver.
+     */
+    @Test
+    public void testStart_ContextClassLoader() throws Exception {
+        final ClassLoader applicationClassLoader = new URLClassLoader(new URL[0]);
+        final ClassLoader[] creationClassLoader = new ClassLoader[1];
+        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
+        DeferredELResolver<StaticELResolver> deferredELResolver;
+
+        Thread.currentThread().setContextClassLoader(applicationClassLoader);
+        try {
+            deferredELResolver = new DeferredELResolver<>(new Callable<StaticELResolver>() {
+                @Override
+                public StaticELResolver call() {
+                    creationClassLoader[0] = Thread.currentThread().getContextClassLoader();
+                    return delegate;
+                }
+            }, null);
+        } finally {
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+        }
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        deferredELResolver.start(executorService);
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(deferredELResolver.get(), is(sameInstance(delegate)));
+        assertThat(creationClassLoader[0], is(sameInstance(applicationClassLoader)));
+        assertThat(deferredELResolver.getBaseTypes(), is(nullValue()));
+    }
+
+    /**
+     * Tests whether an exception thrown while creating the delegate is thrown to the query that needs it.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetValue_CreationFails() {
+        DeferredELResolver<StaticELResolver> deferredELResolver =
+            new DeferredELResolver<>(new Callable<StaticELResolver>() {
+                @Override
+                public StaticELResolver call() {
+                    throw new UnsupportedOperationException();
+                }
+            }, null);
+
+        deferredELResolver.getValue(elContext, null, "bean");
+    }
+
+    /**
+     * Tests whether closing the resolver before the delegate has been created keeps it from ever being created.
+     */
+    @Test(expected = CancellationException.class)
+    public void testClose_CancelsCreation() {
+        DeferredELResolver<StaticELResolver> deferredELResolver =
+            new DeferredELResolver<>(new Callable<StaticELResolver>() {
+                @Override
+                public StaticELResolver call() {
+                    throw new AssertionError("The delegate should not be created");
+                }
+            }, null);
+
+        deferredELResolver.close();
+
+        deferredELResolver.getValue(elContext, null, "bean");
+    }
+
+    /**
+     * Tests whether closing the resolver while the delegate is being created interrupts the creation, without waiting
+     * for it.
+     */
+    @Test
+    public void testClose_InterruptsCreation() throws Exception {
+        final CountDownLatch creationStarted = new CountDownLatch(1);
+        final CountDownLatch creationInterrupted = new CountDownLatch(1);
+        DeferredELResolver<StaticELResolver> deferredELResolver =
+            new DeferredELResolver<>(new Callable<StaticELResolver>() {
+                @Override
+                public StaticELResolver call() {
+                    creationStarted.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException e) {
+                        creationInterrupted.countDown();
+                    }
+                    return delegate;
+                }
+            }, null);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            deferredELResolver.start(executorService);
+            assertThat(creationStarted.await(10, TimeUnit.SECONDS), is(true));
+            deferredELResolver.close();
+
+            assertThat(creationInterrupted.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
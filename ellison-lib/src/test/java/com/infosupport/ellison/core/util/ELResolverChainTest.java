@@ -108,4 +108,49 @@ public class ELResolverChainTest {
         assertThat(elResolverChain.getValue(elContext, null, "bla"), is(equalTo((Object) Class.class)));
         verify(staticELResolvers[1], times(0)).getValue(eq(elContext), any(Class.class), anyString());
     }
+
+    /**
+     * Tests whether a query is only passed on to the children that handle its kind of base.
+     */
+    @Test
+    public void testGetValue_DispatchedByBaseType() {
+        when(staticELResolvers[0].getBaseTypes()).thenReturn(new Class<?>[] {StaticELResolver.ROOT});
+        when(staticELResolvers[1].getBaseTypes()).thenReturn(new Class<?>[] {Number.class});
+        when(elContext.isPropertyResolved()).thenReturn(false);
+        elResolverChain.addResolver(staticELResolvers[0]);
+        elResolverChain.addResolver(staticELResolvers[1]);
+
+        elResolverChain.getValue(elContext, null, "root");
+        elResolverChain.getValue(elContext, 1, "number");
+        elResolverChain.getValue(elContext, "string", "other");
+
+        verify(staticELResolvers[0]).getValue(elContext, null, "root");
+        verify(staticELResolvers[1]).getValue(elContext, 1, "number");
+        verifyNoMoreInteractions(ignoreStubs(staticELResolvers));
+    }
+
+    /**
+     * Tests whether a chain handles the union of the kinds of bases its children handle.
+     */
+    @Test
+    public void testGetBaseTypes() {
+        when(staticELResolvers[0].getBaseTypes()).thenReturn(new Class<?>[] {StaticELResolver.ROOT});
+        when(staticELResolvers[1].getBaseTypes()).thenReturn(new Class<?>[] {Number.class, StaticELResolver.ROOT});
+        elResolverChain.addResolver(staticELResolvers[0]);
+        elResolverChain.addResolver(staticELResolvers[1]);
+
+        assertThat(elResolverChain.getBaseTypes(),
+                   is(equalTo(new Class<?>[] {StaticELResolver.ROOT, Number.class})));
+    }
+
+    @Test
+    public void testClose_ClosesChildren() {
+        elResolverChain.addResolver(staticELResolvers[0]);
+        elResolverChain.addResolver(staticELResolvers[1]);
+
+        elResolverChain.close();
+
+        verify(staticELResolvers[0]).close();
+        verify(staticELResolvers[1]).close();
+    }
 }
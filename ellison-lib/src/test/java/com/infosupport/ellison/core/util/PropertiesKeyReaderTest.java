@@ -0,0 +1,96 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.core.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link PropertiesKeyReader} class.
+ *
+ * @author StefanZ
+ */
+public class PropertiesKeyReaderTest {
+    @Test
+    public void testReadKeys_CommentsAndSeparators() throws Exception {
+        String properties = "# comment\n! other comment\n\n  a=1\nb : 2\nc 3\nd\n   \ne=\n";
+
+        assertThat(readSortedKeys(properties), is(equalTo(loadKeys(properties))));
+    }
+
+    @Test
+    public void testReadKeys_ContinuationLines() throws Exception {
+        String properties = "a=first \\\n    continued = not a key\nb=last\\\n";
+
+        assertThat(readSortedKeys(properties), is(equalTo(loadKeys(properties))));
+    }
+
+    @Test
+    public void testReadKeys_Escapes() throws Exception {
+        String properties = "hello\\u0020world=1\r\nkey\\=with\\:separators=2\rtab\\tbed\\\n  key=3\n\\#notAComment\n";
+
+        assertThat(readSortedKeys(properties), is(equalTo(loadKeys(properties))));
+    }
+
+    @Test
+    public void testReadKeys_EmptyKey() throws Exception {
+        assertThat(readSortedKeys("=value"), is(equalTo(loadKeys("=value"))));
+    }
+
+    @Test
+    public void testReadKeys_InFileOrder() throws Exception {
+        assertThat(PropertiesKeyReader.readKeys(new StringReader("b=1\na=2\nb=3")),
+                   is(equalTo(Arrays.asList("b", "a", "b"))));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadKeys_MalformedEscape() throws Exception {
+        PropertiesKeyReader.readKeys(new StringReader("bad\\u00zz=1"));
+    }
+
+    /**
+     * Reads the distinct keys of properties with {@link PropertiesKeyReader}, sorted.
+     */
+    private static List<String> readSortedKeys(String properties) throws IOException {
+        return new ArrayList<>(new TreeSet<>(PropertiesKeyReader.readKeys(new StringReader(properties))));
+    }
+
+    /**
+     * Loads the keys of properties the way {@link Properties} does, sorted.
+     */
+    private static List<String> loadKeys(String properties) throws IOException {
+        Properties loaded = new Properties();
+        loaded.load(new StringReader(properties));
+        List<String> keys = new ArrayList<>(loaded.stringPropertyNames());
+        Collections.sort(keys);
+        return keys;
+    }
+}
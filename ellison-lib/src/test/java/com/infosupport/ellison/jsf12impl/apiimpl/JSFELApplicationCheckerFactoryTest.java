@@ -99,6 +99,19 @@ public class JSFELApplicationCheckerFactoryTest {
         assertThat(elFinder, is(notNullValue()));
     }
 
+    /**
+     * Tests whether created ELFinders parse pages one after another unless told otherwise.
+     */
+    @Test
+    public void testCreateELFinder_ParseThreads() throws Exception {
+        JSFELFinder sequentialFinder = (JSFELFinder) applicationCheckerFactory.createELFinder(applicationArchive);
+        applicationCheckerFactory.setParseThreads(4);
+        JSFELFinder concurrentFinder = (JSFELFinder) applicationCheckerFactory.createELFinder(applicationArchive);
+
+        assertThat(sequentialFinder.getParseThreads(), is(equalTo(1)));
+        assertThat(concurrentFinder.getParseThreads(), is(equalTo(4)));
+    }
+
     /**
      * Tests whether creating an ELResolver succeeds. We use an actual WAR archive here,
      * because mocking the entire path to the BeanManager holding information about registered managed beans is
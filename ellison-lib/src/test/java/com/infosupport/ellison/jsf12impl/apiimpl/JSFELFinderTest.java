@@ -25,7 +25,9 @@ import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import javax.annotation.Nullable;
 
@@ -173,6 +175,42 @@ public class JSFELFinderTest {
         assertThat(foundErrorsOnlyExpected.containsAll(foundErrors), is(true));
     }
 
+    /**
+     * Tests whether parsing pages concurrently finds the same expressions and errors, in the same order, as parsing
+     * them one after another.
+     */
+    @Test
+    public void testFindELExpressions_ConcurrentInPageOrder() throws Exception {
+        Pair<Collection<LocationAwareELExpression>, Collection<ELError>> sequential =
+            new JSFELFinder(1).findELExpressions(pageList, applicationArchive);
+        Pair<Collection<LocationAwareELExpression>, Collection<ELError>> concurrent =
+            new JSFELFinder(4).findELExpressions(pageList, applicationArchive);
+
+        assertThat(describeExpressions(concurrent.first()), is(equalTo(describeExpressions(sequential.first()))));
+        assertThat(describeErrors(concurrent.second()), is(equalTo(describeErrors(sequential.second()))));
+    }
+
+    private static List<String> describeExpressions(Collection<LocationAwareELExpression> expressions) {
+        List<String> descriptions = new ArrayList<>();
+        for (LocationAwareELExpression expression : expressions) {
+            descriptions.add(String.format("%s %s", describeLocation(expression), expression.getExpressionString()));
+        }
+        return descriptions;
+    }
+
+    private static List<String> describeErrors(Collection<ELError> errors) {
+        List<String> descriptions = new ArrayList<>();
+        for (ELError error : errors) {
+            descriptions.add(String.format("%s %s", describeLocation(error.getElExpression()), error.getMessage()));
+        }
+        return descriptions;
+    }
+
+    private static String describeLocation(LocationAwareELExpression expression) {
+        return String.format("%s:%d:%d", expression.getLocation().getUri(), expression.getLocation().getLine(),
+                             expression.getLocation().getColumn());
+    }
+
     private boolean isInHelloWorld(LocationAwareELExpression input) {
         return input.getLocation().getUri().toString().equals("helloWorld.xhtml");
     }
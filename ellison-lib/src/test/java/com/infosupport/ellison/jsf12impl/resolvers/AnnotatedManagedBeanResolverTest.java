@@ -19,22 +19,42 @@
  */
 package com.infosupport.ellison.jsf12impl.resolvers;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.annotation.ManagedBean;
 import javax.el.ELContext;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.google.common.io.ByteStreams;
+import com.infosupport.ellison.core.archive.ApplicationArchive;
+import com.infosupport.ellison.core.archive.InMemoryWARApplicationArchive;
+import com.infosupport.ellison.core.archive.IndexedJarClassLoader;
+import com.infosupport.ellison.core.archive.WARApplicationArchive;
 import com.infosupport.ellison.jsf12impl.resolvers.AnnotatedManagedBeanResolver;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -44,6 +64,7 @@ import static org.mockito.Mockito.verify;
  */
 @RunWith(MockitoJUnitRunner.class)
 public class AnnotatedManagedBeanResolverTest {
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
     @Mock ELContext elContext;
     ClassLoader originalClassLoader;
 
@@ -110,6 +131,135 @@ public class AnnotatedManagedBeanResolverTest {
         assertThat((Class) resolvedValue, is(sameInstance((Class) AnnotatedBeanWithExplicitName.class)));
     }
 
+    /**
+     * Tests whether only the given class path is scanned, even if the class loader can load other annotated classes.
+     */
+    @Test
+    public void getValue_ScopedClassPath() throws Exception {
+        URL annotatedClassURL = this.getClass().getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = this.getClass().getClassLoader();
+
+        AnnotatedManagedBeanResolver scopedResolver =
+            new AnnotatedManagedBeanResolver(Arrays.asList(annotatedClassURL), classLoader);
+        AnnotatedManagedBeanResolver emptyResolver =
+            new AnnotatedManagedBeanResolver(Collections.<URL>emptyList(), classLoader);
+
+        assertThat(scopedResolver.getValue(elContext, null, "someName"),
+                   is(sameInstance((Object) AnnotatedBeanWithExplicitName.class)));
+        assertThat(emptyResolver.getValue(elContext, null, "someName"), is(nullValue()));
+    }
+
+    /**
+     * Tests whether annotated classes are found in a library that is read from inside a web archive. The parent
+     * class loader hides the class and has no class path of its own, so the class can only be found in the library.
+     */
+    @Test
+    public void getValue_WithAnnotatedClass_InNestedLibrary() throws Exception {
+        final String className = AnnotatedBeanWithExplicitName.class.getName();
+        File warFile = createWebArchiveWithLibrary();
+        final ClassLoader testClassLoader = getClass().getClassLoader();
+        ClassLoader parent = new ClassLoader(null) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (name.equals(className)) {
+                    throw new ClassNotFoundException(name);
+                }
+                return testClassLoader.loadClass(name);
+            }
+        };
+
+        try (WARApplicationArchive applicationArchive =
+                 new WARApplicationArchive(warFile, ApplicationArchive.UnpackMode.NONE);
+             IndexedJarClassLoader classLoader = new IndexedJarClassLoader(
+                 new URL[0], parent, applicationArchive,
+                 Collections.singletonList(URI.create("WEB-INF/lib/beans.jar")), null)) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            AnnotatedManagedBeanResolver resolver = new AnnotatedManagedBeanResolver();
+
+            Object resolvedValue = resolver.getValue(elContext, null, "someName");
+
+            verify(elContext).setPropertyResolved(true);
+            assertThat(((Class<?>) resolvedValue).getName(), is(equalTo(className)));
+            assertThat(((Class<?>) resolvedValue).getClassLoader(), is(sameInstance((ClassLoader) classLoader)));
+        }
+    }
+
+    /**
+     * Tests whether annotated classes are found in the libraries of an application archive, even if the archive is
+     * not on disk.
+     */
+    @Test
+    public void getValue_ApplicationArchive_AnnotatedClassInLibrary() throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        entries.put("WEB-INF/lib/beans.jar", createLibrary());
+
+        try (InMemoryWARApplicationArchive applicationArchive = new InMemoryWARApplicationArchive("beans.war",
+                                                                                                  entries)) {
+            assertResolvesAnnotatedClassInLibrary(applicationArchive);
+        }
+    }
+
+    /**
+     * Tests whether annotated classes are found in the libraries of a web archive, whichever way its contents are
+     * accessed.
+     */
+    @Test
+    public void getValue_ApplicationArchive_AnnotatedClassInLibraryAllUnpackModes() throws Exception {
+        File warFile = createWebArchiveWithLibrary();
+
+        for (ApplicationArchive.UnpackMode unpackMode : ApplicationArchive.UnpackMode.values()) {
+            reset(elContext);
+            try (WARApplicationArchive applicationArchive = new WARApplicationArchive(warFile, unpackMode, 1, null)) {
+                assertResolvesAnnotatedClassInLibrary(applicationArchive);
+            }
+        }
+    }
+
+    /**
+     * Creates a library containing {@link AnnotatedBeanWithExplicitName}.
+     *
+     * @return the contents of the library
+     */
+    private byte[] createLibrary() throws IOException {
+        String classFile = AnnotatedBeanWithExplicitName.class.getName().replace('.', '/') + ".class";
+        ByteArrayOutputStream library = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(library);
+             InputStream classInputStream = getClass().getResourceAsStream("/" + classFile)) {
+            zipOutputStream.putNextEntry(new ZipEntry(classFile));
+            ByteStreams.copy(classInputStream, zipOutputStream);
+        }
+        return library.toByteArray();
+    }
+
+    /**
+     * Creates a web archive on disk whose only content is the library created by {@link #createLibrary()}, as
+     * WEB-INF/lib/beans.jar.
+     *
+     * @return the web archive
+     */
+    private File createWebArchiveWithLibrary() throws IOException {
+        File warFile = temporaryFolder.newFile("beans.war");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(warFile))) {
+            zipOutputStream.putNextEntry(new ZipEntry("WEB-INF/lib/beans.jar"));
+            zipOutputStream.write(createLibrary());
+        }
+        return warFile;
+    }
+
+    /**
+     * Asserts that the managed bean in the library created by {@link #createLibrary()} is found in an archive, and
+     * that the annotated classes on the class path of the test are not.
+     */
+    private void assertResolvesAnnotatedClassInLibrary(ApplicationArchive applicationArchive) {
+        AnnotatedManagedBeanResolver resolver = new AnnotatedManagedBeanResolver(applicationArchive);
+
+        Object resolvedValue = resolver.getValue(elContext, null, "someName");
+
+        verify(elContext).setPropertyResolved(true);
+        assertThat(((Class<?>) resolvedValue).getName(), is(equalTo(AnnotatedBeanWithExplicitName.class.getName())));
+        assertThat(resolver.getValue(elContext, null, "annotatedBeanWithImplicitName"), is(nullValue()));
+    }
+
     @Test
     public void getValue_NotResolvable_BaseNotNull() throws Exception {
         AnnotatedManagedBeanResolver resolver = new AnnotatedManagedBeanResolver();
@@ -22,6 +22,12 @@ package com.infosupport.ellison.jsf12impl.resolvers;
 import com.infosupport.ellison.jsf12impl.apiimpl.JSFELExpression;
 import com.infosupport.ellison.jsf12impl.resolvers.ClassPropertyELResolver;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.el.ELContext;
 import org.junit.Before;
 import org.junit.Test;
@@ -93,6 +99,36 @@ public class ClassPropertyELResolverTest {
         assertThat(elContext.isPropertyResolved(), is(false));
     }
 
+    /**
+     * Tests whether properties are resolved correctly when several threads resolve properties of the same classes at
+     * the same time, each through its own resolver.
+     */
+    @Test
+    public void testGetValue_Concurrent() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<Object>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                final String propertyName = i % 2 == 0 ? "stringProperty" : "superStringProperty";
+                results.add(executorService.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        ClassPropertyELResolver resolver = new ClassPropertyELResolver();
+                        return resolver.getValue(new JSFELExpression.JSFELContext(resolver), TestClass.class,
+                                                 propertyName);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get(), is(sameInstance((Object) (i % 2 == 0 ? String.class : int.class))));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     private static class TestSuperClass {
         private int superStringProperty;
 
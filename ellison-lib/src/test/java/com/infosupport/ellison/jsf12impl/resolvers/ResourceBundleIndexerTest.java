@@ -0,0 +1,118 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.resolvers;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+import com.infosupport.ellison.core.archive.ExplodedWARApplicationArchive;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link ResourceBundleIndexer} class.
+ *
+ * @author StefanZ
+ */
+public class ResourceBundleIndexerTest {
+    static final List<Locale> LOCALES = Arrays.asList(Locale.ENGLISH, new Locale("nl"), new Locale("nl", "BE"));
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    File webappDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        webappDirectory = temporaryFolder.newFolder("webapp");
+
+        writeClassesFile("com/example/Messages.properties", "# comment\nhello=Hello\nonlyRoot=Root \\\n  continued\n");
+        writeClassesFile("com/example/Messages_nl.properties", "hello=Hallo\nonlyNl=Nl\n");
+        writeClassesFile("com/example/Messages_nl_BE.properties", "onlyBe=Be\n");
+        writeClassesFile("com/example/Other_nl.properties", "hello=Hallo\n");
+        writeClassesFile("com/example/Compiled.properties", "hello=Hello\n");
+        writeClassesFile("com/example/Compiled_nl.class", "");
+    }
+
+    /**
+     * Tests whether the keys of a bundle for a locale are those of all its candidate files.
+     */
+    @Test
+    public void testIndex_KeysOfCandidateFiles() throws Exception {
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory)) {
+            Map<String, Map<Locale, ResourceBundle>> bundles = new ResourceBundleIndexer(archive, 2)
+                .index(Collections.singleton("com.example.Messages"), LOCALES);
+            Map<Locale, ResourceBundle> messages = bundles.get("com.example.Messages");
+
+            assertThat(messages.keySet(), hasItems(LOCALES.toArray(new Locale[LOCALES.size()])));
+            assertThat(messages.get(Locale.ENGLISH).keySet().size(), is(equalTo(2)));
+            assertThat(messages.get(Locale.ENGLISH).containsKey("onlyRoot"), is(true));
+            assertThat(messages.get(Locale.ENGLISH).containsKey("continued"), is(false));
+            assertThat(messages.get(new Locale("nl")).keySet(), hasItems("hello", "onlyRoot", "onlyNl"));
+            assertThat(messages.get(new Locale("nl", "BE")).keySet(),
+                       hasItems("hello", "onlyRoot", "onlyNl", "onlyBe"));
+        }
+    }
+
+    /**
+     * Tests whether the indexed bundles report the locale they were read for, and keep no values.
+     */
+    @Test
+    public void testIndex_LocaleAndValues() throws Exception {
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory)) {
+            ResourceBundle bundle = new ResourceBundleIndexer(archive, 1)
+                .index(Collections.singleton("com.example.Messages"), LOCALES).get("com.example.Messages")
+                .get(Locale.ENGLISH);
+
+            assertThat(bundle.getLocale(), is(equalTo(Locale.ENGLISH)));
+            assertThat(bundle.getString("hello"), is(equalTo("")));
+        }
+    }
+
+    /**
+     * Tests whether bundles that lack a file for one of the locales, or that are partly defined by a class, are left
+     * out, so that they are loaded the regular way.
+     */
+    @Test
+    public void testIndex_NotIndexable() throws Exception {
+        try (ExplodedWARApplicationArchive archive = new ExplodedWARApplicationArchive(webappDirectory)) {
+            Map<String, Map<Locale, ResourceBundle>> bundles = new ResourceBundleIndexer(archive, 2)
+                .index(Arrays.asList("com.example.Other", "com.example.Compiled", "com.example.Missing"), LOCALES);
+
+            assertThat(bundles.isEmpty(), is(true));
+        }
+    }
+
+    private void writeClassesFile(String path, String contents) throws Exception {
+        File file = new File(webappDirectory, "WEB-INF/classes/" + path);
+        Files.createParentDirs(file);
+        Files.write(contents, file, Charset.forName("ISO-8859-1"));
+    }
+}
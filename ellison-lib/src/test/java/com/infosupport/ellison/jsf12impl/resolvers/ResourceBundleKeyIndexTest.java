@@ -0,0 +1,89 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.resolvers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link ResourceBundleKeyIndex} class.
+ *
+ * @author StefanZ
+ */
+public class ResourceBundleKeyIndexTest {
+    ResourceBundleKeyIndex keyIndex;
+
+    @Before
+    public void setup() {
+        List<Locale> locales = Arrays.asList(Locale.ENGLISH, Locale.CHINESE, Locale.GERMAN);
+        List<List<String>> keySets = Arrays.asList(Arrays.asList("everywhere", "notInChinese"),
+                                                   Arrays.asList("everywhere"),
+                                                   Arrays.asList("everywhere", "notInChinese", "onlyInGerman"));
+
+        keyIndex = new ResourceBundleKeyIndex(locales, keySets);
+    }
+
+    @Test
+    public void testIsDefinedInAllLocales() {
+        assertThat(keyIndex.isDefinedInAllLocales("everywhere"), is(true));
+        assertThat(keyIndex.isDefinedInAllLocales("notInChinese"), is(false));
+        assertThat(keyIndex.isDefinedInAllLocales("nowhere"), is(false));
+    }
+
+    @Test
+    public void testIsDefined() {
+        assertThat(keyIndex.isDefined("onlyInGerman"), is(true));
+        assertThat(keyIndex.isDefined("nowhere"), is(false));
+    }
+
+    @Test
+    public void testGetFirstDefiningLocale() {
+        assertThat(keyIndex.getFirstDefiningLocale("everywhere"), is(0));
+        assertThat(keyIndex.getFirstDefiningLocale("onlyInGerman"), is(2));
+        assertThat(keyIndex.getFirstDefiningLocale("nowhere"), is(-1));
+    }
+
+    @Test
+    public void testGetMissingLocales() {
+        assertThat(keyIndex.getMissingLocales("everywhere"), is(equalTo(Collections.<Integer>emptyList())));
+        assertThat(keyIndex.getMissingLocales("notInChinese"), is(equalTo(Arrays.asList(1))));
+        assertThat(keyIndex.getMissingLocales("nowhere"), is(equalTo(Arrays.asList(0, 1, 2))));
+        assertThat(keyIndex.getLocales().get(1), is(equalTo(Locale.CHINESE)));
+    }
+
+    /**
+     * Tests whether a bundle without any locales defines nothing.
+     */
+    @Test
+    public void testIsDefinedInAllLocales_NoLocales() {
+        ResourceBundleKeyIndex emptyIndex =
+            new ResourceBundleKeyIndex(Collections.<Locale>emptyList(), Collections.<List<String>>emptyList());
+
+        assertThat(emptyIndex.isDefinedInAllLocales("key"), is(false));
+        assertThat(emptyIndex.isDefined("key"), is(false));
+    }
+}
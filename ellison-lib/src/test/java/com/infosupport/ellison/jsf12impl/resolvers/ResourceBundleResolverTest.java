@@ -209,6 +209,32 @@ public class ResourceBundleResolverTest {
         assertThat(caughtException.getError().getType(), is(ELError.ELErrorSeverity.WARNING));
     }
 
+    /**
+     * Tests whether a property that exists in every locale is resolved to its value, and whether bundles added to a
+     * {@code LocaleResourceBundlesMap} after it has been used are taken into account.
+     */
+    @Test
+    public void getValue_PropertyExistsInEveryLocale() throws Exception {
+        LocaleResourceBundlesMap resourceBundlesMap = new LocaleResourceBundlesMap(BUNDLE_NAME);
+        resourceBundlesMap.put(Locale.ENGLISH, ResourceBundle.getBundle(BUNDLE_BASENAME, Locale.ENGLISH));
+        when(applicationAssociate.getResourceBundles())
+            .thenReturn(Collections.<String, ApplicationResourceBundle>emptyMap());
+        resourceBundleResolver = new ResourceBundleResolver_MockedApplication(servletContext);
+
+        Object resolvedValue = resourceBundleResolver.getValue(elContext, resourceBundlesMap, MISSING_PROPERTY_NAME);
+
+        verify(elContext).setPropertyResolved(true);
+        assertThat(resolvedValue, is(equalTo((Object) MISSING_PROPERTY_VALUE)));
+
+        resourceBundlesMap.put(Locale.CHINESE, ResourceBundle.getBundle(BUNDLE_BASENAME, Locale.CHINESE));
+        try {
+            resourceBundleResolver.getValue(elContext, resourceBundlesMap, MISSING_PROPERTY_NAME);
+            fail();
+        } catch (ELCheckerException e) {
+            assertThat(e.getError().getType(), is(ELError.ELErrorSeverity.WARNING));
+        }
+    }
+
     private class ResourceBundleResolver_MockedApplication extends ResourceBundleResolver {
         public ResourceBundleResolver_MockedApplication(ServletContext servletContext) {
             super(servletContext);
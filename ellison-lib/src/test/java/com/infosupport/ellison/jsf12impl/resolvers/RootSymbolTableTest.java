@@ -0,0 +1,101 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.resolvers;
+
+import com.infosupport.ellison.jsf12impl.resolvers.ResourceBundleResolver.LocaleResourceBundlesMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the {@link RootSymbolTable} class.
+ *
+ * @author StefanZ
+ */
+public class RootSymbolTableTest {
+    Map<String, Class<?>> managedBeans;
+    Map<String, Class<?>> annotatedBeans;
+    Map<String, LocaleResourceBundlesMap> resourceBundles;
+
+    @Before
+    public void setup() {
+        managedBeans = new HashMap<>();
+        annotatedBeans = new HashMap<>();
+        resourceBundles = new HashMap<>();
+    }
+
+    @Test
+    public void testGet() {
+        LocaleResourceBundlesMap bundle = new LocaleResourceBundlesMap("msg");
+        managedBeans.put("configuredBean", String.class);
+        annotatedBeans.put("annotatedBean", Integer.class);
+        resourceBundles.put("msg", bundle);
+
+        RootSymbolTable rootSymbolTable = new RootSymbolTable(managedBeans, annotatedBeans, resourceBundles);
+
+        assertThat(rootSymbolTable.get("configuredBean").getValue(), is(sameInstance((Object) String.class)));
+        assertThat(rootSymbolTable.get("configuredBean").getSource(), is(RootSymbolTable.Source.FACES_CONFIG));
+        assertThat(rootSymbolTable.get("annotatedBean").getValue(), is(sameInstance((Object) Integer.class)));
+        assertThat(rootSymbolTable.get("annotatedBean").getSource(), is(RootSymbolTable.Source.ANNOTATION));
+        assertThat(rootSymbolTable.get("msg").getValue(), is(sameInstance((Object) bundle)));
+        assertThat(rootSymbolTable.get("msg").getSource(), is(RootSymbolTable.Source.RESOURCE_BUNDLE));
+        assertThat(rootSymbolTable.get("nosuchname"), is(nullValue()));
+        assertThat(rootSymbolTable.getCollisions().isEmpty(), is(true));
+    }
+
+    /**
+     * Tests whether a name defined by several sources refers to the one from the first source, and whether every
+     * collision is reported once.
+     */
+    @Test
+    public void testGet_Collisions() {
+        managedBeans.put("bean", String.class);
+        annotatedBeans.put("bean", Integer.class);
+        annotatedBeans.put("msg", Long.class);
+        resourceBundles.put("bean", new LocaleResourceBundlesMap("bean"));
+        resourceBundles.put("msg", new LocaleResourceBundlesMap("msg"));
+
+        RootSymbolTable rootSymbolTable = new RootSymbolTable(managedBeans, annotatedBeans, resourceBundles);
+
+        assertThat(rootSymbolTable.get("bean").getValue(), is(sameInstance((Object) String.class)));
+        assertThat(rootSymbolTable.get("msg").getValue(), is(sameInstance((Object) Long.class)));
+        assertThat(rootSymbolTable.getCollisions().size(), is(3));
+        assertThat(rootSymbolTable.getCollisions().get(0),
+                   is(equalTo("Name collision on name 'bean': it is defined by a managed bean in the JSF configuration "
+                                  + "(java.lang.String) and by an annotated managed bean (java.lang.Integer). The "
+                                  + "former is used. Please check your configuration.")));
+    }
+
+    @Test
+    public void testGet_Empty() {
+        Map<String, Class<?>> noBeans = Collections.emptyMap();
+
+        RootSymbolTable rootSymbolTable =
+            new RootSymbolTable(noBeans, noBeans, Collections.<String, LocaleResourceBundlesMap>emptyMap());
+
+        assertThat(rootSymbolTable.get("bean"), is(nullValue()));
+    }
+}
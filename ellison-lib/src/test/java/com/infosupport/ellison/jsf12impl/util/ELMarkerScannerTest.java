@@ -0,0 +1,76 @@
+/*
+ * Ellison: EL checker
+ * Copyright (C) 2013 Info Support
+ * dev@sonar.codehaus.org
+ * 
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.infosupport.ellison.jsf12impl.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for the {@link ELMarkerScanner} class.
+ *
+ * @author StefanZ
+ */
+public class ELMarkerScannerTest {
+    @Test
+    public void testFindExpressions_NoExpressions() {
+        assertThat(ELMarkerScanner.findExpressions("header-style # $ {plain} text"),
+                   is(equalTo(Collections.<String>emptyList())));
+        assertThat(ELMarkerScanner.findExpressions(""), is(equalTo(Collections.<String>emptyList())));
+    }
+
+    @Test
+    public void testFindExpressions_MixedWithText() {
+        assertThat(ELMarkerScanner.findExpressions(new StringBuffer("Hello #{user.name}, you have ${count} items#{x}")),
+                   is(equalTo(Arrays.asList("#{user.name}", "${count}", "#{x}"))));
+    }
+
+    @Test
+    public void testFindExpressions_Escaped() {
+        assertThat(ELMarkerScanner.findExpressions("\\#{not.el} \\${neither} \\\\#{bean}"),
+                   is(equalTo(Arrays.asList("#{bean}"))));
+    }
+
+    /**
+     * Tests whether a closing brace inside a string literal does not end an expression.
+     */
+    @Test
+    public void testFindExpressions_StringLiterals() {
+        assertThat(ELMarkerScanner.findExpressions("#{bundle['a}b']} #{bean.x eq \"it\\\"s }\"}"),
+                   is(equalTo(Arrays.asList("#{bundle['a}b']}", "#{bean.x eq \"it\\\"s }\"}"))));
+    }
+
+    @Test
+    public void testFindExpressions_NotClosed() {
+        assertThat(ELMarkerScanner.findExpressions("text #{bean.property"),
+                   is(equalTo(Arrays.asList("#{bean.property"))));
+    }
+
+    @Test
+    public void testIsMixedSyntax() {
+        assertThat(ELMarkerScanner.isMixedSyntax(Arrays.asList("#{a}", "#{b}")), is(false));
+        assertThat(ELMarkerScanner.isMixedSyntax(Arrays.asList("#{a}", "${b}")), is(true));
+        assertThat(ELMarkerScanner.isMixedSyntax(Collections.<String>emptyList()), is(false));
+    }
+}
@@ -43,10 +43,12 @@ public class JSFPageParserTest {
     static final String PROPERTY_VALUE = "propValue";
     @Mock(answer = Answers.CALLS_REAL_METHODS) JSFPageParser jsfPageParser;
     @Mock SAXParser saxParserDelegate;
+    @Mock JSFSAXHandler jsfSaxHandler;
 
     @Before
     public void setup() throws Exception {
         PrivateAccessor.setField(jsfPageParser, "delegate", saxParserDelegate);
+        PrivateAccessor.setField(jsfPageParser, "jsfSaxHandler", jsfSaxHandler);
     }
 
     @Test
@@ -90,4 +92,15 @@ public class JSFPageParserTest {
 
         verify(saxParserDelegate).getProperty(PROPERTY_NAME);
     }
+
+    /**
+     * Tests whether resetting the parser, to parse another page, resets both the delegate and the handler.
+     */
+    @Test
+    public void testReset() throws Exception {
+        jsfPageParser.reset();
+
+        verify(saxParserDelegate).reset();
+        verify(jsfSaxHandler).reset();
+    }
 }
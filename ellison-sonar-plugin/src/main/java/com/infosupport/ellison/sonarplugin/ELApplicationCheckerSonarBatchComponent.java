@@ -20,8 +20,13 @@
 package com.infosupport.ellison.sonarplugin;
 
 import com.infosupport.ellison.core.ELApplicationChecker;
+import com.infosupport.ellison.core.archive.AnnotationIndexCache;
+import com.infosupport.ellison.core.archive.ApplicationArchiveFactory;
+import com.infosupport.ellison.core.archive.UnpackCache;
 import com.infosupport.ellison.jsf12impl.apiimpl.JSFELApplicationCheckerFactory;
 
+import java.io.File;
+
 import org.sonar.api.BatchExtension;
 
 /**
@@ -44,4 +49,30 @@ public class ELApplicationCheckerSonarBatchComponent extends ELApplicationChecke
 
         addSupportedELCheckerApplicationFactory(new JSFELApplicationCheckerFactory());
     }
+
+    /**
+     * Configures the caches the application archives that are checked are read through. A cache is only used if its
+     * maximum size is positive; otherwise nothing is kept on disk after a check.
+     *
+     * @param cacheDirectory
+     *     the directory to keep the caches in
+     * @param unpackCacheSize
+     *     the maximum total size (in bytes) of the unpacked archives to keep, or 0 to disable the unpack cache
+     * @param annotationIndexCacheSize
+     *     the maximum total size (in bytes) of the annotation indexes to keep, or 0 to disable the annotation index
+     *     cache
+     *
+     * @see ApplicationArchiveFactory#setUnpackCache(UnpackCache)
+     * @see ApplicationArchiveFactory#setAnnotationIndexCache(AnnotationIndexCache)
+     */
+    public void configureCaches(File cacheDirectory, long unpackCacheSize, long annotationIndexCacheSize) {
+        ApplicationArchiveFactory applicationArchiveFactory = getApplicationArchiveFactory();
+
+        applicationArchiveFactory.setUnpackCache(
+            unpackCacheSize > 0 ? new UnpackCache(new File(cacheDirectory, "unpacked"), unpackCacheSize) : null);
+        applicationArchiveFactory.setAnnotationIndexCache(
+            annotationIndexCacheSize > 0
+                ? new AnnotationIndexCache(new File(cacheDirectory, "annotations"), annotationIndexCacheSize)
+                : null);
+    }
 }
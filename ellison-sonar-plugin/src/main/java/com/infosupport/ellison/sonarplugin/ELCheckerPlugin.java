@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 import java.util.List;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 import org.sonar.api.SonarPlugin;
 
 /**
@@ -37,7 +38,32 @@ import org.sonar.api.SonarPlugin;
                     name = ELCheckerPlugin.ARTIFACT_PATH_PROP_DESCRIPTION,
                     project = true,
                     module = false,
-                    global = false)
+                    global = false),
+                @Property(
+                    key = ELCheckerPlugin.CACHE_DIRECTORY,
+                    name = ELCheckerPlugin.CACHE_DIRECTORY_PROP_DESCRIPTION,
+                    description = ELCheckerPlugin.CACHE_DIRECTORY_PROP_DETAILS,
+                    project = true,
+                    module = false,
+                    global = true),
+                @Property(
+                    key = ELCheckerPlugin.UNPACK_CACHE_SIZE,
+                    name = ELCheckerPlugin.UNPACK_CACHE_SIZE_PROP_DESCRIPTION,
+                    description = ELCheckerPlugin.CACHE_SIZE_PROP_DETAILS,
+                    defaultValue = "0",
+                    type = PropertyType.INTEGER,
+                    project = true,
+                    module = false,
+                    global = true),
+                @Property(
+                    key = ELCheckerPlugin.ANNOTATION_INDEX_CACHE_SIZE,
+                    name = ELCheckerPlugin.ANNOTATION_INDEX_CACHE_SIZE_PROP_DESCRIPTION,
+                    description = ELCheckerPlugin.CACHE_SIZE_PROP_DETAILS,
+                    defaultValue = "0",
+                    type = PropertyType.INTEGER,
+                    project = true,
+                    module = false,
+                    global = true)
             })
 public class ELCheckerPlugin extends SonarPlugin {
     static final String KEY = "el-static-checker_artifact-path";
@@ -50,6 +76,18 @@ public class ELCheckerPlugin extends SonarPlugin {
                                                               .build();
     static final String ARTIFACT_PATH = KEY;
     static final String ARTIFACT_PATH_PROP_DESCRIPTION = "Path to the built artifact to check.";
+    static final String CACHE_DIRECTORY = "el-static-checker_cache-directory";
+    static final String CACHE_DIRECTORY_PROP_DESCRIPTION = "Directory to keep the caches of the checker in.";
+    static final String CACHE_DIRECTORY_PROP_DETAILS =
+        "Relative paths are resolved against the base directory of the project. Defaults to the Sonar working "
+            + "directory of the project.";
+    static final String UNPACK_CACHE_SIZE = "el-static-checker_unpack-cache-size";
+    static final String UNPACK_CACHE_SIZE_PROP_DESCRIPTION = "Maximum size (in MB) of the unpacked artifacts to keep.";
+    static final String ANNOTATION_INDEX_CACHE_SIZE = "el-static-checker_annotation-index-cache-size";
+    static final String ANNOTATION_INDEX_CACHE_SIZE_PROP_DESCRIPTION =
+        "Maximum size (in MB) of the annotated classes of libraries to keep.";
+    static final String CACHE_SIZE_PROP_DETAILS =
+        "Kept between analyses, so that unchanged parts of the artifact aren't read again. 0 disables the cache.";
 
     /**
      * Returns the extensions this plugin provides.
@@ -21,8 +21,8 @@ package com.infosupport.ellison.sonarplugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -40,6 +40,7 @@ import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.Violation;
 
 import com.infosupport.ellison.core.ELApplicationChecker;
+import com.infosupport.ellison.core.api.ELCheckListener;
 import com.infosupport.ellison.core.api.ELError;
 import com.infosupport.ellison.core.api.LocationAwareELExpression;
 import com.infosupport.ellison.core.exceptions.ApplicationNotSupportedException;
@@ -55,8 +56,13 @@ import com.infosupport.ellison.sonarplugin.rules.ELCheckerMinorRule;
  */
 public class ELCheckerSensor implements Sensor {
     private static final Logger LOGGER = LoggerFactory.getLogger(ELCheckerSensor.class);
+    private static final String CACHE_DIRECTORY_NAME = "ellison-cache";
+    private static final long MEGABYTE = 1024L * 1024;
     private MavenProject mavenProject;
     private String savedArtifactPath;
+    private String savedCacheDirectory;
+    private long unpackCacheSize;
+    private long annotationIndexCacheSize;
     private ELApplicationChecker elApplicationChecker;
 
     /**
@@ -67,7 +73,7 @@ public class ELCheckerSensor implements Sensor {
      *     an object that reflects whatever information maven has about the project to check
      * @param settings
      *     the Sonar settings. This will be used to check if the user has manually entered an artifact to
-     *     check
+     *     check, and to configure the caches of the checker
      * @param elApplicationChecker
      *     the {@link ELApplicationCheckerSonarBatchComponent} that will be used to do
      *     the actual analysis
@@ -77,12 +83,16 @@ public class ELCheckerSensor implements Sensor {
         this.mavenProject = mavenProject;
         this.elApplicationChecker = elApplicationChecker;
         savedArtifactPath = settings.getString(ELCheckerPlugin.ARTIFACT_PATH);
+        savedCacheDirectory = settings.getString(ELCheckerPlugin.CACHE_DIRECTORY);
+        unpackCacheSize = settings.getLong(ELCheckerPlugin.UNPACK_CACHE_SIZE) * MEGABYTE;
+        annotationIndexCacheSize = settings.getLong(ELCheckerPlugin.ANNOTATION_INDEX_CACHE_SIZE) * MEGABYTE;
     }
 
     /**
      * The analysis of the project happens here.
-     * The project's artifact is checked using {@link ELApplicationChecker#checkApplication(java.io.File)}. Any found
-     * (potential) errors are saved as {@link Violation}s.
+     * The project's artifact is checked using {@link ELApplicationChecker#checkApplication(java.io.File,
+     * ELCheckListener)}. Any found (potential) errors are saved as {@link Violation}s while the check is running.
+     * Before that, the caches of the checker are configured from the settings; by default, none are used.
      *
      * @param project
      *     the project that is to be analyzed
@@ -90,17 +100,32 @@ public class ELCheckerSensor implements Sensor {
      *     the context in which the sensor is running
      *
      * @see Sensor#analyse(org.sonar.api.resources.Project, org.sonar.api.batch.SensorContext)
-     * @see ELApplicationChecker#checkApplication(java.io.File)
+     * @see ELApplicationChecker#checkApplication(java.io.File, ELCheckListener)
      */
     @Override
-    public void analyse(Project project, SensorContext context) {
+    public void analyse(final Project project, final SensorContext context) {
         File artifactFile = searchArtifactFile(mavenProject, project.getFileSystem());
         LOGGER.info("Artifact file location: {} (exists?: {})", artifactFile.toURI(), artifactFile.exists());
-
-        Collection<ELError> foundErrors = null;
+        elApplicationChecker.configureCaches(searchCacheDirectory(project.getFileSystem()), unpackCacheSize,
+                                             annotationIndexCacheSize);
 
         try {
-            foundErrors = elApplicationChecker.checkApplication(artifactFile);
+            elApplicationChecker.checkApplication(artifactFile, new ELCheckListener() {
+                @Override
+                public void onError(ELError elError) {
+                    context.saveViolation(createViolationFromELError(project, context, elError));
+                }
+
+                @Override
+                public void onPageDone(URI page) {
+                    LOGGER.debug("Checked page {}", page);
+                }
+
+                @Override
+                public void onPhaseDone(Phase phase) {
+                    LOGGER.debug("Finished phase {}", phase);
+                }
+            });
         } catch (ApplicationNotSupportedException | ArchiveFormatUnsupportedException | IOException e) {
             StringBuilder sb = new StringBuilder();
             sb.append("An exception occurred while trying to check project '");
@@ -113,13 +138,6 @@ public class ELCheckerSensor implements Sensor {
             Violation exceptionViolation = Violation.create(criticalRule, project).setMessage(sb.toString());
             context.saveViolation(exceptionViolation);
         }
-
-        if (foundErrors != null) {
-            for (ELError foundError : foundErrors) {
-                Violation violation = createViolationFromELError(project, context, foundError);
-                context.saveViolation(violation);
-            }
-        }
     }
 
     /**
@@ -216,6 +234,24 @@ public class ELCheckerSensor implements Sensor {
         return file;
     }
 
+    /**
+     * Get the directory to keep the caches of the checker in.
+     *
+     * @param fileSystem
+     *     the filesystem of the project that is being checked
+     *
+     * @return the cache directory set in the settings, resolved against the base directory of the project if it is
+     *         relative, or a directory in the Sonar working directory of the project if none has been set
+     */
+    protected File searchCacheDirectory(ProjectFileSystem fileSystem) {
+        if (StringUtils.isEmpty(savedCacheDirectory)) {
+            return new File(fileSystem.getSonarWorkingDirectory(), CACHE_DIRECTORY_NAME);
+        }
+
+        File cacheDirectory = new File(savedCacheDirectory);
+        return cacheDirectory.isAbsolute() ? cacheDirectory : buildPathFromConfig(fileSystem, savedCacheDirectory);
+    }
+
     private File buildPathFromConfig(ProjectFileSystem fileSystem, String artifactPath) {
         return new File(fileSystem.getBasedir(), artifactPath);
     }
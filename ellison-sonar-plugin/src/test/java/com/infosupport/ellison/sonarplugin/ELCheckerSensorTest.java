@@ -20,6 +20,7 @@
 package com.infosupport.ellison.sonarplugin;
 
 import com.google.common.collect.ImmutableList;
+import com.infosupport.ellison.core.api.ELCheckListener;
 import com.infosupport.ellison.core.api.ELError;
 import com.infosupport.ellison.core.api.LocationAwareELExpression;
 import com.infosupport.ellison.core.exceptions.ArchiveFormatUnsupportedException;
@@ -42,7 +43,9 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
@@ -86,7 +89,7 @@ public class ELCheckerSensorTest {
         File archiveFile = mock(File.class);
         File sourceDir = mock(File.class);
         List<File> sourceDirs = ImmutableList.<File>builder().add(sourceDir).build();
-        List<ELError> elErrors = new ArrayList<>();
+        final List<ELError> elErrors = new ArrayList<>();
         ArgumentCaptor<Violation> violationArgument = ArgumentCaptor.forClass(Violation.class);
 
         Location firstLocation = new Location(getClass().getResource("/otherDirectory/htmlfile.html").toURI(), 1, 2);
@@ -106,7 +109,16 @@ public class ELCheckerSensorTest {
         when(sourceDir.exists()).thenReturn(true);
         when(sourceDir.isDirectory()).thenReturn(true);
         when(projectFileSystem.getSourceDirs()).thenReturn(sourceDirs);
-        when(elApplicationChecker.checkApplication(Matchers.any(File.class))).thenReturn(elErrors);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ELCheckListener listener = (ELCheckListener) invocation.getArguments()[1];
+                for (ELError elError : elErrors) {
+                    listener.onError(elError);
+                }
+                return null;
+            }
+        }).when(elApplicationChecker).checkApplication(Matchers.any(File.class), Matchers.any(ELCheckListener.class));
 
         elCheckerSensor.analyse(project, sensorContext);
 
@@ -135,7 +147,8 @@ public class ELCheckerSensorTest {
 
         elCheckerSensor = new ELCheckerSensor(mavenProject, settings, elApplicationChecker);
         when(projectFileSystem.getSourceDirs()).thenReturn(sourceDirs);
-        when(elApplicationChecker.checkApplication(Matchers.any(File.class))).thenReturn(null);
+        doNothing().when(elApplicationChecker)
+                   .checkApplication(Matchers.any(File.class), Matchers.any(ELCheckListener.class));
 
         elCheckerSensor.analyse(project, sensorContext);
 
@@ -152,8 +165,8 @@ public class ELCheckerSensorTest {
 
         elCheckerSensor = new ELCheckerSensor(mavenProject, settings, elApplicationChecker);
         when(projectFileSystem.getSourceDirs()).thenReturn(sourceDirs);
-        when(elApplicationChecker.checkApplication(Matchers.any(File.class)))
-            .thenThrow(ArchiveFormatUnsupportedException.class);
+        doThrow(ArchiveFormatUnsupportedException.class).when(elApplicationChecker)
+            .checkApplication(Matchers.any(File.class), Matchers.any(ELCheckListener.class));
 
         elCheckerSensor.analyse(project, sensorContext);
 
@@ -192,6 +205,36 @@ public class ELCheckerSensorTest {
         verify(mavenProject, atLeastOnce()).getPackaging();
     }
 
+    /**
+     * Tests whether no caches are used by default, and whether the cache directory defaults to the Sonar working
+     * directory.
+     */
+    @Test
+    public void testAnalyse_CachesDisabledByDefault() throws Exception {
+        File workingDir = new File("workingDir");
+        when(projectFileSystem.getSonarWorkingDirectory()).thenReturn(workingDir);
+        settings.setProperty(ELCheckerPlugin.ARTIFACT_PATH, "somepath");
+        elCheckerSensor = new ELCheckerSensor(mavenProject, settings, elApplicationChecker);
+
+        elCheckerSensor.analyse(project, sensorContext);
+
+        verify(elApplicationChecker).configureCaches(new File(workingDir, "ellison-cache"), 0, 0);
+    }
+
+    @Test
+    public void testAnalyse_CachesConfiguredInSettings() throws Exception {
+        settings.setProperty(ELCheckerPlugin.ARTIFACT_PATH, "somepath");
+        settings.setProperty(ELCheckerPlugin.CACHE_DIRECTORY, "cache");
+        settings.setProperty(ELCheckerPlugin.UNPACK_CACHE_SIZE, "512");
+        settings.setProperty(ELCheckerPlugin.ANNOTATION_INDEX_CACHE_SIZE, "16");
+        elCheckerSensor = new ELCheckerSensor(mavenProject, settings, elApplicationChecker);
+
+        elCheckerSensor.analyse(project, sensorContext);
+
+        verify(elApplicationChecker).configureCaches(new File(baseDir, "cache"), 512L * 1024 * 1024,
+                                                     16L * 1024 * 1024);
+    }
+
     @Test
     public void testCreateViolationFromELError() throws Exception {
         String errorMessage = "errorMessage";